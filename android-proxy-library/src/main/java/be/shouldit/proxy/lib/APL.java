@@ -1,9 +1,11 @@
 package be.shouldit.proxy.lib;
 
 import android.annotation.TargetApi;
+import android.content.BroadcastReceiver;
 import android.content.ContentResolver;
 import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
 import android.net.ConnectivityManager;
 import android.net.Uri;
 import android.net.wifi.WifiConfiguration;
@@ -13,22 +15,37 @@ import android.provider.Settings;
 import android.text.TextUtils;
 import android.util.Log;
 
-import java.lang.reflect.Field;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
 import java.net.ProxySelector;
 import java.net.URI;
-import java.security.InvalidParameterException;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import be.shouldit.proxy.lib.checker.ProxyCheckCache;
+import be.shouldit.proxy.lib.checker.PacScript;
+import be.shouldit.proxy.lib.checker.PacScriptCache;
+import be.shouldit.proxy.lib.checker.ProxyCheckScheduler;
+import be.shouldit.proxy.lib.checker.ProxyCheckPipeline;
+import be.shouldit.proxy.lib.constants.APLConstants;
 import be.shouldit.proxy.lib.constants.APLIntents;
+import be.shouldit.proxy.lib.enums.ProxyCheckOptions;
 import be.shouldit.proxy.lib.enums.SaveStatus;
 import be.shouldit.proxy.lib.enums.SecurityType;
 import be.shouldit.proxy.lib.logging.TraceUtils;
+import be.shouldit.proxy.lib.pac.PacEngine;
+import be.shouldit.proxy.lib.reflection.ProxyAccessor;
 import be.shouldit.proxy.lib.reflection.ReflectionUtils;
 import be.shouldit.proxy.lib.reflection.android.ProxySetting;
+import be.shouldit.proxy.lib.utils.ConnectionPool;
+import be.shouldit.proxy.lib.utils.DnsCache;
+import be.shouldit.proxy.lib.utils.ProxyDecisionCache;
 import be.shouldit.proxy.lib.utils.ProxyUtils;
 import be.shouldit.proxy.lib.utils.SaveResult;
 import timber.log.Timber;
@@ -47,6 +64,37 @@ public class APL
     private static boolean sSetupCalled;
     private static int deviceVersion;
     private static TraceUtils traceUtils;
+    private static ExecutorService proxyCheckExecutor;
+    private static ProxyCheckCache proxyCheckCache;
+    private static ProxyCheckScheduler proxyCheckScheduler;
+    private static PacScriptCache pacScriptCache;
+    private static ProxyAccessor proxyAccessor;
+    private static APLWarmUp warmUp;
+    private static final ProxyDecisionCache proxyDecisionCache = new ProxyDecisionCache();
+
+    private static final URI HTTP_URI = URI.create("http://wwww.google.it");
+    private static final URI HTTPS_URI = URI.create("https://wwww.google.it");
+    private static final URI FTP_URI = URI.create("ftp://google.it");
+
+    /**
+     * Invalidates the proxy decisions (and the connections and host resolutions, on network change)
+     * made with a configuration that is no longer the current one
+     */
+    private static class ProxyChangeReceiver extends BroadcastReceiver
+    {
+        @Override
+        public void onReceive(Context context, Intent intent)
+        {
+            Timber.d("Received %s: invalidating proxy decisions", intent.getAction());
+            proxyDecisionCache.invalidate();
+
+            if (ConnectivityManager.CONNECTIVITY_ACTION.equals(intent.getAction()))
+            {
+                ConnectionPool.getInstance().evictAll();
+                DnsCache.getInstance().clear();
+            }
+        }
+    }
 
     public static TraceUtils getTraceUtils()
     {
@@ -54,6 +102,15 @@ public class APL
     }
 
     public static boolean setup(Context context)
+    {
+        return setup(context, false);
+    }
+
+    /**
+     * @param enableWarmUp true to resolve the reflective members and system services on a background thread,
+     *               so the first calls of the library don't pay for them, see {@link #getWarmUp()}
+     */
+    public static boolean setup(Context context, boolean enableWarmUp)
     {
         gContext = context;
         deviceVersion = Build.VERSION.SDK_INT;
@@ -68,6 +125,23 @@ public class APL
 
         traceUtils = new TraceUtils();
 
+        if (!enableWarmUp)
+        {
+            proxyAccessor = ProxyAccessor.create(deviceVersion);
+        }
+
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(android.net.Proxy.PROXY_CHANGE_ACTION);
+        filter.addAction(APLIntents.APL_UPDATED_PROXY_CONFIGURATION);
+        filter.addAction(ConnectivityManager.CONNECTIVITY_ACTION);
+        context.getApplicationContext().registerReceiver(new ProxyChangeReceiver(), filter);
+
+        if (enableWarmUp)
+        {
+            warmUp = new APLWarmUp();
+            warmUp.start();
+        }
+
         Timber.d("APL setup executed");
 
         return sSetupCalled;
@@ -89,6 +163,30 @@ public class APL
         return deviceVersion;
     }
 
+    /**
+     * Accessor of the proxy fields of WifiConfiguration, chosen for the SDK version during setup
+     */
+    public static synchronized ProxyAccessor getProxyAccessor()
+    {
+        if (!sSetupCalled && gContext == null)
+            throw new RuntimeException("you need to call setup() first");
+
+        if (proxyAccessor == null)
+        {
+            proxyAccessor = ProxyAccessor.create(deviceVersion);
+        }
+
+        return proxyAccessor;
+    }
+
+    /**
+     * @return the warm-up started during setup, with the timing of every step, null if not requested
+     */
+    public static APLWarmUp getWarmUp()
+    {
+        return warmUp;
+    }
+
     public static WifiManager getWifiManager()
     {
         if (!sSetupCalled && gContext == null)
@@ -134,6 +232,102 @@ public class APL
         return mConnManager;
     }
 
+    /**
+     * Starts checking the status of the given configuration without blocking the caller
+     *
+     * @see #acquireProxyStatusAsync(WiFiApConfig, EnumSet, int, ProxyCheckListener)
+     */
+    public static ProxyCheckHandle acquireProxyStatusAsync(WiFiApConfig conf, ProxyCheckListener listener)
+    {
+        return acquireProxyStatusAsync(conf, ProxyCheckOptions.ALL, APLConstants.DEFAULT_TIMEOUT, listener);
+    }
+
+    /**
+     * Starts checking the status of the given configuration on a background thread.
+     * The result of every single check is delivered to the listener as soon as it's available,
+     * and the returned handle can be used to abort the whole check.
+     */
+    public static ProxyCheckHandle acquireProxyStatusAsync(WiFiApConfig conf, EnumSet<ProxyCheckOptions> checkOptions, int timeout, ProxyCheckListener listener)
+    {
+        if (!sSetupCalled && gContext == null)
+            throw new RuntimeException("you need to call setup() first");
+
+        ProxyCheckPipeline pipeline = ProxyUtils.createProxyCheckPipeline(conf, conf.getStatus(), checkOptions);
+        ProxyCheckHandle handle = new ProxyCheckHandle(conf, pipeline, timeout, listener);
+        handle.start(getProxyCheckExecutor());
+
+        return handle;
+    }
+
+    /**
+     * Persistent cache of the results of the proxy checks
+     */
+    public static synchronized ProxyCheckCache getProxyCheckCache()
+    {
+        if (!sSetupCalled && gContext == null)
+            throw new RuntimeException("you need to call setup() first");
+
+        if (proxyCheckCache == null)
+        {
+            proxyCheckCache = new ProxyCheckCache(gContext);
+        }
+
+        return proxyCheckCache;
+    }
+
+    /**
+     * Scheduler of the re-checks, based on the history of the check outcomes
+     */
+    public static synchronized ProxyCheckScheduler getProxyCheckScheduler()
+    {
+        if (!sSetupCalled && gContext == null)
+            throw new RuntimeException("you need to call setup() first");
+
+        if (proxyCheckScheduler == null)
+        {
+            proxyCheckScheduler = new ProxyCheckScheduler(gContext);
+        }
+
+        return proxyCheckScheduler;
+    }
+
+    /**
+     * Persistent cache of the downloaded PAC scripts
+     */
+    public static synchronized PacScriptCache getPacScriptCache()
+    {
+        if (!sSetupCalled && gContext == null)
+            throw new RuntimeException("you need to call setup() first");
+
+        if (pacScriptCache == null)
+        {
+            pacScriptCache = new PacScriptCache(gContext);
+        }
+
+        return pacScriptCache;
+    }
+
+    private static synchronized ExecutorService getProxyCheckExecutor()
+    {
+        if (proxyCheckExecutor == null)
+        {
+            proxyCheckExecutor = Executors.newCachedThreadPool(new ThreadFactory()
+            {
+                private final AtomicInteger count = new AtomicInteger(1);
+
+                @Override
+                public Thread newThread(Runnable runnable)
+                {
+                    Thread thread = new Thread(runnable, "APL-ProxyCheck-" + count.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+
+        return proxyCheckExecutor;
+    }
+
     /**
      * Main entry point to access the proxy settings
      */
@@ -199,19 +393,25 @@ public class APL
      * For API >= 12: Returns the current proxy configuration based on the URI,
      * this implementation is a wrapper of the Android's ProxySelector class.
      * Just add some other details that can be useful to the developer.
+     *
+     * Decisions are memoized by scheme, host and port until the proxy configuration changes.
      */
     public static Proxy getProxySelectorConfiguration(URI uri) throws Exception
     {
         if (!sSetupCalled && gContext == null)
             throw new RuntimeException("you need to call setup() first");
 
+        Proxy proxy = proxyDecisionCache.get(uri);
+        if (proxy != null)
+            return proxy;
+
         ProxySelector defaultProxySelector = ProxySelector.getDefault();
-        Proxy proxy = null;
 
         List<Proxy> proxyList = defaultProxySelector.select(uri);
         if (proxyList.size() > 0)
         {
             proxy = proxyList.get(0);
+            proxyDecisionCache.put(uri, proxy);
             Timber.d("Current Proxy Configuration: %s", proxy.toString());
         }
         else
@@ -233,6 +433,33 @@ public class APL
         return proxy;
     }
 
+    /**
+     * Evaluates the PAC script of the configuration for the URI with the {@link PacEngine},
+     * so it works also for the configurations of the networks not currently active.
+     * The script is taken from the {@link PacScriptCache}, downloaded only if not already cached.
+     *
+     * @return the proxies to use for the URI, in order of preference
+     */
+    public static List<Proxy> getPacProxyConfiguration(WiFiApConfig conf, URI uri) throws Exception
+    {
+        if (!sSetupCalled && gContext == null)
+            throw new RuntimeException("you need to call setup() first");
+
+        if (conf.getProxySetting() != ProxySetting.PAC || conf.getPacFileUri() == null)
+            throw new Exception("Not a PAC proxy configuration: " + conf.toShortString());
+
+        String pacUrl = conf.getPacFileUri().toString();
+        PacScript script = getPacScriptCache().get(pacUrl);
+        if (script == null)
+        {
+            script = getPacScriptCache().fetch(new URI(pacUrl), Proxy.NO_PROXY, APLConstants.MAX_DOWNLOAD_LENGTH, APLConstants.DEFAULT_TIMEOUT);
+        }
+
+        List<Proxy> proxies = PacEngine.getInstance().select(script.getBody(), uri);
+        Timber.d("PAC Proxy Configuration for %s: %s", uri, proxies);
+        return proxies;
+    }
+
     /**
      * Return the current proxy configuration for HTTP protocol
      */
@@ -241,8 +468,7 @@ public class APL
         if (!sSetupCalled && gContext == null)
             throw new RuntimeException("you need to call setup() first");
 
-        URI uri = new URI("http", "wwww.google.it", null, null);
-        return getCurrentProxyConfiguration(uri);
+        return getCurrentProxyConfiguration(HTTP_URI);
     }
 
     /**
@@ -253,8 +479,7 @@ public class APL
         if (!sSetupCalled && gContext == null)
             throw new RuntimeException("you need to call setup() first");
 
-        URI uri = new URI("https", "wwww.google.it", null, null);
-        return getCurrentProxyConfiguration(uri);
+        return getCurrentProxyConfiguration(HTTPS_URI);
     }
 
     /**
@@ -265,8 +490,7 @@ public class APL
         if (!sSetupCalled && gContext == null)
             throw new RuntimeException("you need to call setup() first");
 
-        URI uri = new URI("ftp", "google.it", null, null);
-        return getCurrentProxyConfiguration(uri);
+        return getCurrentProxyConfiguration(FTP_URI);
     }
 
     /**
@@ -319,59 +543,7 @@ public class APL
         {
             APL.getTraceUtils().startTrace(TAG, "getWiFiAPConfiguration", Log.DEBUG);
 
-            Object proxySetting = ReflectionUtils.getProxySetting(wifiConf);
-
-            if (proxySetting != null)
-            {
-                int ordinal = ((Enum) proxySetting).ordinal();
-
-                if (ordinal == ProxySetting.NONE.ordinal() || ordinal == ProxySetting.UNASSIGNED.ordinal())
-                {
-                    wiFiApConfig = new WiFiApConfig(wifiConf, ProxySetting.NONE, null, null, "", Uri.EMPTY);
-                }
-                else if (ordinal == ProxySetting.STATIC.ordinal())
-                {
-                    Object mHttpProxy = ReflectionUtils.getHttpProxy(wifiConf);
-
-                    if (mHttpProxy != null)
-                    {
-                        Field mHostField = ReflectionUtils.getField(mHttpProxy.getClass().getDeclaredFields(), "mHost");
-                        mHostField.setAccessible(true);
-                        String mHost = (String) mHostField.get(mHttpProxy);
-
-                        Field mPortField = ReflectionUtils.getField(mHttpProxy.getClass().getDeclaredFields(), "mPort");
-                        mPortField.setAccessible(true);
-                        Integer mPort = (Integer) mPortField.get(mHttpProxy);
-
-                        Field mExclusionListField = ReflectionUtils.getField(mHttpProxy.getClass().getDeclaredFields(), "mExclusionList");
-                        mExclusionListField.setAccessible(true);
-                        String mExclusionList = (String) mExclusionListField.get(mHttpProxy);
-
-                        Timber.d("Read HTTP proxy configuration: '%s:%d' (el: '%s')",mHost,mPort,mExclusionList);
-
-                        wiFiApConfig = new WiFiApConfig(wifiConf, ProxySetting.STATIC, mHost, mPort, mExclusionList, Uri.EMPTY);
-                    }
-                }
-                else if (ordinal == ProxySetting.PAC.ordinal())
-                {
-                    Object mHttpProxy = ReflectionUtils.getHttpProxy(wifiConf);
-
-                    if (mHttpProxy != null)
-                    {
-                        Field mPacFileUrlField = ReflectionUtils.getField(mHttpProxy.getClass().getDeclaredFields(), "mPacFileUrl");
-                        mPacFileUrlField.setAccessible(true);
-                        Uri mPacFileUrl = (Uri) mPacFileUrlField.get(mHttpProxy);
-
-                        Timber.d("Read PAC proxy configuration: '%s'", mPacFileUrl.toString());
-
-                        wiFiApConfig = new WiFiApConfig(wifiConf, ProxySetting.PAC, null, null, null, mPacFileUrl);
-                    }
-                }
-                else
-                {
-		            Timber.e(new InvalidParameterException(),"Not valid ProxySetting value: " + ordinal);
-                }
-            }
+            wiFiApConfig = getProxyAccessor().readProxy(wifiConf);
 
             if (wiFiApConfig == null)
             {
@@ -525,7 +697,7 @@ public class APL
 
         if (selectedConfiguration != null)
         {
-            WifiConfiguration newConf = ReflectionUtils.setProxyFieldsOnWifiConfiguration(confToSave, selectedConfiguration);
+            WifiConfiguration newConf = getProxyAccessor().writeProxy(confToSave, selectedConfiguration);
             APL.getTraceUtils().partialTrace(TAG, WRITE_WIFI_KEY, "Set proxy fields on WifiConfiguration", Log.INFO);
 
             ReflectionUtils.saveWifiConfiguration(wifiManager, newConf);
@@ -581,6 +753,8 @@ public class APL
 
             Timber.d("Succesfully updated configuration %s, after %d attempt", confToSave.toShortString(), attempt);
 
+            proxyDecisionCache.invalidate();
+
             Timber.i("Sending broadcast intent: " + APLIntents.APL_UPDATED_PROXY_CONFIGURATION);
             Intent intent = new Intent(APLIntents.APL_UPDATED_PROXY_CONFIGURATION);
             APL.getContext().sendBroadcast(intent);
@@ -0,0 +1,180 @@
+package be.shouldit.proxy.lib;
+
+import android.net.wifi.WifiConfiguration;
+import android.net.wifi.WifiManager;
+import android.util.Log;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import be.shouldit.proxy.lib.logging.TraceUtils;
+import be.shouldit.proxy.lib.reflection.ReflectionUtils;
+import timber.log.Timber;
+
+/**
+ * Optional warm-up started by {@link APL#setup(android.content.Context, boolean)}: pays the class loading,
+ * reflective resolution and system services costs on a background thread, instead of the first caller.
+ *
+ * Every step is traced with {@link TraceUtils} and its duration is kept in the report, see {@link #getTimings()}.
+ */
+public class APLWarmUp implements Runnable
+{
+    public static final String TAG = APLWarmUp.class.getSimpleName();
+    static final String WARM_UP_KEY = "warmUp";
+
+    public static final String STEP_SYSTEM_SERVICES = "system_services";
+    public static final String STEP_PROXY_ACCESSOR = "proxy_accessor";
+    public static final String STEP_WIFI_MANAGER_METHODS = "wifi_manager_methods";
+    public static final String STEP_CONFIGURED_NETWORKS = "configured_networks";
+    public static final String STEP_PROXY_SELECTOR = "proxy_selector";
+
+    // Hidden WifiManager methods used to connect and save the configurations, depending on the SDK version
+    private static final String[] WIFI_MANAGER_METHODS = {"connect", "save", "saveNetwork", "initialize", "asyncConnect"};
+
+    private final Map<String, Long> timings = new LinkedHashMap<String, Long>();
+    private final CountDownLatch completed = new CountDownLatch(1);
+
+    /**
+     * Starts the warm-up on a low priority daemon thread
+     */
+    void start()
+    {
+        Thread thread = new Thread(this, "APL-WarmUp");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    @Override
+    public void run()
+    {
+        TraceUtils traceUtils = APL.getTraceUtils();
+        traceUtils.startTrace(TAG, WARM_UP_KEY, Log.DEBUG, true);
+
+        try
+        {
+            runStep(traceUtils, STEP_SYSTEM_SERVICES, new Step()
+            {
+                @Override
+                public void execute() throws Exception
+                {
+                    APL.getWifiManager();
+                    APL.getConnectivityManager();
+                }
+            });
+
+            runStep(traceUtils, STEP_PROXY_ACCESSOR, new Step()
+            {
+                @Override
+                public void execute() throws Exception
+                {
+                    APL.getProxyAccessor();
+                }
+            });
+
+            runStep(traceUtils, STEP_WIFI_MANAGER_METHODS, new Step()
+            {
+                @Override
+                public void execute() throws Exception
+                {
+                    for (String methodName : WIFI_MANAGER_METHODS)
+                    {
+                        try
+                        {
+                            ReflectionUtils.getMethod(WifiManager.class, methodName);
+                        }
+                        catch (Exception e)
+                        {
+                            // Not available on this SDK version
+                        }
+                    }
+                }
+            });
+
+            runStep(traceUtils, STEP_CONFIGURED_NETWORKS, new Step()
+            {
+                @Override
+                public void execute() throws Exception
+                {
+                    List<WifiConfiguration> configuredNetworks = APL.getWifiManager().getConfiguredNetworks();
+                    if (configuredNetworks != null && configuredNetworks.size() > 0)
+                    {
+                        APL.getProxyAccessor().readProxy(configuredNetworks.get(0));
+                    }
+                }
+            });
+
+            runStep(traceUtils, STEP_PROXY_SELECTOR, new Step()
+            {
+                @Override
+                public void execute() throws Exception
+                {
+                    APL.getCurrentHttpProxyConfiguration();
+                }
+            });
+        }
+        finally
+        {
+            traceUtils.stopTrace(TAG, WARM_UP_KEY, "Warm-up completed: " + getTimings(), Log.DEBUG);
+            completed.countDown();
+        }
+    }
+
+    private void runStep(TraceUtils traceUtils, String name, Step step)
+    {
+        long start = System.nanoTime();
+
+        try
+        {
+            step.execute();
+        }
+        catch (Exception e)
+        {
+            Timber.w(e, "Warm-up step %s failed", name);
+        }
+
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        synchronized (timings)
+        {
+            timings.put(name, elapsed);
+        }
+
+        traceUtils.partialTrace(TAG, WARM_UP_KEY, name, Log.DEBUG);
+    }
+
+    /**
+     * @return the duration in milliseconds of the steps completed so far, in execution order
+     */
+    public Map<String, Long> getTimings()
+    {
+        synchronized (timings)
+        {
+            return Collections.unmodifiableMap(new LinkedHashMap<String, Long>(timings));
+        }
+    }
+
+    public boolean isCompleted()
+    {
+        return completed.getCount() == 0;
+    }
+
+    /**
+     * Waits for the warm-up to complete
+     *
+     * @return true if completed within the timeout
+     */
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        return completed.await(timeout, unit);
+    }
+
+    private interface Step
+    {
+        void execute() throws Exception;
+    }
+}
@@ -0,0 +1,114 @@
+package be.shouldit.proxy.lib;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import be.shouldit.proxy.lib.checker.ProxyCheckPipeline;
+import be.shouldit.proxy.lib.utils.ProxyUtils;
+import timber.log.Timber;
+
+/**
+ * Handle of an asynchronous proxy check, used to follow or abort it
+ */
+public class ProxyCheckHandle
+{
+    private final WiFiApConfig configuration;
+    private final ProxyCheckPipeline pipeline;
+    private final ProxyCheckListener listener;
+    private final int timeout;
+    private final CountDownLatch doneLatch;
+
+    ProxyCheckHandle(WiFiApConfig conf, ProxyCheckPipeline checkPipeline, int checkTimeout, ProxyCheckListener checkListener)
+    {
+        configuration = conf;
+        pipeline = checkPipeline;
+        timeout = checkTimeout;
+        listener = checkListener;
+        doneLatch = new CountDownLatch(1);
+    }
+
+    void start(Executor executor)
+    {
+        executor.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    ProxyUtils.runProxyCheckPipeline(pipeline, timeout, new ProxyCheckPipeline.Listener()
+                    {
+                        @Override
+                        public void onStatusItemUpdated(ProxyStatusItem item)
+                        {
+                            if (listener != null)
+                            {
+                                listener.onStatusItemUpdated(item);
+                            }
+                        }
+                    });
+                }
+                catch (Exception e)
+                {
+                    Timber.e(e, "Exception checking proxy status for %s", configuration.toShortString());
+                }
+                finally
+                {
+                    doneLatch.countDown();
+                }
+
+                if (listener != null)
+                {
+                    if (pipeline.isCancelled())
+                        listener.onCheckCancelled(pipeline.getStatus());
+                    else
+                        listener.onCheckCompleted(pipeline.getStatus());
+                }
+            }
+        });
+    }
+
+    /**
+     * Aborts the check. The checks still running are interrupted and
+     * marked as NOT_CHECKED on the {@link ProxyStatus}
+     */
+    public void cancel()
+    {
+        if (!isDone())
+        {
+            Timber.d("Cancelling proxy check for %s", configuration.toShortString());
+            pipeline.cancel();
+        }
+    }
+
+    public boolean isCancelled()
+    {
+        return pipeline.isCancelled();
+    }
+
+    public boolean isDone()
+    {
+        return doneLatch.getCount() == 0;
+    }
+
+    /**
+     * Waits for the check to be completed
+     *
+     * @return true if the check is completed, false if the waiting time elapsed
+     */
+    public boolean await(long time, TimeUnit unit) throws InterruptedException
+    {
+        return doneLatch.await(time, unit);
+    }
+
+    public WiFiApConfig getConfiguration()
+    {
+        return configuration;
+    }
+
+    public ProxyStatus getStatus()
+    {
+        return pipeline.getStatus();
+    }
+}
@@ -0,0 +1,25 @@
+package be.shouldit.proxy.lib;
+
+/**
+ * Receives the updates of an asynchronous proxy check started with
+ * {@link APL#acquireProxyStatusAsync}.
+ *
+ * Callbacks are invoked from a background thread.
+ */
+public interface ProxyCheckListener
+{
+    /**
+     * Called every time a single check is completed (or disabled)
+     */
+    void onStatusItemUpdated(ProxyStatusItem item);
+
+    /**
+     * Called when all the checks are completed, or when the deadline is expired
+     */
+    void onCheckCompleted(ProxyStatus status);
+
+    /**
+     * Called when the check has been aborted calling {@link ProxyCheckHandle#cancel()}
+     */
+    void onCheckCancelled(ProxyStatus status);
+}
@@ -18,12 +18,14 @@ import java.util.TreeMap;
 
 import be.shouldit.proxy.lib.enums.CheckStatusValues;
 import be.shouldit.proxy.lib.enums.ProxyStatusProperties;
+import be.shouldit.proxy.lib.probe.ProxyLatencyStats;
 import timber.log.Timber;
 
 public class ProxyStatus implements Parcelable
 {
 	SortedMap<ProxyStatusProperties, ProxyStatusItem> properties;
 	public Date checkedDate;
+	private ProxyLatencyStats latencyStats;
 
 	public String getCheckedDateString()
 	{
@@ -108,7 +110,31 @@ public class ProxyStatus implements Parcelable
 
 	public void set(ProxyStatusItem item)
 	{
-		set(item.statusCode, item.status, item.result, item.effective, item.message, new Date());
+		synchronized (this)
+		{
+			set(item.statusCode, item.status, item.result, item.effective, item.message, new Date());
+
+			if (properties.containsKey(item.statusCode))
+			{
+				properties.get(item.statusCode).timings = item.timings;
+			}
+		}
+	}
+
+	/**
+	 * Latency statistics of the proxy checked by this status, null if not available (e.g. PAC or no proxy)
+	 */
+	public ProxyLatencyStats getLatencyStats()
+	{
+		return latencyStats;
+	}
+
+	/**
+	 * Keeps a snapshot of the statistics: the shared instance is still updated by the probes
+	 */
+	public void setLatencyStats(ProxyLatencyStats stats)
+	{
+		latencyStats = stats != null ? stats.snapshot() : null;
 	}
 
 	public void set(ProxyStatusProperties psp, CheckStatusValues stat, Boolean res, String msg, Date checkDate)
@@ -228,6 +254,11 @@ public class ProxyStatus implements Parcelable
             }
 
             jsonObject.put("check_properties", propertiesArray);
+
+            if (latencyStats != null)
+            {
+                jsonObject.put("latency", latencyStats.toJSON());
+            }
         }
         catch (JSONException e)
         {
@@ -269,6 +300,7 @@ public class ProxyStatus implements Parcelable
         }
 
         dest.writeLong(checkedDate != null ? checkedDate.getTime() : -1);
+        dest.writeParcelable(this.latencyStats, flags);
     }
 
     private ProxyStatus(Parcel in)
@@ -285,6 +317,7 @@ public class ProxyStatus implements Parcelable
 
         long tmpCheckedDate = in.readLong();
         this.checkedDate = tmpCheckedDate == -1 ? null : new Date(tmpCheckedDate);
+        this.latencyStats = in.readParcelable(ProxyLatencyStats.class.getClassLoader());
     }
 
     public static final Creator<ProxyStatus> CREATOR = new Creator<ProxyStatus>()
@@ -11,6 +11,7 @@ import java.util.Date;
 
 import be.shouldit.proxy.lib.enums.CheckStatusValues;
 import be.shouldit.proxy.lib.enums.ProxyStatusProperties;
+import be.shouldit.proxy.lib.probe.ProbeTimings;
 import timber.log.Timber;
 
 public class ProxyStatusItem implements Parcelable
@@ -21,6 +22,7 @@ public class ProxyStatusItem implements Parcelable
 	public Boolean effective;
 	public String message;
 	public Date checkedDate;
+	public ProbeTimings timings;
 	
 	public ProxyStatusItem(ProxyStatusProperties code, CheckStatusValues st, Boolean val, Boolean eff, String msg, Date date)
 	{
@@ -71,6 +73,9 @@ public class ProxyStatusItem implements Parcelable
 
 		if (message != null && message.length() > 0)
 			sb.append(", Message: " + message);
+
+		if (timings != null)
+			sb.append(", Timings: " + timings);
 		
 		sb.append(")");
 		
@@ -108,6 +113,11 @@ public class ProxyStatusItem implements Parcelable
             }
 
             jsonObject.put("message",message);
+
+            if (timings != null)
+            {
+                jsonObject.put("timings", timings.toJSON());
+            }
         }
         catch (JSONException e)
         {
@@ -128,6 +138,7 @@ public class ProxyStatusItem implements Parcelable
         dest.writeValue(this.effective);
         dest.writeString(this.message);
         dest.writeLong(checkedDate != null ? checkedDate.getTime() : -1);
+        dest.writeParcelable(this.timings, flags);
     }
 
     private ProxyStatusItem(Parcel in)
@@ -141,6 +152,7 @@ public class ProxyStatusItem implements Parcelable
         this.message = in.readString();
         long tmpCheckedDate = in.readLong();
         this.checkedDate = tmpCheckedDate == -1 ? null : new Date(tmpCheckedDate);
+        this.timings = in.readParcelable(ProbeTimings.class.getClassLoader());
     }
 
     public static final Creator<ProxyStatusItem> CREATOR = new Creator<ProxyStatusItem>()
@@ -19,6 +19,7 @@ import java.util.UUID;
 import be.shouldit.proxy.lib.enums.CheckStatusValues;
 import be.shouldit.proxy.lib.enums.PskType;
 import be.shouldit.proxy.lib.enums.SecurityType;
+import be.shouldit.proxy.lib.exclusion.ExclusionMatcher;
 import be.shouldit.proxy.lib.reflection.android.ProxySetting;
 import be.shouldit.proxy.lib.utils.ProxyUtils;
 import timber.log.Timber;
@@ -45,6 +46,7 @@ public class WiFiApConfig implements Comparable<WiFiApConfig>, Parcelable
 
     private String pacFileUri;
     private String[] parsedProxyExclusionList;
+    private transient ExclusionMatcher exclusionMatcher;
 
     /* AccessPoint class fields */
 //    public AccessPoint ap;
@@ -238,6 +240,7 @@ public class WiFiApConfig implements Comparable<WiFiApConfig>, Parcelable
             proxyPort = updated.proxyPort;
             stringProxyExclusionList = updated.getStringProxyExclusionList();
             parsedProxyExclusionList = ProxyUtils.parseExclusionList(getStringProxyExclusionList());
+            exclusionMatcher = null;
             pacFileUri = updated.pacFileUri;
 
             getStatus().clear();
@@ -288,6 +291,22 @@ public class WiFiApConfig implements Comparable<WiFiApConfig>, Parcelable
     {
         stringProxyExclusionList = exList;
         parsedProxyExclusionList = ProxyUtils.parseExclusionList(exList);
+        exclusionMatcher = null;
+    }
+
+    /**
+     * @return true if the host bypasses the proxy, according to the exclusion list
+     */
+    public boolean isExcluded(String host)
+    {
+        ExclusionMatcher matcher = exclusionMatcher;
+        if (matcher == null)
+        {
+            matcher = ExclusionMatcher.compile(parsedProxyExclusionList);
+            exclusionMatcher = matcher;
+        }
+
+        return matcher.isExcluded(host);
     }
 
     public boolean isSameConfiguration(Object another)
@@ -0,0 +1,78 @@
+package be.shouldit.proxy.lib.checker;
+
+import java.util.Date;
+
+/**
+ * PAC script downloaded from its URL, with the validators needed to check it again
+ * with a conditional GET
+ */
+public class PacScript
+{
+    private final String url;
+    private final String body;
+    private final String eTag;
+    private final String lastModified;
+    private final long fetchTime;
+
+    public PacScript(String url, String body, String eTag, String lastModified, long fetchTime)
+    {
+        this.url = url;
+        this.body = body;
+        this.eTag = eTag;
+        this.lastModified = lastModified;
+        this.fetchTime = fetchTime;
+    }
+
+    public String getUrl()
+    {
+        return url;
+    }
+
+    public String getBody()
+    {
+        return body;
+    }
+
+    /**
+     * @return the ETag header of the last complete download, null if not sent by the server
+     */
+    public String getETag()
+    {
+        return eTag;
+    }
+
+    /**
+     * @return the Last-Modified header of the last complete download, null if not sent by the server
+     */
+    public String getLastModified()
+    {
+        return lastModified;
+    }
+
+    /**
+     * @return the time of the last successful fetch (download or not modified answer), in milliseconds
+     */
+    public long getFetchTime()
+    {
+        return fetchTime;
+    }
+
+    public Date getFetchDate()
+    {
+        return new Date(fetchTime);
+    }
+
+    /**
+     * @return true if the server sent any validator, so the script can be checked with a conditional GET
+     */
+    public boolean hasValidators()
+    {
+        return eTag != null || lastModified != null;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s (%d chars, ETag: %s, Last-Modified: %s, fetched: %s)", url, body != null ? body.length() : 0, eTag, lastModified, getFetchDate());
+    }
+}
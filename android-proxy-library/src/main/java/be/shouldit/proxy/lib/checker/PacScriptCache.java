@@ -0,0 +1,240 @@
+package be.shouldit.proxy.lib.checker;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.Proxy;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+import be.shouldit.proxy.lib.logging.TraceUtils;
+import be.shouldit.proxy.lib.utils.HashUtils;
+import be.shouldit.proxy.lib.utils.HttpAnswer;
+import be.shouldit.proxy.lib.utils.ProxyUtils;
+import timber.log.Timber;
+
+/**
+ * Persistent cache of the downloaded PAC scripts, keyed by PAC URL.
+ *
+ * Scripts are fetched again with a conditional GET (If-None-Match / If-Modified-Since),
+ * so an unchanged PAC file costs a single 304 answer instead of a complete download.
+ * The bodies are stored in the cache directory of the application, the validators and fetch
+ * times in the shared preferences: the system can delete the bodies when short of space,
+ * in that case the script is simply downloaded again.
+ */
+public class PacScriptCache
+{
+    public static final String COUNTER_NOT_MODIFIED = "pac_cache_not_modified";
+    public static final String COUNTER_DOWNLOAD = "pac_cache_download";
+
+    private static final String PREFERENCES_NAME = "apl_pac_script_cache";
+    private static final String DIRECTORY_NAME = "apl_pac";
+    private static final String CHARSET = "UTF-8";
+
+    private static final String KEY_ETAG = "etag";
+    private static final String KEY_LAST_MODIFIED = "last_modified";
+    private static final String KEY_FETCH_TIME = "fetched";
+
+    private final SharedPreferences preferences;
+    private final File directory;
+
+    public PacScriptCache(Context context)
+    {
+        preferences = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        directory = new File(context.getCacheDir(), DIRECTORY_NAME);
+    }
+
+    /**
+     * Downloads the PAC script, or only checks that it has not been modified if already cached
+     *
+     * @param maxLen maximum length of the script, in bytes
+     * @return the current script
+     * @throws IOException if the script cannot be retrieved
+     */
+    public PacScript fetch(URI uri, Proxy proxy, int maxLen, int timeout) throws IOException
+    {
+        String url = uri.toString();
+        PacScript cached = get(url);
+
+        Map<String, String> requestHeaders = new HashMap<String, String>();
+        if (cached != null)
+        {
+            if (cached.getETag() != null)
+                requestHeaders.put("If-None-Match", cached.getETag());
+
+            if (cached.getLastModified() != null)
+                requestHeaders.put("If-Modified-Since", cached.getLastModified());
+        }
+
+        HttpAnswer answer = ProxyUtils.getHttpAnswerURI(uri, proxy, maxLen, timeout, null, requestHeaders);
+        long now = System.currentTimeMillis();
+
+        if (answer.getStatus() == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null)
+        {
+            PacScript script = new PacScript(url, cached.getBody(), cached.getETag(), cached.getLastModified(), now);
+            putMetadata(script);
+            TraceUtils.increment(COUNTER_NOT_MODIFIED);
+
+            Timber.d("PAC script not modified: %s", script.toString());
+            return script;
+        }
+
+        if (answer.getStatus() == HttpURLConnection.HTTP_OK)
+        {
+            PacScript script = new PacScript(url, answer.getBody(), answer.getHeader("ETag"), answer.getHeader("Last-Modified"), now);
+            TraceUtils.increment(COUNTER_DOWNLOAD);
+
+            // A truncated script can't be validated later: it would stay truncated forever
+            if (answer.isTruncated() || script.getBody() == null)
+                remove(url);
+            else
+                put(script);
+
+            Timber.d("PAC script downloaded: %s", script.toString());
+            return script;
+        }
+
+        throw new IOException("INCORRECT RETURN CODE: " + answer.getStatus());
+    }
+
+    /**
+     * @return the cached script, without any network access, null if not available
+     */
+    public synchronized PacScript get(String url)
+    {
+        String value = preferences.getString(url, null);
+        if (value == null)
+            return null;
+
+        try
+        {
+            JSONObject entry = new JSONObject(value);
+            String body = readBody(url);
+            if (body == null)
+                return null;
+
+            return new PacScript(url,
+                    body,
+                    entry.has(KEY_ETAG) ? entry.getString(KEY_ETAG) : null,
+                    entry.has(KEY_LAST_MODIFIED) ? entry.getString(KEY_LAST_MODIFIED) : null,
+                    entry.getLong(KEY_FETCH_TIME));
+        }
+        catch (Exception e)
+        {
+            Timber.e(e, "Exception reading cached PAC script: %s", url);
+            remove(url);
+            return null;
+        }
+    }
+
+    public synchronized void put(PacScript script)
+    {
+        try
+        {
+            writeBody(script.getUrl(), script.getBody());
+            putMetadata(script);
+        }
+        catch (IOException e)
+        {
+            Timber.e(e, "Exception caching PAC script: %s", script.getUrl());
+            remove(script.getUrl());
+        }
+    }
+
+    public synchronized void remove(String url)
+    {
+        preferences.edit().remove(url).commit();
+        getBodyFile(url).delete();
+    }
+
+    public synchronized void clear()
+    {
+        preferences.edit().clear().commit();
+
+        File[] files = directory.listFiles();
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                file.delete();
+            }
+        }
+    }
+
+    private synchronized void putMetadata(PacScript script)
+    {
+        try
+        {
+            JSONObject entry = new JSONObject();
+            if (script.getETag() != null)
+                entry.put(KEY_ETAG, script.getETag());
+            if (script.getLastModified() != null)
+                entry.put(KEY_LAST_MODIFIED, script.getLastModified());
+            entry.put(KEY_FETCH_TIME, script.getFetchTime());
+
+            preferences.edit().putString(script.getUrl(), entry.toString()).commit();
+        }
+        catch (JSONException e)
+        {
+            Timber.e(e, "Exception caching PAC script metadata: %s", script.getUrl());
+        }
+    }
+
+    private String readBody(String url) throws IOException
+    {
+        File file = getBodyFile(url);
+        if (!file.exists())
+            return null;
+
+        InputStream in = new FileInputStream(file);
+        try
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) file.length());
+            byte[] buffer = new byte[4096];
+            int count;
+            while ((count = in.read(buffer)) != -1)
+            {
+                out.write(buffer, 0, count);
+            }
+
+            return out.toString(CHARSET);
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    private void writeBody(String url, String body) throws IOException
+    {
+        if (!directory.exists() && !directory.mkdirs())
+            throw new IOException("Cannot create PAC cache directory: " + directory);
+
+        OutputStream out = new FileOutputStream(getBodyFile(url));
+        try
+        {
+            out.write(body.getBytes(CHARSET));
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    private File getBodyFile(String url)
+    {
+        return new File(directory, HashUtils.sha1(url) + ".pac");
+    }
+}
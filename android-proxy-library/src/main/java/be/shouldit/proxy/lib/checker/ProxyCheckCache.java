@@ -0,0 +1,259 @@
+package be.shouldit.proxy.lib.checker;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Date;
+import java.util.Map;
+
+import be.shouldit.proxy.lib.ProxyStatus;
+import be.shouldit.proxy.lib.ProxyStatusItem;
+import be.shouldit.proxy.lib.WiFiApConfig;
+import be.shouldit.proxy.lib.enums.CheckStatusValues;
+import be.shouldit.proxy.lib.enums.ProxyStatusProperties;
+import be.shouldit.proxy.lib.reflection.android.ProxySetting;
+import timber.log.Timber;
+
+/**
+ * Persistent cache of the results of the proxy checks.
+ *
+ * Results are keyed by network and proxy configuration (host, port and exclusion list,
+ * or PAC URL), so that a configuration already checked is not checked again until its
+ * result expires. Positive and negative results have different time-to-live.
+ */
+public class ProxyCheckCache
+{
+    public static final long DEFAULT_POSITIVE_TTL = 30 * 60 * 1000;  // 30 minutes
+    public static final long DEFAULT_NEGATIVE_TTL = 2 * 60 * 1000;   // 2 minutes
+
+    private static final String PREFERENCES_NAME = "apl_proxy_check_cache";
+
+    private static final String KEY_CHECKED_DATE = "checked";
+    private static final String KEY_EXPIRE_DATE = "expire";
+    private static final String KEY_ITEMS = "items";
+    private static final String KEY_PROPERTY = "property";
+    private static final String KEY_STATUS = "status";
+    private static final String KEY_RESULT = "result";
+    private static final String KEY_EFFECTIVE = "effective";
+    private static final String KEY_MESSAGE = "message";
+
+    private final SharedPreferences preferences;
+    private long positiveTtl;
+    private long negativeTtl;
+
+    public ProxyCheckCache(Context context)
+    {
+        this(context, DEFAULT_POSITIVE_TTL, DEFAULT_NEGATIVE_TTL);
+    }
+
+    /**
+     * @param positiveTtl validity of a result without errors, in milliseconds
+     * @param negativeTtl validity of a result with errors, in milliseconds
+     */
+    public ProxyCheckCache(Context context, long positiveTtl, long negativeTtl)
+    {
+        this.preferences = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        this.positiveTtl = positiveTtl;
+        this.negativeTtl = negativeTtl;
+    }
+
+    public void setTtl(long positive, long negative)
+    {
+        positiveTtl = positive;
+        negativeTtl = negative;
+    }
+
+    /**
+     * Key of the cache entry: identifies both the network and its proxy configuration
+     */
+    public static String getKey(WiFiApConfig conf)
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append(conf.getAPLNetworkId().SSID);
+        sb.append('|').append(conf.getAPLNetworkId().Security);
+        sb.append('|').append(conf.getProxySetting());
+
+        if (conf.getProxySetting() == ProxySetting.PAC)
+        {
+            sb.append('|').append(conf.getPacFileUri());
+        }
+        else if (conf.getProxySetting() == ProxySetting.STATIC)
+        {
+            sb.append('|').append(conf.getProxyHost());
+            sb.append('|').append(conf.getProxyPort());
+            sb.append('|').append(conf.getProxyExclusionList());
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * @return true if a not expired result is available for the given configuration
+     */
+    public synchronized boolean isFresh(WiFiApConfig conf)
+    {
+        return getFreshEntry(getKey(conf)) != null;
+    }
+
+    /**
+     * Copies the cached result, if not expired, into the status of the given configuration
+     *
+     * @return true if the status has been restored from the cache
+     */
+    public synchronized boolean restore(WiFiApConfig conf)
+    {
+        JSONObject entry = getFreshEntry(getKey(conf));
+        if (entry == null)
+            return false;
+
+        ProxyStatus status = conf.getStatus();
+
+        try
+        {
+            Date checkedDate = new Date(entry.getLong(KEY_CHECKED_DATE));
+            JSONArray items = entry.getJSONArray(KEY_ITEMS);
+
+            synchronized (status)
+            {
+                status.clear();
+                status.checkedDate = checkedDate;
+
+                for (int i = 0; i < items.length(); i++)
+                {
+                    JSONObject item = items.getJSONObject(i);
+                    status.set(ProxyStatusProperties.valueOf(item.getString(KEY_PROPERTY)),
+                            CheckStatusValues.valueOf(item.getString(KEY_STATUS)),
+                            item.getBoolean(KEY_RESULT),
+                            item.getBoolean(KEY_EFFECTIVE),
+                            item.optString(KEY_MESSAGE, ""),
+                            checkedDate);
+                }
+            }
+
+            return true;
+        }
+        catch (Exception e)
+        {
+            Timber.e(e, "Exception restoring cached proxy status");
+            remove(conf);
+            return false;
+        }
+    }
+
+    /**
+     * Stores the result of a completed check. The TTL depends on the presence of errors in the status
+     */
+    public synchronized void put(WiFiApConfig conf, ProxyStatus status)
+    {
+        put(conf, status, -1);
+    }
+
+    /**
+     * Stores the result of a completed check with the given TTL (i.e. computed by the {@link ProxyCheckScheduler})
+     *
+     * @param ttl validity of the result in milliseconds, -1 to use the TTL depending on the presence of errors
+     */
+    public synchronized void put(WiFiApConfig conf, ProxyStatus status, long ttl)
+    {
+        long now = System.currentTimeMillis();
+
+        try
+        {
+            JSONObject entry = new JSONObject();
+            JSONArray items = new JSONArray();
+
+            synchronized (status)
+            {
+                if (status.getCheckingStatus() != CheckStatusValues.CHECKED)
+                {
+                    Timber.d("Proxy status not completely checked, not cached");
+                    return;
+                }
+
+                for (ProxyStatusProperties property : ProxyStatusProperties.values())
+                {
+                    ProxyStatusItem item = status.getProperty(property);
+                    if (item == null)
+                        continue;
+
+                    JSONObject jsonItem = new JSONObject();
+                    jsonItem.put(KEY_PROPERTY, property.name());
+                    jsonItem.put(KEY_STATUS, item.status.name());
+                    jsonItem.put(KEY_RESULT, item.result != null && item.result);
+                    jsonItem.put(KEY_EFFECTIVE, item.effective != null && item.effective);
+                    jsonItem.put(KEY_MESSAGE, item.message);
+                    items.put(jsonItem);
+                }
+
+                if (ttl < 0)
+                    ttl = status.getErrorCount() == 0 ? positiveTtl : negativeTtl;
+
+                entry.put(KEY_CHECKED_DATE, status.checkedDate != null ? status.checkedDate.getTime() : now);
+                entry.put(KEY_EXPIRE_DATE, now + ttl);
+                entry.put(KEY_ITEMS, items);
+            }
+
+            SharedPreferences.Editor editor = preferences.edit();
+            removeExpired(editor, now);
+            editor.putString(getKey(conf), entry.toString());
+            editor.commit();
+        }
+        catch (JSONException e)
+        {
+            Timber.e(e, "Exception caching proxy status");
+        }
+    }
+
+    public synchronized void remove(WiFiApConfig conf)
+    {
+        preferences.edit().remove(getKey(conf)).commit();
+    }
+
+    public synchronized void clear()
+    {
+        preferences.edit().clear().commit();
+    }
+
+    private JSONObject getFreshEntry(String key)
+    {
+        String value = preferences.getString(key, null);
+        if (value == null)
+            return null;
+
+        try
+        {
+            JSONObject entry = new JSONObject(value);
+            if (entry.getLong(KEY_EXPIRE_DATE) > System.currentTimeMillis())
+                return entry;
+        }
+        catch (JSONException e)
+        {
+            Timber.e(e, "Invalid proxy check cache entry: %s", key);
+        }
+
+        return null;
+    }
+
+    private void removeExpired(SharedPreferences.Editor editor, long now)
+    {
+        for (Map.Entry<String, ?> entry : preferences.getAll().entrySet())
+        {
+            try
+            {
+                JSONObject value = new JSONObject(String.valueOf(entry.getValue()));
+                if (value.getLong(KEY_EXPIRE_DATE) <= now)
+                {
+                    editor.remove(entry.getKey());
+                }
+            }
+            catch (JSONException e)
+            {
+                editor.remove(entry.getKey());
+            }
+        }
+    }
+}
@@ -0,0 +1,405 @@
+package be.shouldit.proxy.lib.checker;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import be.shouldit.proxy.lib.ProxyStatus;
+import be.shouldit.proxy.lib.ProxyStatusItem;
+import be.shouldit.proxy.lib.enums.CheckStatusValues;
+import be.shouldit.proxy.lib.enums.ProxyStatusProperties;
+import timber.log.Timber;
+
+/**
+ * Runs a graph of {@link ProxyCheckStep} on a bounded executor.
+ *
+ * Steps that don't depend on each other are executed concurrently, the whole pipeline
+ * shares a single deadline. Steps still running when the deadline expires (or when the
+ * pipeline is cancelled) are interrupted and their status is written on the {@link ProxyStatus}.
+ *
+ * All the updates of the {@link ProxyStatus} are done from the thread that calls {@link #run(int)}.
+ */
+public class ProxyCheckPipeline
+{
+    public static final int MAX_CONCURRENT_CHECKS = 4;
+
+    private static ExecutorService defaultExecutor;
+
+    private final ProxyStatus status;
+    private final ExecutorService executor;
+    private final List<ProxyCheckStep> steps;
+    private final List<ProxyStatusProperties> disabled;
+    private final Map<Future<ProxyStatusItem>, ProxyCheckStep> running;
+
+    private volatile boolean cancelled;
+    private Listener listener;
+    private String timeoutMessage;
+    private String cancelledMessage;
+
+    public interface Listener
+    {
+        void onStatusItemUpdated(ProxyStatusItem item);
+    }
+
+    public static synchronized ExecutorService getDefaultExecutor()
+    {
+        if (defaultExecutor == null)
+        {
+            defaultExecutor = Executors.newFixedThreadPool(MAX_CONCURRENT_CHECKS, new ThreadFactory()
+            {
+                private final AtomicInteger count = new AtomicInteger(1);
+
+                @Override
+                public Thread newThread(Runnable runnable)
+                {
+                    Thread thread = new Thread(runnable, "APL-Checker-" + count.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+
+        return defaultExecutor;
+    }
+
+    public ProxyCheckPipeline(ProxyStatus proxyStatus)
+    {
+        this(proxyStatus, getDefaultExecutor());
+    }
+
+    public ProxyCheckPipeline(ProxyStatus proxyStatus, ExecutorService executorService)
+    {
+        status = proxyStatus;
+        executor = executorService;
+        steps = new ArrayList<ProxyCheckStep>();
+        disabled = new ArrayList<ProxyStatusProperties>();
+        running = new HashMap<Future<ProxyStatusItem>, ProxyCheckStep>();
+
+        timeoutMessage = "Check timed out";
+        cancelledMessage = "Check cancelled";
+    }
+
+    public ProxyCheckStep addStep(ProxyCheckStep step)
+    {
+        steps.add(step);
+        return step;
+    }
+
+    /**
+     * Status properties that are not checked by this pipeline
+     */
+    public void disable(ProxyStatusProperties ... properties)
+    {
+        for (ProxyStatusProperties property : properties)
+        {
+            disabled.add(property);
+        }
+    }
+
+    public void setListener(Listener pipelineListener)
+    {
+        listener = pipelineListener;
+    }
+
+    public void setTimeoutMessage(String message)
+    {
+        timeoutMessage = message;
+    }
+
+    public void setCancelledMessage(String message)
+    {
+        cancelledMessage = message;
+    }
+
+    public ProxyStatus getStatus()
+    {
+        return status;
+    }
+
+    public boolean isCancelled()
+    {
+        return cancelled;
+    }
+
+    /**
+     * Stops the pipeline: running steps are interrupted and all the not completed
+     * steps are marked as NOT_CHECKED on the {@link ProxyStatus}
+     */
+    public void cancel()
+    {
+        cancelled = true;
+
+        synchronized (running)
+        {
+            for (Future<ProxyStatusItem> future : running.keySet())
+            {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Executes the pipeline, blocking the caller until all the steps are completed,
+     * the deadline expires or the pipeline is cancelled.
+     *
+     * @param timeout deadline of the whole pipeline, in milliseconds
+     * @return true if all the steps completed before the deadline
+     */
+    public boolean run(int timeout)
+    {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        CompletionService<ProxyStatusItem> completionService = new ExecutorCompletionService<ProxyStatusItem>(executor);
+        Map<ProxyCheckStep, Boolean> completed = new HashMap<ProxyCheckStep, Boolean>();
+        Set<ProxyCheckStep> pending = new LinkedHashSet<ProxyCheckStep>(steps);
+        boolean timedOut = false;
+
+        for (ProxyStatusProperties property : disabled)
+        {
+            disableChecking(property);
+        }
+
+        while (!cancelled)
+        {
+            scheduleReadySteps(pending, completed, completionService, deadline);
+
+            synchronized (running)
+            {
+                if (running.isEmpty())
+                    break;
+            }
+
+            long remaining = deadline - System.nanoTime();
+            Future<ProxyStatusItem> future = null;
+
+            try
+            {
+                if (remaining > 0)
+                {
+                    future = completionService.poll(remaining, TimeUnit.NANOSECONDS);
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Timber.w("Proxy check pipeline interrupted");
+                cancelled = true;
+                Thread.currentThread().interrupt();
+                break;
+            }
+
+            if (future == null)
+            {
+                timedOut = true;
+                break;
+            }
+
+            if (future.isCancelled())
+            {
+                // Interrupted by cancel(), handled when exiting the loop
+                continue;
+            }
+
+            ProxyCheckStep step;
+            synchronized (running)
+            {
+                step = running.remove(future);
+            }
+
+            if (step == null)
+            {
+                continue;
+            }
+
+            ProxyStatusItem item = getStepResult(step, future);
+            updateStatus(item);
+            completed.put(step, item.result != null && item.result);
+
+            if (item.result == null || !item.result)
+            {
+                for (ProxyStatusProperties property : step.getDisabledOnFailure())
+                {
+                    disableChecking(property);
+                }
+            }
+        }
+
+        if (timedOut || cancelled)
+        {
+            abortRunningSteps(timedOut);
+            abortPendingSteps(pending);
+        }
+
+        return !timedOut && !cancelled;
+    }
+
+    private void scheduleReadySteps(Set<ProxyCheckStep> pending, Map<ProxyCheckStep, Boolean> completed, CompletionService<ProxyStatusItem> completionService, long deadline)
+    {
+        boolean changed = true;
+
+        while (changed && !cancelled)
+        {
+            changed = false;
+
+            Iterator<ProxyCheckStep> iterator = pending.iterator();
+            while (iterator.hasNext())
+            {
+                final ProxyCheckStep step = iterator.next();
+                boolean ready = true;
+                boolean blocked = false;
+
+                for (ProxyCheckStep requirement : step.getRequirements())
+                {
+                    Boolean requirementResult = completed.get(requirement);
+                    if (requirementResult == null)
+                    {
+                        ready = false;
+
+                        if (!pending.contains(requirement) && !isRunning(requirement))
+                        {
+                            // Requirement not part of this pipeline
+                            blocked = true;
+                        }
+                    }
+                    else if (!requirementResult)
+                    {
+                        blocked = true;
+                    }
+                }
+
+                if (blocked)
+                {
+                    iterator.remove();
+                    completed.put(step, false);
+                    disableChecking(step.getProperty());
+                    changed = true;
+                }
+                else if (ready)
+                {
+                    iterator.remove();
+
+                    final int stepTimeout = (int) Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+                    synchronized (running)
+                    {
+                        Future<ProxyStatusItem> future = completionService.submit(new Callable<ProxyStatusItem>()
+                        {
+                            @Override
+                            public ProxyStatusItem call() throws Exception
+                            {
+                                return step.check(stepTimeout);
+                            }
+                        });
+
+                        running.put(future, step);
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean isRunning(ProxyCheckStep step)
+    {
+        synchronized (running)
+        {
+            return running.containsValue(step);
+        }
+    }
+
+    private ProxyStatusItem getStepResult(ProxyCheckStep step, Future<ProxyStatusItem> future)
+    {
+        ProxyStatusItem item = null;
+
+        try
+        {
+            item = future.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException e)
+        {
+            Timber.e(e.getCause(), "Exception running %s", step);
+        }
+
+        if (item == null)
+        {
+            item = new ProxyStatusItem(step.getProperty(), CheckStatusValues.CHECKED, false, "");
+        }
+
+        return item;
+    }
+
+    private void abortRunningSteps(boolean timedOut)
+    {
+        List<ProxyCheckStep> aborted = new ArrayList<ProxyCheckStep>();
+
+        synchronized (running)
+        {
+            for (Map.Entry<Future<ProxyStatusItem>, ProxyCheckStep> entry : running.entrySet())
+            {
+                entry.getKey().cancel(true);
+                aborted.add(entry.getValue());
+            }
+
+            running.clear();
+        }
+
+        for (ProxyCheckStep step : aborted)
+        {
+            if (timedOut)
+            {
+                Timber.w("%s didn't complete before the deadline", step);
+                updateStatus(new ProxyStatusItem(step.getProperty(), CheckStatusValues.CHECKED, false, timeoutMessage));
+            }
+            else
+            {
+                updateStatus(new ProxyStatusItem(step.getProperty(), CheckStatusValues.NOT_CHECKED, false, cancelledMessage));
+            }
+        }
+    }
+
+    private void abortPendingSteps(Set<ProxyCheckStep> pending)
+    {
+        for (ProxyCheckStep step : pending)
+        {
+            if (cancelled)
+            {
+                updateStatus(new ProxyStatusItem(step.getProperty(), CheckStatusValues.NOT_CHECKED, false, cancelledMessage));
+            }
+            else
+            {
+                disableChecking(step.getProperty());
+            }
+        }
+
+        pending.clear();
+    }
+
+    private void disableChecking(ProxyStatusProperties property)
+    {
+        updateStatus(new ProxyStatusItem(property, CheckStatusValues.NOT_CHECKED, false, false, ""));
+    }
+
+    private void updateStatus(ProxyStatusItem item)
+    {
+        status.set(item);
+
+        if (listener != null)
+        {
+            listener.onStatusItemUpdated(item);
+        }
+    }
+}
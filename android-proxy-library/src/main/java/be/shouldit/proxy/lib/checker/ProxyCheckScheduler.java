@@ -0,0 +1,237 @@
+package be.shouldit.proxy.lib.checker;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import be.shouldit.proxy.lib.ProxyStatus;
+import be.shouldit.proxy.lib.WiFiApConfig;
+import timber.log.Timber;
+
+/**
+ * Decides when a proxy configuration has to be checked again, based on the history
+ * of its last check outcomes.
+ *
+ * A configuration checked successfully several times in a row is re-checked less and less often
+ * (exponential backoff up to {@link #MAX_STABLE_INTERVAL}), while a failed one is re-checked quickly
+ * (from {@link #MIN_FAILURE_INTERVAL}). Recent failures in the history shorten the longest interval.
+ * A changed proxy or PAC setting is a different configuration (see {@link ProxyCheckCache#getKey}),
+ * so it has no history and is checked immediately.
+ * Triggers received within {@link #COLLAPSE_WINDOW} from the start of a check are collapsed into it,
+ * unless the check has been cancelled meanwhile.
+ *
+ * Edited or deleted configurations leave their entries behind: at most {@link #MAX_CONFIGURATIONS}
+ * histories are kept, the least recently checked ones are evicted first.
+ */
+public class ProxyCheckScheduler
+{
+    public static final long MIN_STABLE_INTERVAL = 15 * 60 * 1000;       // 15 minutes
+    public static final long MAX_STABLE_INTERVAL = 4 * 60 * 60 * 1000;   // 4 hours
+    public static final long MIN_FAILURE_INTERVAL = 30 * 1000;           // 30 seconds
+    public static final long MAX_FAILURE_INTERVAL = 5 * 60 * 1000;       // 5 minutes
+    public static final long COLLAPSE_WINDOW = 10 * 1000;                // 10 seconds
+    public static final int MAX_CONFIGURATIONS = 128;
+
+    private static final String PREFERENCES_NAME = "apl_proxy_check_scheduler";
+    private static final int HISTORY_LENGTH = 8;
+    private static final char SUCCESS = '1';
+    private static final char FAILURE = '0';
+    private static final char TIME_SEPARATOR = '@';
+
+    private final SharedPreferences preferences;
+    private final Map<String, Long> startedChecks;
+
+    public ProxyCheckScheduler(Context context)
+    {
+        preferences = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        startedChecks = new LinkedHashMap<String, Long>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest)
+            {
+                return size() > MAX_CONFIGURATIONS || System.currentTimeMillis() - eldest.getValue() >= COLLAPSE_WINDOW;
+            }
+        };
+    }
+
+    /**
+     * @return true if a check of the same configuration started less than {@link #COLLAPSE_WINDOW} ago
+     */
+    public synchronized boolean isCollapsed(WiFiApConfig conf)
+    {
+        Long started = startedChecks.get(ProxyCheckCache.getKey(conf));
+        return started != null && System.currentTimeMillis() - started < COLLAPSE_WINDOW;
+    }
+
+    public synchronized void checkStarted(WiFiApConfig conf)
+    {
+        startedChecks.put(ProxyCheckCache.getKey(conf), System.currentTimeMillis());
+    }
+
+    /**
+     * A cancelled check has no outcome: the next trigger for the configuration must not be collapsed into it
+     */
+    public synchronized void checkCancelled(WiFiApConfig conf)
+    {
+        startedChecks.remove(ProxyCheckCache.getKey(conf));
+    }
+
+    /**
+     * Adds the outcome of a completed check to the history of the configuration
+     *
+     * @return the time after which the configuration should be checked again, in milliseconds
+     */
+    public synchronized long checkCompleted(WiFiApConfig conf, ProxyStatus status)
+    {
+        String key = ProxyCheckCache.getKey(conf);
+        boolean success = status.getErrorCount() == 0;
+
+        String history = getHistory(key) + (success ? SUCCESS : FAILURE);
+        if (history.length() > HISTORY_LENGTH)
+            history = history.substring(history.length() - HISTORY_LENGTH);
+
+        SharedPreferences.Editor editor = preferences.edit();
+        editor.putString(key, history + TIME_SEPARATOR + System.currentTimeMillis());
+        evictOldest(editor, key);
+        editor.commit();
+
+        long interval = getInterval(history);
+        Timber.d("Proxy check history of %s: %s -> next check in %d s", conf.toShortString(), history, interval / 1000);
+        return interval;
+    }
+
+    /**
+     * Time after which the configuration should be checked again, 0 if it has never been checked
+     */
+    public synchronized long getInterval(WiFiApConfig conf)
+    {
+        String history = getHistory(ProxyCheckCache.getKey(conf));
+        return history.length() == 0 ? 0 : getInterval(history);
+    }
+
+    /**
+     * Forgets the history of the configuration, i.e. when it is changed or deleted
+     */
+    public synchronized void reset(WiFiApConfig conf)
+    {
+        String key = ProxyCheckCache.getKey(conf);
+        startedChecks.remove(key);
+        preferences.edit().remove(key).commit();
+    }
+
+    public synchronized void clear()
+    {
+        startedChecks.clear();
+        preferences.edit().clear().commit();
+    }
+
+    /**
+     * @return the outcomes stored for the configuration key, without the time of the last check
+     */
+    private String getHistory(String key)
+    {
+        String value = preferences.getString(key, "");
+        int separator = value.indexOf(TIME_SEPARATOR);
+        return separator == -1 ? value : value.substring(0, separator);
+    }
+
+    /**
+     * Removes the least recently checked history if more than {@link #MAX_CONFIGURATIONS} are stored
+     */
+    private void evictOldest(SharedPreferences.Editor editor, String updatedKey)
+    {
+        Map<String, ?> all = preferences.getAll();
+        int count = all.containsKey(updatedKey) ? all.size() : all.size() + 1;
+        if (count <= MAX_CONFIGURATIONS)
+            return;
+
+        String oldestKey = null;
+        long oldestTime = Long.MAX_VALUE;
+
+        for (Map.Entry<String, ?> entry : all.entrySet())
+        {
+            if (entry.getKey().equals(updatedKey))
+                continue;
+
+            long time = getCheckTime(String.valueOf(entry.getValue()));
+            if (time < oldestTime)
+            {
+                oldestTime = time;
+                oldestKey = entry.getKey();
+            }
+        }
+
+        if (oldestKey != null)
+            editor.remove(oldestKey);
+    }
+
+    /**
+     * @return the time of the last check stored with the history, 0 if not available
+     */
+    private static long getCheckTime(String value)
+    {
+        int separator = value.indexOf(TIME_SEPARATOR);
+        if (separator == -1)
+            return 0;
+
+        try
+        {
+            return Long.parseLong(value.substring(separator + 1));
+        }
+        catch (NumberFormatException e)
+        {
+            return 0;
+        }
+    }
+
+    /**
+     * @param history outcomes of the last checks, the most recent last
+     */
+    static long getInterval(String history)
+    {
+        int streak = getStreak(history);
+        char last = history.charAt(history.length() - 1);
+
+        if (last == FAILURE)
+            return backoff(MIN_FAILURE_INTERVAL, MAX_FAILURE_INTERVAL, streak);
+
+        // Every failure still in the history halves the longest interval: flapping configurations are not trusted as stable
+        long max = MAX_STABLE_INTERVAL;
+        for (int i = 0; i < history.length(); i++)
+        {
+            if (history.charAt(i) == FAILURE)
+                max = Math.max(max / 2, MIN_STABLE_INTERVAL);
+        }
+
+        return backoff(MIN_STABLE_INTERVAL, max, streak);
+    }
+
+    /**
+     * @return number of consecutive equal outcomes at the end of the history
+     */
+    private static int getStreak(String history)
+    {
+        char last = history.charAt(history.length() - 1);
+        int streak = 0;
+
+        for (int i = history.length() - 1; i >= 0 && history.charAt(i) == last; i--)
+        {
+            streak++;
+        }
+
+        return streak;
+    }
+
+    private static long backoff(long min, long max, int streak)
+    {
+        long interval = min;
+        for (int i = 1; i < streak && interval < max; i++)
+        {
+            interval *= 2;
+        }
+
+        return Math.min(interval, max);
+    }
+}
@@ -0,0 +1,71 @@
+package be.shouldit.proxy.lib.checker;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import be.shouldit.proxy.lib.ProxyStatusItem;
+import be.shouldit.proxy.lib.enums.ProxyStatusProperties;
+
+/**
+ * Single node of a {@link ProxyCheckPipeline}.
+ *
+ * A step is executed only when all its required steps have completed with a positive result,
+ * otherwise it's disabled together with all the steps that depend on it.
+ */
+public abstract class ProxyCheckStep
+{
+    private final ProxyStatusProperties property;
+    private final List<ProxyCheckStep> requirements;
+    private ProxyStatusProperties[] disabledOnFailure;
+
+    public ProxyCheckStep(ProxyStatusProperties property, ProxyCheckStep ... requirements)
+    {
+        this.property = property;
+        this.requirements = new ArrayList<ProxyCheckStep>();
+        this.disabledOnFailure = new ProxyStatusProperties[0];
+
+        for (ProxyCheckStep requirement : requirements)
+        {
+            if (requirement != null)
+                this.requirements.add(requirement);
+        }
+    }
+
+    /**
+     * Status properties that need to be disabled when this step completes with a negative result
+     */
+    public ProxyCheckStep disableOnFailure(ProxyStatusProperties ... properties)
+    {
+        disabledOnFailure = properties;
+        return this;
+    }
+
+    public ProxyStatusProperties getProperty()
+    {
+        return property;
+    }
+
+    public List<ProxyCheckStep> getRequirements()
+    {
+        return Collections.unmodifiableList(requirements);
+    }
+
+    public ProxyStatusProperties[] getDisabledOnFailure()
+    {
+        return disabledOnFailure;
+    }
+
+    /**
+     * Executes the check
+     *
+     * @param timeout milliseconds left before the deadline of the whole pipeline
+     */
+    public abstract ProxyStatusItem check(int timeout) throws Exception;
+
+    @Override
+    public String toString()
+    {
+        return String.format("ProxyCheckStep(%s)", property);
+    }
+}
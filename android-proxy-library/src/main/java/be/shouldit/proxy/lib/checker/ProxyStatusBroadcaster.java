@@ -0,0 +1,190 @@
+package be.shouldit.proxy.lib.checker;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import be.shouldit.proxy.lib.ProxyStatus;
+import be.shouldit.proxy.lib.ProxyStatusItem;
+import be.shouldit.proxy.lib.constants.APLIntents;
+import be.shouldit.proxy.lib.enums.CheckStatusValues;
+import be.shouldit.proxy.lib.enums.ProxyStatusProperties;
+import timber.log.Timber;
+
+/**
+ * Notifies the updates of a {@link ProxyStatus} with the {@link APLIntents#APL_UPDATED_PROXY_STATUS_CHECK} broadcast.
+ *
+ * Updates received within a short window are coalesced in a single broadcast, which carries
+ * only the properties actually changed since the previous one
+ * (see {@link APLIntents#EXTRA_CHANGED_STATUS_PROPERTIES}).
+ */
+public class ProxyStatusBroadcaster
+{
+    public static final int DEFAULT_WINDOW = 250; // milliseconds
+
+    private final Context context;
+    private final ProxyStatus status;
+    private final int window;
+    private final Handler handler;
+    private final EnumSet<ProxyStatusProperties> pending;
+    private final Map<ProxyStatusProperties, String> lastSent;
+    private boolean scheduled;
+
+    private final Runnable flushRunnable = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            flush();
+        }
+    };
+
+    public ProxyStatusBroadcaster(Context ctx, ProxyStatus proxyStatus)
+    {
+        this(ctx, proxyStatus, DEFAULT_WINDOW);
+    }
+
+    public ProxyStatusBroadcaster(Context ctx, ProxyStatus proxyStatus, int coalesceWindow)
+    {
+        context = ctx;
+        status = proxyStatus;
+        window = coalesceWindow;
+        handler = new Handler(Looper.getMainLooper());
+        pending = EnumSet.noneOf(ProxyStatusProperties.class);
+        lastSent = new HashMap<ProxyStatusProperties, String>();
+    }
+
+    /**
+     * Schedules the notification of an updated property
+     */
+    public synchronized void statusUpdated(ProxyStatusProperties property)
+    {
+        pending.add(property);
+
+        if (!scheduled)
+        {
+            scheduled = true;
+            handler.postDelayed(flushRunnable, window);
+        }
+    }
+
+    /**
+     * Schedules the notification of all the properties
+     */
+    public synchronized void statusUpdated()
+    {
+        for (ProxyStatusProperties property : ProxyStatusProperties.values())
+        {
+            statusUpdated(property);
+        }
+    }
+
+    /**
+     * Sends immediately the pending updates, if any property has actually changed
+     */
+    public void flush()
+    {
+        EnumSet<ProxyStatusProperties> changed = EnumSet.noneOf(ProxyStatusProperties.class);
+
+        synchronized (this)
+        {
+            handler.removeCallbacks(flushRunnable);
+            scheduled = false;
+
+            for (ProxyStatusProperties property : pending)
+            {
+                ProxyStatusItem item = status.getProperty(property);
+                if (item == null)
+                    continue;
+
+                String signature = getSignature(item);
+                if (!signature.equals(lastSent.get(property)))
+                {
+                    changed.add(property);
+                    lastSent.put(property, signature);
+                }
+            }
+
+            pending.clear();
+        }
+
+        if (!changed.isEmpty())
+        {
+            Timber.d("Broadcasting updated proxy status properties: %s", changed);
+
+            Intent intent = new Intent(APLIntents.APL_UPDATED_PROXY_STATUS_CHECK);
+            intent.putStringArrayListExtra(APLIntents.EXTRA_CHANGED_STATUS_PROPERTIES, toNames(changed));
+            intent.putExtra(APLIntents.EXTRA_CHECKING_STATUS, status.getCheckingStatus().name());
+            context.sendBroadcast(intent);
+        }
+    }
+
+    /**
+     * Properties changed in a {@link APLIntents#APL_UPDATED_PROXY_STATUS_CHECK} broadcast.
+     * All the properties are returned if the intent doesn't specify them.
+     */
+    public static EnumSet<ProxyStatusProperties> getChangedProperties(Intent intent)
+    {
+        List<String> names = intent.getStringArrayListExtra(APLIntents.EXTRA_CHANGED_STATUS_PROPERTIES);
+        if (names == null)
+            return EnumSet.allOf(ProxyStatusProperties.class);
+
+        EnumSet<ProxyStatusProperties> properties = EnumSet.noneOf(ProxyStatusProperties.class);
+        for (String name : names)
+        {
+            try
+            {
+                properties.add(ProxyStatusProperties.valueOf(name));
+            }
+            catch (IllegalArgumentException e)
+            {
+                Timber.w("Unknown proxy status property: %s", name);
+            }
+        }
+
+        return properties;
+    }
+
+    /**
+     * Overall checking status carried by a {@link APLIntents#APL_UPDATED_PROXY_STATUS_CHECK} broadcast,
+     * null if the intent doesn't specify it
+     */
+    public static CheckStatusValues getCheckingStatus(Intent intent)
+    {
+        String name = intent.getStringExtra(APLIntents.EXTRA_CHECKING_STATUS);
+        if (name == null)
+            return null;
+
+        try
+        {
+            return CheckStatusValues.valueOf(name);
+        }
+        catch (IllegalArgumentException e)
+        {
+            return null;
+        }
+    }
+
+    private static ArrayList<String> toNames(EnumSet<ProxyStatusProperties> properties)
+    {
+        ArrayList<String> names = new ArrayList<String>(properties.size());
+        for (ProxyStatusProperties property : properties)
+        {
+            names.add(property.name());
+        }
+
+        return names;
+    }
+
+    private static String getSignature(ProxyStatusItem item)
+    {
+        return String.format("%s|%s|%s|%s", item.status, item.result, item.effective, item.message);
+    }
+}
@@ -12,6 +12,11 @@ public class APLConstants
     public static final Integer DEFAULT_TIMEOUT = 10000; // 10 seconds
     public static final Integer MAX_DOWNLOAD_LENGTH = 50 * 1024; // 50 Kb MAX
 
+    /**
+     * Web resource requested through the proxy to check that it's working
+     */
+    public static final String WEB_CHECK_URI = "http://www.un.org/";
+
 
     /**
      * The following logic is taken from Android's ProxySelector.java class
@@ -21,14 +26,23 @@ public class APLConstants
     private static final String HC = "a-zA-Z0-9\\_";
 
     // Matches blank input, ips, and domain names
+    // The validation itself uses the equivalent HostnameValidator, these patterns are kept as its reference
     private static final String HOSTNAME_REGEXP = "^$|^[" + HC + "]+(\\-[" + HC + "]+)*(\\.[" + HC + "]+(\\-[" + HC + "]+)*)*$";
     public static final Pattern HOSTNAME_PATTERN;
     private static final String EXCLUSION_REGEXP = "$|^(\\*)?\\.?[" + HC + "]+(\\-[" + HC + "]+)*(\\.[" + HC + "]+(\\-[" + HC + "]+)*)*$";
     public static final Pattern EXCLUSION_PATTERN;
 
+    // Matches address range exclusions: IPv4 CIDR ("10.0.0.0/8"), IPv4 wildcard ("192.168.*") and IPv6 addresses or CIDR ("fe80::/10")
+    private static final String IPV4_REGEXP = "[0-9]{1,3}(\\.[0-9]{1,3}){3}";
+    private static final String EXCLUSION_RANGE_REGEXP = "^" + IPV4_REGEXP + "/[0-9]{1,2}$" +
+            "|^[0-9]{1,3}(\\.[0-9]{1,3}){0,2}\\.\\*$" +
+            "|^\\[?[0-9a-fA-F]{0,4}(:[0-9a-fA-F]{0,4}){2,7}(:" + IPV4_REGEXP + ")?\\]?(/[0-9]{1,3})?$";
+    public static final Pattern EXCLUSION_RANGE_PATTERN;
+
     static
     {
         HOSTNAME_PATTERN = Pattern.compile(HOSTNAME_REGEXP);
         EXCLUSION_PATTERN = Pattern.compile(EXCLUSION_REGEXP);
+        EXCLUSION_RANGE_PATTERN = Pattern.compile(EXCLUSION_RANGE_REGEXP);
     }
 }
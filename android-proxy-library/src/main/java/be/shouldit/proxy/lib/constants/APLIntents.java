@@ -15,6 +15,16 @@ public class APLIntents
      */
     public static final String APL_UPDATED_PROXY_STATUS_CHECK = INTENT_PREFIX + "PROXY_CHECK_STATUS_UPDATE";
 
+    /**
+     * Extra of APL_UPDATED_PROXY_STATUS_CHECK: names of the ProxyStatusProperties changed since the previous update
+     */
+    public static final String EXTRA_CHANGED_STATUS_PROPERTIES = "ChangedStatusProperties";
+
+    /**
+     * Extra of APL_UPDATED_PROXY_STATUS_CHECK: overall CheckStatusValues of the proxy status
+     */
+    public static final String EXTRA_CHECKING_STATUS = "CheckingStatus";
+
     /**
      * Broadcasted intent when a proxy configuration is written on the device
      */
@@ -0,0 +1,17 @@
+package be.shouldit.proxy.lib.enums;
+
+/**
+ * Request sent to a proxy by the handshake probe
+ */
+public enum HandshakeMethod
+{
+    /**
+     * Asks the proxy to open a tunnel toward port 443 of the target host: no page is transferred
+     */
+    CONNECT,
+
+    /**
+     * Asks the proxy the headers of the target page, for proxies that don't allow tunnels
+     */
+    HEAD
+}
@@ -0,0 +1,30 @@
+package be.shouldit.proxy.lib.enums;
+
+/**
+ * Timing phases of a request through a proxy
+ */
+public enum LatencyPhase
+{
+    DNS,
+    CONNECT,
+    FIRST_BYTE,
+    TOTAL;
+
+    @Override
+    public String toString()
+    {
+        switch (this)
+        {
+            case DNS:
+                return "dns";
+            case CONNECT:
+                return "connect";
+            case FIRST_BYTE:
+                return "first_byte";
+            case TOTAL:
+                return "total";
+        }
+
+        return "?";
+    }
+}
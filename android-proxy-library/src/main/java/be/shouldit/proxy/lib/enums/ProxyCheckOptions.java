@@ -8,9 +8,30 @@ import java.util.EnumSet;
 public enum ProxyCheckOptions
 {
     OFFLINE_CHECK,
-    ONLINE_CHECK;
+    ONLINE_CHECK,
+
+    /**
+     * Proxy reachability judged from the status line of a minimal CONNECT request, instead of a TCP connect
+     */
+    HANDSHAKE_CHECK,
+
+    /**
+     * As {@link #HANDSHAKE_CHECK}, with a HEAD request: for proxies that don't allow tunnels
+     */
+    HEAD_HANDSHAKE_CHECK,
+
+    /**
+     * Also measures the first byte latency of a HEAD request through a reachable proxy (blocking, opt-in)
+     */
+    LATENCY_CHECK;
 
     public static final EnumSet<ProxyCheckOptions> OFFLINE = EnumSet.of(OFFLINE_CHECK);
     public static final EnumSet<ProxyCheckOptions> ONLINE = EnumSet.of(ONLINE_CHECK);
-    public static final EnumSet<ProxyCheckOptions> ALL = EnumSet.allOf(ProxyCheckOptions.class);
+    public static final EnumSet<ProxyCheckOptions> HANDSHAKE = EnumSet.of(ONLINE_CHECK, HANDSHAKE_CHECK);
+    public static final EnumSet<ProxyCheckOptions> HEAD_HANDSHAKE = EnumSet.of(ONLINE_CHECK, HEAD_HANDSHAKE_CHECK);
+
+    /**
+     * Default checks: the handshake and latency measurements are opt-in
+     */
+    public static final EnumSet<ProxyCheckOptions> ALL = EnumSet.of(OFFLINE_CHECK, ONLINE_CHECK);
 }
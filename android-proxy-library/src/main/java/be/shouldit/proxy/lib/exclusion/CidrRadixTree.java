@@ -0,0 +1,230 @@
+package be.shouldit.proxy.lib.exclusion;
+
+/**
+ * Path-compressed binary radix tree of address prefixes, for a single address family.
+ *
+ * Every node keeps the prefix bits shared by its subtree: a lookup compares at most the
+ * address length in bits (32 or 128), whatever the number of ranges stored in the tree.
+ */
+class CidrRadixTree
+{
+    private final int addressLength;
+    private Node root;
+    private int size;
+
+    /**
+     * @param addressLength length of the addresses in bytes: 4 for IPv4, 16 for IPv6
+     */
+    CidrRadixTree(int addressLength)
+    {
+        this.addressLength = addressLength;
+    }
+
+    void add(CidrRange range)
+    {
+        add(range.getAddress(), range.getPrefixLength());
+    }
+
+    void add(byte[] address, int prefixLength)
+    {
+        if (address.length != addressLength)
+            throw new IllegalArgumentException("Expected an address of " + addressLength + " bytes");
+
+        byte[] key = mask(address, prefixLength);
+        size++;
+
+        if (root == null)
+        {
+            root = new Node(key, prefixLength, true);
+            return;
+        }
+
+        Node parent = null;
+        Node node = root;
+
+        while (true)
+        {
+            int common = commonPrefixLength(key, node.key, Math.min(prefixLength, node.prefixLength));
+
+            if (common < node.prefixLength)
+            {
+                // The new prefix diverges inside the node: split it
+                Node split = new Node(mask(key, common), common, common == prefixLength);
+                split.setChild(bit(node.key, common), node);
+
+                if (common < prefixLength)
+                    split.setChild(bit(key, common), new Node(key, prefixLength, true));
+
+                replace(parent, node, split);
+                return;
+            }
+
+            if (prefixLength == node.prefixLength)
+            {
+                node.terminal = true;
+                return;
+            }
+
+            int b = bit(key, node.prefixLength);
+            Node child = node.getChild(b);
+            if (child == null)
+            {
+                node.setChild(b, new Node(key, prefixLength, true));
+                return;
+            }
+
+            parent = node;
+            node = child;
+        }
+    }
+
+    /**
+     * @return true if one of the ranges contains the address
+     */
+    boolean contains(byte[] address)
+    {
+        if (address.length != addressLength)
+            return false;
+
+        Node node = root;
+        int maxLength = addressLength * 8;
+
+        while (node != null && matchesPrefix(address, node.key, node.prefixLength))
+        {
+            if (node.terminal)
+                return true;
+
+            if (node.prefixLength == maxLength)
+                break;
+
+            node = node.getChild(bit(address, node.prefixLength));
+        }
+
+        return false;
+    }
+
+    /**
+     * @return the length of the longest prefix containing the address, -1 if none does
+     */
+    int longestPrefixLength(byte[] address)
+    {
+        if (address.length != addressLength)
+            return -1;
+
+        int longest = -1;
+        Node node = root;
+        int maxLength = addressLength * 8;
+
+        while (node != null && matchesPrefix(address, node.key, node.prefixLength))
+        {
+            if (node.terminal)
+                longest = node.prefixLength;
+
+            if (node.prefixLength == maxLength)
+                break;
+
+            node = node.getChild(bit(address, node.prefixLength));
+        }
+
+        return longest;
+    }
+
+    int size()
+    {
+        return size;
+    }
+
+    private void replace(Node parent, Node node, Node replacement)
+    {
+        if (parent == null)
+            root = replacement;
+        else if (parent.left == node)
+            parent.left = replacement;
+        else
+            parent.right = replacement;
+    }
+
+    private static int bit(byte[] address, int index)
+    {
+        return (address[index >> 3] >> (7 - (index & 7))) & 1;
+    }
+
+    private static byte[] mask(byte[] address, int prefixLength)
+    {
+        byte[] masked = new byte[address.length];
+        int bytes = prefixLength >> 3;
+        System.arraycopy(address, 0, masked, 0, bytes);
+
+        int bits = prefixLength & 7;
+        if (bits != 0)
+            masked[bytes] = (byte) (address[bytes] & (0xff << (8 - bits)));
+
+        return masked;
+    }
+
+    private static int commonPrefixLength(byte[] a, byte[] b, int maxLength)
+    {
+        int length = 0;
+        int bytes = (maxLength + 7) >> 3;
+
+        for (int i = 0; i < bytes; i++)
+        {
+            int diff = (a[i] ^ b[i]) & 0xff;
+            if (diff != 0)
+            {
+                length += Integer.numberOfLeadingZeros(diff) - 24;
+                return Math.min(length, maxLength);
+            }
+
+            length += 8;
+        }
+
+        return Math.min(length, maxLength);
+    }
+
+    private static boolean matchesPrefix(byte[] address, byte[] key, int prefixLength)
+    {
+        int bytes = prefixLength >> 3;
+        for (int i = 0; i < bytes; i++)
+        {
+            if (address[i] != key[i])
+                return false;
+        }
+
+        int bits = prefixLength & 7;
+        if (bits == 0)
+            return true;
+
+        int mask = 0xff << (8 - bits);
+        return ((address[bytes] ^ key[bytes]) & mask) == 0;
+    }
+
+    private static class Node
+    {
+        private final byte[] key;
+        private final int prefixLength;
+        private boolean terminal;
+        private Node left;
+        private Node right;
+
+        Node(byte[] key, int prefixLength, boolean terminal)
+        {
+            this.key = key;
+            this.prefixLength = prefixLength;
+            this.terminal = terminal;
+        }
+
+        Node getChild(int bit)
+        {
+            return bit == 0 ? left : right;
+        }
+
+        void setChild(int bit, Node child)
+        {
+            if (bit == 0)
+                left = child;
+            else
+                right = child;
+        }
+    }
+}
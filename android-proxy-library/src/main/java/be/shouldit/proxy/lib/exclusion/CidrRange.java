@@ -0,0 +1,327 @@
+package be.shouldit.proxy.lib.exclusion;
+
+import java.util.Arrays;
+
+/**
+ * IPv4 or IPv6 address range of an exclusion list entry:
+ * "10.0.0.0/8", "192.168.*", "10.1.2.3", "fe80::/10", "[::1]"
+ */
+public class CidrRange
+{
+    private final byte[] address;
+    private final int prefixLength;
+
+    CidrRange(byte[] address, int prefixLength)
+    {
+        this.address = address;
+        this.prefixLength = prefixLength;
+    }
+
+    public byte[] getAddress()
+    {
+        return address;
+    }
+
+    public int getPrefixLength()
+    {
+        return prefixLength;
+    }
+
+    public boolean isIPv6()
+    {
+        return address.length == 16;
+    }
+
+    /**
+     * @return the range, null if the entry is not an address range
+     */
+    public static CidrRange parse(String entry)
+    {
+        if (entry == null || entry.length() == 0)
+            return null;
+
+        // IPv4 wildcard: "192.168.*"
+        if (entry.endsWith(".*") && isDigit(entry.charAt(0)))
+        {
+            String prefix = entry.substring(0, entry.length() - 2);
+            int octets = countChar(prefix, '.') + 1;
+            if (octets > 3)
+                return null;
+
+            StringBuilder sb = new StringBuilder(prefix);
+            for (int i = octets; i < 4; i++)
+            {
+                sb.append(".0");
+            }
+
+            byte[] address = parseIPv4(sb.toString());
+            return address != null ? new CidrRange(address, octets * 8) : null;
+        }
+
+        String literal = entry;
+        int prefixLength = -1;
+
+        int slash = entry.indexOf('/');
+        if (slash != -1)
+        {
+            literal = entry.substring(0, slash);
+            prefixLength = parsePrefixLength(entry.substring(slash + 1));
+            if (prefixLength == -1)
+                return null;
+        }
+
+        byte[] address = parseAddress(literal);
+        if (address == null)
+            return null;
+
+        int maxLength = address.length * 8;
+        if (prefixLength == -1)
+            prefixLength = maxLength;
+        else if (prefixLength > maxLength)
+            return null;
+
+        return new CidrRange(address, prefixLength);
+    }
+
+    /**
+     * Parses IPv4 and IPv6 literals, without any DNS lookup
+     *
+     * @return the address bytes (4 or 16), null if the value is not an address literal
+     */
+    public static byte[] parseAddress(String value)
+    {
+        if (value == null || value.length() == 0)
+            return null;
+
+        if (value.charAt(0) == '[' && value.charAt(value.length() - 1) == ']')
+            value = value.substring(1, value.length() - 1);
+
+        if (value.indexOf(':') != -1)
+            return parseIPv6(value);
+        else if (isDigit(value.charAt(0)))
+            return parseIPv4(value);
+        else
+            return null;
+    }
+
+    static byte[] parseIPv4(String value)
+    {
+        byte[] address = new byte[4];
+        int octet = 0;
+        int digits = 0;
+        int index = 0;
+
+        for (int i = 0; i < value.length(); i++)
+        {
+            char c = value.charAt(i);
+
+            if (isDigit(c))
+            {
+                octet = octet * 10 + (c - '0');
+                if (++digits > 3 || octet > 255)
+                    return null;
+            }
+            else if (c == '.' && digits > 0 && index < 3)
+            {
+                address[index++] = (byte) octet;
+                octet = 0;
+                digits = 0;
+            }
+            else
+            {
+                return null;
+            }
+        }
+
+        if (index != 3 || digits == 0)
+            return null;
+
+        address[3] = (byte) octet;
+        return address;
+    }
+
+    /**
+     * Parses the RFC 4291 text forms: eight groups of 1-4 hex digits, at most one "::" and an
+     * optional dotted IPv4 address in place of the last two groups
+     */
+    static byte[] parseIPv6(String value)
+    {
+        byte[] address = new byte[16];
+        int length = value.length();
+        int index = 0;
+        int compression = -1;
+        int i = 0;
+
+        if (value.startsWith("::"))
+        {
+            compression = 0;
+            i = 2;
+        }
+        else if (value.charAt(0) == ':')
+        {
+            return null;
+        }
+
+        while (i < length)
+        {
+            if (index == 16)
+                return null;
+
+            int groupStart = i;
+            int group = 0;
+            int digit;
+            while (i < length && (digit = hexValue(value.charAt(i))) != -1)
+            {
+                group = (group << 4) | digit;
+                if (++i - groupStart > 4)
+                    return null;
+            }
+
+            if (i < length && value.charAt(i) == '.')
+            {
+                // Embedded IPv4 address, i.e. "::ffff:10.0.0.1": always the last 32 bits
+                byte[] ipv4 = index <= 12 ? parseIPv4(value.substring(groupStart)) : null;
+                if (ipv4 == null)
+                    return null;
+
+                System.arraycopy(ipv4, 0, address, index, 4);
+                index += 4;
+                break;
+            }
+
+            if (i == groupStart)
+                return null;
+
+            address[index++] = (byte) (group >> 8);
+            address[index++] = (byte) group;
+
+            if (i == length)
+                break;
+
+            if (value.charAt(i++) != ':' || i == length)
+                return null;
+
+            if (value.charAt(i) == ':')
+            {
+                if (compression != -1)
+                    return null;
+
+                compression = index;
+                i++;
+            }
+        }
+
+        if (compression == -1)
+        {
+            if (index != 16)
+                return null;
+        }
+        else
+        {
+            // "::" stands for at least one group of zeros
+            if (index == 16)
+                return null;
+
+            int tail = index - compression;
+            System.arraycopy(address, compression, address, 16 - tail, tail);
+            Arrays.fill(address, compression, 16 - tail, (byte) 0);
+        }
+
+        if (isIPv4Mapped(address))
+        {
+            // "::ffff:10.0.0.1" is matched against the IPv4 ranges
+            byte[] ipv4 = new byte[4];
+            System.arraycopy(address, 12, ipv4, 0, 4);
+            return ipv4;
+        }
+
+        return address;
+    }
+
+    private static boolean isIPv4Mapped(byte[] address)
+    {
+        for (int i = 0; i < 10; i++)
+        {
+            if (address[i] != 0)
+                return false;
+        }
+
+        return address[10] == (byte) 0xff && address[11] == (byte) 0xff;
+    }
+
+    private static int hexValue(char c)
+    {
+        if (c >= '0' && c <= '9')
+            return c - '0';
+        else if (c >= 'a' && c <= 'f')
+            return c - 'a' + 10;
+        else if (c >= 'A' && c <= 'F')
+            return c - 'A' + 10;
+        else
+            return -1;
+    }
+
+    private static int parsePrefixLength(String value)
+    {
+        if (value.length() == 0 || value.length() > 3)
+            return -1;
+
+        int length = 0;
+        for (int i = 0; i < value.length(); i++)
+        {
+            char c = value.charAt(i);
+            if (!isDigit(c))
+                return -1;
+
+            length = length * 10 + (c - '0');
+        }
+
+        return length;
+    }
+
+    private static boolean isDigit(char c)
+    {
+        return c >= '0' && c <= '9';
+    }
+
+    private static int countChar(String value, char c)
+    {
+        int count = 0;
+        for (int i = 0; i < value.length(); i++)
+        {
+            if (value.charAt(i) == c)
+                count++;
+        }
+
+        return count;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+
+        if (isIPv6())
+        {
+            for (int i = 0; i < 16; i += 2)
+            {
+                if (i > 0)
+                    sb.append(':');
+
+                sb.append(Integer.toHexString(((address[i] & 0xff) << 8) | (address[i + 1] & 0xff)));
+            }
+        }
+        else
+        {
+            for (int i = 0; i < 4; i++)
+            {
+                if (i > 0)
+                    sb.append('.');
+
+                sb.append(address[i] & 0xff);
+            }
+        }
+
+        return sb.append('/').append(prefixLength).toString();
+    }
+}
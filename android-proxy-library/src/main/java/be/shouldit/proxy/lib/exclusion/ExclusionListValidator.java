@@ -0,0 +1,159 @@
+package be.shouldit.proxy.lib.exclusion;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import be.shouldit.proxy.lib.constants.APLConstants;
+import be.shouldit.proxy.lib.utils.HostnameValidator;
+
+/**
+ * Incremental validation of exclusion list entries.
+ *
+ * Entries are tracked by an identity chosen by the caller (i.e. the id of the input field editing
+ * the entry): only the added or changed entries are validated again, and the verdicts of the
+ * entries already seen are kept in a bounded cache, so editing a long list doesn't re-check it all.
+ */
+public class ExclusionListValidator
+{
+    public static final int DEFAULT_MAX_VERDICTS = 1024;
+
+    private final Map<String, Boolean> verdicts;
+    private final Map<Object, String> entries;
+    private int invalidCount;
+
+    private String lastList;
+    private boolean lastListValid;
+
+    public ExclusionListValidator()
+    {
+        this(DEFAULT_MAX_VERDICTS);
+    }
+
+    public ExclusionListValidator(final int maxVerdicts)
+    {
+        verdicts = new LinkedHashMap<String, Boolean>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest)
+            {
+                return size() > maxVerdicts;
+            }
+        };
+
+        entries = new HashMap<Object, String>();
+    }
+
+    /**
+     * Validates the entry tracked with the given identity, only if it has changed since the last call
+     *
+     * @return true if the entry is valid
+     */
+    public synchronized boolean validate(Object id, String entry)
+    {
+        String value = entry != null ? entry.trim() : "";
+        String previous = entries.get(id);
+
+        if (previous != null && previous.equals(value))
+            return isValid(value);
+
+        if (previous != null && !isValid(previous))
+            invalidCount--;
+
+        entries.put(id, value);
+
+        boolean valid = isValid(value);
+        if (!valid)
+            invalidCount++;
+
+        return valid;
+    }
+
+    /**
+     * Stops tracking the entry with the given identity
+     */
+    public synchronized void remove(Object id)
+    {
+        String previous = entries.remove(id);
+        if (previous != null && !isValid(previous))
+            invalidCount--;
+    }
+
+    /**
+     * @return true if all the tracked entries are valid
+     */
+    public synchronized boolean isTrackedListValid()
+    {
+        return invalidCount == 0;
+    }
+
+    /**
+     * Validates a whole exclusion list, reusing the verdicts of the entries already seen
+     *
+     * @param exclusionList comma separated list of entries
+     */
+    public synchronized boolean isValidList(String exclusionList)
+    {
+        if (exclusionList == null)
+            return true;
+
+        if (exclusionList.equals(lastList))
+            return lastListValid;
+
+        boolean valid = true;
+        int start = 0;
+
+        while (start <= exclusionList.length())
+        {
+            int comma = exclusionList.indexOf(',', start);
+            int end = comma != -1 ? comma : exclusionList.length();
+
+            if (!isValid(exclusionList.substring(start, end).trim()))
+            {
+                valid = false;
+                break;
+            }
+
+            start = end + 1;
+        }
+
+        lastList = exclusionList;
+        lastListValid = valid;
+        return valid;
+    }
+
+    /**
+     * Cached verdict of a single entry
+     */
+    public synchronized boolean isValid(String entry)
+    {
+        Boolean verdict = verdicts.get(entry);
+        if (verdict == null)
+        {
+            verdict = isValidEntry(entry);
+            verdicts.put(entry, verdict);
+        }
+
+        return verdict;
+    }
+
+    /**
+     * Forgets the tracked entries, the verdicts cache is kept
+     */
+    public synchronized void reset()
+    {
+        entries.clear();
+        invalidCount = 0;
+    }
+
+    /**
+     * Uncached validation of a single entry: a domain name, a wildcard expression or an address range
+     */
+    public static boolean isValidEntry(String entry)
+    {
+        if (HostnameValidator.isValidExclusion(entry))
+            return true;
+
+        return APLConstants.EXCLUSION_RANGE_PATTERN.matcher(entry).matches() && CidrRange.parse(entry) != null;
+    }
+}
@@ -0,0 +1,129 @@
+package be.shouldit.proxy.lib.exclusion;
+
+import java.util.Locale;
+
+import be.shouldit.proxy.lib.utils.HostnameValidator;
+
+/**
+ * Exclusion list compiled to answer "does this host bypass the proxy?".
+ *
+ * Supported entries, the ones accepted by {@link ExclusionListValidator}:
+ * <ul>
+ * <li>"example.com", ".example.com": the domain and all its subdomains, as the Android ProxySelector does</li>
+ * <li>"*.example.com": the subdomains only</li>
+ * <li>"*example.com": the domains of "com" whose label ends with "example", and their subdomains</li>
+ * <li>"10.0.0.0/8", "192.168.*", "fe80::/10", "10.1.2.3": IPv4 and IPv6 address ranges, matched against address literals</li>
+ * </ul>
+ * Other entries (i.e. "*" or "dev-*") are ignored.
+ * Domain entries are kept in a {@link HostTrie} and address ranges in a {@link CidrRadixTree}
+ * for each address family, so a lookup doesn't depend on the size of the list.
+ */
+public class ExclusionMatcher
+{
+    public static final ExclusionMatcher EMPTY = new ExclusionMatcher(new String[0]);
+
+    private final HostTrie hosts;
+    private final CidrRadixTree ipv4Ranges;
+    private final CidrRadixTree ipv6Ranges;
+
+    private ExclusionMatcher(String[] exclusionList)
+    {
+        hosts = new HostTrie();
+        ipv4Ranges = new CidrRadixTree(4);
+        ipv6Ranges = new CidrRadixTree(16);
+
+        for (String item : exclusionList)
+        {
+            if (item == null)
+                continue;
+
+            String entry = item.trim().toLowerCase(Locale.US);
+            if (entry.length() > 0)
+                add(entry);
+        }
+    }
+
+    /**
+     * @param exclusionList entries of the list, i.e. as returned by ProxyUtils.parseExclusionList
+     */
+    public static ExclusionMatcher compile(String[] exclusionList)
+    {
+        if (exclusionList == null || exclusionList.length == 0)
+            return EMPTY;
+
+        return new ExclusionMatcher(exclusionList);
+    }
+
+    private void add(String entry)
+    {
+        CidrRange range = CidrRange.parse(entry);
+        if (range != null)
+        {
+            if (range.isIPv6())
+                ipv6Ranges.add(range);
+            else
+                ipv4Ranges.add(range);
+
+            return;
+        }
+
+        if (!HostnameValidator.isValidExclusion(entry))
+            return;
+
+        if (entry.charAt(0) == '*')
+        {
+            String suffix = entry.substring(1);
+
+            if (suffix.charAt(0) == '.')
+            {
+                hosts.addDomain(suffix.substring(1), false, true);
+            }
+            else
+            {
+                // The wildcard covers the beginning of a label: "*foo.example.com"
+                int dot = suffix.indexOf('.');
+                if (dot == -1)
+                    hosts.addLabelSuffix("", suffix);
+                else
+                    hosts.addLabelSuffix(suffix.substring(dot + 1), suffix.substring(0, dot));
+            }
+        }
+        else
+        {
+            hosts.addDomain(entry.charAt(0) == '.' ? entry.substring(1) : entry, true, true);
+        }
+    }
+
+    /**
+     * Case-insensitive, without allocations unless the host is an address literal
+     */
+    public boolean isExcluded(String host)
+    {
+        if (host == null || host.length() == 0)
+            return false;
+
+        if (isAddressCandidate(host) && (ipv4Ranges.size() > 0 || ipv6Ranges.size() > 0))
+        {
+            byte[] address = CidrRange.parseAddress(host);
+            if (address != null)
+            {
+                CidrRadixTree ranges = address.length == 16 ? ipv6Ranges : ipv4Ranges;
+                if (ranges.contains(address))
+                    return true;
+            }
+        }
+
+        return hosts.matches(host);
+    }
+
+    public boolean isEmpty()
+    {
+        return hosts.size() == 0 && ipv4Ranges.size() == 0 && ipv6Ranges.size() == 0;
+    }
+
+    private static boolean isAddressCandidate(String host)
+    {
+        char first = host.charAt(0);
+        return (first >= '0' && first <= '9') || first == '[' || host.indexOf(':') != -1;
+    }
+}
@@ -0,0 +1,236 @@
+package be.shouldit.proxy.lib.exclusion;
+
+/**
+ * Trie of domain names over their reversed DNS labels ("www.example.com" is stored as com → example → www).
+ *
+ * Every node can match:
+ * <ul>
+ * <li>the domain itself (exact)</li>
+ * <li>all its subdomains</li>
+ * <li>the subdomains whose next label ends with a given suffix (i.e. "*foo.example.com")</li>
+ * </ul>
+ * Lookups walk the host from its last label, comparing regions of the host string case-insensitively:
+ * the cost is proportional to the number of labels and no object is allocated.
+ */
+class HostTrie
+{
+    private static final int INITIAL_CAPACITY = 4;
+
+    private final Node root = new Node();
+    private int size;
+
+    /**
+     * @param domain lower case domain name, without wildcards
+     */
+    void addDomain(String domain, boolean exact, boolean subdomains)
+    {
+        Node node = getOrAddNode(domain);
+        node.exact |= exact;
+        node.subdomains |= subdomains;
+        size++;
+    }
+
+    /**
+     * Matches the subdomains of the domain whose next label ends with the suffix
+     *
+     * @param domain lower case domain name, empty to match the top level label
+     * @param labelSuffix lower case, not empty
+     */
+    void addLabelSuffix(String domain, String labelSuffix)
+    {
+        Node node = getOrAddNode(domain);
+        node.addLabelSuffix(labelSuffix);
+        size++;
+    }
+
+    int size()
+    {
+        return size;
+    }
+
+    boolean matches(String host)
+    {
+        int end = host.length();
+        if (end > 0 && host.charAt(end - 1) == '.')
+            end--;  // Fully qualified name
+
+        if (end == 0)
+            return false;
+
+        Node node = root;
+
+        while (true)
+        {
+            int dot = host.lastIndexOf('.', end - 1);
+            int start = dot + 1;
+
+            if (node.matchesSubdomainLabel(host, start, end))
+                return true;
+
+            node = node.get(host, start, end);
+            if (node == null)
+                return false;
+
+            if (dot == -1)
+                return node.exact;
+
+            end = dot;
+        }
+    }
+
+    private Node getOrAddNode(String domain)
+    {
+        Node node = root;
+        int end = domain.length();
+
+        while (end > 0)
+        {
+            int dot = domain.lastIndexOf('.', end - 1);
+            if (end - dot > 1)
+            {
+                node = node.getOrAdd(domain.substring(dot + 1, end));
+            }
+
+            end = dot;
+        }
+
+        return node;
+    }
+
+    /**
+     * Case-insensitive (ASCII) hash of a region of the string
+     */
+    private static int hash(String s, int start, int end)
+    {
+        int h = 0;
+        for (int i = start; i < end; i++)
+        {
+            char c = s.charAt(i);
+            if (c >= 'A' && c <= 'Z')
+                c += 'a' - 'A';
+
+            h = 31 * h + c;
+        }
+
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Children are kept in an open addressing table, probed with regions of the host string
+     */
+    private static class Node
+    {
+        private String[] labels;
+        private Node[] children;
+        private int count;
+
+        private boolean exact;
+        private boolean subdomains;
+        private String[] labelSuffixes;
+
+        Node get(String host, int start, int end)
+        {
+            if (labels == null)
+                return null;
+
+            int length = end - start;
+            int mask = labels.length - 1;
+            int i = hash(host, start, end) & mask;
+
+            String label;
+            while ((label = labels[i]) != null)
+            {
+                if (label.length() == length && label.regionMatches(true, 0, host, start, length))
+                    return children[i];
+
+                i = (i + 1) & mask;
+            }
+
+            return null;
+        }
+
+        Node getOrAdd(String label)
+        {
+            Node child = get(label, 0, label.length());
+            if (child != null)
+                return child;
+
+            if (labels == null)
+            {
+                labels = new String[INITIAL_CAPACITY];
+                children = new Node[INITIAL_CAPACITY];
+            }
+            else if ((count + 1) * 2 > labels.length)
+            {
+                resize(labels.length * 2);
+            }
+
+            child = new Node();
+            put(label, child);
+            return child;
+        }
+
+        private void put(String label, Node child)
+        {
+            int mask = labels.length - 1;
+            int i = hash(label, 0, label.length()) & mask;
+
+            while (labels[i] != null)
+            {
+                i = (i + 1) & mask;
+            }
+
+            labels[i] = label;
+            children[i] = child;
+            count++;
+        }
+
+        private void resize(int capacity)
+        {
+            String[] oldLabels = labels;
+            Node[] oldChildren = children;
+
+            labels = new String[capacity];
+            children = new Node[capacity];
+            count = 0;
+
+            for (int i = 0; i < oldLabels.length; i++)
+            {
+                if (oldLabels[i] != null)
+                    put(oldLabels[i], oldChildren[i]);
+            }
+        }
+
+        void addLabelSuffix(String suffix)
+        {
+            int length = labelSuffixes == null ? 0 : labelSuffixes.length;
+            String[] suffixes = new String[length + 1];
+            if (length > 0)
+                System.arraycopy(labelSuffixes, 0, suffixes, 0, length);
+
+            suffixes[length] = suffix;
+            labelSuffixes = suffixes;
+        }
+
+        /**
+         * @return true if the host label [start, end), below this node, is matched by the node
+         */
+        boolean matchesSubdomainLabel(String host, int start, int end)
+        {
+            if (subdomains)
+                return true;
+
+            if (labelSuffixes != null)
+            {
+                for (String suffix : labelSuffixes)
+                {
+                    int length = suffix.length();
+                    if (end - start >= length && host.regionMatches(true, end - length, suffix, 0, length))
+                        return true;
+                }
+            }
+
+            return false;
+        }
+    }
+}
@@ -7,8 +7,11 @@ import android.util.Log;
 import java.text.DateFormat;
 import java.util.Date;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+import be.shouldit.proxy.lib.APL;
 import timber.log.Timber;
 
 public class TraceUtils
@@ -46,7 +49,8 @@ public class TraceUtils
      *
      */
 
-    private Map<String, TraceDate> startTraces;
+    private final Map<String, TraceDate> startTraces = new ConcurrentHashMap<String, TraceDate>();
+    private final Map<String, AtomicLong> counters = new ConcurrentHashMap<String, AtomicLong>();
 
     private static void log(String tag, String msg, int logLevel)
     {
@@ -84,11 +88,6 @@ public class TraceUtils
 
     public void startTrace(String tag, String key, String message, int logLevel, boolean showStart)
     {
-        if (startTraces == null)
-        {
-            startTraces = new ConcurrentHashMap<String, TraceDate>();
-        }
-
         TraceDate traceDate = new TraceDate();
         DateFormat df = DateFormat.getDateTimeInstance();
         if (showStart)
@@ -111,7 +110,7 @@ public class TraceUtils
     {
         synchronized (startTraces)
         {
-            if (startTraces != null && startTraces.containsKey(key))
+            if (startTraces.containsKey(key))
             {
                 TraceDate start = startTraces.get(key);
                 Date now = new Date();
@@ -132,7 +131,7 @@ public class TraceUtils
     {
         synchronized (startTraces)
         {
-            if (startTraces != null && startTraces.containsKey(key))
+            if (startTraces.containsKey(key))
             {
                 TraceDate start = startTraces.get(key);
                 Date now = new Date();
@@ -227,7 +226,7 @@ public class TraceUtils
 
         synchronized (startTraces)
         {
-            if (startTraces != null && startTraces.containsKey(key))
+            if (startTraces.containsKey(key))
             {
                 TraceDate start = startTraces.get(key);
                 Date now = new Date();
@@ -238,4 +237,69 @@ public class TraceUtils
 
         return diffFromStart;
     }
+
+    /**
+     * Increments a named counter of the library's TraceUtils (see {@link APL#getTraceUtils()}).
+     * Does nothing if the library has not been set up, i.e. on the JVM.
+     */
+    public static void increment(String key)
+    {
+        TraceUtils traceUtils = APL.getTraceUtils();
+        if (traceUtils != null)
+        {
+            traceUtils.incrementCounter(key);
+        }
+    }
+
+    /**
+     * Increments a named counter (i.e. cache hits and misses), creating it on first use
+     */
+    public long incrementCounter(String key)
+    {
+        AtomicLong counter = counters.get(key);
+        if (counter == null)
+        {
+            synchronized (counters)
+            {
+                counter = counters.get(key);
+                if (counter == null)
+                {
+                    counter = new AtomicLong();
+                    counters.put(key, counter);
+                }
+            }
+        }
+
+        return counter.incrementAndGet();
+    }
+
+    public long getCounter(String key)
+    {
+        AtomicLong counter = counters.get(key);
+        return counter != null ? counter.get() : 0;
+    }
+
+    /**
+     * Snapshot of all the counters, sorted by name
+     */
+    public Map<String, Long> getCounters()
+    {
+        Map<String, Long> snapshot = new TreeMap<String, Long>();
+        for (Map.Entry<String, AtomicLong> entry : counters.entrySet())
+        {
+            snapshot.put(entry.getKey(), entry.getValue().get());
+        }
+
+        return snapshot;
+    }
+
+    public void resetCounters()
+    {
+        counters.clear();
+    }
+
+    public void logCounters(String tag, int logLevel)
+    {
+        log(tag, "COUNTERS " + getCounters().toString(), logLevel);
+    }
 }
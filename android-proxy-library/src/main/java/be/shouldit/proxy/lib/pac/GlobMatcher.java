@@ -0,0 +1,187 @@
+package be.shouldit.proxy.lib.pac;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Shell expression ("*" and "?" wildcards) compiled once, as used by the shExpMatch PAC function.
+ *
+ * Common expressions are matched with a single String operation (equals, startsWith, endsWith,
+ * contains), the others with a backtracking scan of the characters: no regular expression is built.
+ */
+public class GlobMatcher
+{
+    private static final int MAX_CACHED = 256;
+
+    private static final Map<String, GlobMatcher> cache = new LinkedHashMap<String, GlobMatcher>(MAX_CACHED, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, GlobMatcher> eldest)
+        {
+            return size() > MAX_CACHED;
+        }
+    };
+
+    private enum Kind
+    {
+        EQUALS,
+        STARTS_WITH,
+        ENDS_WITH,
+        CONTAINS,
+        ANY,
+        GENERIC
+    }
+
+    private final String pattern;
+    private final Kind kind;
+    private final String literal;
+
+    private GlobMatcher(String pattern)
+    {
+        this.pattern = pattern;
+
+        boolean question = pattern.indexOf('?') != -1;
+        int firstStar = pattern.indexOf('*');
+        int lastStar = pattern.lastIndexOf('*');
+        int length = pattern.length();
+
+        if (question)
+        {
+            kind = Kind.GENERIC;
+            literal = null;
+        }
+        else if (firstStar == -1)
+        {
+            kind = Kind.EQUALS;
+            literal = pattern;
+        }
+        else if (firstStar == lastStar && firstStar == length - 1)
+        {
+            kind = Kind.STARTS_WITH;
+            literal = pattern.substring(0, firstStar);
+        }
+        else if (firstStar == lastStar && firstStar == 0)
+        {
+            kind = Kind.ENDS_WITH;
+            literal = pattern.substring(1);
+        }
+        else if (firstStar == 0 && lastStar == length - 1 && pattern.indexOf('*', 1) == lastStar)
+        {
+            // "*" alone has firstStar == lastStar, so it's handled by the STARTS_WITH case
+            kind = lastStar == 1 ? Kind.ANY : Kind.CONTAINS;
+            literal = pattern.substring(1, lastStar);
+        }
+        else
+        {
+            kind = Kind.GENERIC;
+            literal = null;
+        }
+    }
+
+    /**
+     * @return the compiled expression, from the cache if already compiled
+     */
+    public static GlobMatcher compile(String pattern)
+    {
+        synchronized (cache)
+        {
+            GlobMatcher matcher = cache.get(pattern);
+            if (matcher == null)
+            {
+                matcher = new GlobMatcher(pattern);
+                cache.put(pattern, matcher);
+            }
+
+            return matcher;
+        }
+    }
+
+    public static boolean matches(String value, String pattern)
+    {
+        return compile(pattern).matches(value);
+    }
+
+    public String getPattern()
+    {
+        return pattern;
+    }
+
+    public boolean matches(String value)
+    {
+        switch (kind)
+        {
+            case EQUALS:
+                return value.equals(literal);
+
+            case STARTS_WITH:
+                return value.startsWith(literal);
+
+            case ENDS_WITH:
+                return value.endsWith(literal);
+
+            case CONTAINS:
+                return value.contains(literal);
+
+            case ANY:
+                return true;
+
+            default:
+                return matchesGeneric(value);
+        }
+    }
+
+    /**
+     * Linear scan, backtracking only to the last "*" seen
+     */
+    private boolean matchesGeneric(String value)
+    {
+        int v = 0;
+        int p = 0;
+        int starP = -1;
+        int starV = 0;
+        int valueLength = value.length();
+        int patternLength = pattern.length();
+
+        while (v < valueLength)
+        {
+            if (p < patternLength)
+            {
+                char c = pattern.charAt(p);
+
+                if (c == '*')
+                {
+                    starP = p++;
+                    starV = v;
+                    continue;
+                }
+
+                if (c == '?' || c == value.charAt(v))
+                {
+                    p++;
+                    v++;
+                    continue;
+                }
+            }
+
+            if (starP == -1)
+                return false;
+
+            // Let the last "*" absorb one more character
+            p = starP + 1;
+            v = ++starV;
+        }
+
+        while (p < patternLength && pattern.charAt(p) == '*')
+        {
+            p++;
+        }
+
+        return p == patternLength;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s (%s)", pattern, kind);
+    }
+}
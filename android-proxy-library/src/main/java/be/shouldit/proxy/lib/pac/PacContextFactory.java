@@ -0,0 +1,90 @@
+package be.shouldit.proxy.lib.pac;
+
+import org.mozilla.javascript.ClassShutter;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates the sandboxed Rhino contexts used to run the PAC scripts:
+ * <ul>
+ * <li>interpreted mode, since Android can't load the bytecode generated by the Rhino compiler</li>
+ * <li>no access to any Java class from the scripts</li>
+ * <li>evaluation aborted after a deadline, to survive scripts with endless loops</li>
+ * </ul>
+ */
+class PacContextFactory extends ContextFactory
+{
+    private static final String DEADLINE_KEY = "apl_pac_deadline";
+    private static final int INSTRUCTION_OBSERVER_THRESHOLD = 10000;
+    private static final int MAX_STACK_DEPTH = 256;
+
+    private static final ClassShutter DENY_ALL = new ClassShutter()
+    {
+        @Override
+        public boolean visibleToScripts(String fullClassName)
+        {
+            return false;
+        }
+    };
+
+    @Override
+    protected Context makeContext()
+    {
+        Context cx = super.makeContext();
+        cx.setLanguageVersion(Context.VERSION_1_8);
+        cx.setOptimizationLevel(-1);
+        cx.setMaximumInterpreterStackDepth(MAX_STACK_DEPTH);
+        cx.setClassShutter(DENY_ALL);
+        cx.setInstructionObserverThreshold(INSTRUCTION_OBSERVER_THRESHOLD);
+        return cx;
+    }
+
+    @Override
+    protected void observeInstructionCount(Context cx, int instructionCount)
+    {
+        Long deadline = (Long) cx.getThreadLocal(DEADLINE_KEY);
+        if (deadline != null && System.nanoTime() > deadline)
+        {
+            // An Error is the only way to stop the interpreter: scripts can catch any exception
+            throw new TimeoutError();
+        }
+    }
+
+    /**
+     * @param deadline in {@link System#nanoTime()} units, after which the script evaluation is aborted
+     */
+    static void setDeadline(Context cx, long deadline)
+    {
+        cx.putThreadLocal(DEADLINE_KEY, deadline);
+    }
+
+    /**
+     * @return milliseconds left before the deadline of the evaluation running in the context, -1 if it has no deadline
+     */
+    static long getRemainingMillis(Context cx)
+    {
+        Long deadline = (Long) cx.getThreadLocal(DEADLINE_KEY);
+        if (deadline == null)
+            return -1;
+
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+    }
+
+    static void clearDeadline(Context cx)
+    {
+        cx.removeThreadLocal(DEADLINE_KEY);
+    }
+
+    /**
+     * Thrown from the interpreter loop when the deadline has been reached
+     */
+    static class TimeoutError extends Error
+    {
+        TimeoutError()
+        {
+            super("PAC script evaluation timed out");
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package be.shouldit.proxy.lib.pac;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.RhinoException;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import be.shouldit.proxy.lib.logging.TraceUtils;
+import be.shouldit.proxy.lib.utils.HashUtils;
+import timber.log.Timber;
+
+/**
+ * Evaluates the FindProxyForURL function of PAC scripts in process, with a sandboxed
+ * JavaScript interpreter (Rhino), so the PAC of any configuration can be evaluated,
+ * not only the one of the active network as with the system ProxySelector.
+ *
+ * Scripts are compiled once and kept by hash of their content, in a LRU cache of
+ * {@link #DEFAULT_MAX_SCRIPTS} entries. The engine doesn't need an Android context,
+ * so it can be used on the JVM as well.
+ */
+public class PacEngine
+{
+    public static final int DEFAULT_MAX_SCRIPTS = 8;
+    public static final int DEFAULT_TIMEOUT = 1000;  // milliseconds
+
+    public static final String COUNTER_COMPILED = "pac_script_compiled";
+    public static final String COUNTER_CACHE_HIT = "pac_script_cache_hit";
+
+    private static final String FUNCTION_NAME = "FindProxyForURL";
+    private static final int DEFAULT_HTTP_PORT = 80;
+    private static final int DEFAULT_SOCKS_PORT = 1080;
+
+    private static PacEngine instance;
+
+    private final PacContextFactory contextFactory;
+    private final ScriptableObject sharedScope;
+    private final Map<String, CompiledPac> scripts;
+    private volatile int timeout;
+
+    public static synchronized PacEngine getInstance()
+    {
+        if (instance == null)
+        {
+            instance = new PacEngine(DEFAULT_MAX_SCRIPTS, DEFAULT_TIMEOUT);
+        }
+
+        return instance;
+    }
+
+    /**
+     * @param maxScripts number of compiled scripts kept in memory
+     * @param timeoutMillis maximum duration of the compilation or of a single evaluation of a script
+     */
+    public PacEngine(final int maxScripts, int timeoutMillis)
+    {
+        contextFactory = new PacContextFactory();
+        timeout = timeoutMillis;
+        scripts = new LinkedHashMap<String, CompiledPac>(maxScripts, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompiledPac> eldest)
+            {
+                return size() > maxScripts;
+            }
+        };
+
+        // Standard objects and predefined functions are shared, read-only, by all the scripts
+        Context cx = contextFactory.enterContext();
+        try
+        {
+            sharedScope = cx.initSafeStandardObjects(null, true);
+            PacFunctions.install(cx, sharedScope);
+            seal(sharedScope, new IdentityHashMap<Scriptable, Boolean>());
+        }
+        finally
+        {
+            Context.exit();
+        }
+    }
+
+    /**
+     * Seals the object and all the objects reachable from it, stopping at the ones already sealed (the standard
+     * objects): the predefined functions, their prototypes and the arrays they use can't be changed by a script
+     * and seen by the following ones
+     */
+    private static void seal(Scriptable object, Map<Scriptable, Boolean> sealed)
+    {
+        if (!(object instanceof ScriptableObject) || ((ScriptableObject) object).isSealed() || sealed.containsKey(object))
+            return;
+
+        sealed.put(object, Boolean.TRUE);
+        ScriptableObject scriptable = (ScriptableObject) object;
+
+        for (Object id : scriptable.getAllIds())
+        {
+            Object value = id instanceof Integer ? scriptable.get((Integer) id, scriptable) : scriptable.get(id.toString(), scriptable);
+            if (value instanceof Scriptable)
+                seal((Scriptable) value, sealed);
+        }
+
+        if (object instanceof Function)
+        {
+            Object prototype = ScriptableObject.getProperty(scriptable, "prototype");
+            if (prototype instanceof Scriptable)
+                seal((Scriptable) prototype, sealed);
+        }
+
+        seal(scriptable.getPrototype(), sealed);
+        scriptable.sealObject();
+    }
+
+    public void setTimeout(int timeoutMillis)
+    {
+        timeout = timeoutMillis;
+    }
+
+    /**
+     * @return the raw result of FindProxyForURL(url, host), i.e. "PROXY proxy.example.com:8080; DIRECT"
+     * @throws Exception if the script is not valid, fails or doesn't complete before the timeout
+     */
+    public String findProxyForURL(String script, URI uri) throws Exception
+    {
+        return compile(script).findProxyForURL(uri.toString(), uri.getHost());
+    }
+
+    /**
+     * @return the proxies to use for the URI, in order of preference, as ProxySelector does
+     * @throws Exception if the script is not valid, fails or doesn't complete before the timeout
+     */
+    public List<Proxy> select(String script, URI uri) throws Exception
+    {
+        return parseResult(findProxyForURL(script, uri));
+    }
+
+    /**
+     * @return the compiled script, from the cache if the same content has already been compiled
+     */
+    CompiledPac compile(String script) throws Exception
+    {
+        String key = HashUtils.sha1(script);
+
+        synchronized (scripts)
+        {
+            CompiledPac compiled = scripts.get(key);
+            if (compiled != null)
+            {
+                TraceUtils.increment(COUNTER_CACHE_HIT);
+                return compiled;
+            }
+        }
+
+        // Compiled outside of the lock: a slow script doesn't block the evaluation of the others
+        CompiledPac compiled = new CompiledPac(script);
+        TraceUtils.increment(COUNTER_COMPILED);
+
+        synchronized (scripts)
+        {
+            scripts.put(key, compiled);
+        }
+
+        return compiled;
+    }
+
+    public int getCachedScriptsCount()
+    {
+        synchronized (scripts)
+        {
+            return scripts.size();
+        }
+    }
+
+    public void clear()
+    {
+        synchronized (scripts)
+        {
+            scripts.clear();
+        }
+    }
+
+    /**
+     * Parses the result of FindProxyForURL, unknown entries are ignored
+     *
+     * @return the proxies in order of preference, at least {@link Proxy#NO_PROXY}
+     */
+    static List<Proxy> parseResult(String result)
+    {
+        List<Proxy> proxies = new ArrayList<Proxy>();
+
+        if (result != null && result.length() > 0)
+        {
+            for (String entry : result.split(";"))
+            {
+                String trimmed = entry.trim();
+                if (trimmed.length() == 0)
+                    continue;
+
+                String[] parts = trimmed.split("\\s+");
+                String type = parts[0].toUpperCase(Locale.US);
+
+                if (type.equals("DIRECT"))
+                {
+                    proxies.add(Proxy.NO_PROXY);
+                }
+                else if (parts.length >= 2)
+                {
+                    Proxy.Type proxyType;
+                    int defaultPort;
+
+                    if (type.equals("PROXY") || type.equals("HTTP") || type.equals("HTTPS"))
+                    {
+                        proxyType = Proxy.Type.HTTP;
+                        defaultPort = DEFAULT_HTTP_PORT;
+                    }
+                    else if (type.startsWith("SOCKS"))
+                    {
+                        proxyType = Proxy.Type.SOCKS;
+                        defaultPort = DEFAULT_SOCKS_PORT;
+                    }
+                    else
+                    {
+                        Timber.w("Unknown PAC result entry: '%s'", entry);
+                        continue;
+                    }
+
+                    InetSocketAddress address = parseAddress(parts[1], defaultPort);
+                    if (address != null)
+                        proxies.add(new Proxy(proxyType, address));
+                }
+            }
+        }
+
+        if (proxies.isEmpty())
+            proxies.add(Proxy.NO_PROXY);
+
+        return proxies;
+    }
+
+    private static InetSocketAddress parseAddress(String hostPort, int defaultPort)
+    {
+        String host = hostPort;
+        int port = defaultPort;
+
+        int colon = hostPort.lastIndexOf(':');
+        if (colon >= 0 && hostPort.indexOf(']', colon) == -1)
+        {
+            host = hostPort.substring(0, colon);
+
+            try
+            {
+                port = Integer.parseInt(hostPort.substring(colon + 1));
+            }
+            catch (NumberFormatException e)
+            {
+                Timber.w("Invalid port in PAC result: '%s'", hostPort);
+                return null;
+            }
+        }
+
+        if (host.startsWith("[") && host.endsWith("]"))
+            host = host.substring(1, host.length() - 1);
+
+        if (host.length() == 0 || port <= 0 || port > 65535)
+            return null;
+
+        return InetSocketAddress.createUnresolved(host, port);
+    }
+
+    /**
+     * Script compiled and executed in its own scope, on top of the shared one
+     */
+    class CompiledPac
+    {
+        private final Scriptable scope;
+        private final Function function;
+
+        CompiledPac(String source) throws Exception
+        {
+            Context cx = contextFactory.enterContext();
+            try
+            {
+                PacContextFactory.setDeadline(cx, getDeadline());
+
+                Script script = cx.compileString(source, "pac.js", 1, null);
+
+                scope = cx.newObject(sharedScope);
+                scope.setPrototype(sharedScope);
+                scope.setParentScope(null);
+                script.exec(cx, scope);
+
+                Object value = ScriptableObject.getProperty(scope, FUNCTION_NAME);
+                if (!(value instanceof Function))
+                    throw new Exception("PAC script doesn't define " + FUNCTION_NAME);
+
+                function = (Function) value;
+            }
+            catch (RhinoException e)
+            {
+                throw new Exception("Invalid PAC script: " + e.getMessage(), e);
+            }
+            catch (PacContextFactory.TimeoutError e)
+            {
+                throw new Exception("PAC script execution failed: " + e.getMessage(), e);
+            }
+            finally
+            {
+                PacContextFactory.clearDeadline(cx);
+                Context.exit();
+            }
+        }
+
+        /**
+         * Evaluations of the same script are serialized: the script can keep state in its scope
+         */
+        synchronized String findProxyForURL(String url, String host) throws Exception
+        {
+            Context cx = contextFactory.enterContext();
+            try
+            {
+                PacContextFactory.setDeadline(cx, getDeadline());
+
+                Object result = function.call(cx, scope, scope, new Object[]{url, host});
+                return result == null ? null : Context.toString(result);
+            }
+            catch (RhinoException e)
+            {
+                throw new Exception("PAC script evaluation failed: " + e.getMessage(), e);
+            }
+            catch (PacContextFactory.TimeoutError e)
+            {
+                throw new Exception("PAC script evaluation failed: " + e.getMessage(), e);
+            }
+            finally
+            {
+                PacContextFactory.clearDeadline(cx);
+                Context.exit();
+            }
+        }
+
+        private long getDeadline()
+        {
+            return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        }
+    }
+}
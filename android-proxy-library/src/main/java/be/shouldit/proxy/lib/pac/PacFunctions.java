@@ -0,0 +1,388 @@
+package be.shouldit.proxy.lib.pac;
+
+import org.mozilla.javascript.BaseFunction;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ScriptRuntime;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.util.Enumeration;
+
+import be.shouldit.proxy.lib.utils.DnsCache;
+import timber.log.Timber;
+
+/**
+ * Predefined functions available to the PAC scripts, as defined by the Netscape specification.
+ *
+ * The host and address functions, called for every URL, are implemented in Java: shell expressions
+ * are compiled once ({@link GlobMatcher}), network masks are compared as integers and host names
+ * are resolved through the {@link DnsCache}. Only the date and time functions are in JavaScript.
+ */
+class PacFunctions
+{
+    private static final int ATTRIBUTES = ScriptableObject.READONLY | ScriptableObject.DONTENUM | ScriptableObject.PERMANENT;
+
+    private static final String SCRIPT =
+            "var PAC_DAYS = ['SUN', 'MON', 'TUE', 'WED', 'THU', 'FRI', 'SAT'];\n" +
+            "var PAC_MONTHS = ['JAN', 'FEB', 'MAR', 'APR', 'MAY', 'JUN', 'JUL', 'AUG', 'SEP', 'OCT', 'NOV', 'DEC'];\n" +
+            "\n" +
+            "function pacArguments(args) {\n" +
+            "    var values = Array.prototype.slice.call(args);\n" +
+            "    var gmt = values.length > 0 && values[values.length - 1] == 'GMT';\n" +
+            "    if (gmt)\n" +
+            "        values.pop();\n" +
+            "    return { values: values, gmt: gmt, now: new Date() };\n" +
+            "}\n" +
+            "function pacInRange(value, start, end) {\n" +
+            "    return start <= end ? (value >= start && value <= end) : (value >= start || value <= end);\n" +
+            "}\n" +
+            "function weekdayRange() {\n" +
+            "    var a = pacArguments(arguments);\n" +
+            "    var day = a.gmt ? a.now.getUTCDay() : a.now.getDay();\n" +
+            "    var start = PAC_DAYS.indexOf(a.values[0]);\n" +
+            "    var end = a.values.length > 1 ? PAC_DAYS.indexOf(a.values[1]) : start;\n" +
+            "    return start != -1 && end != -1 && pacInRange(day, start, end);\n" +
+            "}\n" +
+            "function timeRange() {\n" +
+            "    var a = pacArguments(arguments), v = a.values.map(Number);\n" +
+            "    var h = a.gmt ? a.now.getUTCHours() : a.now.getHours();\n" +
+            "    var m = a.gmt ? a.now.getUTCMinutes() : a.now.getMinutes();\n" +
+            "    var s = a.gmt ? a.now.getUTCSeconds() : a.now.getSeconds();\n" +
+            "    switch (v.length) {\n" +
+            "        case 1: return h == v[0];\n" +
+            "        case 2: return v[0] <= v[1] ? (h >= v[0] && h < v[1]) : (h >= v[0] || h < v[1]);\n" +
+            "        case 4: return pacInRange(h * 60 + m, v[0] * 60 + v[1], v[2] * 60 + v[3]);\n" +
+            "        case 6: return pacInRange(h * 3600 + m * 60 + s, v[0] * 3600 + v[1] * 60 + v[2], v[3] * 3600 + v[4] * 60 + v[5]);\n" +
+            "        default: return false;\n" +
+            "    }\n" +
+            "}\n" +
+            "function pacDate(values) {\n" +
+            "    var date = {};\n" +
+            "    for (var i = 0; i < values.length; i++) {\n" +
+            "        var month = PAC_MONTHS.indexOf(values[i]);\n" +
+            "        if (month != -1)\n" +
+            "            date.month = month;\n" +
+            "        else if (Number(values[i]) > 31)\n" +
+            "            date.year = Number(values[i]);\n" +
+            "        else\n" +
+            "            date.day = Number(values[i]);\n" +
+            "    }\n" +
+            "    return date;\n" +
+            "}\n" +
+            "function pacDateValue(date, fields) {\n" +
+            "    return (fields.year !== undefined ? date.year * 10000 : 0) + (fields.month !== undefined ? date.month * 100 : 0) + (fields.day !== undefined ? date.day : 0);\n" +
+            "}\n" +
+            "function dateRange() {\n" +
+            "    var a = pacArguments(arguments);\n" +
+            "    var today = a.gmt ? { day: a.now.getUTCDate(), month: a.now.getUTCMonth(), year: a.now.getUTCFullYear() }\n" +
+            "                      : { day: a.now.getDate(), month: a.now.getMonth(), year: a.now.getFullYear() };\n" +
+            "    if (a.values.length == 1) {\n" +
+            "        var single = pacDate(a.values);\n" +
+            "        return pacDateValue(today, single) == pacDateValue(single, single);\n" +
+            "    }\n" +
+            "    if (a.values.length == 0 || a.values.length % 2 != 0)\n" +
+            "        return false;\n" +
+            "    var start = pacDate(a.values.slice(0, a.values.length / 2));\n" +
+            "    var end = pacDate(a.values.slice(a.values.length / 2));\n" +
+            "    return pacInRange(pacDateValue(today, start), pacDateValue(start, start), pacDateValue(end, start));\n" +
+            "}\n";
+
+    private static final String LOCALHOST = "127.0.0.1";
+
+    /**
+     * Defines the predefined functions in the scope shared by all the PAC scripts
+     */
+    static void install(Context cx, ScriptableObject scope)
+    {
+        define(scope, new NativeFunction("isPlainHostName", 1)
+        {
+            @Override
+            Object call(Object[] args)
+            {
+                return isPlainHostName(stringArg(args, 0));
+            }
+        });
+
+        define(scope, new NativeFunction("dnsDomainIs", 2)
+        {
+            @Override
+            Object call(Object[] args)
+            {
+                return dnsDomainIs(stringArg(args, 0), stringArg(args, 1));
+            }
+        });
+
+        define(scope, new NativeFunction("localHostOrDomainIs", 2)
+        {
+            @Override
+            Object call(Object[] args)
+            {
+                return localHostOrDomainIs(stringArg(args, 0), stringArg(args, 1));
+            }
+        });
+
+        define(scope, new NativeFunction("isResolvable", 1)
+        {
+            @Override
+            Object call(Object[] args)
+            {
+                return dnsResolve(stringArg(args, 0)) != null;
+            }
+        });
+
+        define(scope, new NativeFunction("isInNet", 3)
+        {
+            @Override
+            Object call(Object[] args)
+            {
+                return isInNet(stringArg(args, 0), stringArg(args, 1), stringArg(args, 2));
+            }
+        });
+
+        define(scope, new NativeFunction("dnsResolve", 1)
+        {
+            @Override
+            Object call(Object[] args)
+            {
+                return dnsResolve(stringArg(args, 0));
+            }
+        });
+
+        define(scope, new NativeFunction("myIpAddress", 0)
+        {
+            @Override
+            Object call(Object[] args)
+            {
+                return myIpAddress();
+            }
+        });
+
+        define(scope, new NativeFunction("dnsDomainLevels", 1)
+        {
+            @Override
+            Object call(Object[] args)
+            {
+                return dnsDomainLevels(stringArg(args, 0));
+            }
+        });
+
+        define(scope, new NativeFunction("shExpMatch", 2)
+        {
+            @Override
+            Object call(Object[] args)
+            {
+                return GlobMatcher.matches(stringArg(args, 0), stringArg(args, 1));
+            }
+        });
+
+        cx.evaluateString(scope, SCRIPT, "pac_functions.js", 1, null);
+    }
+
+    private static void define(ScriptableObject scope, NativeFunction function)
+    {
+        ScriptRuntime.setFunctionProtoAndParent(function, scope);
+        ScriptableObject.defineProperty(scope, function.getFunctionName(), function, ATTRIBUTES);
+    }
+
+    static boolean isPlainHostName(String host)
+    {
+        return host.indexOf('.') == -1;
+    }
+
+    /**
+     * Case-sensitive, as in the Netscape implementation
+     */
+    static boolean dnsDomainIs(String host, String domain)
+    {
+        return host.endsWith(domain);
+    }
+
+    /**
+     * Case-sensitive, as in the Netscape implementation
+     */
+    static boolean localHostOrDomainIs(String host, String hostdom)
+    {
+        if (host.equals(hostdom))
+            return true;
+
+        // An unqualified host matches the first label of the fully qualified one
+        return isPlainHostName(host) && hostdom.length() > host.length() && hostdom.charAt(host.length()) == '.' && hostdom.startsWith(host);
+    }
+
+    static int dnsDomainLevels(String host)
+    {
+        int levels = 0;
+        for (int i = 0; i < host.length(); i++)
+        {
+            if (host.charAt(i) == '.')
+                levels++;
+        }
+
+        return levels;
+    }
+
+    /**
+     * @param host host name or IPv4 address, resolved only if not already an address
+     */
+    static boolean isInNet(String host, String pattern, String mask)
+    {
+        long address = parseIPv4(host);
+        if (address == -1)
+        {
+            String resolved = dnsResolve(host);
+            if (resolved == null)
+                return false;
+
+            address = parseIPv4(resolved);
+        }
+
+        long patternAddress = parseIPv4(pattern);
+        long maskAddress = parseIPv4(mask);
+        if (address == -1 || patternAddress == -1 || maskAddress == -1)
+            return false;
+
+        return (address & maskAddress) == (patternAddress & maskAddress);
+    }
+
+    /**
+     * @return the dotted IPv4 address as an unsigned 32 bits integer, -1 if not valid
+     */
+    static long parseIPv4(String value)
+    {
+        long address = 0;
+        int octet = 0;
+        int digits = 0;
+        int dots = 0;
+
+        for (int i = 0; i < value.length(); i++)
+        {
+            char c = value.charAt(i);
+
+            if (c >= '0' && c <= '9')
+            {
+                octet = octet * 10 + (c - '0');
+                if (++digits > 3 || octet > 255)
+                    return -1;
+            }
+            else if (c == '.' && digits > 0 && dots < 3)
+            {
+                address = (address << 8) | octet;
+                octet = 0;
+                digits = 0;
+                dots++;
+            }
+            else
+            {
+                return -1;
+            }
+        }
+
+        if (dots != 3 || digits == 0)
+            return -1;
+
+        return (address << 8) | octet;
+    }
+
+    /**
+     * Called from a script evaluation, waits for the resolver only until the evaluation deadline:
+     * a slow resolver can't hold the script past its timeout
+     *
+     * @return the IPv4 address of the host, null if it can't be resolved
+     */
+    static String dnsResolve(String host)
+    {
+        try
+        {
+            Context cx = Context.getCurrentContext();
+            long timeout = cx != null ? PacContextFactory.getRemainingMillis(cx) : -1;
+
+            InetAddress address = timeout != -1 ? DnsCache.getInstance().resolve(host, timeout) : DnsCache.getInstance().resolve(host);
+            return address instanceof Inet4Address ? address.getHostAddress() : null;
+        }
+        catch (UnknownHostException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * @return the first IPv4 address of the device not on the loopback interface
+     */
+    static String myIpAddress()
+    {
+        try
+        {
+            Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
+            while (interfaces != null && interfaces.hasMoreElements())
+            {
+                Enumeration<InetAddress> addresses = interfaces.nextElement().getInetAddresses();
+                while (addresses.hasMoreElements())
+                {
+                    InetAddress address = addresses.nextElement();
+                    if (address instanceof Inet4Address && !address.isLoopbackAddress())
+                        return address.getHostAddress();
+                }
+            }
+        }
+        catch (SocketException e)
+        {
+            Timber.w("Cannot list the network interfaces: %s", e.toString());
+        }
+
+        return LOCALHOST;
+    }
+
+    private static abstract class NativeFunction extends BaseFunction
+    {
+        private final String name;
+        private final int arity;
+
+        NativeFunction(String name, int arity)
+        {
+            this.name = name;
+            this.arity = arity;
+        }
+
+        abstract Object call(Object[] args);
+
+        @Override
+        public Object call(Context cx, Scriptable scope, Scriptable thisObj, Object[] args)
+        {
+            return call(args);
+        }
+
+        @Override
+        public String getFunctionName()
+        {
+            return name;
+        }
+
+        @Override
+        public int getArity()
+        {
+            return arity;
+        }
+
+        @Override
+        public int getLength()
+        {
+            return arity;
+        }
+
+        @Override
+        public Scriptable construct(Context cx, Scriptable scope, Object[] args)
+        {
+            throw ScriptRuntime.typeError(name + " is not a constructor");
+        }
+
+        static String stringArg(Object[] args, int index)
+        {
+            return index < args.length ? ScriptRuntime.toString(args[index]) : "undefined";
+        }
+    }
+}
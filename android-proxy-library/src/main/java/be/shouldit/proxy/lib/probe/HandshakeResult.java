@@ -0,0 +1,81 @@
+package be.shouldit.proxy.lib.probe;
+
+import be.shouldit.proxy.lib.enums.HandshakeMethod;
+
+/**
+ * Outcome of a handshake probe: the status line answered by the proxy, with the timings of the request
+ */
+public class HandshakeResult
+{
+    private final HandshakeMethod method;
+    private final ProbeTimings timings;
+    private final int statusCode;
+    private final String statusLine;
+    private final Exception error;
+
+    HandshakeResult(HandshakeMethod method, ProbeTimings timings, int statusCode, String statusLine, Exception error)
+    {
+        this.method = method;
+        this.timings = timings;
+        this.statusCode = statusCode;
+        this.statusLine = statusLine;
+        this.error = error;
+    }
+
+    public HandshakeMethod getMethod()
+    {
+        return method;
+    }
+
+    public ProbeTimings getTimings()
+    {
+        return timings;
+    }
+
+    /**
+     * @return the HTTP status code answered by the proxy, -1 if no valid status line has been received
+     */
+    public int getStatusCode()
+    {
+        return statusCode;
+    }
+
+    public String getStatusLine()
+    {
+        return statusLine;
+    }
+
+    /**
+     * Cause of the failure, null if a status line has been received
+     */
+    public Exception getError()
+    {
+        return error;
+    }
+
+    /**
+     * @return true if the endpoint answered with a valid HTTP status line
+     */
+    public boolean isHttp()
+    {
+        return statusCode != -1;
+    }
+
+    /**
+     * A proxy is healthy if it speaks HTTP and doesn't report a failure toward the upstream (5xx).
+     * A denied request (i.e. 403 or 407) still proves that the proxy is working.
+     */
+    public boolean isHealthy()
+    {
+        return isHttp() && statusCode < 500;
+    }
+
+    @Override
+    public String toString()
+    {
+        if (isHttp())
+            return String.format("%s: '%s' (%s)", method, statusLine, timings);
+        else
+            return String.format("%s: no HTTP answer (%s) (%s)", method, error, timings);
+    }
+}
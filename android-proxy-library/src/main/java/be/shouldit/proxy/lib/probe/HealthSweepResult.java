@@ -0,0 +1,65 @@
+package be.shouldit.proxy.lib.probe;
+
+/**
+ * Outcome of the health check of a single {@link HealthSweepTarget}
+ */
+public class HealthSweepResult
+{
+    private final HealthSweepTarget target;
+    private final boolean reachable;
+    private final long latencyMillis;
+    private final long checkDate;
+    private final String message;
+
+    HealthSweepResult(HealthSweepTarget target, boolean reachable, long latencyMillis, String message)
+    {
+        this.target = target;
+        this.reachable = reachable;
+        this.latencyMillis = latencyMillis;
+        this.message = message;
+        this.checkDate = System.currentTimeMillis();
+    }
+
+    public HealthSweepTarget getTarget()
+    {
+        return target;
+    }
+
+    public boolean isReachable()
+    {
+        return reachable;
+    }
+
+    /**
+     * Time needed to connect to the proxy (or to download the PAC file), in milliseconds
+     */
+    public long getLatencyMillis()
+    {
+        return latencyMillis;
+    }
+
+    /**
+     * Wall clock time of the check, in milliseconds since epoch
+     */
+    public long getCheckDate()
+    {
+        return checkDate;
+    }
+
+    /**
+     * Description of the failure, empty if the target is reachable
+     */
+    public String getMessage()
+    {
+        return message;
+    }
+
+    @Override
+    public String toString()
+    {
+        if (reachable)
+            return String.format("%s alive (%d ms)", target, latencyMillis);
+        else
+            return String.format("%s not reachable (%s)", target, message);
+    }
+}
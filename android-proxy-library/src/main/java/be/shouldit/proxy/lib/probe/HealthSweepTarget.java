@@ -0,0 +1,78 @@
+package be.shouldit.proxy.lib.probe;
+
+import java.net.URI;
+
+import be.shouldit.proxy.lib.reflection.android.ProxySetting;
+
+/**
+ * Single proxy configuration to be checked by a {@link ProxyHealthSweep}.
+ *
+ * The id is opaque for the library: callers use it to map the result back to their own entities.
+ */
+public class HealthSweepTarget
+{
+    private final long id;
+    private final ProxySetting proxySetting;
+    private final String host;
+    private final int port;
+    private final URI pacUri;
+
+    private HealthSweepTarget(long id, ProxySetting proxySetting, String host, int port, URI pacUri)
+    {
+        this.id = id;
+        this.proxySetting = proxySetting;
+        this.host = host;
+        this.port = port;
+        this.pacUri = pacUri;
+    }
+
+    /**
+     * Static HTTP proxy: alive if it accepts TCP connections on host:port
+     */
+    public static HealthSweepTarget forProxy(long id, String host, int port)
+    {
+        return new HealthSweepTarget(id, ProxySetting.STATIC, host, port, null);
+    }
+
+    /**
+     * PAC configuration: alive if the PAC file can be downloaded
+     */
+    public static HealthSweepTarget forPac(long id, URI pacUri)
+    {
+        return new HealthSweepTarget(id, ProxySetting.PAC, null, -1, pacUri);
+    }
+
+    public long getId()
+    {
+        return id;
+    }
+
+    public ProxySetting getProxySetting()
+    {
+        return proxySetting;
+    }
+
+    public String getHost()
+    {
+        return host;
+    }
+
+    public int getPort()
+    {
+        return port;
+    }
+
+    public URI getPacUri()
+    {
+        return pacUri;
+    }
+
+    @Override
+    public String toString()
+    {
+        if (proxySetting == ProxySetting.PAC)
+            return String.format("PAC #%d '%s'", id, pacUri);
+        else
+            return String.format("Proxy #%d '%s:%d'", id, host, port);
+    }
+}
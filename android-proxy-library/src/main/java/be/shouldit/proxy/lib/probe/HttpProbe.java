@@ -0,0 +1,117 @@
+package be.shouldit.proxy.lib.probe;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.Proxy;
+import java.net.URI;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import be.shouldit.proxy.lib.utils.KeepAliveHttpClient;
+import timber.log.Timber;
+
+/**
+ * Requests a web resource through a given {@link Proxy}, returning the HTTP status code.
+ *
+ * The proxy is bound to each single connection (no global System properties are touched),
+ * so any number of probes can run concurrently. Failed attempts are retried with a jittered
+ * exponential backoff, as long as the deadline allows it.
+ * Plain http probes reuse the pooled connections of the {@link KeepAliveHttpClient}.
+ */
+public class HttpProbe
+{
+    public static final int DEFAULT_MAX_ATTEMPTS = 5;
+    private static final long INITIAL_BACKOFF = 100;  // milliseconds
+    private static final long MAX_BACKOFF = 2000;     // milliseconds
+
+    private static final Random random = new Random();
+
+    /**
+     * @param timeout deadline of the whole probe, including the retries, in milliseconds
+     * @return the HTTP status code, -1 if no answer has been received before the deadline
+     */
+    public static int getResponseCode(URI uri, Proxy proxy, int timeout)
+    {
+        return getResponseCode(uri, proxy, timeout, DEFAULT_MAX_ATTEMPTS);
+    }
+
+    public static int getResponseCode(URI uri, Proxy proxy, int timeout, int maxAttempts)
+    {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        long backoff = INITIAL_BACKOFF;
+
+        for (int attempt = 1; attempt <= maxAttempts; attempt++)
+        {
+            int remaining = remainingMillis(deadline);
+            if (remaining <= 0)
+                break;
+
+            HttpURLConnection connection = null;
+
+            try
+            {
+                if (KeepAliveHttpClient.supports(uri, proxy))
+                    return KeepAliveHttpClient.getResponseCode(uri, proxy, remaining);
+
+                connection = (HttpURLConnection) uri.toURL().openConnection(proxy);
+                connection.setConnectTimeout(remaining);
+                connection.setReadTimeout(remaining);
+                connection.setUseCaches(false);
+
+                return connection.getResponseCode();
+            }
+            catch (IOException e)
+            {
+                Timber.w("HTTP probe attempt %d to '%s' failed: %s", attempt, uri, e.toString());
+            }
+            catch (RuntimeException e)
+            {
+                Timber.w("HTTP probe attempt %d to '%s' failed: %s", attempt, uri, e.toString());
+            }
+            finally
+            {
+                if (connection != null)
+                {
+                    connection.disconnect();
+                }
+            }
+
+            if (attempt == maxAttempts)
+                break;
+
+            // Never sleeping past the deadline
+            long sleep = Math.min(jitter(backoff, random), remainingMillis(deadline));
+            if (sleep <= 0)
+                break;
+
+            try
+            {
+                Thread.sleep(sleep);
+            }
+            catch (InterruptedException e)
+            {
+                Timber.w("HTTP probe to '%s' interrupted", uri);
+                Thread.currentThread().interrupt();
+                break;
+            }
+
+            backoff = Math.min(backoff * 2, MAX_BACKOFF);
+        }
+
+        return -1;
+    }
+
+    /**
+     * Equal jitter: half of the backoff is kept and the other half is random, so the sleep is in [backoff/2, backoff)
+     */
+    static long jitter(long backoff, Random random)
+    {
+        long half = backoff / 2;
+        return half + (long) (random.nextDouble() * (backoff - half));
+    }
+
+    private static int remainingMillis(long deadlineNanos)
+    {
+        return (int) TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+    }
+}
@@ -0,0 +1,184 @@
+package be.shouldit.proxy.lib.probe;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import timber.log.Timber;
+
+/**
+ * Histogram of latencies with logarithmic buckets: each power of two is split
+ * in {@link #SUB_BUCKETS} buckets, so the relative error of the percentiles
+ * is bounded (about 19%) whatever the order of magnitude of the values.
+ *
+ * Values are in microseconds, up to {@link #MAX_VALUE}.
+ */
+public class LatencyHistogram implements Parcelable
+{
+    public static final int SUB_BUCKETS = 4;
+    private static final int MAX_EXPONENT = 28;
+    public static final long MAX_VALUE = 1L << MAX_EXPONENT; // ~268 seconds
+
+    private static final double LOG_2 = Math.log(2);
+
+    private final long[] buckets;
+    private long count;
+    private long min;
+    private long max;
+
+    public LatencyHistogram()
+    {
+        buckets = new long[MAX_EXPONENT * SUB_BUCKETS + 1];
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+
+    public synchronized void record(long micros)
+    {
+        long value = Math.max(0, Math.min(micros, MAX_VALUE));
+
+        buckets[bucketIndex(value)]++;
+        count++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    public synchronized long getCount()
+    {
+        return count;
+    }
+
+    public synchronized long getMin()
+    {
+        return count > 0 ? min : 0;
+    }
+
+    public synchronized long getMax()
+    {
+        return max;
+    }
+
+    /**
+     * @param quantile between 0 and 1 (e.g. 0.99 for the 99th percentile)
+     * @return the upper bound of the bucket that contains the requested quantile, 0 if the histogram is empty
+     */
+    public synchronized long getPercentile(double quantile)
+    {
+        if (count == 0)
+            return 0;
+
+        long rank = (long) Math.ceil(Math.max(0, Math.min(1, quantile)) * count);
+        long seen = 0;
+
+        for (int i = 0; i < buckets.length; i++)
+        {
+            seen += buckets[i];
+            if (seen >= Math.max(1, rank))
+            {
+                return Math.max(min, Math.min(max, bucketUpperBound(i)));
+            }
+        }
+
+        return max;
+    }
+
+    /**
+     * @return an independent copy of the current values
+     */
+    public synchronized LatencyHistogram copy()
+    {
+        LatencyHistogram copy = new LatencyHistogram();
+        System.arraycopy(buckets, 0, copy.buckets, 0, buckets.length);
+        copy.count = count;
+        copy.min = min;
+        copy.max = max;
+        return copy;
+    }
+
+    public synchronized void clear()
+    {
+        for (int i = 0; i < buckets.length; i++)
+        {
+            buckets[i] = 0;
+        }
+
+        count = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+
+    public JSONObject toJSON()
+    {
+        JSONObject jsonObject = new JSONObject();
+
+        try
+        {
+            synchronized (this)
+            {
+                jsonObject.put("count", count);
+                jsonObject.put("min_us", getMin());
+                jsonObject.put("p50_us", getPercentile(0.5));
+                jsonObject.put("p90_us", getPercentile(0.9));
+                jsonObject.put("p99_us", getPercentile(0.99));
+                jsonObject.put("max_us", max);
+            }
+        }
+        catch (JSONException e)
+        {
+            Timber.e(e, "Exception converting to JSON object LatencyHistogram");
+        }
+
+        return jsonObject;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return String.format("count: %d, p50: %d us, p90: %d us, p99: %d us", count, getPercentile(0.5), getPercentile(0.9), getPercentile(0.99));
+    }
+
+    private static int bucketIndex(long value)
+    {
+        if (value <= 1)
+            return 0;
+
+        // Bucket i contains the values in (2^((i-1)/SUB_BUCKETS), 2^(i/SUB_BUCKETS)]
+        int index = (int) Math.ceil(Math.log(value) / LOG_2 * SUB_BUCKETS - 1e-9);
+        return Math.min(index, MAX_EXPONENT * SUB_BUCKETS);
+    }
+
+    private static long bucketUpperBound(int index)
+    {
+        return (long) Math.floor(Math.pow(2, (double) index / SUB_BUCKETS) + 1e-9);
+    }
+
+    @Override
+    public int describeContents() { return 0; }
+
+    @Override
+    public synchronized void writeToParcel(Parcel dest, int flags)
+    {
+        dest.writeLongArray(this.buckets);
+        dest.writeLong(this.count);
+        dest.writeLong(this.min);
+        dest.writeLong(this.max);
+    }
+
+    private LatencyHistogram(Parcel in)
+    {
+        this();
+        in.readLongArray(this.buckets);
+        this.count = in.readLong();
+        this.min = in.readLong();
+        this.max = in.readLong();
+    }
+
+    public static final Creator<LatencyHistogram> CREATOR = new Creator<LatencyHistogram>()
+    {
+        public LatencyHistogram createFromParcel(Parcel source) {return new LatencyHistogram(source);}
+
+        public LatencyHistogram[] newArray(int size) {return new LatencyHistogram[size];}
+    };
+}
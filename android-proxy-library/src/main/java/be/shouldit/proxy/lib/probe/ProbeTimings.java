@@ -0,0 +1,108 @@
+package be.shouldit.proxy.lib.probe;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import be.shouldit.proxy.lib.enums.LatencyPhase;
+import timber.log.Timber;
+
+/**
+ * Duration of each {@link LatencyPhase} of a single probe, in microseconds
+ */
+public class ProbeTimings implements Parcelable
+{
+    public static final long NOT_MEASURED = -1;
+
+    private final long[] phases;
+
+    public ProbeTimings()
+    {
+        phases = new long[LatencyPhase.values().length];
+
+        for (int i = 0; i < phases.length; i++)
+        {
+            phases[i] = NOT_MEASURED;
+        }
+    }
+
+    public long get(LatencyPhase phase)
+    {
+        return phases[phase.ordinal()];
+    }
+
+    public void set(LatencyPhase phase, long micros)
+    {
+        phases[phase.ordinal()] = micros;
+    }
+
+    public boolean isMeasured(LatencyPhase phase)
+    {
+        return phases[phase.ordinal()] != NOT_MEASURED;
+    }
+
+    public JSONObject toJSON()
+    {
+        JSONObject jsonObject = new JSONObject();
+
+        try
+        {
+            for (LatencyPhase phase : LatencyPhase.values())
+            {
+                if (isMeasured(phase))
+                {
+                    jsonObject.put(phase.toString() + "_us", get(phase));
+                }
+            }
+        }
+        catch (JSONException e)
+        {
+            Timber.e(e, "Exception converting to JSON object ProbeTimings");
+        }
+
+        return jsonObject;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+
+        for (LatencyPhase phase : LatencyPhase.values())
+        {
+            if (isMeasured(phase))
+            {
+                if (sb.length() > 0)
+                    sb.append(", ");
+
+                sb.append(String.format("%s: %d us", phase, get(phase)));
+            }
+        }
+
+        return sb.toString();
+    }
+
+    @Override
+    public int describeContents() { return 0; }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags)
+    {
+        dest.writeLongArray(this.phases);
+    }
+
+    private ProbeTimings(Parcel in)
+    {
+        this();
+        in.readLongArray(this.phases);
+    }
+
+    public static final Creator<ProbeTimings> CREATOR = new Creator<ProbeTimings>()
+    {
+        public ProbeTimings createFromParcel(Parcel source) {return new ProbeTimings(source);}
+
+        public ProbeTimings[] newArray(int size) {return new ProbeTimings[size];}
+    };
+}
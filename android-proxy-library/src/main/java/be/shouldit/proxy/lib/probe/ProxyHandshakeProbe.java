@@ -0,0 +1,117 @@
+package be.shouldit.proxy.lib.probe;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ProtocolException;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import be.shouldit.proxy.lib.enums.HandshakeMethod;
+import timber.log.Timber;
+
+/**
+ * Checks that a proxy speaks HTTP with a minimal request ({@link HandshakeMethod}),
+ * judging its health from the status line alone: the rest of the answer is never read.
+ *
+ * Compared to the download of a web page, only a few hundred bytes are exchanged.
+ */
+public class ProxyHandshakeProbe
+{
+    private static final int MAX_STATUS_LINE_LENGTH = 256;
+    private static final int HTTPS_PORT = 443;
+
+    public static HandshakeResult probe(String host, int port, URI target, HandshakeMethod method, int timeout)
+    {
+        ProbeTimings timings = new ProbeTimings();
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeout);
+
+        Socket socket = new Socket();
+        try
+        {
+            int first = ProxyLatencyProbe.exchange(socket, host, port, buildRequest(target, method), timings, start, deadline);
+            if (first == -1)
+                throw new ProtocolException("Connection closed without answer");
+
+            String statusLine = readStatusLine(first, socket, deadline);
+            int statusCode = parseStatusCode(statusLine);
+            if (statusCode == -1)
+                throw new ProtocolException("Not an HTTP status line: " + statusLine);
+
+            return new HandshakeResult(method, timings, statusCode, statusLine, null);
+        }
+        catch (IOException e)
+        {
+            Timber.w("Handshake probe %s:%d: %s", host, port, e.toString());
+            return new HandshakeResult(method, timings, -1, null, e);
+        }
+        finally
+        {
+            ProxyLatencyProbe.close(socket, timings, start);
+        }
+    }
+
+    static String buildRequest(URI target, HandshakeMethod method)
+    {
+        if (method == HandshakeMethod.HEAD)
+            return ProxyLatencyProbe.buildHeadRequest(target);
+
+        String authority = target.getHost() + ":" + HTTPS_PORT;
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("CONNECT ").append(authority).append(" HTTP/1.1\r\n");
+        sb.append("Host: ").append(authority).append("\r\n");
+        sb.append("\r\n");
+        return sb.toString();
+    }
+
+    /**
+     * The socket read timeout is set to the time left before the deadline ahead of every read:
+     * the deadline bounds proxies sending the answer a byte at a time as well as proxies
+     * stalling in the middle of the status line
+     */
+    private static String readStatusLine(int first, Socket socket, long deadlineNanos) throws IOException
+    {
+        InputStream in = socket.getInputStream();
+        StringBuilder sb = new StringBuilder();
+        int c = first;
+
+        while (c != '\n' && c != -1 && sb.length() < MAX_STATUS_LINE_LENGTH)
+        {
+            if (c != '\r')
+                sb.append((char) c);
+
+            if (System.nanoTime() >= deadlineNanos)
+                throw new SocketTimeoutException("Status line not received before the deadline");
+
+            socket.setSoTimeout(ProxyLatencyProbe.remainingMillis(deadlineNanos));
+            c = in.read();
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * @return the status code of a "HTTP/1.x NNN reason" line, -1 if the line is not valid
+     */
+    static int parseStatusCode(String statusLine)
+    {
+        if (statusLine == null || !statusLine.startsWith("HTTP/"))
+            return -1;
+
+        String[] parts = statusLine.split(" ", 3);
+        if (parts.length < 2 || parts[1].length() != 3)
+            return -1;
+
+        try
+        {
+            return Integer.parseInt(parts[1]);
+        }
+        catch (NumberFormatException e)
+        {
+            return -1;
+        }
+    }
+}
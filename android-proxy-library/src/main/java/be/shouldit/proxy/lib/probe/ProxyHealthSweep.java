@@ -0,0 +1,294 @@
+package be.shouldit.proxy.lib.probe;
+
+import android.text.TextUtils;
+
+import java.io.File;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import be.shouldit.proxy.lib.constants.APLConstants;
+import be.shouldit.proxy.lib.reflection.android.ProxySetting;
+import be.shouldit.proxy.lib.utils.DnsCache;
+import be.shouldit.proxy.lib.utils.HttpAnswer;
+import be.shouldit.proxy.lib.utils.HttpBodyReader;
+import be.shouldit.proxy.lib.utils.ProxyUtils;
+import timber.log.Timber;
+
+/**
+ * Checks the reachability of a whole catalog of proxy configurations, independently
+ * of the Wi-Fi network the device is connected to.
+ *
+ * At most maxConcurrency targets are checked at the same time, and the whole sweep
+ * shares a single deadline: targets not checked before the deadline are not reported.
+ */
+public class ProxyHealthSweep
+{
+    public static final int DEFAULT_MAX_CONCURRENCY = 8;
+    private static final int PAC_MAX_LENGTH = 1024;
+    private static final HttpBodyReader.StopCondition PAC_FUNCTION_FOUND = HttpBodyReader.untilContains("FindProxyForURL");
+
+    private final int maxConcurrency;
+    private final int deadline;
+    private int probeTimeout;
+    private Listener listener;
+
+    private volatile boolean cancelled;
+    private volatile ExecutorService executor;
+
+    public interface Listener
+    {
+        void onResult(HealthSweepResult result);
+    }
+
+    /**
+     * @param maxConcurrency max number of targets checked at the same time
+     * @param deadline max duration of the whole sweep, in milliseconds
+     */
+    public ProxyHealthSweep(int maxConcurrency, int deadline)
+    {
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.deadline = deadline;
+        this.probeTimeout = APLConstants.DEFAULT_TIMEOUT;
+    }
+
+    /**
+     * Max duration of the check of a single target, in milliseconds
+     */
+    public void setProbeTimeout(int timeout)
+    {
+        probeTimeout = timeout;
+    }
+
+    /**
+     * Listener notified, from the thread that calls {@link #run(List)}, as soon as each target is checked
+     */
+    public void setListener(Listener sweepListener)
+    {
+        listener = sweepListener;
+    }
+
+    public boolean isCancelled()
+    {
+        return cancelled;
+    }
+
+    public void cancel()
+    {
+        cancelled = true;
+
+        ExecutorService runningExecutor = executor;
+        if (runningExecutor != null)
+        {
+            runningExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Checks all the targets, blocking the caller until all of them are checked,
+     * the deadline expires or the sweep is cancelled.
+     *
+     * @return the results of the checked targets, in completion order
+     */
+    public List<HealthSweepResult> run(List<HealthSweepTarget> targets)
+    {
+        List<HealthSweepResult> results = new ArrayList<HealthSweepResult>();
+
+        if (targets == null || targets.isEmpty() || cancelled)
+            return results;
+
+        final long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadline);
+        ExecutorService sweepExecutor = createExecutor(Math.min(maxConcurrency, targets.size()));
+        executor = sweepExecutor;
+        CompletionService<HealthSweepResult> completionService = new ExecutorCompletionService<HealthSweepResult>(sweepExecutor);
+
+        int submitted = 0;
+        for (final HealthSweepTarget target : targets)
+        {
+            completionService.submit(new Callable<HealthSweepResult>()
+            {
+                @Override
+                public HealthSweepResult call() throws Exception
+                {
+                    long remaining = TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+                    if (remaining <= 0)
+                        return null;
+
+                    return check(target, (int) Math.min(probeTimeout, remaining));
+                }
+            });
+
+            submitted++;
+        }
+
+        try
+        {
+            for (int i = 0; i < submitted && !cancelled; i++)
+            {
+                long remaining = deadlineNanos - System.nanoTime();
+                if (remaining <= 0)
+                    break;
+
+                Future<HealthSweepResult> future = completionService.poll(remaining, TimeUnit.NANOSECONDS);
+                if (future == null)
+                    break;
+
+                HealthSweepResult result = getResult(future);
+                if (result != null)
+                {
+                    results.add(result);
+
+                    if (listener != null)
+                    {
+                        listener.onResult(result);
+                    }
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Timber.w("Proxy health sweep interrupted");
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            sweepExecutor.shutdownNow();
+            executor = null;
+        }
+
+        if (results.size() < submitted)
+        {
+            Timber.w("Proxy health sweep: checked %d of %d targets", results.size(), submitted);
+        }
+
+        return results;
+    }
+
+    /**
+     * Checks a single target, blocking the caller
+     *
+     * @param timeout milliseconds
+     */
+    public static HealthSweepResult check(HealthSweepTarget target, int timeout)
+    {
+        if (target.getProxySetting() == ProxySetting.PAC)
+            return checkPac(target, timeout);
+        else
+            return checkProxy(target, timeout);
+    }
+
+    private static HealthSweepResult checkProxy(HealthSweepTarget target, int timeout)
+    {
+        if (TextUtils.isEmpty(target.getHost()) || target.getPort() <= 0 || target.getPort() > 65535)
+            return new HealthSweepResult(target, false, 0, "Invalid proxy address");
+
+        long start = System.nanoTime();
+
+        try
+        {
+            InetAddress address = DnsCache.getInstance().resolve(target.getHost());
+            int remaining = (int) (timeout - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            if (remaining <= 0)
+                return new HealthSweepResult(target, false, timeout, "Timeout resolving host");
+
+            TcpProbeResult probe = TcpConnectProbe.getInstance().connect(new InetSocketAddress(address, target.getPort()), remaining);
+            long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            if (probe.isReachable())
+                return new HealthSweepResult(target, true, latency, "");
+            else if (probe.isTimedOut())
+                return new HealthSweepResult(target, false, latency, "Connection timeout");
+            else
+                return new HealthSweepResult(target, false, latency, probe.getError().toString());
+        }
+        catch (UnknownHostException e)
+        {
+            return new HealthSweepResult(target, false, 0, "Unknown host");
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private static HealthSweepResult checkPac(HealthSweepTarget target, int timeout)
+    {
+        URI uri = target.getPacUri();
+        if (uri == null || uri.getScheme() == null)
+            return new HealthSweepResult(target, false, 0, "Invalid PAC URI");
+
+        String scheme = uri.getScheme().toLowerCase();
+        if (scheme.equals("file"))
+        {
+            File pacFile = new File(uri.getPath());
+            return new HealthSweepResult(target, pacFile.canRead(), 0, pacFile.canRead() ? "" : "PAC file not readable");
+        }
+        else if (!scheme.equals("http") && !scheme.equals("https"))
+        {
+            return new HealthSweepResult(target, false, 0, "Unsupported PAC URI scheme: " + scheme);
+        }
+
+        long start = System.nanoTime();
+
+        try
+        {
+            HttpAnswer answer = ProxyUtils.getHttpAnswerURI(uri, Proxy.NO_PROXY, PAC_MAX_LENGTH, timeout, PAC_FUNCTION_FOUND);
+            long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            if (answer.getStatus() == HttpURLConnection.HTTP_OK)
+                return new HealthSweepResult(target, true, latency, "");
+            else
+                return new HealthSweepResult(target, false, latency, "HTTP status: " + answer.getStatus());
+        }
+        catch (Exception e)
+        {
+            long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            return new HealthSweepResult(target, false, latency, e.toString());
+        }
+    }
+
+    private HealthSweepResult getResult(Future<HealthSweepResult> future) throws InterruptedException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (ExecutionException e)
+        {
+            Timber.e(e.getCause(), "Exception during proxy health check");
+            return null;
+        }
+    }
+
+    private static ExecutorService createExecutor(int threads)
+    {
+        return Executors.newFixedThreadPool(threads, new ThreadFactory()
+        {
+            private final AtomicInteger count = new AtomicInteger(1);
+
+            @Override
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable, "APL-HealthSweep-" + count.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+}
@@ -0,0 +1,179 @@
+package be.shouldit.proxy.lib.probe;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.util.concurrent.TimeUnit;
+
+import be.shouldit.proxy.lib.enums.LatencyPhase;
+import be.shouldit.proxy.lib.utils.DnsCache;
+import timber.log.Timber;
+
+/**
+ * Measures the {@link LatencyPhase}s of a plain HTTP request through a proxy:
+ * resolution of the proxy host, TCP connect, first byte of the proxy's answer to a HEAD request.
+ *
+ * The probe stops at the first failed phase: only the completed phases are measured.
+ */
+public class ProxyLatencyProbe
+{
+    /**
+     * Measures only the resolution of the proxy host and the TCP connect, with the non-blocking {@link TcpConnectProbe}:
+     * nothing is sent to the proxy
+     */
+    public static ProbeTimings measureConnect(String host, int port, int timeout)
+    {
+        ProbeTimings timings = new ProbeTimings();
+        long start = System.nanoTime();
+
+        try
+        {
+            InetAddress address = DnsCache.getInstance().resolve(host);
+            timings.set(LatencyPhase.DNS, elapsedMicros(start));
+
+            TcpProbeResult result = TcpConnectProbe.getInstance().connect(new InetSocketAddress(address, port), remainingMillis(start + TimeUnit.MILLISECONDS.toNanos(timeout)));
+            if (result.isReachable())
+            {
+                timings.set(LatencyPhase.CONNECT, result.getConnectTimeMicros());
+                timings.set(LatencyPhase.TOTAL, elapsedMicros(start));
+            }
+            else
+            {
+                Timber.w("Latency probe: %s", result);
+            }
+        }
+        catch (UnknownHostException e)
+        {
+            Timber.w("Latency probe: unknown host %s", host);
+        }
+        catch (InterruptedException e)
+        {
+            Timber.w("Latency probe interrupted: %s:%d", host, port);
+            Thread.currentThread().interrupt();
+        }
+
+        return timings;
+    }
+
+    /**
+     * Measures all the phases, sending a HEAD request for the target to the proxy.
+     * The calling thread is blocked until the first byte of the answer or the timeout.
+     */
+    public static ProbeTimings measure(String host, int port, URI target, int timeout)
+    {
+        ProbeTimings timings = new ProbeTimings();
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeout);
+
+        Socket socket = new Socket();
+        try
+        {
+            exchange(socket, host, port, target != null ? buildHeadRequest(target) : null, timings, start, deadline);
+        }
+        catch (UnknownHostException e)
+        {
+            Timber.w("Latency probe: unknown host %s", host);
+        }
+        catch (IOException e)
+        {
+            Timber.w("Latency probe %s:%d: %s", host, port, e.toString());
+        }
+        finally
+        {
+            close(socket, timings, start);
+        }
+
+        return timings;
+    }
+
+    /**
+     * Resolves the proxy host, connects the socket and sends the request, timing every phase up to
+     * the first byte of the answer. The socket is left open, positioned after the first byte.
+     *
+     * @param request null to stop after the connect
+     * @return the first byte of the answer, -1 if the proxy closed the connection or no request was sent
+     */
+    static int exchange(Socket socket, String host, int port, String request, ProbeTimings timings, long start, long deadline) throws IOException
+    {
+        InetAddress address = DnsCache.getInstance().resolve(host);
+        timings.set(LatencyPhase.DNS, elapsedMicros(start));
+
+        long connectStart = System.nanoTime();
+        socket.connect(new InetSocketAddress(address, port), remainingMillis(deadline));
+        timings.set(LatencyPhase.CONNECT, elapsedMicros(connectStart));
+
+        if (request == null)
+            return -1;
+
+        long requestStart = System.nanoTime();
+        socket.setSoTimeout(remainingMillis(deadline));
+
+        OutputStream out = socket.getOutputStream();
+        out.write(request.getBytes("US-ASCII"));
+        out.flush();
+
+        // The write may have consumed part of the budget
+        socket.setSoTimeout(remainingMillis(deadline));
+
+        InputStream in = socket.getInputStream();
+        int first = in.read();
+        if (first != -1)
+        {
+            timings.set(LatencyPhase.FIRST_BYTE, elapsedMicros(requestStart));
+        }
+
+        return first;
+    }
+
+    /**
+     * Closes the socket of an {@link #exchange}, completing the TOTAL phase if the proxy has been reached
+     */
+    static void close(Socket socket, ProbeTimings timings, long start)
+    {
+        if (timings.isMeasured(LatencyPhase.CONNECT))
+        {
+            timings.set(LatencyPhase.TOTAL, elapsedMicros(start));
+        }
+
+        try
+        {
+            socket.close();
+        }
+        catch (IOException e)
+        {
+            Timber.w(e, "Exception closing probe socket");
+        }
+    }
+
+    static String buildHeadRequest(URI target)
+    {
+        String path = target.getRawPath();
+        if (path == null || path.length() == 0)
+            path = "/";
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("HEAD ").append(target.getScheme()).append("://").append(target.getRawAuthority()).append(path).append(" HTTP/1.1\r\n");
+        sb.append("Host: ").append(target.getRawAuthority()).append("\r\n");
+        sb.append("Connection: close\r\n");
+        sb.append("\r\n");
+        return sb.toString();
+    }
+
+    private static long elapsedMicros(long startNanos)
+    {
+        return TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * @return the time left before the deadline, at least 1 ms since a timeout of 0 means infinite
+     */
+    static int remainingMillis(long deadlineNanos)
+    {
+        return (int) Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime()));
+    }
+}
@@ -0,0 +1,210 @@
+package be.shouldit.proxy.lib.probe;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import be.shouldit.proxy.lib.enums.LatencyPhase;
+import timber.log.Timber;
+
+/**
+ * Latency histograms of every {@link LatencyPhase} of a single proxy, accumulated
+ * over all the probes done since the process started.
+ *
+ * Failed probes are only counted, so that a dead proxy doesn't look like a slow one.
+ * The statistics of the {@link #MAX_PROXIES} most recently probed proxies are kept.
+ */
+public class ProxyLatencyStats implements Parcelable
+{
+    public static final int MAX_PROXIES = 64;
+
+    private static final Map<String, ProxyLatencyStats> registry = new LinkedHashMap<String, ProxyLatencyStats>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ProxyLatencyStats> eldest)
+        {
+            return size() > MAX_PROXIES;
+        }
+    };
+
+    private final String proxy;
+    private final LatencyHistogram[] histograms;
+    private long failures;
+
+    /**
+     * Statistics of the proxy host:port, created on first use
+     */
+    public static ProxyLatencyStats forProxy(String host, int port)
+    {
+        String key = getKey(host, port);
+
+        synchronized (registry)
+        {
+            ProxyLatencyStats stats = registry.get(key);
+            if (stats == null)
+            {
+                stats = new ProxyLatencyStats(key);
+                registry.put(key, stats);
+            }
+
+            return stats;
+        }
+    }
+
+    /**
+     * Statistics of all the probed proxies, keyed by host:port
+     */
+    public static Map<String, ProxyLatencyStats> getAll()
+    {
+        synchronized (registry)
+        {
+            return new HashMap<String, ProxyLatencyStats>(registry);
+        }
+    }
+
+    private static String getKey(String host, int port)
+    {
+        return String.format("%s:%d", host != null ? host.toLowerCase() : "", port);
+    }
+
+    private ProxyLatencyStats(String proxyKey)
+    {
+        proxy = proxyKey;
+        histograms = new LatencyHistogram[LatencyPhase.values().length];
+
+        for (int i = 0; i < histograms.length; i++)
+        {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    private ProxyLatencyStats(ProxyLatencyStats source)
+    {
+        proxy = source.proxy;
+        failures = source.getFailures();
+        histograms = new LatencyHistogram[source.histograms.length];
+
+        for (int i = 0; i < histograms.length; i++)
+        {
+            histograms[i] = source.histograms[i].copy();
+        }
+    }
+
+    /**
+     * @return a copy of the current statistics, not updated by the following probes
+     */
+    public ProxyLatencyStats snapshot()
+    {
+        return new ProxyLatencyStats(this);
+    }
+
+    public String getProxy()
+    {
+        return proxy;
+    }
+
+    /**
+     * Adds the measured phases of a successful probe
+     */
+    public void record(ProbeTimings timings)
+    {
+        for (LatencyPhase phase : LatencyPhase.values())
+        {
+            if (timings.isMeasured(phase))
+            {
+                histograms[phase.ordinal()].record(timings.get(phase));
+            }
+        }
+    }
+
+    public synchronized void recordFailure()
+    {
+        failures++;
+    }
+
+    public synchronized long getFailures()
+    {
+        return failures;
+    }
+
+    public LatencyHistogram getHistogram(LatencyPhase phase)
+    {
+        return histograms[phase.ordinal()];
+    }
+
+    /**
+     * @param quantile between 0 and 1
+     * @return microseconds, 0 if the phase has never been measured
+     */
+    public long getPercentile(LatencyPhase phase, double quantile)
+    {
+        return histograms[phase.ordinal()].getPercentile(quantile);
+    }
+
+    public JSONObject toJSON()
+    {
+        JSONObject jsonObject = new JSONObject();
+
+        try
+        {
+            jsonObject.put("proxy", proxy);
+            jsonObject.put("failures", getFailures());
+
+            for (LatencyPhase phase : LatencyPhase.values())
+            {
+                jsonObject.put(phase.toString(), histograms[phase.ordinal()].toJSON());
+            }
+        }
+        catch (JSONException e)
+        {
+            Timber.e(e, "Exception converting to JSON object ProxyLatencyStats");
+        }
+
+        return jsonObject;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%s (failures: %d)", proxy, getFailures()));
+
+        for (LatencyPhase phase : LatencyPhase.values())
+        {
+            sb.append(String.format(" %s [%s]", phase, histograms[phase.ordinal()]));
+        }
+
+        return sb.toString();
+    }
+
+    @Override
+    public int describeContents() { return 0; }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags)
+    {
+        dest.writeString(this.proxy);
+        dest.writeLong(getFailures());
+        dest.writeTypedArray(this.histograms, flags);
+    }
+
+    private ProxyLatencyStats(Parcel in)
+    {
+        this.proxy = in.readString();
+        this.failures = in.readLong();
+        this.histograms = in.createTypedArray(LatencyHistogram.CREATOR);
+    }
+
+    public static final Creator<ProxyLatencyStats> CREATOR = new Creator<ProxyLatencyStats>()
+    {
+        public ProxyLatencyStats createFromParcel(Parcel source) {return new ProxyLatencyStats(source);}
+
+        public ProxyLatencyStats[] newArray(int size) {return new ProxyLatencyStats[size];}
+    };
+}
@@ -0,0 +1,367 @@
+package be.shouldit.proxy.lib.probe;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import timber.log.Timber;
+
+/**
+ * Checks if a TCP endpoint accepts connections, without forking any process.
+ *
+ * All the probes are multiplexed on a single non-blocking {@link Selector}, served by
+ * one background thread: hundreds of probes can be in flight at the same time.
+ */
+public class TcpConnectProbe
+{
+    private static TcpConnectProbe instance;
+
+    private final ConcurrentLinkedQueue<PendingProbe> newProbes;
+    private final PriorityQueue<PendingProbe> deadlines;
+    private volatile Selector selector;
+    private Thread selectorThread;
+    private volatile boolean running;
+
+    public static synchronized TcpConnectProbe getInstance()
+    {
+        if (instance == null)
+        {
+            instance = new TcpConnectProbe();
+        }
+
+        return instance;
+    }
+
+    public TcpConnectProbe()
+    {
+        newProbes = new ConcurrentLinkedQueue<PendingProbe>();
+        deadlines = new PriorityQueue<PendingProbe>(16, new Comparator<PendingProbe>()
+        {
+            @Override
+            public int compare(PendingProbe lhs, PendingProbe rhs)
+            {
+                return lhs.deadline < rhs.deadline ? -1 : (lhs.deadline == rhs.deadline ? 0 : 1);
+            }
+        });
+    }
+
+    /**
+     * Starts a connect probe toward the given address. The returned future
+     * is always completed within the given timeout.
+     *
+     * @param address resolved address of the endpoint
+     * @param timeout milliseconds
+     */
+    public Future<TcpProbeResult> probe(InetSocketAddress address, int timeout)
+    {
+        PendingProbe probe = new PendingProbe(address, timeout);
+
+        if (address.isUnresolved())
+        {
+            probe.complete(false, new UnknownHostException(address.getHostName()));
+            return probe;
+        }
+
+        try
+        {
+            Selector activeSelector = start();
+            newProbes.add(probe);
+            activeSelector.wakeup();
+        }
+        catch (IOException e)
+        {
+            Timber.e(e, "Cannot open the selector for TCP probes");
+            probe.complete(false, e);
+        }
+
+        return probe;
+    }
+
+    /**
+     * Blocking version of {@link #probe(InetSocketAddress, int)}
+     */
+    public TcpProbeResult connect(InetSocketAddress address, int timeout) throws InterruptedException
+    {
+        Future<TcpProbeResult> future = probe(address, timeout);
+
+        try
+        {
+            // The selector thread always completes the probe at its deadline, this is just a safety net
+            return future.get(timeout + 1000, TimeUnit.MILLISECONDS);
+        }
+        catch (ExecutionException e)
+        {
+            return new TcpProbeResult(address, false, 0, e);
+        }
+        catch (TimeoutException e)
+        {
+            future.cancel(true);
+            return new TcpProbeResult(address, false, TimeUnit.MILLISECONDS.toMicros(timeout), null);
+        }
+    }
+
+    /**
+     * Stops the selector thread, failing all the probes in flight
+     */
+    public synchronized void shutdown()
+    {
+        running = false;
+
+        if (selector != null)
+        {
+            selector.wakeup();
+        }
+    }
+
+    private synchronized Selector start() throws IOException
+    {
+        if (!running)
+        {
+            selector = Selector.open();
+            running = true;
+
+            final Selector loopSelector = selector;
+            selectorThread = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    selectorLoop(loopSelector);
+                }
+            }, "APL-TcpProbe");
+            selectorThread.setDaemon(true);
+            selectorThread.start();
+        }
+
+        return selector;
+    }
+
+    private void selectorLoop(Selector loopSelector)
+    {
+        while (running && loopSelector == selector)
+        {
+            try
+            {
+                registerNewProbes(loopSelector);
+
+                long now = System.nanoTime();
+                expireProbes(now);
+
+                PendingProbe next = deadlines.peek();
+                if (next == null)
+                {
+                    loopSelector.select();
+                }
+                else
+                {
+                    long waitMillis = TimeUnit.NANOSECONDS.toMillis(next.deadline - now) + 1;
+                    loopSelector.select(waitMillis);
+                }
+
+                processSelectedKeys(loopSelector);
+            }
+            catch (Exception e)
+            {
+                Timber.e(e, "Exception on TCP probe selector loop");
+            }
+        }
+
+        // Shutdown: fail everything still pending
+        PendingProbe probe;
+        while ((probe = newProbes.poll()) != null)
+        {
+            probe.complete(false, new IOException("TCP probe shutdown"));
+        }
+
+        while ((probe = deadlines.poll()) != null)
+        {
+            probe.complete(false, new IOException("TCP probe shutdown"));
+        }
+
+        try
+        {
+            loopSelector.close();
+        }
+        catch (IOException e)
+        {
+            Timber.w(e, "Exception closing TCP probe selector");
+        }
+    }
+
+    private void registerNewProbes(Selector loopSelector)
+    {
+        PendingProbe probe;
+        while ((probe = newProbes.poll()) != null)
+        {
+            if (probe.isDone())
+                continue;
+
+            try
+            {
+                SocketChannel channel = SocketChannel.open();
+                probe.channel = channel;
+                channel.configureBlocking(false);
+
+                probe.startNanos = System.nanoTime();
+                if (channel.connect(probe.address))
+                {
+                    probe.complete(true, null);
+                }
+                else
+                {
+                    channel.register(loopSelector, SelectionKey.OP_CONNECT, probe);
+                    deadlines.add(probe);
+                }
+            }
+            catch (IOException e)
+            {
+                probe.complete(false, e);
+            }
+            catch (RuntimeException e)
+            {
+                // e.g. UnresolvedAddressException, UnsupportedAddressTypeException
+                probe.complete(false, e);
+            }
+        }
+    }
+
+    private void expireProbes(long now)
+    {
+        PendingProbe probe = deadlines.peek();
+        while (probe != null && (probe.isDone() || probe.deadline - now <= 0))
+        {
+            deadlines.poll();
+            probe.complete(false, null);
+            probe = deadlines.peek();
+        }
+    }
+
+    private void processSelectedKeys(Selector loopSelector)
+    {
+        Iterator<SelectionKey> iterator = loopSelector.selectedKeys().iterator();
+        while (iterator.hasNext())
+        {
+            SelectionKey key = iterator.next();
+            iterator.remove();
+
+            PendingProbe probe = (PendingProbe) key.attachment();
+
+            try
+            {
+                if (key.isValid() && key.isConnectable())
+                {
+                    SocketChannel channel = (SocketChannel) key.channel();
+                    if (channel.finishConnect())
+                    {
+                        probe.complete(true, null);
+                    }
+                }
+            }
+            catch (IOException e)
+            {
+                probe.complete(false, e);
+            }
+            catch (CancelledKeyException e)
+            {
+                probe.complete(false, null);
+            }
+        }
+    }
+
+    private static class PendingProbe implements Future<TcpProbeResult>
+    {
+        private final InetSocketAddress address;
+        private final long deadline;
+        private final CountDownLatch latch;
+
+        private volatile SocketChannel channel;
+        private volatile long startNanos;
+        private volatile TcpProbeResult result;
+        private volatile boolean cancelled;
+
+        PendingProbe(InetSocketAddress socketAddress, int timeout)
+        {
+            address = socketAddress;
+            startNanos = System.nanoTime();
+            deadline = startNanos + TimeUnit.MILLISECONDS.toNanos(timeout);
+            latch = new CountDownLatch(1);
+        }
+
+        synchronized boolean complete(boolean reachable, Exception error)
+        {
+            if (result != null)
+                return false;
+
+            long elapsedMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+            result = new TcpProbeResult(address, reachable, elapsedMicros, error);
+
+            if (channel != null)
+            {
+                try
+                {
+                    channel.close();
+                }
+                catch (IOException e)
+                {
+                    Timber.w(e, "Exception closing probe channel");
+                }
+            }
+
+            latch.countDown();
+            return true;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning)
+        {
+            if (complete(false, null))
+            {
+                cancelled = true;
+                return true;
+            }
+
+            return false;
+        }
+
+        @Override
+        public boolean isCancelled()
+        {
+            return cancelled;
+        }
+
+        @Override
+        public boolean isDone()
+        {
+            return result != null;
+        }
+
+        @Override
+        public TcpProbeResult get() throws InterruptedException, ExecutionException
+        {
+            latch.await();
+            return result;
+        }
+
+        @Override
+        public TcpProbeResult get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException
+        {
+            if (!latch.await(timeout, unit))
+                throw new TimeoutException();
+
+            return result;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package be.shouldit.proxy.lib.probe;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Outcome of a single TCP connect probe
+ */
+public class TcpProbeResult
+{
+    private final InetSocketAddress address;
+    private final boolean reachable;
+    private final long connectTimeMicros;
+    private final Exception error;
+
+    TcpProbeResult(InetSocketAddress address, boolean reachable, long connectTimeMicros, Exception error)
+    {
+        this.address = address;
+        this.reachable = reachable;
+        this.connectTimeMicros = connectTimeMicros;
+        this.error = error;
+    }
+
+    public InetSocketAddress getAddress()
+    {
+        return address;
+    }
+
+    public boolean isReachable()
+    {
+        return reachable;
+    }
+
+    /**
+     * Time spent to complete the TCP handshake (or to fail it), in microseconds
+     */
+    public long getConnectTimeMicros()
+    {
+        return connectTimeMicros;
+    }
+
+    /**
+     * Cause of the failure, null if the probe succeeded or if it timed out
+     */
+    public Exception getError()
+    {
+        return error;
+    }
+
+    public boolean isTimedOut()
+    {
+        return !reachable && error == null;
+    }
+
+    @Override
+    public String toString()
+    {
+        if (reachable)
+            return String.format("%s reachable in %d us", address, connectTimeMicros);
+        else if (error != null)
+            return String.format("%s not reachable after %d us (%s)", address, connectTimeMicros, error.toString());
+        else
+            return String.format("%s not reachable: timeout after %d us", address, connectTimeMicros);
+    }
+}
@@ -0,0 +1,94 @@
+package be.shouldit.proxy.lib.reflection;
+
+import android.net.Uri;
+import android.net.wifi.WifiConfiguration;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+
+import be.shouldit.proxy.lib.WiFiApConfig;
+import be.shouldit.proxy.lib.reflection.android.ProxySetting;
+
+/**
+ * SDK 20+: the proxy is kept in WifiConfiguration.mIpConfiguration, as IpConfiguration.proxySettings
+ * and IpConfiguration.httpProxy (a ProxyInfo)
+ */
+class IpConfigurationProxyAccessor extends ProxyAccessor
+{
+    private final Constructor copyConstructor;
+    private final Field ipConfigurationField;
+    private final Field proxySettingsField;
+    private final Object[] proxySettingsValues;
+    private final Field httpProxyField;
+    private final Constructor staticProxyConstructor;
+    private final Constructor pacProxyConstructor;
+
+    IpConfigurationProxyAccessor() throws Exception
+    {
+        copyConstructor = WifiConfiguration.class.getConstructor(WifiConfiguration.class);
+        ipConfigurationField = ReflectionUtils.getDeclaredField(WifiConfiguration.class, "mIpConfiguration");
+
+        Class<?> ipConfigurationClass = ipConfigurationField.getType();
+        proxySettingsField = ReflectionUtils.getField(ipConfigurationClass, "proxySettings");
+        proxySettingsValues = proxySettingsField.getType().getEnumConstants();
+        httpProxyField = ReflectionUtils.getField(ipConfigurationClass, "httpProxy");
+
+        Class<?> proxyInfoClass = httpProxyField.getType();
+        staticProxyConstructor = proxyInfoClass.getConstructor(String.class, int.class, String.class);
+        pacProxyConstructor = proxyInfoClass.getConstructor(Uri.class);
+
+        hostField = findDeclaredField(proxyInfoClass, "mHost");
+        portField = findDeclaredField(proxyInfoClass, "mPort");
+        exclusionListField = findDeclaredField(proxyInfoClass, "mExclusionList");
+        pacFileUrlField = findDeclaredField(proxyInfoClass, "mPacFileUrl");
+    }
+
+    @Override
+    public Object getProxySetting(WifiConfiguration wifiConf) throws Exception
+    {
+        Object mIpConfiguration = ipConfigurationField.get(wifiConf);
+        return mIpConfiguration != null ? proxySettingsField.get(mIpConfiguration) : null;
+    }
+
+    @Override
+    public Object getHttpProxy(WifiConfiguration wifiConf) throws Exception
+    {
+        Object mIpConfiguration = ipConfigurationField.get(wifiConf);
+        return mIpConfiguration != null ? httpProxyField.get(mIpConfiguration) : null;
+    }
+
+    @Override
+    public WifiConfiguration writeProxy(WiFiApConfig wiFiApConfig, WifiConfiguration selectedConfiguration) throws Exception
+    {
+        WifiConfiguration newConf = (WifiConfiguration) copyConstructor.newInstance(selectedConfiguration);
+
+        Object mIpConfiguration = ipConfigurationField.get(newConf);
+        if (mIpConfiguration == null)
+            throw new Exception("Cannot find mIpConfiguration variable");
+
+        ProxySetting setting = wiFiApConfig.getProxySetting();
+        proxySettingsField.set(mIpConfiguration, proxySettingsValues[setting.ordinal()]);
+
+        if (((Enum) proxySettingsField.get(mIpConfiguration)).ordinal() != setting.ordinal())
+            throw new Exception("Cannot set proxySettings variable");
+
+        Object proxyInfo = null;
+
+        if (setting == ProxySetting.NONE || setting == ProxySetting.UNASSIGNED || !wiFiApConfig.isValidProxyConfiguration())
+        {
+            proxyInfo = staticProxyConstructor.newInstance(null, 0, null);
+        }
+        else if (setting == ProxySetting.STATIC)
+        {
+            proxyInfo = staticProxyConstructor.newInstance(wiFiApConfig.getProxyHostString(), wiFiApConfig.getProxyPort(), wiFiApConfig.getProxyExclusionList());
+        }
+        else if (setting == ProxySetting.PAC)
+        {
+            proxyInfo = pacProxyConstructor.newInstance(wiFiApConfig.getPacFileUri());
+        }
+
+        httpProxyField.set(mIpConfiguration, proxyInfo);
+
+        return newConf;
+    }
+}
@@ -0,0 +1,85 @@
+package be.shouldit.proxy.lib.reflection;
+
+import android.net.wifi.WifiConfiguration;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+
+import be.shouldit.proxy.lib.WiFiApConfig;
+import be.shouldit.proxy.lib.reflection.android.ProxySetting;
+
+/**
+ * Up to SDK 19: the proxy is kept in WifiConfiguration.proxySettings and
+ * WifiConfiguration.linkProperties.mHttpProxy (a ProxyProperties)
+ */
+class LinkPropertiesProxyAccessor extends ProxyAccessor
+{
+    private final Constructor copyConstructor;
+    private final Field proxySettingsField;
+    private final Object[] proxySettingsValues;
+    private final Field linkPropertiesField;
+    private final Field httpProxyField;
+    private final Constructor copyProxyConstructor;
+    private final Constructor staticProxyConstructor;
+
+    LinkPropertiesProxyAccessor() throws Exception
+    {
+        copyConstructor = WifiConfiguration.class.getConstructor(WifiConfiguration.class);
+        proxySettingsField = ReflectionUtils.getField(WifiConfiguration.class, "proxySettings");
+        proxySettingsValues = proxySettingsField.getType().getEnumConstants();
+        linkPropertiesField = ReflectionUtils.getField(WifiConfiguration.class, "linkProperties");
+        httpProxyField = ReflectionUtils.getDeclaredField(linkPropertiesField.getType(), "mHttpProxy");
+
+        Class<?> proxyPropertiesClass = httpProxyField.getType();
+        copyProxyConstructor = proxyPropertiesClass.getConstructor(proxyPropertiesClass);
+        staticProxyConstructor = proxyPropertiesClass.getConstructor(String.class, int.class, String.class);
+
+        hostField = findDeclaredField(proxyPropertiesClass, "mHost");
+        portField = findDeclaredField(proxyPropertiesClass, "mPort");
+        exclusionListField = findDeclaredField(proxyPropertiesClass, "mExclusionList");
+        pacFileUrlField = findDeclaredField(proxyPropertiesClass, "mPacFileUrl");
+    }
+
+    @Override
+    public Object getProxySetting(WifiConfiguration wifiConf) throws Exception
+    {
+        return proxySettingsField.get(wifiConf);
+    }
+
+    @Override
+    public Object getHttpProxy(WifiConfiguration wifiConf) throws Exception
+    {
+        Object linkProperties = linkPropertiesField.get(wifiConf);
+        return linkProperties != null ? httpProxyField.get(linkProperties) : null;
+    }
+
+    @Override
+    public WifiConfiguration writeProxy(WiFiApConfig wiFiApConfig, WifiConfiguration selectedConfiguration) throws Exception
+    {
+        WifiConfiguration newConf = (WifiConfiguration) copyConstructor.newInstance(selectedConfiguration);
+
+        ProxySetting setting = wiFiApConfig.getProxySetting();
+        proxySettingsField.set(newConf, proxySettingsValues[setting.ordinal()]);
+
+        if (((Enum) proxySettingsField.get(newConf)).ordinal() != setting.ordinal())
+            throw new Exception("Cannot set proxySettings variable");
+
+        Object linkProperties = linkPropertiesField.get(newConf);
+
+        if (setting == ProxySetting.NONE || setting == ProxySetting.UNASSIGNED)
+        {
+            httpProxyField.set(linkProperties, null);
+        }
+        else if (setting == ProxySetting.STATIC)
+        {
+            Integer port = wiFiApConfig.getProxyPort();
+
+            if (port == null)
+                httpProxyField.set(linkProperties, copyProxyConstructor.newInstance((Object) null));
+            else
+                httpProxyField.set(linkProperties, staticProxyConstructor.newInstance(wiFiApConfig.getProxyHostString(), port, wiFiApConfig.getProxyExclusionList()));
+        }
+
+        return newConf;
+    }
+}
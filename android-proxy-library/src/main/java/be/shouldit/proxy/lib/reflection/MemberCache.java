@@ -0,0 +1,157 @@
+package be.shouldit.proxy.lib.reflection;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per-class cache of the members looked up by {@link ReflectionUtils}.
+ *
+ * The arrays returned by getDeclaredFields(), getFields(), getMethods(), ... are copied by the
+ * runtime on every call: they are read once per class, and the members found are kept already
+ * accessible, so repeated lookups cost a map access.
+ */
+class MemberCache
+{
+    private static final Map<Class, ClassMembers> classes = new HashMap<Class, ClassMembers>();
+
+    static synchronized Field getDeclaredField(Class klass, String fieldName) throws Exception
+    {
+        ClassMembers members = getMembers(klass);
+
+        if (members.declaredFields == null)
+            members.declaredFields = indexFields(klass.getDeclaredFields());
+
+        Field f = members.declaredFields.get(fieldName);
+        if (f == null)
+            throw new Exception(fieldName + " field not found!");
+
+        if (!f.isAccessible())
+            f.setAccessible(true);
+
+        return f;
+    }
+
+    static synchronized Field getField(Class klass, String fieldName) throws Exception
+    {
+        ClassMembers members = getMembers(klass);
+
+        if (members.fields == null)
+            members.fields = indexFields(klass.getFields());
+
+        Field f = members.fields.get(fieldName);
+        if (f == null)
+            throw new Exception(fieldName + " field not found!");
+
+        return f;
+    }
+
+    static synchronized Method getMethod(Class klass, String methodName, Class[] knownParameters) throws Exception
+    {
+        ClassMembers members = getMembers(klass);
+        String key = getKey(methodName, knownParameters);
+
+        Method m = members.methods.get(key);
+        if (m == null)
+        {
+            if (members.methodsArray == null)
+                members.methodsArray = klass.getMethods();
+
+            if (knownParameters == null)
+                m = ReflectionUtils.getMethod(members.methodsArray, methodName);
+            else
+                m = ReflectionUtils.getMethod(members.methodsArray, methodName, knownParameters);
+
+            members.methods.put(key, m);
+        }
+
+        return m;
+    }
+
+    static synchronized Constructor getConstructor(Class klass, Class[] knownParameters) throws Exception
+    {
+        ClassMembers members = getMembers(klass);
+        String key = getKey("<init>", knownParameters);
+
+        Constructor c = members.constructors.get(key);
+        if (c == null)
+        {
+            c = ReflectionUtils.getConstructor(klass.getConstructors(), knownParameters);
+            members.constructors.put(key, c);
+        }
+
+        return c;
+    }
+
+    static synchronized Class getDeclaredClass(Class klass, String className) throws Exception
+    {
+        ClassMembers members = getMembers(klass);
+
+        Class c = members.declaredClasses.get(className);
+        if (c == null)
+        {
+            c = ReflectionUtils.getDeclaredClass(klass.getDeclaredClasses(), className);
+            members.declaredClasses.put(className, c);
+        }
+
+        return c;
+    }
+
+    static synchronized void clear()
+    {
+        classes.clear();
+    }
+
+    private static ClassMembers getMembers(Class klass)
+    {
+        ClassMembers members = classes.get(klass);
+        if (members == null)
+        {
+            members = new ClassMembers();
+            classes.put(klass, members);
+        }
+
+        return members;
+    }
+
+    /**
+     * Keeps the first field for every name, as the linear lookups of {@link ReflectionUtils} do
+     */
+    private static Map<String, Field> indexFields(Field[] fields)
+    {
+        Map<String, Field> index = new HashMap<String, Field>(fields.length * 2);
+        for (Field f : fields)
+        {
+            if (!index.containsKey(f.getName()))
+                index.put(f.getName(), f);
+        }
+
+        return index;
+    }
+
+    private static String getKey(String name, Class[] knownParameters)
+    {
+        if (knownParameters == null)
+            return name;
+
+        StringBuilder sb = new StringBuilder(name).append('(');
+        for (Class param : knownParameters)
+        {
+            sb.append(param.getName()).append(',');
+        }
+
+        return sb.append(')').toString();
+    }
+
+    private static class ClassMembers
+    {
+        private Map<String, Field> declaredFields;
+        private Map<String, Field> fields;
+        private Method[] methodsArray;
+        private final Map<String, Method> methods = new HashMap<String, Method>();
+        private final Map<String, Constructor> constructors = new HashMap<String, Constructor>();
+        private final Map<String, Class> declaredClasses = new HashMap<String, Class>();
+    }
+}
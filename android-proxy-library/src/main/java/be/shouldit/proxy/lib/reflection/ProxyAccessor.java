@@ -0,0 +1,163 @@
+package be.shouldit.proxy.lib.reflection;
+
+import android.net.Uri;
+import android.net.wifi.WifiConfiguration;
+
+import java.lang.reflect.Field;
+import java.security.InvalidParameterException;
+
+import be.shouldit.proxy.lib.WiFiApConfig;
+import be.shouldit.proxy.lib.reflection.android.ProxySetting;
+import timber.log.Timber;
+
+/**
+ * Reads and writes the hidden proxy fields of a {@link WifiConfiguration}.
+ *
+ * The layout of those fields depends on the SDK version: the matching implementation is chosen
+ * once, with {@link #create(int)}, and resolves all the members it needs up front, so reading the
+ * proxy of every configured network is only a handful of field reads.
+ */
+public abstract class ProxyAccessor
+{
+    // Members of the ProxyProperties / ProxyInfo class, null when resolved for every call
+    protected Field hostField;
+    protected Field portField;
+    protected Field exclusionListField;
+    protected Field pacFileUrlField;
+
+    /**
+     * @return the accessor for the SDK version, falling back to per-call reflection when the
+     * expected members cannot be resolved (i.e. on customized ROMs)
+     */
+    public static ProxyAccessor create(int sdkInt)
+    {
+        try
+        {
+            if (sdkInt >= 20)
+                return new IpConfigurationProxyAccessor();
+            else
+                return new LinkPropertiesProxyAccessor();
+        }
+        catch (Exception e)
+        {
+            Timber.e(e, "Cannot resolve the proxy members of WifiConfiguration for SDK %d", sdkInt);
+        }
+
+        return new ReflectiveProxyAccessor();
+    }
+
+    /**
+     * @return the ProxySettings enum value of the configuration
+     */
+    public abstract Object getProxySetting(WifiConfiguration wifiConf) throws Exception;
+
+    /**
+     * @return the ProxyProperties / ProxyInfo object of the configuration
+     */
+    public abstract Object getHttpProxy(WifiConfiguration wifiConf) throws Exception;
+
+    /**
+     * @return a copy of the selected configuration with the proxy of the given configuration
+     */
+    public abstract WifiConfiguration writeProxy(WiFiApConfig wiFiApConfig, WifiConfiguration selectedConfiguration) throws Exception;
+
+    /**
+     * @return the proxy configuration of the network, null if the ProxySettings value cannot be read
+     */
+    public WiFiApConfig readProxy(WifiConfiguration wifiConf) throws Exception
+    {
+        WiFiApConfig wiFiApConfig = null;
+        Object proxySetting = getProxySetting(wifiConf);
+
+        if (proxySetting != null)
+        {
+            int ordinal = ((Enum) proxySetting).ordinal();
+
+            if (ordinal == ProxySetting.NONE.ordinal() || ordinal == ProxySetting.UNASSIGNED.ordinal())
+            {
+                wiFiApConfig = new WiFiApConfig(wifiConf, ProxySetting.NONE, null, null, "", Uri.EMPTY);
+            }
+            else if (ordinal == ProxySetting.STATIC.ordinal())
+            {
+                Object mHttpProxy = getHttpProxy(wifiConf);
+
+                if (mHttpProxy != null)
+                {
+                    String mHost = (String) getHttpProxyField(mHttpProxy, hostField, "mHost").get(mHttpProxy);
+                    Integer mPort = (Integer) getHttpProxyField(mHttpProxy, portField, "mPort").get(mHttpProxy);
+                    String mExclusionList = (String) getHttpProxyField(mHttpProxy, exclusionListField, "mExclusionList").get(mHttpProxy);
+
+                    Timber.d("Read HTTP proxy configuration: '%s:%d' (el: '%s')", mHost, mPort, mExclusionList);
+
+                    wiFiApConfig = new WiFiApConfig(wifiConf, ProxySetting.STATIC, mHost, mPort, mExclusionList, Uri.EMPTY);
+                }
+            }
+            else if (ordinal == ProxySetting.PAC.ordinal())
+            {
+                Object mHttpProxy = getHttpProxy(wifiConf);
+
+                if (mHttpProxy != null)
+                {
+                    Uri mPacFileUrl = (Uri) getHttpProxyField(mHttpProxy, pacFileUrlField, "mPacFileUrl").get(mHttpProxy);
+
+                    Timber.d("Read PAC proxy configuration: '%s'", mPacFileUrl.toString());
+
+                    wiFiApConfig = new WiFiApConfig(wifiConf, ProxySetting.PAC, null, null, null, mPacFileUrl);
+                }
+            }
+            else
+            {
+                Timber.e(new InvalidParameterException(), "Not valid ProxySetting value: " + ordinal);
+            }
+        }
+
+        return wiFiApConfig;
+    }
+
+    private static Field getHttpProxyField(Object httpProxy, Field resolved, String fieldName) throws Exception
+    {
+        if (resolved != null && resolved.getDeclaringClass() == httpProxy.getClass())
+            return resolved;
+
+        return ReflectionUtils.getDeclaredField(httpProxy.getClass(), fieldName);
+    }
+
+    /**
+     * @return the declared field made accessible, null if the class doesn't declare it
+     */
+    protected static Field findDeclaredField(Class klass, String fieldName)
+    {
+        try
+        {
+            return ReflectionUtils.getDeclaredField(klass, fieldName);
+        }
+        catch (Exception e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Uses the members resolved by {@link ReflectionUtils} for every call
+     */
+    static class ReflectiveProxyAccessor extends ProxyAccessor
+    {
+        @Override
+        public Object getProxySetting(WifiConfiguration wifiConf) throws Exception
+        {
+            return ReflectionUtils.getProxySetting(wifiConf);
+        }
+
+        @Override
+        public Object getHttpProxy(WifiConfiguration wifiConf) throws Exception
+        {
+            return ReflectionUtils.getHttpProxy(wifiConf);
+        }
+
+        @Override
+        public WifiConfiguration writeProxy(WiFiApConfig wiFiApConfig, WifiConfiguration selectedConfiguration) throws Exception
+        {
+            return ReflectionUtils.setProxyFieldsOnWifiConfiguration(wiFiApConfig, selectedConfiguration);
+        }
+    }
+}
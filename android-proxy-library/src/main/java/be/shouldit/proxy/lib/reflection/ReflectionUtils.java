@@ -62,7 +62,7 @@ public class ReflectionUtils
         {
             Class[] knownParam = new Class[1];
             knownParam[0] = int.class;
-            Method internalConnect = getMethod(WifiManager.class.getMethods(), "connect", knownParam);
+            Method internalConnect = getMethod(WifiManager.class, "connect", knownParam);
             if (internalConnect != null)
             {
                 Class<?>[] paramsTypes = internalConnect.getParameterTypes();
@@ -149,8 +149,8 @@ public class ReflectionUtils
     {
         boolean internalSaveDone = false;
 
-        Method internalAsyncConnect = getMethod(WifiManager.class.getMethods(), "asyncConnect");
-        Method internalSaveNetwork = getMethod(WifiManager.class.getMethods(), "saveNetwork");
+        Method internalAsyncConnect = getMethod(WifiManager.class, "asyncConnect");
+        Method internalSaveNetwork = getMethod(WifiManager.class, "saveNetwork");
 
         if (internalAsyncConnect != null && internalSaveNetwork != null)
         {
@@ -182,8 +182,8 @@ public class ReflectionUtils
     {
         boolean internalSaveDone = false;
 
-        Method internalSave = getMethod(WifiManager.class.getMethods(), "save");
-        Method internalInitialize = getMethod(WifiManager.class.getMethods(), "initialize");
+        Method internalSave = getMethod(WifiManager.class, "save");
+        Method internalInitialize = getMethod(WifiManager.class, "initialize");
 
         if (internalInitialize != null && internalSave != null)
         {
@@ -219,7 +219,7 @@ public class ReflectionUtils
     {
         boolean internalSaveDone = false;
 
-            Method internalSave = getMethod(WifiManager.class.getMethods(), "save");
+            Method internalSave = getMethod(WifiManager.class, "save");
         if (internalSave != null)
         {
             try
@@ -248,7 +248,7 @@ public class ReflectionUtils
 
         try
         {
-            internalSaveNetwork = getMethod(WifiManager.class.getMethods(), "saveNetwork");
+            internalSaveNetwork = getMethod(WifiManager.class, "saveNetwork");
         }
         catch (Exception e)
         {
@@ -257,7 +257,7 @@ public class ReflectionUtils
 
         try
         {
-            internalSave = getMethod(WifiManager.class.getMethods(), "save");
+            internalSave = getMethod(WifiManager.class, "save");
         }
         catch (Exception e)
         {
@@ -286,6 +286,54 @@ public class ReflectionUtils
         return internalSaveDone;
     }
 
+    /**
+     * Cached lookup of the public constructor of the class with the known parameters
+     */
+    public static Constructor getConstructor(Class klass, Class[] knownParameters) throws Exception
+    {
+        return MemberCache.getConstructor(klass, knownParameters);
+    }
+
+    /**
+     * Cached lookup of the public method of the class, including the inherited ones
+     */
+    public static Method getMethod(Class klass, String methodName) throws Exception
+    {
+        return MemberCache.getMethod(klass, methodName, null);
+    }
+
+    /**
+     * Cached lookup of the public method of the class with the known parameters
+     */
+    public static Method getMethod(Class klass, String methodName, Class[] knownParameters) throws Exception
+    {
+        return MemberCache.getMethod(klass, methodName, knownParameters);
+    }
+
+    /**
+     * Cached lookup of the public field of the class, including the inherited ones
+     */
+    public static Field getField(Class klass, String fieldName) throws Exception
+    {
+        return MemberCache.getField(klass, fieldName);
+    }
+
+    /**
+     * Cached lookup of a field declared by the class, already made accessible
+     */
+    public static Field getDeclaredField(Class klass, String fieldName) throws Exception
+    {
+        return MemberCache.getDeclaredField(klass, fieldName);
+    }
+
+    /**
+     * Cached lookup of a class declared by the class
+     */
+    public static Class getDeclaredClass(Class klass, String className) throws Exception
+    {
+        return MemberCache.getDeclaredClass(klass, className);
+    }
+
     public static Constructor getConstructor(Constructor[] constructors, Class[] knownParameters) throws Exception
     {
         Constructor c = null;
@@ -537,14 +585,13 @@ public class ReflectionUtils
         Constructor wfconfconstr = WifiConfiguration.class.getConstructors()[1];
         WifiConfiguration newConf = (WifiConfiguration) wfconfconstr.newInstance(selectedConfiguration);
 
-        Field mIpConfigurationField = getField(newConf.getClass().getDeclaredFields(), "mIpConfiguration");
+        Field mIpConfigurationField = getDeclaredField(newConf.getClass(), "mIpConfiguration");
         if (mIpConfigurationField != null)
         {
-            mIpConfigurationField.setAccessible(true);
             Object mIpConfiguration = mIpConfigurationField.get(newConf);
             if (mIpConfiguration != null)
             {
-                Field proxySettingsField = getField(mIpConfiguration.getClass().getFields(), "proxySettings");
+                Field proxySettingsField = getField(mIpConfiguration.getClass(), "proxySettings");
                 proxySettingsField.set(mIpConfiguration, (Object) proxySettingsField.getType().getEnumConstants()[wiFiApConfig.getProxySetting().ordinal()]);
             }
         }
@@ -559,11 +606,10 @@ public class ReflectionUtils
 
         if (mIpConfigurationField != null)
         {
-            mIpConfigurationField.setAccessible(true);
             mIpConfiguration = mIpConfigurationField.get(newConf);
             if (mIpConfiguration != null)
             {
-                mHttpProxyField = getField(mIpConfiguration.getClass().getFields(), "httpProxy");
+                mHttpProxyField = getField(mIpConfiguration.getClass(), "httpProxy");
             }
         }
 
@@ -600,7 +646,7 @@ public class ReflectionUtils
         Constructor wfconfconstr = WifiConfiguration.class.getConstructors()[1];
         WifiConfiguration newConf = (WifiConfiguration) wfconfconstr.newInstance(selectedConfiguration);
 
-        Field proxySettingsField = newConf.getClass().getField("proxySettings");
+        Field proxySettingsField = getField(newConf.getClass(), "proxySettings");
         proxySettingsField.set(newConf, (Object) proxySettingsField.getType().getEnumConstants()[wiFiApConfig.getProxySetting().ordinal()]);
 
         Object proxySettings = ReflectionUtils.getProxySetting(newConf);
@@ -611,11 +657,10 @@ public class ReflectionUtils
         Object linkProperties = null;
         Field mHttpProxyField = null;
 
-        Field linkPropertiesField = newConf.getClass().getField("linkProperties");
+        Field linkPropertiesField = getField(newConf.getClass(), "linkProperties");
         linkProperties = linkPropertiesField.get(newConf);
 
-        mHttpProxyField = getField(linkProperties.getClass().getDeclaredFields(), "mHttpProxy");
-        mHttpProxyField.setAccessible(true);
+        mHttpProxyField = getDeclaredField(linkProperties.getClass(), "mHttpProxy");
 
         if (wiFiApConfig.getProxySetting() == ProxySetting.NONE || wiFiApConfig.getProxySetting() == ProxySetting.UNASSIGNED)
         {
@@ -671,8 +716,7 @@ public class ReflectionUtils
         {
             Object linkProperties = ReflectionUtils.getProxyInfo(wifiConf);
 
-            mHttpProxyField = getField(linkProperties.getClass().getDeclaredFields(), "mHttpProxy");
-            mHttpProxyField.setAccessible(true);
+            mHttpProxyField = getDeclaredField(linkProperties.getClass(), "mHttpProxy");
             httpProxy = mHttpProxyField.get(linkProperties);
         }
 
@@ -686,21 +730,20 @@ public class ReflectionUtils
 
         if (Build.VERSION.SDK_INT >= 20)
         {
-            Field mIpConfigurationField = getField(wifiConf.getClass().getDeclaredFields(), "mIpConfiguration");
+            Field mIpConfigurationField = getDeclaredField(wifiConf.getClass(), "mIpConfiguration");
             if (mIpConfigurationField != null)
             {
-                mIpConfigurationField.setAccessible(true);
                 Object mIpConfiguration = mIpConfigurationField.get(wifiConf);
                 if (mIpConfiguration != null)
                 {
-                    proxySettingsField = getField(mIpConfiguration.getClass().getFields(), "proxySettings");
+                    proxySettingsField = getField(mIpConfiguration.getClass(), "proxySettings");
                     proxySettings = proxySettingsField.get(mIpConfiguration);
                 }
             }
         }
         else
         {
-            proxySettingsField = getField(wifiConf.getClass().getFields(), "proxySettings");
+            proxySettingsField = getField(wifiConf.getClass(), "proxySettings");
             proxySettings = proxySettingsField.get(wifiConf);
         }
 
@@ -714,21 +757,20 @@ public class ReflectionUtils
 
         if (Build.VERSION.SDK_INT >= 20)
         {
-            Field mIpConfigurationField = getField(wifiConf.getClass().getDeclaredFields(), "mIpConfiguration");
+            Field mIpConfigurationField = getDeclaredField(wifiConf.getClass(), "mIpConfiguration");
             if (mIpConfigurationField != null)
             {
-                mIpConfigurationField.setAccessible(true);
                 Object mIpConfiguration = mIpConfigurationField.get(wifiConf);
                 if (mIpConfiguration != null)
                 {
-                    proxySettingsField = getField(mIpConfiguration.getClass().getFields(), "httpProxy");
+                    proxySettingsField = getField(mIpConfiguration.getClass(), "httpProxy");
                     proxySettings = proxySettingsField.get(mIpConfiguration);
                 }
             }
         }
         else
         {
-            proxySettingsField = getField(wifiConf.getClass().getFields(), "linkProperties");
+            proxySettingsField = getField(wifiConf.getClass(), "linkProperties");
             proxySettings = proxySettingsField.get(wifiConf);
         }
 
@@ -0,0 +1,424 @@
+package be.shouldit.proxy.lib.utils;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Locale;
+import java.util.Map;
+
+import timber.log.Timber;
+
+/**
+ * Pool of keep-alive TCP connections, keyed by next-hop endpoint (the proxy, or the
+ * origin server for direct connections).
+ *
+ * At most {@link #getMaxPerEndpoint()} connections, idle or in use, are open toward every endpoint:
+ * further requests wait for one of them to be given back. At most {@link #getMaxIdlePerEndpoint()}
+ * idle connections are kept, and each of them is evicted after {@link #getKeepAlive()} milliseconds
+ * of inactivity. Eviction is done lazily when the pool is used, so an idle pool never wakes up the device.
+ */
+public class ConnectionPool
+{
+    public static final int DEFAULT_MAX_PER_ENDPOINT = 4;
+    public static final int DEFAULT_MAX_IDLE_PER_ENDPOINT = 2;
+    public static final long DEFAULT_KEEP_ALIVE = 30 * 1000;  // 30 seconds
+
+    private static ConnectionPool instance;
+
+    private final Map<String, LinkedList<Connection>> idleConnections;
+    private final Map<String, Integer> openConnections;
+    private int maxPerEndpoint;
+    private int maxIdlePerEndpoint;
+    private long keepAlive;
+
+    public static synchronized ConnectionPool getInstance()
+    {
+        if (instance == null)
+        {
+            instance = new ConnectionPool(DEFAULT_MAX_PER_ENDPOINT, DEFAULT_MAX_IDLE_PER_ENDPOINT, DEFAULT_KEEP_ALIVE);
+        }
+
+        return instance;
+    }
+
+    /**
+     * @param max maximum number of connections open toward each endpoint
+     * @param maxIdle maximum number of idle connections kept for each endpoint
+     * @param keepAliveMillis time after which an idle connection is closed
+     */
+    public ConnectionPool(int max, int maxIdle, long keepAliveMillis)
+    {
+        idleConnections = new HashMap<String, LinkedList<Connection>>();
+        openConnections = new HashMap<String, Integer>();
+        maxPerEndpoint = max;
+        maxIdlePerEndpoint = Math.min(maxIdle, max);
+        keepAlive = keepAliveMillis;
+    }
+
+    public synchronized int getMaxPerEndpoint()
+    {
+        return maxPerEndpoint;
+    }
+
+    public synchronized int getMaxIdlePerEndpoint()
+    {
+        return maxIdlePerEndpoint;
+    }
+
+    public synchronized long getKeepAlive()
+    {
+        return keepAlive;
+    }
+
+    public synchronized void setLimits(int max, int maxIdle, long keepAliveMillis)
+    {
+        maxPerEndpoint = max;
+        maxIdlePerEndpoint = Math.min(maxIdle, max);
+        keepAlive = keepAliveMillis;
+        evictIdle(System.currentTimeMillis());
+        notifyAll();
+    }
+
+    /**
+     * Returns a healthy idle connection to the endpoint, or opens a new one.
+     * If {@link #getMaxPerEndpoint()} connections are already in use, waits for one of them to be given back.
+     *
+     * @param host name or address of the endpoint
+     * @param timeout connect and read timeout of the connection, in milliseconds
+     * @throws SocketTimeoutException if no connection became available within the timeout
+     */
+    public Connection get(String host, int port, int timeout) throws IOException
+    {
+        return get(host, port, timeout, true);
+    }
+
+    /**
+     * Opens a new connection to the endpoint, never reusing an idle one (i.e. to retry a failed reused connection).
+     * The {@link #getMaxPerEndpoint()} limit still applies.
+     */
+    public Connection connect(String host, int port, int timeout) throws IOException
+    {
+        return get(host, port, timeout, false);
+    }
+
+    private Connection get(String host, int port, int timeout, boolean reuse) throws IOException
+    {
+        String key = getKey(host, port);
+        long deadline = System.currentTimeMillis() + timeout;
+
+        Connection connection = acquire(key, reuse, deadline);
+        if (connection != null)
+        {
+            connection.socket.setSoTimeout(timeout);
+            connection.reused = true;
+            return connection;
+        }
+
+        // A slot has been reserved for the new connection: it is released by Connection.close()
+        Socket socket = new Socket();
+
+        try
+        {
+            int remaining = (int) Math.max(1, deadline - System.currentTimeMillis());
+            socket.connect(new InetSocketAddress(DnsCache.getInstance().resolve(host), port), remaining);
+            socket.setSoTimeout(timeout);
+            socket.setTcpNoDelay(true);
+            return new Connection(this, key, socket);
+        }
+        catch (IOException e)
+        {
+            closeQuietly(socket);
+            release(key);
+            throw e;
+        }
+    }
+
+    /**
+     * @return a healthy idle connection, or null if a slot for a new connection has been reserved
+     */
+    private synchronized Connection acquire(String key, boolean reuse, long deadline) throws IOException
+    {
+        while (true)
+        {
+            evictIdle(System.currentTimeMillis());
+
+            LinkedList<Connection> idle = idleConnections.get(key);
+
+            while (reuse && idle != null && !idle.isEmpty())
+            {
+                // Most recently used first: it's the one most likely still open on the other side
+                Connection connection = idle.removeFirst();
+                if (connection.isHealthy())
+                    return connection;
+
+                connection.close();
+            }
+
+            int open = getOpenCount(key);
+            if (open < maxPerEndpoint)
+            {
+                openConnections.put(key, open + 1);
+                return null;
+            }
+
+            if (idle != null && !idle.isEmpty())
+            {
+                // Not allowed to reuse: make room closing the least recently used idle connection
+                idle.removeLast().close();
+                continue;
+            }
+
+            long wait = deadline - System.currentTimeMillis();
+            if (wait <= 0)
+                throw new SocketTimeoutException("All the " + maxPerEndpoint + " connections to " + key + " are in use");
+
+            try
+            {
+                wait(wait);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new SocketTimeoutException("Interrupted waiting a connection to " + key);
+            }
+        }
+    }
+
+    private synchronized void release(String key)
+    {
+        int open = getOpenCount(key) - 1;
+        if (open > 0)
+            openConnections.put(key, open);
+        else
+            openConnections.remove(key);
+
+        notifyAll();
+    }
+
+    private int getOpenCount(String key)
+    {
+        Integer open = openConnections.get(key);
+        return open != null ? open : 0;
+    }
+
+    /**
+     * Gives back a connection whose last response has been completely read.
+     * The connection is closed if the endpoint already has enough idle connections.
+     */
+    public void recycle(Connection connection)
+    {
+        if (connection.closed)
+            return;
+
+        long now = System.currentTimeMillis();
+        boolean pooled = false;
+
+        synchronized (this)
+        {
+            evictIdle(now);
+
+            LinkedList<Connection> idle = idleConnections.get(connection.key);
+            if (idle == null)
+            {
+                idle = new LinkedList<Connection>();
+                idleConnections.put(connection.key, idle);
+            }
+
+            if (idle.size() < maxIdlePerEndpoint)
+            {
+                connection.idleSince = now;
+                idle.addFirst(connection);
+                pooled = true;
+                notifyAll();
+            }
+        }
+
+        if (!pooled)
+        {
+            connection.close();
+        }
+    }
+
+    public synchronized int getIdleCount(String host, int port)
+    {
+        LinkedList<Connection> idle = idleConnections.get(getKey(host, port));
+        return idle != null ? idle.size() : 0;
+    }
+
+    /**
+     * @return number of connections open toward the endpoint, idle or in use
+     */
+    public synchronized int getOpenCount(String host, int port)
+    {
+        return getOpenCount(getKey(host, port));
+    }
+
+    public synchronized int getIdleCount()
+    {
+        int count = 0;
+        for (LinkedList<Connection> idle : idleConnections.values())
+        {
+            count += idle.size();
+        }
+
+        return count;
+    }
+
+    /**
+     * Closes all the idle connections, i.e. when the network changes
+     */
+    public void evictAll()
+    {
+        LinkedList<Connection> evicted = new LinkedList<Connection>();
+
+        synchronized (this)
+        {
+            for (LinkedList<Connection> idle : idleConnections.values())
+            {
+                evicted.addAll(idle);
+            }
+
+            idleConnections.clear();
+        }
+
+        for (Connection connection : evicted)
+        {
+            connection.close();
+        }
+    }
+
+    private void evictIdle(long now)
+    {
+        Iterator<LinkedList<Connection>> endpoints = idleConnections.values().iterator();
+        while (endpoints.hasNext())
+        {
+            LinkedList<Connection> idle = endpoints.next();
+            Iterator<Connection> connections = idle.iterator();
+            int kept = 0;
+
+            while (connections.hasNext())
+            {
+                Connection connection = connections.next();
+                if (now - connection.idleSince >= keepAlive || kept >= maxIdlePerEndpoint)
+                {
+                    connections.remove();
+                    connection.close();
+                }
+                else
+                {
+                    kept++;
+                }
+            }
+
+            if (idle.isEmpty())
+            {
+                endpoints.remove();
+            }
+        }
+    }
+
+    private static String getKey(String host, int port)
+    {
+        return String.format(Locale.US, "%s:%d", host.toLowerCase(Locale.US), port);
+    }
+
+    private static void closeQuietly(Socket socket)
+    {
+        try
+        {
+            socket.close();
+        }
+        catch (IOException e)
+        {
+            Timber.w("Exception closing socket: %s", e.toString());
+        }
+    }
+
+    /**
+     * A pooled connection to an endpoint
+     */
+    public static class Connection
+    {
+        private final ConnectionPool pool;
+        private final String key;
+        private final Socket socket;
+        private final BufferedInputStream input;
+        private final OutputStream output;
+        private long idleSince;
+        private boolean reused;
+        private volatile boolean closed;
+
+        private Connection(ConnectionPool connectionPool, String endpointKey, Socket connectedSocket) throws IOException
+        {
+            pool = connectionPool;
+            key = endpointKey;
+            socket = connectedSocket;
+            input = new BufferedInputStream(socket.getInputStream());
+            output = socket.getOutputStream();
+        }
+
+        public String getEndpoint()
+        {
+            return key;
+        }
+
+        public InputStream getInputStream()
+        {
+            return input;
+        }
+
+        public OutputStream getOutputStream()
+        {
+            return output;
+        }
+
+        /**
+         * @return true if the connection has been taken from the idle connections
+         */
+        public boolean isReused()
+        {
+            return reused;
+        }
+
+        public void close()
+        {
+            synchronized (this)
+            {
+                if (closed)
+                    return;
+
+                closed = true;
+            }
+
+            closeQuietly(socket);
+            pool.release(key);
+        }
+
+        /**
+         * An idle connection is healthy if it is still open on this side and the other side
+         * hasn't sent anything unexpected. Nothing is read: a connection closed meanwhile by the
+         * other side is detected by the first request, see {@link KeepAliveHttpClient}.
+         */
+        private boolean isHealthy()
+        {
+            if (closed || socket.isClosed() || socket.isInputShutdown() || socket.isOutputShutdown())
+                return false;
+
+            try
+            {
+                return input.available() == 0;
+            }
+            catch (IOException e)
+            {
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,343 @@
+package be.shouldit.proxy.lib.utils;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import be.shouldit.proxy.lib.logging.TraceUtils;
+import timber.log.Timber;
+
+/**
+ * Cache of the host name resolutions done by the proxy checks.
+ *
+ * Resolved names are kept for {@link #DEFAULT_POSITIVE_TTL}, unknown hosts for
+ * {@link #DEFAULT_NEGATIVE_TTL}. Entries used when close to expiration are refreshed
+ * in background, so frequently checked proxies never wait for a slow resolver. A failed
+ * refresh keeps the previous address, which is then used until it expires.
+ * Hits and misses are counted in the {@link TraceUtils} counters.
+ */
+public class DnsCache
+{
+    public static final long DEFAULT_POSITIVE_TTL = 5 * 60 * 1000;  // 5 minutes
+    public static final long DEFAULT_NEGATIVE_TTL = 30 * 1000;      // 30 seconds
+    public static final int DEFAULT_MAX_ENTRIES = 128;
+
+    public static final String COUNTER_HIT = "dns_cache_hit";
+    public static final String COUNTER_NEGATIVE_HIT = "dns_cache_negative_hit";
+    public static final String COUNTER_MISS = "dns_cache_miss";
+    public static final String COUNTER_REFRESH = "dns_cache_refresh";
+
+    // Fraction of the TTL after which a used entry is refreshed in background
+    private static final double REFRESH_AHEAD = 0.75;
+    private static final int REFRESH_THREAD_KEEP_ALIVE = 30;  // seconds
+    private static final int MAX_BOUNDED_LOOKUPS = 4;
+
+    private static DnsCache instance;
+
+    private final Map<String, Entry> entries;
+    private final ThreadPoolExecutor refreshExecutor;
+    private final ThreadPoolExecutor lookupExecutor;
+    private long positiveTtl;
+    private long negativeTtl;
+
+    public static synchronized DnsCache getInstance()
+    {
+        if (instance == null)
+        {
+            instance = new DnsCache(DEFAULT_MAX_ENTRIES, DEFAULT_POSITIVE_TTL, DEFAULT_NEGATIVE_TTL);
+        }
+
+        return instance;
+    }
+
+    public DnsCache(final int maxEntries, long positiveTtlMillis, long negativeTtlMillis)
+    {
+        positiveTtl = positiveTtlMillis;
+        negativeTtl = negativeTtlMillis;
+
+        entries = new LinkedHashMap<String, Entry>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest)
+            {
+                return size() > maxEntries;
+            }
+        };
+
+        // No core threads: the refresh thread exists only while there's something to resolve
+        refreshExecutor = new ThreadPoolExecutor(0, 1, REFRESH_THREAD_KEEP_ALIVE, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory("APL-DnsRefresh"));
+
+        // Lookups abandoned by a bounded resolve keep their thread until the resolver answers: no queue, at most MAX_BOUNDED_LOOKUPS
+        lookupExecutor = new ThreadPoolExecutor(0, MAX_BOUNDED_LOOKUPS, REFRESH_THREAD_KEEP_ALIVE, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(), new DaemonThreadFactory("APL-DnsLookup"));
+    }
+
+    public synchronized void setTtl(long positive, long negative)
+    {
+        positiveTtl = positive;
+        negativeTtl = negative;
+    }
+
+    /**
+     * Resolves the host, using the cached result if still valid
+     *
+     * @throws UnknownHostException also when the host is cached as unknown
+     */
+    public InetAddress resolve(String host) throws UnknownHostException
+    {
+        if (host == null || host.length() == 0)
+            throw new UnknownHostException("Empty host name");
+
+        String key = host.toLowerCase(Locale.US);
+        Entry entry = getCached(key);
+
+        if (entry == null)
+        {
+            TraceUtils.increment(COUNTER_MISS);
+            entry = lookup(key, null);
+        }
+
+        if (entry.address == null)
+            throw new UnknownHostException(host);
+
+        return entry.address;
+    }
+
+    /**
+     * Same as {@link #resolve(String)}, waiting at most the timeout for the resolver: the lookup goes on
+     * in background and its result is cached for the next calls
+     *
+     * @throws UnknownHostException also when the host is not resolved within the timeout
+     */
+    public InetAddress resolve(String host, long timeoutMillis) throws UnknownHostException
+    {
+        if (host == null || host.length() == 0)
+            throw new UnknownHostException("Empty host name");
+
+        final String key = host.toLowerCase(Locale.US);
+        Entry entry = getCached(key);
+
+        if (entry == null)
+        {
+            TraceUtils.increment(COUNTER_MISS);
+
+            if (timeoutMillis <= 0)
+                throw new UnknownHostException("No time left to resolve " + host);
+
+            try
+            {
+                Future<Entry> future = lookupExecutor.submit(new Callable<Entry>()
+                {
+                    @Override
+                    public Entry call() throws Exception
+                    {
+                        return lookup(key, null);
+                    }
+                });
+
+                entry = future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            }
+            catch (RejectedExecutionException e)
+            {
+                throw new UnknownHostException("Too many pending lookups to resolve " + host);
+            }
+            catch (TimeoutException e)
+            {
+                throw new UnknownHostException("Timeout resolving " + host);
+            }
+            catch (ExecutionException e)
+            {
+                throw new UnknownHostException(host);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new UnknownHostException("Interrupted resolving " + host);
+            }
+        }
+
+        if (entry.address == null)
+            throw new UnknownHostException(host);
+
+        return entry.address;
+    }
+
+    /**
+     * @return the cached entry if still valid, scheduling its refresh when close to expiration, null otherwise
+     */
+    private Entry getCached(String key)
+    {
+        long now = System.currentTimeMillis();
+        Entry entry;
+
+        synchronized (this)
+        {
+            entry = entries.get(key);
+        }
+
+        if (entry == null || now >= entry.expire)
+            return null;
+
+        if (now >= entry.refreshAfter)
+        {
+            scheduleRefresh(key, entry);
+        }
+
+        TraceUtils.increment(entry.address != null ? COUNTER_HIT : COUNTER_NEGATIVE_HIT);
+        return entry;
+    }
+
+    /**
+     * Starts in background the resolution of a host that is going to be used soon,
+     * if not already cached
+     */
+    public void prefetch(String host)
+    {
+        if (host == null || host.length() == 0)
+            return;
+
+        String key = host.toLowerCase(Locale.US);
+        Entry entry;
+
+        synchronized (this)
+        {
+            entry = entries.get(key);
+        }
+
+        if (entry == null || System.currentTimeMillis() >= entry.refreshAfter)
+        {
+            scheduleRefresh(key, entry);
+        }
+    }
+
+    public synchronized void invalidate(String host)
+    {
+        if (host != null)
+        {
+            entries.remove(host.toLowerCase(Locale.US));
+        }
+    }
+
+    /**
+     * Forgets all the resolutions, i.e. when the network (and so the resolver) changes
+     */
+    public synchronized void clear()
+    {
+        entries.clear();
+    }
+
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * @param previous entry being refreshed, kept if still valid and the host can't be resolved anymore
+     */
+    private Entry lookup(String key, Entry previous)
+    {
+        InetAddress address = null;
+
+        try
+        {
+            address = InetAddress.getByName(key);
+        }
+        catch (UnknownHostException e)
+        {
+            Timber.w("Unknown host: %s", key);
+        }
+
+        long now = System.currentTimeMillis();
+        Entry entry;
+
+        synchronized (this)
+        {
+            // A failed refresh doesn't replace a valid address: it's used until it expires
+            if (address == null && previous != null && previous.address != null && now < previous.expire)
+                return previous;
+
+            long ttl = address != null ? positiveTtl : negativeTtl;
+            entry = new Entry(address, now + ttl, now + (long) (ttl * REFRESH_AHEAD));
+            entries.put(key, entry);
+        }
+
+        return entry;
+    }
+
+    private void scheduleRefresh(final String key, final Entry entry)
+    {
+        synchronized (this)
+        {
+            if (entry != null)
+            {
+                if (entry.refreshing)
+                    return;
+
+                entry.refreshing = true;
+            }
+        }
+
+        try
+        {
+            refreshExecutor.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    TraceUtils.increment(COUNTER_REFRESH);
+                    lookup(key, entry);
+                }
+            });
+        }
+        catch (RejectedExecutionException e)
+        {
+            Timber.w("DNS refresh of %s rejected", key);
+        }
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory
+    {
+        private final String name;
+
+        DaemonThreadFactory(String threadName)
+        {
+            name = threadName;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable)
+        {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    private static class Entry
+    {
+        final InetAddress address;  // null for unknown hosts
+        final long expire;
+        final long refreshAfter;
+        boolean refreshing;
+
+        Entry(InetAddress address, long expire, long refreshAfter)
+        {
+            this.address = address;
+            this.expire = expire;
+            this.refreshAfter = refreshAfter;
+        }
+    }
+}
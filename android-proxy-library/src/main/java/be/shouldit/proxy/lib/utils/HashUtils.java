@@ -0,0 +1,37 @@
+package be.shouldit.proxy.lib.utils;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+public class HashUtils
+{
+    /**
+     * @return the hex SHA-1 digest of the UTF-8 bytes of the value, or its hash code if SHA-1 is not available
+     */
+    public static String sha1(String value)
+    {
+        try
+        {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] bytes = digest.digest(value.getBytes("UTF-8"));
+
+            StringBuilder sb = new StringBuilder(bytes.length * 2);
+            for (byte b : bytes)
+            {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+                sb.append(Character.forDigit(b & 0xf, 16));
+            }
+
+            return sb.toString();
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            return Integer.toHexString(value.hashCode());
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            return Integer.toHexString(value.hashCode());
+        }
+    }
+}
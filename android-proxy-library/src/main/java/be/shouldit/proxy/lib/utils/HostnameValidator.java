@@ -0,0 +1,86 @@
+package be.shouldit.proxy.lib.utils;
+
+import be.shouldit.proxy.lib.constants.APLConstants;
+
+/**
+ * Single pass, allocation-free equivalent of {@link APLConstants#HOSTNAME_PATTERN} and
+ * {@link APLConstants#EXCLUSION_PATTERN}.
+ *
+ * Both regular expressions describe labels of [a-zA-Z0-9_] characters, separated by a single
+ * '-' or '.': the nested quantified groups backtrack heavily on long invalid input, while a
+ * scan only has to check that every separator follows a label character and the value
+ * doesn't end with a separator.
+ */
+public class HostnameValidator
+{
+    /**
+     * Same accept/reject semantics as {@link APLConstants#HOSTNAME_PATTERN}: blank input, ips and domain names
+     */
+    public static boolean isValidHostname(CharSequence value)
+    {
+        if (value == null)
+            return false;
+
+        return value.length() == 0 || matchesLabels(value, 0);
+    }
+
+    /**
+     * Same accept/reject semantics as {@link APLConstants#EXCLUSION_PATTERN}: blank input and domain names
+     * with an optional leading "*" and/or "."
+     */
+    public static boolean isValidExclusion(CharSequence value)
+    {
+        if (value == null)
+            return false;
+
+        int length = value.length();
+        if (length == 0)
+            return true;
+
+        int start = 0;
+        if (value.charAt(start) == '*')
+            start++;
+
+        if (start < length && value.charAt(start) == '.')
+            start++;
+
+        return matchesLabels(value, start);
+    }
+
+    /**
+     * Matches [HC]+([-.][HC]+)* from start to the end of the value
+     */
+    private static boolean matchesLabels(CharSequence value, int start)
+    {
+        int length = value.length();
+        if (start >= length)
+            return false;
+
+        boolean afterLabelChar = false;
+
+        for (int i = start; i < length; i++)
+        {
+            char c = value.charAt(i);
+
+            if (isLabelChar(c))
+            {
+                afterLabelChar = true;
+            }
+            else if ((c == '-' || c == '.') && afterLabelChar)
+            {
+                afterLabelChar = false;
+            }
+            else
+            {
+                return false;
+            }
+        }
+
+        return afterLabelChar;
+    }
+
+    private static boolean isLabelChar(char c)
+    {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+}
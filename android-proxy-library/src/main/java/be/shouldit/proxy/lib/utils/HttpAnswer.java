@@ -1,10 +1,9 @@
 package be.shouldit.proxy.lib.utils;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
+import java.util.Locale;
+import java.util.Map;
 
 public class HttpAnswer
 {
@@ -13,6 +12,8 @@ public class HttpAnswer
     private int status;
     private String body;
     private String contentType;
+    private boolean truncated;
+    private Map<String, String> headers;
 
     public int getStatus()
     {
@@ -37,32 +38,67 @@ public class HttpAnswer
         status = httpURLConnection.getResponseCode();
     }
 
-    public void getAnswer() throws IOException
+    /**
+     * Answer already read by another HTTP client
+     *
+     * @param headers response headers, with lower case names
+     */
+    HttpAnswer(int status, Map<String, String> headers, String body, boolean truncated, int maxLen)
     {
-        if (status == HttpURLConnection.HTTP_OK)
-        {
-            contentType = httpURLConnection.getContentType();
+        this.maxAnswerLength = maxLen;
+        this.status = status;
+        this.headers = headers;
+        this.contentType = headers.get("content-type");
+        this.body = body;
+        this.truncated = truncated;
+    }
 
-            // Response successful
-            InputStream inputStream = httpURLConnection.getInputStream();
+    /**
+     * @return the value of the response header (i.e. ETag, Last-Modified), null if not present
+     */
+    public String getHeader(String name)
+    {
+        if (httpURLConnection != null)
+            return httpURLConnection.getHeaderField(name);
+        else if (headers != null)
+            return headers.get(name.toLowerCase(Locale.US));
+        else
+            return null;
+    }
 
-            // Parse it line by line
-            BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(inputStream));
-            String temp;
-            StringBuilder sb = new StringBuilder();
+    /**
+     * @return true if the body has been cut at the maximum answer length
+     */
+    public boolean isTruncated()
+    {
+        return truncated;
+    }
 
-            while ((temp = bufferedReader.readLine()) != null)
-            {
-                // LogWrapper.d(TAG, temp);
-                sb.append(temp);
+    public void getAnswer() throws IOException
+    {
+        getAnswer(null);
+    }
 
-                if (sb.length() >= maxAnswerLength)
-                    break;
-            }
+    /**
+     * Reads the body of a successful answer, up to the maximum answer length in bytes
+     *
+     * @param stop optional condition to stop reading as soon as enough data has been received
+     */
+    public void getAnswer(HttpBodyReader.StopCondition stop) throws IOException
+    {
+        if (httpURLConnection != null && status == HttpURLConnection.HTTP_OK)
+        {
+            contentType = httpURLConnection.getContentType();
 
-            body = sb.toString();
+            // Response successful
+            HttpBodyReader reader = HttpBodyReader.get();
+            body = reader.read(httpURLConnection.getInputStream(),
+                    httpURLConnection.getContentLength(),
+                    httpURLConnection.getContentEncoding(),
+                    contentType,
+                    maxAnswerLength,
+                    stop);
+            truncated = reader.isTruncated();
         }
     }
-
-
-}
\ No newline at end of file
+}
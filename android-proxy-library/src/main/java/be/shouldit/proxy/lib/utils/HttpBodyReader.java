@@ -0,0 +1,237 @@
+package be.shouldit.proxy.lib.utils;
+
+import android.text.TextUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.zip.GZIPInputStream;
+
+import timber.log.Timber;
+
+/**
+ * Streaming reader of an HTTP response body, bounded in bytes.
+ *
+ * The body is read in chunks into a buffer that is kept between the reads of the same thread,
+ * so repeated checks don't allocate a new buffer every time. Reading stops as soon as
+ * the byte limit, the declared Content-Length or the caller's {@link StopCondition} is reached.
+ */
+public class HttpBodyReader
+{
+    public static final String DEFAULT_CHARSET = "UTF-8";
+
+    private static final int CHUNK_SIZE = 4096;
+    private static final int INITIAL_CAPACITY = 4096;
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+    private static final ThreadLocal<HttpBodyReader> readers = new ThreadLocal<HttpBodyReader>()
+    {
+        @Override
+        protected HttpBodyReader initialValue()
+        {
+            return new HttpBodyReader();
+        }
+    };
+
+    /**
+     * Allows the caller to stop reading as soon as the received data is enough
+     */
+    public interface StopCondition
+    {
+        /**
+         * @param data the bytes received so far, valid from 0 to length
+         */
+        boolean isSatisfied(byte[] data, int length);
+    }
+
+    private final byte[] chunk = new byte[CHUNK_SIZE];
+    private byte[] data = new byte[INITIAL_CAPACITY];
+    private int length;
+    private boolean truncated;
+
+    /**
+     * Reader owned by the calling thread
+     */
+    public static HttpBodyReader get()
+    {
+        return readers.get();
+    }
+
+    /**
+     * Reads the body and closes the stream
+     *
+     * @param contentLength declared length of the body, -1 if unknown
+     * @param contentEncoding value of the Content-Encoding header, may be null
+     * @param contentType value of the Content-Type header, used to find the charset. May be null
+     * @param maxBytes maximum number of (decoded) bytes to read
+     * @param stop optional condition to stop reading early, may be null
+     */
+    public String read(InputStream in, int contentLength, String contentEncoding, String contentType, int maxBytes, StopCondition stop) throws IOException
+    {
+        length = 0;
+        truncated = false;
+
+        InputStream stream = in;
+        int limit = maxBytes;
+
+        try
+        {
+            if (contentEncoding != null && contentEncoding.toLowerCase().contains("gzip"))
+            {
+                stream = new GZIPInputStream(in);
+            }
+            else if (contentLength >= 0 && contentLength <= maxBytes)
+            {
+                limit = contentLength;
+            }
+
+            ensureCapacity(Math.min(limit, MAX_RETAINED_CAPACITY));
+
+            while (length < limit)
+            {
+                int count = stream.read(chunk, 0, Math.min(chunk.length, limit - length));
+                if (count == -1)
+                    break;
+
+                ensureCapacity(length + count);
+                System.arraycopy(chunk, 0, data, length, count);
+                length += count;
+
+                if (stop != null && stop.isSatisfied(data, length))
+                    break;
+            }
+
+            truncated = length >= maxBytes && length != contentLength;
+
+            return decode(getCharset(contentType));
+        }
+        finally
+        {
+            try
+            {
+                stream.close();
+            }
+            catch (IOException e)
+            {
+                Timber.w("Exception closing HTTP body stream: %s", e.toString());
+            }
+
+            release();
+        }
+    }
+
+    /**
+     * @return true if the last read stopped because of the byte limit
+     */
+    public boolean isTruncated()
+    {
+        return truncated;
+    }
+
+    /**
+     * Charset declared in a Content-Type header value, {@link #DEFAULT_CHARSET} if missing
+     */
+    public static String getCharset(String contentType)
+    {
+        if (!TextUtils.isEmpty(contentType))
+        {
+            for (String param : contentType.split(";"))
+            {
+                String trimmed = param.trim();
+                if (trimmed.toLowerCase().startsWith("charset="))
+                {
+                    String charset = trimmed.substring("charset=".length()).trim();
+                    if (charset.length() > 1 && charset.startsWith("\"") && charset.endsWith("\""))
+                        charset = charset.substring(1, charset.length() - 1);
+
+                    if (!TextUtils.isEmpty(charset))
+                        return charset;
+                }
+            }
+        }
+
+        return DEFAULT_CHARSET;
+    }
+
+    /**
+     * Stop condition satisfied when the received data contains the given ASCII token
+     */
+    public static StopCondition untilContains(final String token)
+    {
+        final byte[] pattern = new byte[token.length()];
+        for (int i = 0; i < pattern.length; i++)
+        {
+            pattern[i] = (byte) token.charAt(i);
+        }
+
+        return new StopCondition()
+        {
+            @Override
+            public boolean isSatisfied(byte[] data, int length)
+            {
+                return indexOf(data, length, pattern) != -1;
+            }
+        };
+    }
+
+    private static int indexOf(byte[] data, int length, byte[] pattern)
+    {
+        outer:
+        for (int i = 0; i <= length - pattern.length; i++)
+        {
+            for (int j = 0; j < pattern.length; j++)
+            {
+                if (data[i + j] != pattern[j])
+                    continue outer;
+            }
+
+            return i;
+        }
+
+        return -1;
+    }
+
+    private String decode(String charset)
+    {
+        try
+        {
+            return new String(data, 0, length, charset);
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            Timber.w("Unsupported charset '%s', using %s", charset, DEFAULT_CHARSET);
+
+            try
+            {
+                return new String(data, 0, length, DEFAULT_CHARSET);
+            }
+            catch (UnsupportedEncodingException ex)
+            {
+                return new String(data, 0, length);
+            }
+        }
+    }
+
+    private void ensureCapacity(int capacity)
+    {
+        if (capacity > data.length)
+        {
+            byte[] grown = new byte[Math.max(capacity, data.length * 2)];
+            System.arraycopy(data, 0, grown, 0, length);
+            data = grown;
+        }
+    }
+
+    /**
+     * Doesn't keep around the buffers grown for exceptionally big bodies
+     */
+    private void release()
+    {
+        if (data.length > MAX_RETAINED_CAPACITY)
+        {
+            data = new byte[INITIAL_CAPACITY];
+        }
+
+        length = 0;
+    }
+}
@@ -0,0 +1,572 @@
+package be.shouldit.proxy.lib.utils;
+
+import android.text.TextUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.ProtocolException;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import timber.log.Timber;
+
+/**
+ * Minimal HTTP/1.1 client for plain http GET requests, directly or through an HTTP proxy,
+ * that reuses the connections of the {@link ConnectionPool}.
+ *
+ * Repeated probes and lookups through the same proxy don't pay the TCP setup every time.
+ * Redirects are followed as {@link HttpURLConnection} does, without switching protocol.
+ * https requests are not supported: use {@link #supports(URI, Proxy)} to choose the client.
+ */
+public class KeepAliveHttpClient
+{
+    private static final int MAX_REDIRECTS = 5;
+    private static final int MAX_LINE_LENGTH = 8192;
+    private static final int DRAIN_LIMIT = 16 * 1024;
+
+    /**
+     * @return true if the request can be done with this client
+     */
+    public static boolean supports(URI uri, Proxy proxy)
+    {
+        if (uri == null || !"http".equalsIgnoreCase(uri.getScheme()) || TextUtils.isEmpty(uri.getHost()))
+            return false;
+
+        if (proxy == null || proxy.type() == Proxy.Type.DIRECT)
+            return true;
+
+        return proxy.type() == Proxy.Type.HTTP && proxy.address() instanceof InetSocketAddress;
+    }
+
+    /**
+     * Same as {@link ProxyUtils#getHttpAnswerURI(URI, Proxy, int, int, HttpBodyReader.StopCondition)}
+     */
+    public static HttpAnswer get(URI uri, Proxy proxy, int maxLen, int timeout, HttpBodyReader.StopCondition stop) throws IOException
+    {
+        return get(uri, proxy, maxLen, timeout, stop, null);
+    }
+
+    /**
+     * @param requestHeaders optional additional request headers (i.e. If-None-Match)
+     */
+    public static HttpAnswer get(URI uri, Proxy proxy, int maxLen, int timeout, HttpBodyReader.StopCondition stop, Map<String, String> requestHeaders) throws IOException
+    {
+        Response response = execute(uri, proxy, timeout, requestHeaders);
+        String contentType = response.getHeader("content-type");
+
+        if (response.status != HttpURLConnection.HTTP_OK)
+        {
+            response.body.close();
+            return new HttpAnswer(response.status, response.headers, null, false, maxLen);
+        }
+
+        try
+        {
+            HttpBodyReader reader = HttpBodyReader.get();
+            String body = reader.read(response.body,
+                    response.body.getContentLength(),
+                    response.getHeader("content-encoding"),
+                    contentType,
+                    maxLen,
+                    stop);
+
+            return new HttpAnswer(response.status, response.headers, body, reader.isTruncated(), maxLen);
+        }
+        catch (IOException e)
+        {
+            Timber.e(e, "Exception getting HTTP Answer for URI: '%s'", uri.toString());
+            response.body.close();
+            return new HttpAnswer(response.status, response.headers, null, false, maxLen);
+        }
+    }
+
+    /**
+     * @return the HTTP status code of a GET request to the URI
+     */
+    public static int getResponseCode(URI uri, Proxy proxy, int timeout) throws IOException
+    {
+        Response response = execute(uri, proxy, timeout, null);
+        response.body.close();
+        return response.status;
+    }
+
+    private static Response execute(URI uri, Proxy proxy, int timeout, Map<String, String> requestHeaders) throws IOException
+    {
+        URI current = uri;
+
+        for (int redirects = 0; ; redirects++)
+        {
+            Response response = send(current, proxy, timeout, requestHeaders);
+
+            if (redirects >= MAX_REDIRECTS || !isRedirect(response.status))
+                return response;
+
+            String location = response.getHeader("location");
+            if (location == null)
+                return response;
+
+            URI next;
+            try
+            {
+                next = current.resolve(location);
+            }
+            catch (IllegalArgumentException e)
+            {
+                Timber.w("Invalid redirect location: '%s'", location);
+                return response;
+            }
+
+            if (!supports(next, proxy))
+                return response;
+
+            response.body.close();
+            current = next;
+        }
+    }
+
+    private static Response send(URI uri, Proxy proxy, int timeout, Map<String, String> requestHeaders) throws IOException
+    {
+        String host;
+        int port;
+        boolean proxied = proxy != null && proxy.type() == Proxy.Type.HTTP;
+
+        if (proxied)
+        {
+            InetSocketAddress isa = (InetSocketAddress) proxy.address();
+            host = isa.isUnresolved() ? isa.getHostName() : isa.getAddress().getHostAddress();
+            port = isa.getPort();
+        }
+        else
+        {
+            host = uri.getHost();
+            port = getPort(uri);
+        }
+
+        byte[] request = buildRequest(uri, proxied, requestHeaders).getBytes("ISO-8859-1");
+        long deadline = System.currentTimeMillis() + timeout;
+
+        ConnectionPool.Connection connection = ConnectionPool.getInstance().get(host, port, timeout);
+
+        try
+        {
+            return send(connection, request);
+        }
+        catch (IOException e)
+        {
+            // An idle connection can be closed by the other side at any time: retry once on a new connection,
+            // within what is left of the timeout
+            if (!connection.isReused() || System.currentTimeMillis() >= deadline)
+                throw e;
+
+            Timber.d("Reused connection to %s failed, retrying: %s", connection.getEndpoint(), e.toString());
+        }
+
+        return send(ConnectionPool.getInstance().connect(host, port, remaining(deadline)), request);
+    }
+
+    /**
+     * The connection is closed if the request fails
+     */
+    private static Response send(ConnectionPool.Connection connection, byte[] request) throws IOException
+    {
+        try
+        {
+            OutputStream out = connection.getOutputStream();
+            out.write(request);
+            out.flush();
+
+            return readResponse(connection);
+        }
+        catch (IOException e)
+        {
+            connection.close();
+            throw e;
+        }
+    }
+
+    private static int remaining(long deadline)
+    {
+        return (int) Math.max(1, deadline - System.currentTimeMillis());
+    }
+
+    private static String buildRequest(URI uri, boolean proxied, Map<String, String> requestHeaders)
+    {
+        String hostHeader = uri.getHost();
+        if (uri.getPort() != -1 && uri.getPort() != 80)
+            hostHeader += ":" + uri.getPort();
+
+        String path = uri.getRawPath();
+        if (TextUtils.isEmpty(path))
+            path = "/";
+        if (uri.getRawQuery() != null)
+            path += "?" + uri.getRawQuery();
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("GET ");
+        if (proxied)
+            sb.append("http://").append(hostHeader);
+        sb.append(path).append(" HTTP/1.1\r\n");
+        sb.append("Host: ").append(hostHeader).append("\r\n");
+
+        String agent = System.getProperty("http.agent");
+        if (!TextUtils.isEmpty(agent))
+            sb.append("User-Agent: ").append(agent).append("\r\n");
+
+        sb.append("Accept-Encoding: gzip\r\n");
+        if (requestHeaders != null)
+        {
+            for (Map.Entry<String, String> header : requestHeaders.entrySet())
+            {
+                sb.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+            }
+        }
+        sb.append("Connection: keep-alive\r\n");
+        if (proxied)
+            sb.append("Proxy-Connection: keep-alive\r\n");
+        sb.append("\r\n");
+
+        return sb.toString();
+    }
+
+    private static Response readResponse(ConnectionPool.Connection connection) throws IOException
+    {
+        InputStream in = connection.getInputStream();
+        String version;
+        int status;
+        Map<String, String> headers;
+
+        // Skip any interim 1xx response
+        do
+        {
+            String statusLine = readLine(in);
+            String[] parts = statusLine.split(" ", 3);
+            if (parts.length < 2 || !parts[0].startsWith("HTTP/"))
+                throw new ProtocolException("Invalid status line: " + statusLine);
+
+            version = parts[0];
+            try
+            {
+                status = Integer.parseInt(parts[1]);
+            }
+            catch (NumberFormatException e)
+            {
+                throw new ProtocolException("Invalid status line: " + statusLine);
+            }
+
+            headers = readHeaders(in);
+        }
+        while (status / 100 == 1);
+
+        boolean keepAlive = isKeepAlive(version, headers);
+        Body body;
+
+        String transferEncoding = headers.get("transfer-encoding");
+        String contentLength = headers.get("content-length");
+
+        if (status == HttpURLConnection.HTTP_NO_CONTENT || status == HttpURLConnection.HTTP_NOT_MODIFIED)
+        {
+            body = new FixedLengthBody(connection, keepAlive, 0);
+        }
+        else if (transferEncoding != null && transferEncoding.toLowerCase(Locale.US).contains("chunked"))
+        {
+            body = new ChunkedBody(connection, keepAlive);
+        }
+        else if (contentLength != null)
+        {
+            try
+            {
+                body = new FixedLengthBody(connection, keepAlive, Integer.parseInt(contentLength.trim()));
+            }
+            catch (NumberFormatException e)
+            {
+                throw new ProtocolException("Invalid Content-Length: " + contentLength);
+            }
+        }
+        else
+        {
+            // Body delimited by the end of the connection: it can't be reused
+            body = new FixedLengthBody(connection, false, -1);
+        }
+
+        return new Response(status, headers, body);
+    }
+
+    private static Map<String, String> readHeaders(InputStream in) throws IOException
+    {
+        Map<String, String> headers = new HashMap<String, String>();
+
+        String line;
+        while ((line = readLine(in)).length() > 0)
+        {
+            int colon = line.indexOf(':');
+            if (colon > 0)
+            {
+                headers.put(line.substring(0, colon).trim().toLowerCase(Locale.US), line.substring(colon + 1).trim());
+            }
+        }
+
+        return headers;
+    }
+
+    private static String readLine(InputStream in) throws IOException
+    {
+        StringBuilder sb = new StringBuilder();
+
+        int c;
+        while ((c = in.read()) != '\n')
+        {
+            if (c == -1)
+                throw new ProtocolException("Unexpected end of stream");
+
+            if (c != '\r')
+                sb.append((char) c);
+
+            if (sb.length() > MAX_LINE_LENGTH)
+                throw new ProtocolException("Line too long");
+        }
+
+        return sb.toString();
+    }
+
+    private static boolean isKeepAlive(String version, Map<String, String> headers)
+    {
+        String connection = headers.get("connection");
+        if (connection == null)
+            connection = headers.get("proxy-connection");
+
+        if ("HTTP/1.0".equals(version))
+            return "keep-alive".equalsIgnoreCase(connection);
+        else
+            return !"close".equalsIgnoreCase(connection);
+    }
+
+    private static boolean isRedirect(int status)
+    {
+        switch (status)
+        {
+            case HttpURLConnection.HTTP_MULT_CHOICE:
+            case HttpURLConnection.HTTP_MOVED_PERM:
+            case HttpURLConnection.HTTP_MOVED_TEMP:
+            case HttpURLConnection.HTTP_SEE_OTHER:
+            case 307:
+                return true;
+
+            default:
+                return false;
+        }
+    }
+
+    private static int getPort(URI uri)
+    {
+        return uri.getPort() != -1 ? uri.getPort() : 80;
+    }
+
+    private static class Response
+    {
+        final int status;
+        final Map<String, String> headers;
+        final Body body;
+
+        Response(int status, Map<String, String> headers, Body body)
+        {
+            this.status = status;
+            this.headers = headers;
+            this.body = body;
+        }
+
+        String getHeader(String name)
+        {
+            return headers.get(name);
+        }
+    }
+
+    /**
+     * Stream of a response body. Closing it gives the connection back to the pool
+     * if the body has been completely read (or can be cheaply drained).
+     */
+    private static abstract class Body extends InputStream
+    {
+        protected final ConnectionPool.Connection connection;
+        protected final InputStream in;
+        private final boolean keepAlive;
+        protected boolean eof;
+        private boolean closed;
+
+        Body(ConnectionPool.Connection connection, boolean keepAlive)
+        {
+            this.connection = connection;
+            this.in = connection.getInputStream();
+            this.keepAlive = keepAlive;
+        }
+
+        /**
+         * @return the length of the body, -1 if unknown
+         */
+        abstract int getContentLength();
+
+        @Override
+        public int read() throws IOException
+        {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public void close()
+        {
+            if (closed)
+                return;
+
+            closed = true;
+
+            if (keepAlive && !eof)
+            {
+                drain();
+            }
+
+            if (keepAlive && eof)
+            {
+                ConnectionPool.getInstance().recycle(connection);
+            }
+            else
+            {
+                connection.close();
+            }
+        }
+
+        private void drain()
+        {
+            byte[] buffer = new byte[1024];
+            int drained = 0;
+
+            try
+            {
+                int count;
+                while (drained < DRAIN_LIMIT && (count = read(buffer, 0, buffer.length)) != -1)
+                {
+                    drained += count;
+                }
+            }
+            catch (IOException e)
+            {
+                Timber.d("Exception draining HTTP body: %s", e.toString());
+                eof = false;
+            }
+        }
+    }
+
+    private static class FixedLengthBody extends Body
+    {
+        private final int length;
+        private int remaining;
+
+        /**
+         * @param length -1 to read until the end of the connection
+         */
+        FixedLengthBody(ConnectionPool.Connection connection, boolean keepAlive, int length)
+        {
+            super(connection, keepAlive);
+            this.length = length;
+            this.remaining = length;
+            this.eof = length == 0;
+        }
+
+        @Override
+        int getContentLength()
+        {
+            return length;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException
+        {
+            if (eof)
+                return -1;
+
+            int toRead = length == -1 ? count : Math.min(count, remaining);
+            int read = in.read(buffer, offset, toRead);
+
+            if (read == -1)
+            {
+                if (length != -1)
+                    throw new ProtocolException("Unexpected end of stream");
+
+                eof = true;
+                return -1;
+            }
+
+            if (length != -1)
+            {
+                remaining -= read;
+                eof = remaining == 0;
+            }
+
+            return read;
+        }
+    }
+
+    private static class ChunkedBody extends Body
+    {
+        private int chunkRemaining;
+
+        ChunkedBody(ConnectionPool.Connection connection, boolean keepAlive)
+        {
+            super(connection, keepAlive);
+        }
+
+        @Override
+        int getContentLength()
+        {
+            return -1;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException
+        {
+            if (eof)
+                return -1;
+
+            if (chunkRemaining == 0)
+            {
+                String sizeLine = readLine(in);
+                int semicolon = sizeLine.indexOf(';');
+                if (semicolon != -1)
+                    sizeLine = sizeLine.substring(0, semicolon);
+
+                try
+                {
+                    chunkRemaining = Integer.parseInt(sizeLine.trim(), 16);
+                }
+                catch (NumberFormatException e)
+                {
+                    throw new ProtocolException("Invalid chunk size: " + sizeLine);
+                }
+
+                if (chunkRemaining == 0)
+                {
+                    readHeaders(in);  // trailers
+                    eof = true;
+                    return -1;
+                }
+            }
+
+            int read = in.read(buffer, offset, Math.min(count, chunkRemaining));
+            if (read == -1)
+                throw new ProtocolException("Unexpected end of stream");
+
+            chunkRemaining -= read;
+            if (chunkRemaining == 0)
+            {
+                readLine(in);  // CRLF after the chunk data
+            }
+
+            return read;
+        }
+    }
+}
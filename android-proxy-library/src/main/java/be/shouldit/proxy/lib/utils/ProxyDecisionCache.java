@@ -0,0 +1,82 @@
+package be.shouldit.proxy.lib.utils;
+
+import java.net.Proxy;
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import be.shouldit.proxy.lib.logging.TraceUtils;
+import timber.log.Timber;
+
+/**
+ * Memoized decisions of the system ProxySelector, keyed by scheme, host and port of the URI.
+ *
+ * The decisions don't change until the proxy configuration or the active network change:
+ * {@link APL} invalidates the whole cache when it receives one of the related broadcasts.
+ */
+public class ProxyDecisionCache
+{
+    public static final int DEFAULT_MAX_ENTRIES = 64;
+
+    public static final String COUNTER_HIT = "proxy_decision_hit";
+    public static final String COUNTER_MISS = "proxy_decision_miss";
+
+    private final Map<String, Proxy> decisions;
+
+    public ProxyDecisionCache()
+    {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    public ProxyDecisionCache(final int maxEntries)
+    {
+        decisions = new LinkedHashMap<String, Proxy>(maxEntries, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Proxy> eldest)
+            {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return the memoized decision for the URI, null if not available
+     */
+    public synchronized Proxy get(URI uri)
+    {
+        Proxy proxy = decisions.get(getKey(uri));
+        TraceUtils.increment(proxy != null ? COUNTER_HIT : COUNTER_MISS);
+        return proxy;
+    }
+
+    public synchronized void put(URI uri, Proxy proxy)
+    {
+        decisions.put(getKey(uri), proxy);
+    }
+
+    /**
+     * Forgets all the decisions, i.e. when the proxy configuration changes
+     */
+    public synchronized void invalidate()
+    {
+        if (!decisions.isEmpty())
+        {
+            Timber.d("Invalidating %d proxy decisions", decisions.size());
+            decisions.clear();
+        }
+    }
+
+    public synchronized int size()
+    {
+        return decisions.size();
+    }
+
+    static String getKey(URI uri)
+    {
+        String scheme = uri.getScheme() != null ? uri.getScheme().toLowerCase(Locale.US) : "";
+        String host = uri.getHost() != null ? uri.getHost().toLowerCase(Locale.US) : "";
+        return scheme + "://" + host + ":" + uri.getPort();
+    }
+}
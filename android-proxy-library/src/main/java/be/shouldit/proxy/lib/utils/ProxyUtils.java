@@ -30,27 +30,43 @@ import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.UnknownHostException;
 import java.util.EnumSet;
-import java.util.regex.Matcher;
+import java.util.Map;
 
 import be.shouldit.proxy.lib.WiFiApConfig;
 import be.shouldit.proxy.lib.APL;
 import be.shouldit.proxy.lib.constants.APLConstants;
-import be.shouldit.proxy.lib.constants.APLIntents;
 import be.shouldit.proxy.lib.ProxyStatus;
 import be.shouldit.proxy.lib.ProxyStatusItem;
 import be.shouldit.proxy.lib.R;
+import be.shouldit.proxy.lib.checker.PacScriptCache;
+import be.shouldit.proxy.lib.checker.ProxyCheckPipeline;
+import be.shouldit.proxy.lib.checker.ProxyCheckStep;
+import be.shouldit.proxy.lib.checker.ProxyStatusBroadcaster;
 import be.shouldit.proxy.lib.constants.APLReflectionConstants;
 import be.shouldit.proxy.lib.enums.CheckStatusValues;
+import be.shouldit.proxy.lib.enums.HandshakeMethod;
+import be.shouldit.proxy.lib.enums.LatencyPhase;
 import be.shouldit.proxy.lib.enums.ProxyCheckOptions;
 import be.shouldit.proxy.lib.enums.ProxyStatusProperties;
 import be.shouldit.proxy.lib.enums.PskType;
 import be.shouldit.proxy.lib.enums.SecurityType;
+import be.shouldit.proxy.lib.exclusion.ExclusionListValidator;
+import be.shouldit.proxy.lib.probe.HandshakeResult;
+import be.shouldit.proxy.lib.probe.HttpProbe;
+import be.shouldit.proxy.lib.probe.ProbeTimings;
+import be.shouldit.proxy.lib.probe.ProxyLatencyProbe;
+import be.shouldit.proxy.lib.probe.ProxyHandshakeProbe;
+import be.shouldit.proxy.lib.probe.ProxyLatencyStats;
+import be.shouldit.proxy.lib.probe.TcpConnectProbe;
+import be.shouldit.proxy.lib.probe.TcpProbeResult;
 import be.shouldit.proxy.lib.reflection.ReflectionUtils;
 import be.shouldit.proxy.lib.reflection.android.ProxySetting;
 import timber.log.Timber;
 
 public class ProxyUtils
 {
+    private static final ExclusionListValidator exclusionListValidator = new ExclusionListValidator();
+
     public static void startWifiScan()
     {
         if (APL.getWifiManager() != null && APL.getWifiManager().isWifiEnabled())
@@ -176,17 +192,47 @@ public class ProxyUtils
 
     public static boolean isHostReachable(String host, int timeout)
     {
-        Boolean standardResult = standardAPIPingHost(host, timeout);
+        return standardAPIPingHost(host, timeout);
+    }
+
+    /**
+     * Check if the host accepts TCP connections on the given port
+     */
+    public static boolean isHostReachable(String host, int port, int timeout)
+    {
+        TcpProbeResult result = tcpProbeHost(host, port, timeout);
+        return result != null && result.isReachable();
+    }
+
+    /**
+     * Open (and immediately close) a TCP connection toward host:port, measuring the connect time
+     *
+     * @return null if the host cannot be resolved or the probe is interrupted
+     */
+    public static TcpProbeResult tcpProbeHost(String host, int port, int timeout)
+    {
+        TcpProbeResult result = null;
 
-        if (standardResult)
+        try
         {
-            return true;
+            if (!TextUtils.isEmpty(host))
+            {
+                InetAddress address = DnsCache.getInstance().resolve(host);
+                result = TcpConnectProbe.getInstance().connect(new InetSocketAddress(address, port), timeout);
+                Timber.d("TCP probe: %s", result);
+            }
         }
-        else
+        catch (UnknownHostException e)
+        {
+            Timber.e(e.toString());
+        }
+        catch (InterruptedException e)
         {
-            Boolean lowResult = lowLevelPingHost(host, timeout);
-            return lowResult;
+            Timber.w("TCP probe interrupted: %s:%d", host, port);
+            Thread.currentThread().interrupt();
         }
+
+        return result;
     }
 
     public static boolean standardAPIPingHost(String host, int timeout)
@@ -197,7 +243,7 @@ public class ProxyUtils
         {
             if (!TextUtils.isEmpty(host))
             {
-                InetAddress address = InetAddress.getByName(host);
+                InetAddress address = DnsCache.getInstance().resolve(host);
                 if (address != null)
                 {
                     result = address.isReachable(timeout);
@@ -258,6 +304,10 @@ public class ProxyUtils
 //
 //	}
 
+    /**
+     * @deprecated forks a ping process for every call, use {@link #isHostReachable(String, int, int)}
+     */
+    @Deprecated
     public static boolean lowLevelPingHost(String host, int timeout)
     {
         int exitValue;
@@ -307,24 +357,31 @@ public class ProxyUtils
             {
                 result = isa.getHostString();
             }
+            else if (isa.isUnresolved())
+            {
+                // No lookup is done for unresolved addresses
+                result = isa.getHostName();
+            }
             else
             {
+                //Is preferable to avoid the usage of the getHostName,
+                //since it tries to resolve the name of the proxy: this doesn't always work.
+                //The string is in the form "hostname/address:port", where hostname can be empty
                 String socketAddressString = isa.toString();
-                if (!TextUtils.isEmpty(socketAddressString) && socketAddressString.contains(":"))
+                int portSeparator = socketAddressString.lastIndexOf(':');
+                if (portSeparator != -1)
                 {
-                    String host = socketAddressString.split(":")[0];
-
-                    if (!TextUtils.isEmpty(host))
-                    {
-                        result = host;
-                    }
+                    socketAddressString = socketAddressString.substring(0, portSeparator);
                 }
 
-                if (TextUtils.isEmpty(result))
+                int addressSeparator = socketAddressString.indexOf('/');
+                if (addressSeparator > 0)
                 {
-                    //Is preferable to avoid the usage of the getHostName,
-                    //since it tries to resolve the name of the proxy: this doesn't always work
-                    result = isa.getHostName();
+                    result = socketAddressString.substring(0, addressSeparator);
+                }
+                else
+                {
+                    result = isa.getAddress().getHostAddress();
                 }
             }
         }
@@ -336,73 +393,62 @@ public class ProxyUtils
         return result;
     }
 
+    /**
+     * Thread-safe: the proxy is bound to the connection, see {@link HttpProbe}
+     *
+     * @param timeout deadline of the whole test, retries included, in milliseconds
+     */
     public static int testHTTPConnection(URI uri, Proxy proxy, int timeout)
     {
-        int step = 0;
-        while (step < 5)
-        {
-            try
-            {
-                URL url = uri.toURL();
-
-                if (proxy.type() == Type.HTTP)
-                {
-                    SocketAddress sa = proxy.address();
-                    InetSocketAddress isa = (InetSocketAddress) sa;
-
-                    String proxyHost = getProxyHost(proxy);
-                    System.setProperty("http.proxyHost", proxyHost);
-                    System.setProperty("http.proxyPort", String.valueOf(isa.getPort()));
-                }
-                else
-                {
-                    System.setProperty("http.proxyHost", "");
-                    System.setProperty("http.proxyPort", "");
-                }
-
-                HttpURLConnection httpURLConnection = (HttpURLConnection) url.openConnection();
-
-                httpURLConnection.setReadTimeout(timeout);
-                httpURLConnection.setConnectTimeout(timeout);
-
-                int result = httpURLConnection.getResponseCode();
-                return result;
-            }
-            catch (Exception e)
-            {
-                Timber.w(e.toString());
-            }
-
-            step++;
+        return HttpProbe.getResponseCode(uri, proxy, timeout);
+    }
 
-            try
-            {
-                Thread.sleep(500);
-            }
-            catch (InterruptedException e)
-            {
-                Timber.e(e, "InterruptedException during thread sleep on testHTTPConnection");
-                return -1;
-            }
-        }
 
-        return -1;
+    public static HttpAnswer getHttpAnswerURI(URI uri, Proxy proxy, int maxLen, int timeout) throws IOException
+    {
+        return getHttpAnswerURI(uri, proxy, maxLen, timeout, null);
     }
 
+    /**
+     * @param maxLen maximum length of the body, in bytes
+     * @param stop optional condition to stop reading the body early, see {@link HttpBodyReader}
+     *
+     * Plain http requests reuse the connections of the {@link ConnectionPool}
+     */
+    public static HttpAnswer getHttpAnswerURI(URI uri, Proxy proxy, int maxLen, int timeout, HttpBodyReader.StopCondition stop) throws IOException
+    {
+        return getHttpAnswerURI(uri, proxy, maxLen, timeout, stop, null);
+    }
 
-    public static HttpAnswer getHttpAnswerURI(URI uri, Proxy proxy, int maxLen, int timeout) throws IOException
+    /**
+     * @param requestHeaders optional additional request headers, i.e. the validators of a conditional GET
+     */
+    public static HttpAnswer getHttpAnswerURI(URI uri, Proxy proxy, int maxLen, int timeout, HttpBodyReader.StopCondition stop, Map<String, String> requestHeaders) throws IOException
     {
+        if (KeepAliveHttpClient.supports(uri, proxy))
+        {
+            return KeepAliveHttpClient.get(uri, proxy, maxLen, timeout, stop, requestHeaders);
+        }
+
         URL url = uri.toURL();
         HttpURLConnection httpURLConnection = (HttpURLConnection) url.openConnection(proxy);
 
         httpURLConnection.setReadTimeout(timeout);
         httpURLConnection.setConnectTimeout(timeout);
 
+        if (requestHeaders != null)
+        {
+            for (Map.Entry<String, String> header : requestHeaders.entrySet())
+            {
+                httpURLConnection.setRequestProperty(header.getKey(), header.getValue());
+            }
+        }
+
         HttpAnswer answer = new HttpAnswer(httpURLConnection, maxLen);
 
         try
         {
-            answer.getAnswer();
+            answer.getAnswer(stop);
         }
         catch (Exception e)
         {
@@ -431,7 +477,7 @@ public class ProxyUtils
         try
         {
             // TODO: add better method to check web resources
-            int result = testHTTPConnection(new URI("http://www.un.org/"), proxy, timeout);
+            int result = testHTTPConnection(new URI(APLConstants.WEB_CHECK_URI), proxy, timeout);
 //            int rawresult = testHTTPConnection(new URI("http://157.150.34.32"), WiFiApConfig, timeout);
 
             switch (result)
@@ -697,28 +743,13 @@ public class ProxyUtils
      * enabled - Check if the proxy address is valid - Check if the proxy is
      * reachable (using a PING) - Check if is possible to retrieve an URI
      * resource using the proxy
+     *
+     * Independent checks are executed concurrently, the whole check must complete within the given timeout.
      */
     public static void acquireProxyStatus(WiFiApConfig conf, ProxyStatus status, EnumSet<ProxyCheckOptions> checkOptions, int timeout)
     {
-        status.clear();
-        status.startchecking();
-        broadCastUpdatedStatus();
-
-        if (Build.VERSION.SDK_INT < 12)
-        {
-            // From BASE (1) to HONEYCOMB (12)
-            acquireProxyStatusSDK1_11(conf, status, checkOptions);
-        }
-        else if (Build.VERSION.SDK_INT >= 12 && Build.VERSION.SDK_INT < 21)
-        {
-            // From HONEYCOMB_MR1 (12) to KITKAT (20)
-            acquireProxyStatusSDK12_20(conf, status, checkOptions);
-        }
-        else
-        {
-            // From LOLLIPOP (21)
-            acquireProxyStatusSDK21(conf, status, checkOptions);
-        }
+        ProxyCheckPipeline pipeline = createProxyCheckPipeline(conf, status, checkOptions);
+        runProxyCheckPipeline(pipeline, timeout, null);
 
         // Disabled checking of web resources
 //        if (checkOptions.contains(ProxyCheckOptions.ONLINE_CHECK))
@@ -734,226 +765,232 @@ public class ProxyUtils
 //        }
     }
 
-    private static void acquireProxyStatusSDK1_11(WiFiApConfig conf, ProxyStatus status, EnumSet<ProxyCheckOptions> checkOptions)
+    /**
+     * Executes a pipeline created with {@link #createProxyCheckPipeline}, broadcasting
+     * the updates of the status (coalesced by {@link ProxyStatusBroadcaster})
+     *
+     * @return true if all the checks completed before the timeout
+     */
+    public static boolean runProxyCheckPipeline(ProxyCheckPipeline pipeline, int timeout, final ProxyCheckPipeline.Listener listener)
     {
-        // API version <= 11 (Older devices)
-        status.set(ProxyStatusProperties.WIFI_ENABLED, CheckStatusValues.NOT_CHECKED, false, false);
-        status.set(ProxyStatusProperties.WIFI_SELECTED, CheckStatusValues.NOT_CHECKED, false, false);
+        ProxyStatus status = pipeline.getStatus();
+        status.clear();
+        status.startchecking();
+
+        final ProxyStatusBroadcaster broadcaster = new ProxyStatusBroadcaster(APL.getContext(), status);
+        broadcaster.statusUpdated();
+        broadcaster.flush();
+
+        pipeline.setListener(new ProxyCheckPipeline.Listener()
+        {
+            @Override
+            public void onStatusItemUpdated(ProxyStatusItem item)
+            {
+                broadcaster.statusUpdated(item.statusCode);
 
-        Timber.d("Checking if proxy is enabled ...");
-        status.set(isProxyEnabled(conf));
-        broadCastUpdatedStatus();
+                if (listener != null)
+                {
+                    listener.onStatusItemUpdated(item);
+                }
+            }
+        });
+
+        boolean completed = pipeline.run(timeout);
+        broadcaster.flush();
+
+        return completed;
+    }
+
+    /**
+     * Build the graph of the checks needed to acquire the status of the given configuration
+     */
+    public static ProxyCheckPipeline createProxyCheckPipeline(final WiFiApConfig conf, ProxyStatus status, EnumSet<ProxyCheckOptions> checkOptions)
+    {
+        ProxyCheckPipeline pipeline = new ProxyCheckPipeline(status);
+        pipeline.setTimeoutMessage(APL.getContext().getString(R.string.status_check_timeout));
+        pipeline.setCancelledMessage(APL.getContext().getString(R.string.status_check_cancelled));
+        status.setLatencyStats(null);
 
-        if (status.getProperty(ProxyStatusProperties.PROXY_ENABLED).result)
+        // Resolve the proxy host while the first checks are running
+        if (conf.getProxySetting() == ProxySetting.STATIC)
         {
-            checkHttpProxyStatus(conf, status, checkOptions);
+            DnsCache.getInstance().prefetch(conf.getProxyHost());
         }
-        else
+        else if (conf.getProxySetting() == ProxySetting.PAC && conf.getPacFileUri() != null)
         {
-            disableChecking(status, ProxyStatusProperties.WIFI_SELECTED,
-                    ProxyStatusProperties.PROXY_ENABLED,
-                    ProxyStatusProperties.PROXY_VALID_HOSTNAME,
-                    ProxyStatusProperties.PROXY_VALID_PORT,
-                    ProxyStatusProperties.PROXY_REACHABLE,
-                    ProxyStatusProperties.PAC_VALID_URI,
-                    ProxyStatusProperties.PAC_REACHABLE_URI
-            );
+            DnsCache.getInstance().prefetch(conf.getPacFileUri().getHost());
         }
-    }
 
-    private static void acquireProxyStatusSDK12_20(WiFiApConfig conf, ProxyStatus status, EnumSet<ProxyCheckOptions> checkOptions)
-    {
-        Timber.d("Checking if Wi-Fi is enabled ...");
-        status.set(isWifiEnabled(conf));
-        broadCastUpdatedStatus();
+        ProxyCheckStep proxyEnabled;
 
-        if (status.getProperty(ProxyStatusProperties.WIFI_ENABLED).result)
+        if (Build.VERSION.SDK_INT < 12)
         {
-            Timber.d("Checking if Wi-Fi is selected ...");
-            status.set(isWifiSelected(conf));
-            broadCastUpdatedStatus();
+            // From BASE (1) to HONEYCOMB (12)
+            pipeline.disable(ProxyStatusProperties.WIFI_ENABLED, ProxyStatusProperties.WIFI_SELECTED);
 
-            if (status.getProperty(ProxyStatusProperties.WIFI_SELECTED).result)
+            proxyEnabled = pipeline.addStep(new ProxyCheckStep(ProxyStatusProperties.PROXY_ENABLED)
             {
-                // Wi-Fi enabled & selected
-                Timber.d("Checking if proxy is enabled ...");
-                status.set(isProxyEnabled(conf));
-                broadCastUpdatedStatus();
-
-                if (status.getProperty(ProxyStatusProperties.PROXY_ENABLED).result)
+                @Override
+                public ProxyStatusItem check(int timeout)
                 {
-                    checkHttpProxyStatus(conf, status, checkOptions);
+                    Timber.d("Checking if proxy is enabled ...");
+                    return isProxyEnabled(conf);
                 }
-                else
+            });
+        }
+        else
+        {
+            // From HONEYCOMB_MR1 (12)
+            ProxyCheckStep wifiEnabled = pipeline.addStep(new ProxyCheckStep(ProxyStatusProperties.WIFI_ENABLED)
+            {
+                @Override
+                public ProxyStatusItem check(int timeout)
                 {
-                    disableChecking(status, ProxyStatusProperties.WIFI_SELECTED,
-                            ProxyStatusProperties.PROXY_ENABLED,
-                            ProxyStatusProperties.PROXY_VALID_HOSTNAME,
-                            ProxyStatusProperties.PROXY_VALID_PORT,
-                            ProxyStatusProperties.PROXY_REACHABLE,
-                            ProxyStatusProperties.PAC_VALID_URI,
-                            ProxyStatusProperties.PAC_REACHABLE_URI
-                    );
+                    Timber.d("Checking if Wi-Fi is enabled ...");
+                    return isWifiEnabled(conf);
                 }
-            }
-            else
+            });
+
+            ProxyCheckStep wifiSelected = pipeline.addStep(new ProxyCheckStep(ProxyStatusProperties.WIFI_SELECTED, wifiEnabled)
             {
-                disableChecking(status, ProxyStatusProperties.WIFI_SELECTED,
-                        ProxyStatusProperties.PROXY_ENABLED,
-                        ProxyStatusProperties.PROXY_VALID_HOSTNAME,
-                        ProxyStatusProperties.PROXY_VALID_PORT,
-                        ProxyStatusProperties.PROXY_REACHABLE,
-                        ProxyStatusProperties.PAC_VALID_URI,
-                        ProxyStatusProperties.PAC_REACHABLE_URI
-                );
-            }
+                @Override
+                public ProxyStatusItem check(int timeout)
+                {
+                    Timber.d("Checking if Wi-Fi is selected ...");
+                    return isWifiSelected(conf);
+                }
+            });
+            wifiSelected.disableOnFailure(ProxyStatusProperties.WIFI_SELECTED);
+
+            proxyEnabled = pipeline.addStep(new ProxyCheckStep(ProxyStatusProperties.PROXY_ENABLED, wifiSelected)
+            {
+                @Override
+                public ProxyStatusItem check(int timeout)
+                {
+                    Timber.d("Checking if proxy is enabled ...");
+                    return isProxyEnabled(conf);
+                }
+            });
         }
-        else
+
+        proxyEnabled.disableOnFailure(ProxyStatusProperties.WIFI_SELECTED, ProxyStatusProperties.PROXY_ENABLED);
+
+        if (Build.VERSION.SDK_INT >= 21 && conf.getProxySetting() == ProxySetting.PAC)
         {
-            disableChecking(status, ProxyStatusProperties.WIFI_SELECTED,
-                    ProxyStatusProperties.PROXY_ENABLED,
-                    ProxyStatusProperties.PROXY_VALID_HOSTNAME,
+            // From LOLLIPOP (21)
+            addPACProxyChecks(pipeline, conf, checkOptions, proxyEnabled);
+            pipeline.disable(ProxyStatusProperties.PROXY_VALID_HOSTNAME,
                     ProxyStatusProperties.PROXY_VALID_PORT,
-                    ProxyStatusProperties.PROXY_REACHABLE,
-                    ProxyStatusProperties.PAC_VALID_URI,
-                    ProxyStatusProperties.PAC_REACHABLE_URI
-            );
+                    ProxyStatusProperties.PROXY_REACHABLE);
+        }
+        else
+        {
+            addHttpProxyChecks(pipeline, conf, checkOptions, proxyEnabled);
+            pipeline.disable(ProxyStatusProperties.PAC_VALID_URI,
+                    ProxyStatusProperties.PAC_REACHABLE_URI);
         }
+
+        return pipeline;
     }
 
-    private static void acquireProxyStatusSDK21(WiFiApConfig conf, ProxyStatus status, EnumSet<ProxyCheckOptions> checkOptions)
+    private static void addPACProxyChecks(ProxyCheckPipeline pipeline, final WiFiApConfig conf, EnumSet<ProxyCheckOptions> checkOptions, ProxyCheckStep proxyEnabled)
     {
-        Timber.d("Checking if Wi-Fi is enabled ...");
-        status.set(isWifiEnabled(conf));
-        broadCastUpdatedStatus();
-
-        if (status.getProperty(ProxyStatusProperties.WIFI_ENABLED).result)
+        ProxyCheckStep pacValidUri = pipeline.addStep(new ProxyCheckStep(ProxyStatusProperties.PAC_VALID_URI, proxyEnabled)
         {
-            Timber.d("Checking if Wi-Fi is selected ...");
-            status.set(isWifiSelected(conf));
-            broadCastUpdatedStatus();
-
-            if (status.getProperty(ProxyStatusProperties.WIFI_SELECTED).result)
+            @Override
+            public ProxyStatusItem check(int timeout)
             {
-                // Wi-Fi enabled & selected
-                Timber.d("Checking if proxy is enabled ...");
-                status.set(isProxyEnabled(conf));
-                broadCastUpdatedStatus();
-
-                if (status.getProperty(ProxyStatusProperties.PROXY_ENABLED).result)
-                {
-                    if (conf.getProxySetting() == ProxySetting.STATIC)
-                    {
-                        checkHttpProxyStatus(conf, status, checkOptions);
-
-                        disableChecking(status, ProxyStatusProperties.PAC_VALID_URI,
-                                ProxyStatusProperties.PAC_REACHABLE_URI);
-                    }
-                    else if (conf.getProxySetting() == ProxySetting.PAC)
-                    {
-                        checkPACProxyStatus(conf, status, checkOptions);
+                Timber.d("Checking if PAC is valid URI ...");
+                return isPACValidURI(conf);
+            }
+        });
 
-                        disableChecking(status, ProxyStatusProperties.PROXY_VALID_HOSTNAME,
-                                ProxyStatusProperties.PROXY_VALID_PORT,
-                                ProxyStatusProperties.PROXY_REACHABLE);
-                    }
-                }
-                else
+        if (checkOptions.contains(ProxyCheckOptions.ONLINE_CHECK))
+        {
+            pipeline.addStep(new ProxyCheckStep(ProxyStatusProperties.PAC_REACHABLE_URI, pacValidUri)
+            {
+                @Override
+                public ProxyStatusItem check(int timeout)
                 {
-                    disableChecking(status, ProxyStatusProperties.WIFI_SELECTED,
-                            ProxyStatusProperties.PROXY_ENABLED,
-                            ProxyStatusProperties.PROXY_VALID_HOSTNAME,
-                            ProxyStatusProperties.PROXY_VALID_PORT,
-                            ProxyStatusProperties.PROXY_REACHABLE,
-                            ProxyStatusProperties.PAC_VALID_URI,
-                            ProxyStatusProperties.PAC_REACHABLE_URI
-                    );
+                    Timber.d("Checking if PAC is reachable ...");
+                    return isPACReachable(conf, timeout);
                 }
-            }
-            else
-            {
-                disableChecking(status, ProxyStatusProperties.WIFI_SELECTED,
-                        ProxyStatusProperties.PROXY_ENABLED,
-                        ProxyStatusProperties.PROXY_VALID_HOSTNAME,
-                        ProxyStatusProperties.PROXY_VALID_PORT,
-                        ProxyStatusProperties.PROXY_REACHABLE,
-                        ProxyStatusProperties.PAC_VALID_URI,
-                        ProxyStatusProperties.PAC_REACHABLE_URI
-                );
-            }
+            });
         }
         else
         {
-            disableChecking(status, ProxyStatusProperties.WIFI_SELECTED,
-                    ProxyStatusProperties.PROXY_ENABLED,
-                    ProxyStatusProperties.PROXY_VALID_HOSTNAME,
-                    ProxyStatusProperties.PROXY_VALID_PORT,
-                    ProxyStatusProperties.PROXY_REACHABLE,
-                    ProxyStatusProperties.PAC_VALID_URI,
-                    ProxyStatusProperties.PAC_REACHABLE_URI
-            );
+            pipeline.disable(ProxyStatusProperties.PAC_REACHABLE_URI);
         }
     }
 
-    private static void checkPACProxyStatus(WiFiApConfig conf, ProxyStatus status, EnumSet<ProxyCheckOptions> checkOptions)
+    private static void addHttpProxyChecks(ProxyCheckPipeline pipeline, final WiFiApConfig conf, EnumSet<ProxyCheckOptions> checkOptions, ProxyCheckStep proxyEnabled)
     {
-        Timber.d("Checking if PAC is valid URI ...");
-        status.set(isPACValidURI(conf));
-        broadCastUpdatedStatus();
+        ProxyCheckStep validHostname = pipeline.addStep(new ProxyCheckStep(ProxyStatusProperties.PROXY_VALID_HOSTNAME, proxyEnabled)
+        {
+            @Override
+            public ProxyStatusItem check(int timeout)
+            {
+                Timber.d("Checking if proxy is valid hostname ...");
+                return isProxyValidHostname(conf);
+            }
+        });
 
-        if (checkOptions.contains(ProxyCheckOptions.ONLINE_CHECK)
-                && status.getProperty(ProxyStatusProperties.PAC_VALID_URI).result)
+        ProxyCheckStep validPort = pipeline.addStep(new ProxyCheckStep(ProxyStatusProperties.PROXY_VALID_PORT, proxyEnabled)
         {
-            Timber.d("Checking if PAC is reachable ...");
-            status.set(isPACReachable(conf));
-            broadCastUpdatedStatus();
-        }
+            @Override
+            public ProxyStatusItem check(int timeout)
+            {
+                Timber.d("Checking if proxy is valid port ...");
+                return isProxyValidPort(conf);
+            }
+        });
+
+        final HandshakeMethod handshakeMethod;
+        if (checkOptions.contains(ProxyCheckOptions.HANDSHAKE_CHECK))
+            handshakeMethod = HandshakeMethod.CONNECT;
+        else if (checkOptions.contains(ProxyCheckOptions.HEAD_HANDSHAKE_CHECK))
+            handshakeMethod = HandshakeMethod.HEAD;
         else
+            handshakeMethod = null;
+
+        if (checkOptions.contains(ProxyCheckOptions.ONLINE_CHECK) || handshakeMethod != null)
         {
-            disableChecking(status, ProxyStatusProperties.PAC_REACHABLE_URI);
-        }
-    }
+            final ProxyStatus status = pipeline.getStatus();
+            final boolean measureFirstByte = checkOptions.contains(ProxyCheckOptions.LATENCY_CHECK);
 
-    private static void checkHttpProxyStatus(WiFiApConfig conf, ProxyStatus status, EnumSet<ProxyCheckOptions> checkOptions)
-    {
-        Timber.d("Checking if proxy is valid hostname ...");
-        status.set(isProxyValidHostname(conf));
-        broadCastUpdatedStatus();
+            pipeline.addStep(new ProxyCheckStep(ProxyStatusProperties.PROXY_REACHABLE, validHostname, validPort)
+            {
+                @Override
+                public ProxyStatusItem check(int timeout)
+                {
+                    ProxyStatusItem item;
+                    if (handshakeMethod != null)
+                    {
+                        Timber.d("Checking if proxy answers to the %s handshake ...", handshakeMethod);
+                        item = isProxyHandshaking(conf, handshakeMethod, timeout);
+                    }
+                    else
+                    {
+                        Timber.d("Checking if proxy is reachable ...");
+                        item = isProxyReachable(conf, measureFirstByte, timeout);
+                    }
 
-        Timber.d("Checking if proxy is valid port ...");
-        status.set(isProxyValidPort(conf));
-        broadCastUpdatedStatus();
+                    // Snapshot taken after the probe, so it includes its timings
+                    if (!TextUtils.isEmpty(conf.getProxyHost()) && conf.getProxyPort() != null)
+                    {
+                        status.setLatencyStats(ProxyLatencyStats.forProxy(conf.getProxyHost(), conf.getProxyPort()));
+                    }
 
-        if (checkOptions.contains(ProxyCheckOptions.ONLINE_CHECK)
-                && status.getProperty(ProxyStatusProperties.PROXY_VALID_HOSTNAME).result
-                && status.getProperty(ProxyStatusProperties.PROXY_VALID_PORT).result)
-        {
-            Timber.d("Checking if proxy is reachable ...");
-            status.set(isProxyReachable(conf, APLConstants.DEFAULT_TIMEOUT));
-            broadCastUpdatedStatus();
+                    return item;
+                }
+            });
         }
         else
         {
-            disableChecking(status, ProxyStatusProperties.PROXY_REACHABLE);
-        }
-    }
-
-    private static void disableChecking(ProxyStatus status, ProxyStatusProperties ... properties)
-    {
-        for(ProxyStatusProperties pss : properties)
-        {
-            status.set(pss, CheckStatusValues.NOT_CHECKED, false, false);
+            pipeline.disable(ProxyStatusProperties.PROXY_REACHABLE);
         }
     }
 
-    private static void broadCastUpdatedStatus()
-    {
-//        LogWrapper.d(TAG, "Sending broadcast intent: " + APLConstants.APL_UPDATED_PROXY_STATUS_CHECK);
-        Intent intent = new Intent(APLIntents.APL_UPDATED_PROXY_STATUS_CHECK);
-        // intent.putExtra(APLConstants.ProxyStatus, status);
-        APL.getContext().sendBroadcast(intent);
-    }
-
     protected static ProxyStatusItem isWifiEnabled(WiFiApConfig conf)
     {
         ProxyStatusItem result = null;
@@ -1044,8 +1081,7 @@ public class ProxyUtils
             }
             else
             {
-                Matcher match = APLConstants.HOSTNAME_PATTERN.matcher(proxyHost);
-                if (match.matches())
+                if (HostnameValidator.isValidHostname(proxyHost))
                 {
                     String hostnameValidMsg = APL.getContext().getString(R.string.status_hostname_valid);
                     String msg = String.format("%s %s", hostnameValidMsg, proxyHost);
@@ -1069,7 +1105,14 @@ public class ProxyUtils
 
     public static ProxyStatusItem isProxyValidExclusionList(String proxyExclusionList)
     {
-        return isProxyValidExclusionList(proxyExclusionList.toLowerCase().split(","));
+        if (!exclusionListValidator.isValidList(proxyExclusionList))
+        {
+            return new ProxyStatusItem(ProxyStatusProperties.PROXY_VALID_EXCLUSION_LIST, CheckStatusValues.CHECKED, true, APL.getContext().getString(R.string.status_exclusion_list_notvalid));
+        }
+
+        String exclusionItemValid = APL.getContext().getString(R.string.status_exclusion_item_valid);
+        String msg = String.format("%s %s", exclusionItemValid, proxyExclusionList != null ? proxyExclusionList.toLowerCase() : "");
+        return new ProxyStatusItem(ProxyStatusProperties.PROXY_VALID_EXCLUSION_ITEM, CheckStatusValues.CHECKED, true, msg);
     }
 
     public static ProxyStatusItem isProxyValidExclusionList(String[] proxyExclusionList)
@@ -1079,9 +1122,8 @@ public class ProxyUtils
             for (int i = 0; i < proxyExclusionList.length; i++)
             {
                 String s = proxyExclusionList[i].trim();
-                ProxyStatusItem status = isProxyValidExclusionAddress(s);
 
-                if (!status.result)
+                if (!exclusionListValidator.isValid(s))
                 {
                     return new ProxyStatusItem(ProxyStatusProperties.PROXY_VALID_EXCLUSION_LIST, CheckStatusValues.CHECKED, true, APL.getContext().getString(R.string.status_exclusion_list_notvalid));
                 }
@@ -1103,8 +1145,7 @@ public class ProxyUtils
     {
         try
         {
-            Matcher match = APLConstants.EXCLUSION_PATTERN.matcher(proxyExclusionAddress);
-            if (match.matches())
+            if (exclusionListValidator.isValid(proxyExclusionAddress))
             {
                 String msg = String.format("%s %s", APL.getContext().getString(R.string.status_exclusion_item_valid), proxyExclusionAddress);
                 return new ProxyStatusItem(ProxyStatusProperties.PROXY_VALID_EXCLUSION_ITEM, CheckStatusValues.CHECKED, true, msg);
@@ -1141,24 +1182,93 @@ public class ProxyUtils
     }
 
     /**
-     * Try to PING the HOST specified in the current proxy configuration
+     * Try to open a TCP connection to the HOST:PORT specified in the current proxy configuration
+     *
+     * @param measureFirstByte also time the answer to a HEAD request, once the proxy is found reachable
+     */
+    protected static ProxyStatusItem isProxyReachable(WiFiApConfig conf, boolean measureFirstByte, int timeout)
+    {
+        String proxyHost = conf.getProxyHost();
+        Integer proxyPort = conf.getProxyPort();
+
+        if (!TextUtils.isEmpty(proxyHost) && proxyPort != null)
+        {
+            ProbeTimings timings = ProxyLatencyProbe.measureConnect(proxyHost, proxyPort, timeout);
+            ProxyLatencyStats stats = ProxyLatencyStats.forProxy(proxyHost, proxyPort);
+
+            if (measureFirstByte && timings.isMeasured(LatencyPhase.CONNECT))
+            {
+                ProbeTimings request = ProxyLatencyProbe.measure(proxyHost, proxyPort, URI.create(APLConstants.WEB_CHECK_URI), timeout);
+                if (request.isMeasured(LatencyPhase.FIRST_BYTE))
+                {
+                    timings.set(LatencyPhase.FIRST_BYTE, request.get(LatencyPhase.FIRST_BYTE));
+                    timings.set(LatencyPhase.TOTAL, timings.get(LatencyPhase.TOTAL) + request.get(LatencyPhase.FIRST_BYTE));
+                }
+            }
+
+            Timber.d("Proxy latency: %s", timings);
+
+            ProxyStatusItem item;
+            if (timings.isMeasured(LatencyPhase.CONNECT))
+            {
+                stats.record(timings);
+                item = new ProxyStatusItem(ProxyStatusProperties.PROXY_REACHABLE, CheckStatusValues.CHECKED, true, APL.getContext().getString(R.string.status_proxy_reachable));
+            }
+            else
+            {
+                stats.recordFailure();
+                item = new ProxyStatusItem(ProxyStatusProperties.PROXY_REACHABLE, CheckStatusValues.CHECKED, false, APL.getContext().getString(R.string.status_proxy_not_reachable));
+            }
+
+            item.timings = timings;
+            return item;
+        }
+        else
+        {
+            return new ProxyStatusItem(ProxyStatusProperties.PROXY_REACHABLE, CheckStatusValues.CHECKED, false, APL.getContext().getString(R.string.status_proxy_not_valid_informations));
+        }
+    }
+
+    /**
+     * Send a minimal request to the proxy of the current configuration, judging its health from the answered status line
      */
-    protected static ProxyStatusItem isProxyReachable(WiFiApConfig conf, int timeout)
+    protected static ProxyStatusItem isProxyHandshaking(WiFiApConfig conf, HandshakeMethod method, int timeout)
     {
         String proxyHost = conf.getProxyHost();
+        Integer proxyPort = conf.getProxyPort();
 
-        if (!TextUtils.isEmpty(proxyHost))
+        if (!TextUtils.isEmpty(proxyHost) && proxyPort != null)
         {
-            Boolean result = ProxyUtils.isHostReachable(proxyHost, timeout);
+            HandshakeResult result = ProxyHandshakeProbe.probe(proxyHost, proxyPort, URI.create(APLConstants.WEB_CHECK_URI), method, timeout);
+            ProxyLatencyStats stats = ProxyLatencyStats.forProxy(proxyHost, proxyPort);
+            Timber.d("Proxy handshake: %s", result);
 
-            if (result)
+            ProxyStatusItem item;
+            if (result.isHealthy())
             {
-                return new ProxyStatusItem(ProxyStatusProperties.PROXY_REACHABLE, CheckStatusValues.CHECKED, true, APL.getContext().getString(R.string.status_proxy_reachable));
+                stats.record(result.getTimings());
+                String msg = String.format("%s (%s)", APL.getContext().getString(R.string.status_proxy_reachable), result.getStatusLine());
+                item = new ProxyStatusItem(ProxyStatusProperties.PROXY_REACHABLE, CheckStatusValues.CHECKED, true, msg);
+            }
+            else if (result.isHttp())
+            {
+                stats.record(result.getTimings());
+                String msg = String.format("%s (%s)", APL.getContext().getString(R.string.status_proxy_upstream_error), result.getStatusLine());
+                item = new ProxyStatusItem(ProxyStatusProperties.PROXY_REACHABLE, CheckStatusValues.CHECKED, false, msg);
+            }
+            else if (result.getTimings().isMeasured(LatencyPhase.CONNECT))
+            {
+                stats.recordFailure();
+                item = new ProxyStatusItem(ProxyStatusProperties.PROXY_REACHABLE, CheckStatusValues.CHECKED, false, APL.getContext().getString(R.string.status_proxy_not_http));
             }
             else
             {
-                return new ProxyStatusItem(ProxyStatusProperties.PROXY_REACHABLE, CheckStatusValues.CHECKED, false, APL.getContext().getString(R.string.status_proxy_not_reachable));
+                stats.recordFailure();
+                item = new ProxyStatusItem(ProxyStatusProperties.PROXY_REACHABLE, CheckStatusValues.CHECKED, false, APL.getContext().getString(R.string.status_proxy_not_reachable));
             }
+
+            item.timings = result.getTimings();
+            return item;
         }
         else
         {
@@ -1281,7 +1391,10 @@ public class ProxyUtils
         return new ProxyStatusItem(ProxyStatusProperties.PAC_VALID_URI, CheckStatusValues.CHECKED, true, APL.getContext().getString(R.string.status_pac_valid_uri));
     }
 
-    private static ProxyStatusItem isPACReachable(WiFiApConfig config)
+    /**
+     * The PAC file is kept in the {@link PacScriptCache}: when not modified only a 304 answer is received
+     */
+    private static ProxyStatusItem isPACReachable(WiFiApConfig config, int timeout)
     {
         String pacFile = null;
         URI uri = null;
@@ -1297,7 +1410,7 @@ public class ProxyUtils
 
         try
         {
-            pacFile = ProxyUtils.getURI(uri, Proxy.NO_PROXY, APLConstants.MAX_DOWNLOAD_LENGTH, APLConstants.DEFAULT_TIMEOUT);
+            pacFile = APL.getPacScriptCache().fetch(uri, Proxy.NO_PROXY, APLConstants.MAX_DOWNLOAD_LENGTH, timeout).getBody();
         }
         catch (IOException e)
         {
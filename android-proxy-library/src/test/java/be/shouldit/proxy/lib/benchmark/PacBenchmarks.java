@@ -0,0 +1,92 @@
+package be.shouldit.proxy.lib.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import be.shouldit.proxy.lib.pac.GlobMatcher;
+import be.shouldit.proxy.lib.pac.PacEngine;
+
+/**
+ * Per-URL cost of the PAC evaluation with the {@link PacEngine}, with a script using
+ * the predefined functions the way corporate PAC files do.
+ *
+ * Run the main method with the unit tests classpath, see {@link ProbeBenchmarks}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PacBenchmarks
+{
+    private static final String SCRIPT =
+            "function FindProxyForURL(url, host) {\n" +
+            "    if (isPlainHostName(host) || dnsDomainIs(host, '.intranet.example.com'))\n" +
+            "        return 'DIRECT';\n" +
+            "    if (isInNet(host, '10.0.0.0', '255.0.0.0') || isInNet(host, '192.168.0.0', '255.255.0.0'))\n" +
+            "        return 'DIRECT';\n" +
+            "    if (shExpMatch(url, 'http://*.example.com/*') || shExpMatch(host, '*.example.org'))\n" +
+            "        return 'PROXY proxy.example.com:3128';\n" +
+            "    return 'PROXY proxy.example.com:8080; DIRECT';\n" +
+            "}";
+
+    private static final URI[] URIS = {
+            URI.create("http://wiki/"),
+            URI.create("http://portal.intranet.example.com/home"),
+            URI.create("http://10.1.2.3/status"),
+            URI.create("http://www.example.com/index.html"),
+            URI.create("http://192.0.2.1/other")
+    };
+
+    private PacEngine engine;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception
+    {
+        engine = new PacEngine(PacEngine.DEFAULT_MAX_SCRIPTS, PacEngine.DEFAULT_TIMEOUT);
+        engine.findProxyForURL(SCRIPT, URIS[0]);
+    }
+
+    @Benchmark
+    public String findProxyForURL() throws Exception
+    {
+        next = (next + 1) % URIS.length;
+        return engine.findProxyForURL(SCRIPT, URIS[next]);
+    }
+
+    @Benchmark
+    public boolean shExpMatch()
+    {
+        return GlobMatcher.matches("http://www.example.com/index.html", "http://*.example.com/*");
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException
+    {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .include(PacBenchmarks.class.getSimpleName())
+                .build();
+
+        new Runner(options).run();
+    }
+}
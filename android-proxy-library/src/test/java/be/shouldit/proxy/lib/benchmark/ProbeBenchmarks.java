@@ -0,0 +1,131 @@
+package be.shouldit.proxy.lib.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import be.shouldit.proxy.lib.harness.LoopbackProxy;
+import be.shouldit.proxy.lib.probe.ProbeTimings;
+import be.shouldit.proxy.lib.probe.ProxyLatencyProbe;
+import be.shouldit.proxy.lib.probe.TcpProbeResult;
+import be.shouldit.proxy.lib.utils.HttpAnswer;
+import be.shouldit.proxy.lib.utils.HttpBodyReader;
+import be.shouldit.proxy.lib.utils.ProxyUtils;
+
+/**
+ * Latency of the probe paths of {@link ProxyUtils} against the {@link LoopbackProxy}.
+ *
+ * Run the main method with the unit tests classpath: the arguments are the usual JMH ones,
+ * i.e. "-prof gc" to also report the allocation rate of every probe.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProbeBenchmarks
+{
+    private static final URI TARGET = URI.create("http://www.un.org/");
+    private static final URI PAC = URI.create("http://wpad.test/proxy.pac");
+    private static final int TIMEOUT = 5000;
+
+    /**
+     * Latency injected by the proxy, in milliseconds
+     */
+    @Param({"0"})
+    public int latency;
+
+    /**
+     * Size of the PAC file answered by the proxy, in bytes
+     */
+    @Param({"1024", "65536"})
+    public int pacSize;
+
+    private LoopbackProxy proxy;
+    private byte[] answerBytes;
+    private String pacContent;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException
+    {
+        StringBuilder sb = new StringBuilder(LoopbackProxy.DEFAULT_BODY);
+        while (sb.length() < pacSize)
+        {
+            sb.append("\n// padding of the PAC file");
+        }
+        pacContent = sb.substring(0, pacSize);
+        answerBytes = pacContent.getBytes("UTF-8");
+
+        proxy = new LoopbackProxy();
+        proxy.setLatency(latency);
+        proxy.setResponse(200, LoopbackProxy.DEFAULT_CONTENT_TYPE, pacContent);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        proxy.close();
+    }
+
+    @Benchmark
+    public TcpProbeResult reachability()
+    {
+        return ProxyUtils.tcpProbeHost(proxy.getHost(), proxy.getPort(), TIMEOUT);
+    }
+
+    @Benchmark
+    public ProbeTimings latencyProbe()
+    {
+        return ProxyLatencyProbe.measure(proxy.getHost(), proxy.getPort(), TARGET, TIMEOUT);
+    }
+
+    @Benchmark
+    public int httpProbe()
+    {
+        return ProxyUtils.testHTTPConnection(TARGET, proxy.getProxy(), TIMEOUT);
+    }
+
+    @Benchmark
+    public HttpAnswer pacFetch() throws IOException
+    {
+        return ProxyUtils.getHttpAnswerURI(PAC, proxy.getProxy(), pacSize, TIMEOUT);
+    }
+
+    @Benchmark
+    public String answerParsing() throws IOException
+    {
+        return HttpBodyReader.get().read(new ByteArrayInputStream(answerBytes), answerBytes.length, null, LoopbackProxy.DEFAULT_CONTENT_TYPE, pacSize, null);
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException
+    {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .include(ProbeBenchmarks.class.getSimpleName())
+                .build();
+
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,97 @@
+package be.shouldit.proxy.lib.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+import be.shouldit.proxy.lib.constants.APLConstants;
+import be.shouldit.proxy.lib.utils.HostnameValidator;
+
+/**
+ * {@link HostnameValidator} against the regular expressions of {@link APLConstants}, on a typical
+ * exclusion entry and on a long invalid one that makes the regular expressions backtrack.
+ *
+ * Run the main method with the unit tests classpath, see {@link ProbeBenchmarks}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidatorBenchmarks
+{
+    @Param({"typical", "adversarial"})
+    public String input;
+
+    private String value;
+
+    @Setup
+    public void setUp()
+    {
+        if ("typical".equals(input))
+        {
+            value = "*.intranet-01.example.com";
+        }
+        else
+        {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 12; i++)
+            {
+                sb.append("a-a.");
+            }
+
+            value = sb.append('!').toString();
+        }
+    }
+
+    @Benchmark
+    public boolean regexExclusion()
+    {
+        return APLConstants.EXCLUSION_PATTERN.matcher(value).matches();
+    }
+
+    @Benchmark
+    public boolean validatorExclusion()
+    {
+        return HostnameValidator.isValidExclusion(value);
+    }
+
+    @Benchmark
+    public boolean regexHostname()
+    {
+        return APLConstants.HOSTNAME_PATTERN.matcher(value).matches();
+    }
+
+    @Benchmark
+    public boolean validatorHostname()
+    {
+        return HostnameValidator.isValidHostname(value);
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException
+    {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .include(ValidatorBenchmarks.class.getSimpleName())
+                .build();
+
+        new Runner(options).run();
+    }
+}
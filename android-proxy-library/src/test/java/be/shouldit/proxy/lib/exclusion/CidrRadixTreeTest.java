@@ -0,0 +1,104 @@
+package be.shouldit.proxy.lib.exclusion;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Inserts (including node splits) and lookups of {@link CidrRadixTree}
+ */
+public class CidrRadixTreeTest
+{
+    @Test
+    public void longestPrefixMatch()
+    {
+        CidrRadixTree tree = tree4("10.0.0.0/8", "10.1.0.0/16", "10.1.2.0/24");
+
+        assertEquals(24, tree.longestPrefixLength(ip("10.1.2.3")));
+        assertEquals(16, tree.longestPrefixLength(ip("10.1.3.3")));
+        assertEquals(8, tree.longestPrefixLength(ip("10.2.0.1")));
+        assertEquals(-1, tree.longestPrefixLength(ip("11.0.0.1")));
+    }
+
+    @Test
+    public void insertionOrderDoesNotMatter()
+    {
+        CidrRadixTree tree = tree4("10.1.2.0/24", "10.1.0.0/16", "10.0.0.0/8");
+
+        assertEquals(24, tree.longestPrefixLength(ip("10.1.2.3")));
+        assertEquals(16, tree.longestPrefixLength(ip("10.1.3.3")));
+        assertEquals(8, tree.longestPrefixLength(ip("10.2.0.1")));
+        assertEquals(3, tree.size());
+    }
+
+    @Test
+    public void splitOnDivergingPrefixes()
+    {
+        // 192.168.1.0/24 and 192.168.2.0/24 share 22 bits: the split node is not a range itself
+        CidrRadixTree tree = tree4("192.168.1.0/24", "192.168.2.0/24");
+
+        assertTrue(tree.contains(ip("192.168.1.10")));
+        assertTrue(tree.contains(ip("192.168.2.10")));
+        assertFalse(tree.contains(ip("192.168.0.10")));
+        assertFalse(tree.contains(ip("192.168.3.10")));
+        assertEquals(-1, tree.longestPrefixLength(ip("192.168.0.1")));
+
+        // A range equal to the split point marks the internal node
+        tree.add(range("192.168.0.0/22"));
+        assertTrue(tree.contains(ip("192.168.3.10")));
+        assertEquals(22, tree.longestPrefixLength(ip("192.168.0.1")));
+        assertEquals(24, tree.longestPrefixLength(ip("192.168.2.1")));
+    }
+
+    @Test
+    public void hostRangesAndDefaultRoute()
+    {
+        CidrRadixTree tree = tree4("10.0.0.1", "10.0.0.2");
+
+        assertTrue(tree.contains(ip("10.0.0.1")));
+        assertTrue(tree.contains(ip("10.0.0.2")));
+        assertFalse(tree.contains(ip("10.0.0.3")));
+
+        tree.add(range("0.0.0.0/0"));
+        assertEquals(0, tree.longestPrefixLength(ip("10.0.0.3")));
+        assertEquals(32, tree.longestPrefixLength(ip("10.0.0.2")));
+    }
+
+    @Test
+    public void ipv6()
+    {
+        CidrRadixTree tree = new CidrRadixTree(16);
+        tree.add(range("fe80::/10"));
+        tree.add(range("2001:db8::/32"));
+        tree.add(range("2001:db8:1::/48"));
+
+        assertEquals(10, tree.longestPrefixLength(ip("fe80::1")));
+        assertEquals(48, tree.longestPrefixLength(ip("2001:db8:1::1")));
+        assertEquals(32, tree.longestPrefixLength(ip("2001:db8:2::1")));
+        assertEquals(-1, tree.longestPrefixLength(ip("2001:db9::1")));
+        assertFalse(tree.contains(ip("10.0.0.1")));
+    }
+
+    private static CidrRadixTree tree4(String... ranges)
+    {
+        CidrRadixTree tree = new CidrRadixTree(4);
+        for (String range : ranges)
+        {
+            tree.add(range(range));
+        }
+
+        return tree;
+    }
+
+    private static CidrRange range(String entry)
+    {
+        return CidrRange.parse(entry);
+    }
+
+    private static byte[] ip(String value)
+    {
+        return CidrRange.parseAddress(value);
+    }
+}
@@ -0,0 +1,100 @@
+package be.shouldit.proxy.lib.exclusion;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Parsing of the address ranges of {@link CidrRange}: no value is ever resolved
+ */
+public class CidrRangeTest
+{
+    @Test
+    public void ipv4Ranges()
+    {
+        assertRange("10.0.0.0/8", "10.0.0.0/8");
+        assertRange("10.1.2.3", "10.1.2.3/32");
+        assertRange("192.168.*", "192.168.0.0/16");
+        assertRange("10.*", "10.0.0.0/8");
+        assertRange("172.16.0.0/12", "172.16.0.0/12");
+
+        assertNull(CidrRange.parse("10.0.0.0/33"));
+        assertNull(CidrRange.parse("10.0.0.256"));
+        assertNull(CidrRange.parse("10.0.0"));
+        assertNull(CidrRange.parse("10.0.0.1.*"));
+        assertNull(CidrRange.parse("10..0.1"));
+        assertNull(CidrRange.parse("10.0.0.1/"));
+        assertNull(CidrRange.parse("example.com"));
+    }
+
+    @Test
+    public void ipv6Ranges()
+    {
+        assertRange("fe80::/10", "fe80:0:0:0:0:0:0:0/10");
+        assertRange("[::1]", "0:0:0:0:0:0:0:1/128");
+        assertRange("::", "0:0:0:0:0:0:0:0/128");
+        assertRange("2001:db8::/32", "2001:db8:0:0:0:0:0:0/32");
+        assertRange("2001:DB8:0:0:1::1", "2001:db8:0:0:1:0:0:1/128");
+        assertRange("1:2:3:4:5:6:7:8", "1:2:3:4:5:6:7:8/128");
+        assertRange("1::", "1:0:0:0:0:0:0:0/128");
+        assertRange("::2:3:4:5:6:7:8", "0:2:3:4:5:6:7:8/128");
+        assertRange("64:ff9b::10.0.0.1", "64:ff9b:0:0:0:0:a00:1/128");
+        assertRange("2001:db8::/129", null);
+    }
+
+    @Test
+    public void ipv4MappedAddressIsIPv4()
+    {
+        assertArrayEquals(new byte[]{10, 0, 0, 1}, CidrRange.parseAddress("::ffff:10.0.0.1"));
+        assertArrayEquals(new byte[]{10, 0, 0, 1}, CidrRange.parseAddress("::ffff:a00:1"));
+    }
+
+    @Test
+    public void invalidIPv6LiteralsAreRejected()
+    {
+        String[] invalid = {
+                "1:2:3", "ab:cd", ":", ":::", "1:::2", "1::2::3", ":1:2:3:4:5:6:7:8", "1:2:3:4:5:6:7:8:",
+                "1:2:3:4:5:6:7:8:9", "1::2:3:4:5:6:7:8", "12345::", "g::1", "::1.2.3", "::1.2.3.4.5",
+                "1:2:3:4:5:6:7:1.2.3.4", "::1.2.3.4:5", "fe80::1%eth0", "[::1", "ab:cd.example.com"
+        };
+
+        for (String value : invalid)
+        {
+            assertNull(value, CidrRange.parseAddress(value));
+        }
+    }
+
+    @Test
+    public void parseDoesNotResolve()
+    {
+        // Each lookup would take at least the DNS timeout in a sandbox without network
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 1000; i++)
+        {
+            assertNull(CidrRange.parse("ab:cd"));
+            assertNull(CidrRange.parse("dead:beef"));
+        }
+
+        assertTrue(System.currentTimeMillis() - start < 1000);
+    }
+
+    @Test
+    public void ipv6Flag()
+    {
+        CidrRange range = CidrRange.parse("::1");
+        assertNotNull(range);
+        assertTrue(range.isIPv6());
+        assertFalse(CidrRange.parse("127.0.0.1").isIPv6());
+    }
+
+    private static void assertRange(String entry, String expected)
+    {
+        CidrRange range = CidrRange.parse(entry);
+        assertEquals(entry, expected, range != null ? range.toString() : null);
+    }
+}
@@ -0,0 +1,97 @@
+package be.shouldit.proxy.lib.exclusion;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Entries of the exclusion lists accepted by {@link ExclusionListValidator}, compiled by {@link ExclusionMatcher}
+ */
+public class ExclusionMatcherTest
+{
+    @Test
+    public void subdomainsOnly()
+    {
+        ExclusionMatcher matcher = compile("*.example.com");
+
+        assertFalse(matcher.isExcluded("example.com"));
+        assertTrue(matcher.isExcluded("www.example.com"));
+        assertTrue(matcher.isExcluded("a.b.example.com"));
+        assertFalse(matcher.isExcluded("myexample.com"));
+    }
+
+    @Test
+    public void domainAndSubdomains()
+    {
+        for (String entry : new String[]{"example.com", ".example.com", " Example.COM "})
+        {
+            ExclusionMatcher matcher = compile(entry);
+
+            assertTrue(entry, matcher.isExcluded("example.com"));
+            assertTrue(entry, matcher.isExcluded("www.example.com"));
+            assertTrue(entry, matcher.isExcluded("WWW.EXAMPLE.COM"));
+            assertFalse(entry, matcher.isExcluded("myexample.com"));
+            assertFalse(entry, matcher.isExcluded("example.org"));
+        }
+    }
+
+    @Test
+    public void labelSuffix()
+    {
+        ExclusionMatcher matcher = compile("*foo.com");
+
+        assertTrue(matcher.isExcluded("foo.com"));
+        assertTrue(matcher.isExcluded("barfoo.com"));
+        assertTrue(matcher.isExcluded("www.barfoo.com"));
+        assertFalse(matcher.isExcluded("foobar.com"));
+        assertFalse(matcher.isExcluded("foo.org"));
+    }
+
+    @Test
+    public void addressRanges()
+    {
+        ExclusionMatcher matcher = compile("10.0.0.0/8", "192.168.*", "fe80::/10", "172.16.0.1");
+
+        assertTrue(matcher.isExcluded("10.1.2.3"));
+        assertTrue(matcher.isExcluded("192.168.1.1"));
+        assertTrue(matcher.isExcluded("fe80::1"));
+        assertTrue(matcher.isExcluded("[fe80::1]"));
+        assertTrue(matcher.isExcluded("172.16.0.1"));
+        assertFalse(matcher.isExcluded("172.16.0.2"));
+        assertFalse(matcher.isExcluded("11.0.0.1"));
+        assertFalse(matcher.isExcluded("::1"));
+    }
+
+    @Test
+    public void entriesRejectedByValidatorAreIgnored()
+    {
+        String[] entries = {"*", "dev-*", "host?.example.com", "**.example.com"};
+
+        for (String entry : entries)
+        {
+            assertFalse(entry, ExclusionListValidator.isValidEntry(entry));
+        }
+
+        ExclusionMatcher matcher = compile(entries);
+
+        assertTrue(matcher.isEmpty());
+        assertFalse(matcher.isExcluded("dev-server"));
+        assertFalse(matcher.isExcluded("host1.example.com"));
+        assertFalse(matcher.isExcluded("www.example.com"));
+    }
+
+    @Test
+    public void emptyList()
+    {
+        assertTrue(ExclusionMatcher.compile(null).isEmpty());
+        assertTrue(compile("", " ").isEmpty());
+        assertFalse(compile("", "example.com").isExcluded(null));
+        assertFalse(compile("example.com").isExcluded(""));
+    }
+
+    private static ExclusionMatcher compile(String... entries)
+    {
+        return ExclusionMatcher.compile(entries);
+    }
+}
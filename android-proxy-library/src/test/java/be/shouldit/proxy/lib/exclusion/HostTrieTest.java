@@ -0,0 +1,97 @@
+package be.shouldit.proxy.lib.exclusion;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Exact, subdomains and label suffix matches of {@link HostTrie}
+ */
+public class HostTrieTest
+{
+    @Test
+    public void domainAndSubdomains()
+    {
+        HostTrie trie = new HostTrie();
+        trie.addDomain("example.com", true, true);
+
+        assertTrue(trie.matches("example.com"));
+        assertTrue(trie.matches("www.example.com"));
+        assertTrue(trie.matches("a.b.example.com"));
+        assertTrue(trie.matches("WWW.Example.COM"));
+        assertTrue(trie.matches("www.example.com."));
+        assertFalse(trie.matches("com"));
+        assertFalse(trie.matches("myexample.com"));
+        assertFalse(trie.matches("example.org"));
+        assertFalse(trie.matches(""));
+    }
+
+    @Test
+    public void subdomainsOnly()
+    {
+        HostTrie trie = new HostTrie();
+        trie.addDomain("example.com", false, true);
+
+        assertFalse(trie.matches("example.com"));
+        assertTrue(trie.matches("www.example.com"));
+        assertTrue(trie.matches("a.b.example.com"));
+    }
+
+    @Test
+    public void exactOnly()
+    {
+        HostTrie trie = new HostTrie();
+        trie.addDomain("example.com", true, false);
+
+        assertTrue(trie.matches("example.com"));
+        assertFalse(trie.matches("www.example.com"));
+    }
+
+    @Test
+    public void labelSuffix()
+    {
+        HostTrie trie = new HostTrie();
+        trie.addLabelSuffix("com", "foo");
+
+        assertTrue(trie.matches("foo.com"));
+        assertTrue(trie.matches("barfoo.com"));
+        assertTrue(trie.matches("www.barfoo.com"));
+        assertTrue(trie.matches("BarFoo.com"));
+        assertFalse(trie.matches("foobar.com"));
+        assertFalse(trie.matches("com"));
+        assertFalse(trie.matches("foo.org"));
+    }
+
+    @Test
+    public void topLevelLabelSuffix()
+    {
+        HostTrie trie = new HostTrie();
+        trie.addLabelSuffix("", "local");
+
+        assertTrue(trie.matches("local"));
+        assertTrue(trie.matches("printer.mylocal"));
+        assertFalse(trie.matches("local.com"));
+    }
+
+    @Test
+    public void manyDomains()
+    {
+        HostTrie trie = new HostTrie();
+        for (int i = 0; i < 100; i++)
+        {
+            trie.addDomain("host" + i + ".example.com", true, false);
+        }
+
+        assertEquals(100, trie.size());
+
+        for (int i = 0; i < 100; i++)
+        {
+            assertTrue(trie.matches("host" + i + ".example.com"));
+        }
+
+        assertFalse(trie.matches("host100.example.com"));
+        assertFalse(trie.matches("example.com"));
+    }
+}
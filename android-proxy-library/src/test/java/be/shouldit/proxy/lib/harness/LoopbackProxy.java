@@ -0,0 +1,349 @@
+package be.shouldit.proxy.lib.harness;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import timber.log.Timber;
+
+/**
+ * In-process stand-in of an HTTP proxy, listening on the loopback interface.
+ *
+ * Every request (absolute GET/HEAD, or CONNECT) is answered with the configured response,
+ * with keep-alive support. The misbehaviours of real proxies can be injected:
+ * <ul>
+ * <li>latency: delay before the answer</li>
+ * <li>drop rate: fraction of the requests whose connection is closed without any answer</li>
+ * <li>slow-loris: delay between every byte of the answer</li>
+ * <li>stall: only the first bytes of the answer are sent, then the connection is held open silently</li>
+ * </ul>
+ */
+public class LoopbackProxy
+{
+    public static final String DEFAULT_BODY = "function FindProxyForURL(url, host) { return \"DIRECT\"; }";
+    public static final String DEFAULT_CONTENT_TYPE = "application/x-ns-proxy-autoconfig";
+
+    private static final int MAX_LINE_LENGTH = 8192;
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor;
+    private final Random random;
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicInteger requests = new AtomicInteger();
+
+    private volatile int latency;
+    private volatile double dropRate;
+    private volatile int slowLorisDelay;
+    private volatile int stallAfter = -1;
+    private volatile int status = 200;
+    private volatile String contentType = DEFAULT_CONTENT_TYPE;
+    private volatile byte[] body = DEFAULT_BODY.getBytes();
+    private volatile boolean running;
+
+    public LoopbackProxy() throws IOException
+    {
+        this(0);
+    }
+
+    /**
+     * @param seed of the random generator used for the drop rate, for reproducible runs
+     */
+    public LoopbackProxy(long seed) throws IOException
+    {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        random = new Random(seed);
+        executor = Executors.newCachedThreadPool(new ThreadFactory()
+        {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable, "LoopbackProxy-" + count.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        running = true;
+        executor.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                acceptLoop();
+            }
+        });
+    }
+
+    public String getHost()
+    {
+        return "127.0.0.1";
+    }
+
+    public int getPort()
+    {
+        return serverSocket.getLocalPort();
+    }
+
+    public Proxy getProxy()
+    {
+        return new Proxy(Proxy.Type.HTTP, new InetSocketAddress(getHost(), getPort()));
+    }
+
+    /**
+     * @param millis delay before answering every request
+     */
+    public void setLatency(int millis)
+    {
+        latency = millis;
+    }
+
+    /**
+     * @param rate between 0 and 1
+     */
+    public void setDropRate(double rate)
+    {
+        dropRate = rate;
+    }
+
+    /**
+     * @param millis delay between every byte of the answer, 0 to disable
+     */
+    public void setSlowLorisDelay(int millis)
+    {
+        slowLorisDelay = millis;
+    }
+
+    /**
+     * @param bytes number of bytes of the answer sent before stalling, -1 to disable
+     */
+    public void setStallAfter(int bytes)
+    {
+        stallAfter = bytes;
+    }
+
+    public void setResponse(int statusCode, String type, String content)
+    {
+        status = statusCode;
+        contentType = type;
+        body = content.getBytes();
+    }
+
+    public int getConnectionCount()
+    {
+        return connections.get();
+    }
+
+    public int getRequestCount()
+    {
+        return requests.get();
+    }
+
+    public void close()
+    {
+        running = false;
+
+        try
+        {
+            serverSocket.close();
+        }
+        catch (IOException e)
+        {
+            // Already closed
+        }
+
+        executor.shutdownNow();
+    }
+
+    private void acceptLoop()
+    {
+        while (running)
+        {
+            try
+            {
+                final Socket socket = serverSocket.accept();
+                connections.incrementAndGet();
+
+                try
+                {
+                    executor.execute(new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            serve(socket);
+                        }
+                    });
+                }
+                catch (RejectedExecutionException e)
+                {
+                    // Closing the proxy
+                    socket.close();
+                }
+            }
+            catch (IOException e)
+            {
+                if (running)
+                    Timber.e(e, "Loopback proxy accept failed");
+            }
+        }
+    }
+
+    private void serve(Socket socket)
+    {
+        try
+        {
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = socket.getOutputStream();
+
+            while (running)
+            {
+                String requestLine = readLine(in);
+                if (requestLine == null || requestLine.length() == 0)
+                    break;
+
+                boolean close = false;
+                String header;
+                while ((header = readLine(in)) != null && header.length() > 0)
+                {
+                    if (header.toLowerCase().matches("(proxy-)?connection:\\s*close"))
+                        close = true;
+                }
+
+                requests.incrementAndGet();
+
+                if (shouldDrop())
+                    break;
+
+                if (latency > 0)
+                    Thread.sleep(latency);
+
+                String method = requestLine.split(" ")[0];
+                if (method.equals("CONNECT"))
+                {
+                    // The tunnel is never used by the probes: answer and close
+                    write(in, out, "HTTP/1.1 200 Connection established\r\n\r\n".getBytes());
+                    break;
+                }
+
+                write(in, out, buildResponse(method.equals("HEAD"), close));
+
+                if (close)
+                    break;
+            }
+        }
+        catch (IOException e)
+        {
+            // Closed by the client
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            try
+            {
+                socket.close();
+            }
+            catch (IOException e)
+            {
+                // Already closed
+            }
+        }
+    }
+
+    private synchronized boolean shouldDrop()
+    {
+        return dropRate > 0 && random.nextDouble() < dropRate;
+    }
+
+    private byte[] buildResponse(boolean head, boolean close)
+    {
+        byte[] content = body;
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("HTTP/1.1 ").append(status).append(status == 200 ? " OK" : " Status").append("\r\n");
+        sb.append("Content-Type: ").append(contentType).append("\r\n");
+        sb.append("Content-Length: ").append(content.length).append("\r\n");
+        sb.append("Connection: ").append(close ? "close" : "keep-alive").append("\r\n");
+        sb.append("\r\n");
+
+        byte[] headers = sb.toString().getBytes();
+        if (head)
+            return headers;
+
+        byte[] response = new byte[headers.length + content.length];
+        System.arraycopy(headers, 0, response, 0, headers.length);
+        System.arraycopy(content, 0, response, headers.length, content.length);
+        return response;
+    }
+
+    private void write(InputStream in, OutputStream out, byte[] data) throws IOException, InterruptedException
+    {
+        int stall = stallAfter;
+        if (stall >= 0 && stall < data.length)
+        {
+            out.write(data, 0, stall);
+            out.flush();
+
+            // Nothing else is sent: wait for the client to give up and close the connection
+            while (in.read() != -1)
+            {
+                // Discard
+            }
+
+            throw new IOException("Stalled connection closed by the client");
+        }
+
+        int delay = slowLorisDelay;
+
+        if (delay > 0)
+        {
+            for (byte b : data)
+            {
+                out.write(b);
+                out.flush();
+                Thread.sleep(delay);
+            }
+        }
+        else
+        {
+            out.write(data);
+            out.flush();
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException
+    {
+        StringBuilder sb = new StringBuilder();
+
+        int c;
+        while ((c = in.read()) != '\n')
+        {
+            if (c == -1)
+                return sb.length() > 0 ? sb.toString() : null;
+
+            if (c != '\r')
+                sb.append((char) c);
+
+            if (sb.length() > MAX_LINE_LENGTH)
+                throw new IOException("Line too long");
+        }
+
+        return sb.toString();
+    }
+}
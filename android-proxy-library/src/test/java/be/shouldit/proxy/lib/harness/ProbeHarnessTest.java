@@ -0,0 +1,185 @@
+package be.shouldit.proxy.lib.harness;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+
+import be.shouldit.proxy.lib.enums.HandshakeMethod;
+import be.shouldit.proxy.lib.enums.LatencyPhase;
+import be.shouldit.proxy.lib.probe.HandshakeResult;
+import be.shouldit.proxy.lib.probe.ProbeTimings;
+import be.shouldit.proxy.lib.probe.ProxyHandshakeProbe;
+import be.shouldit.proxy.lib.probe.ProxyLatencyProbe;
+import be.shouldit.proxy.lib.probe.TcpProbeResult;
+import be.shouldit.proxy.lib.utils.ConnectionPool;
+import be.shouldit.proxy.lib.utils.HttpAnswer;
+import be.shouldit.proxy.lib.utils.KeepAliveHttpClient;
+import be.shouldit.proxy.lib.utils.ProxyUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Probe paths of {@link ProxyUtils} against the {@link LoopbackProxy}
+ */
+public class ProbeHarnessTest
+{
+    private static final URI TARGET = URI.create("http://www.un.org/");
+    private static final URI PAC = URI.create("http://wpad.test/proxy.pac");
+
+    private LoopbackProxy proxy;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        ConnectionPool.getInstance().evictAll();
+        proxy = new LoopbackProxy();
+    }
+
+    @After
+    public void tearDown()
+    {
+        proxy.close();
+    }
+
+    @Test
+    public void tcpProbeReachable()
+    {
+        TcpProbeResult result = ProxyUtils.tcpProbeHost(proxy.getHost(), proxy.getPort(), 1000);
+
+        assertNotNull(result);
+        assertTrue(result.isReachable());
+    }
+
+    @Test
+    public void httpProbeReusesConnection()
+    {
+        for (int i = 0; i < 3; i++)
+        {
+            assertEquals(HttpURLConnection.HTTP_OK, ProxyUtils.testHTTPConnection(TARGET, proxy.getProxy(), 2000));
+        }
+
+        assertEquals(3, proxy.getRequestCount());
+        assertEquals(1, proxy.getConnectionCount());
+    }
+
+    @Test
+    public void reusedConnectionIsRetriedOnce() throws Exception
+    {
+        assertEquals(HttpURLConnection.HTTP_OK, KeepAliveHttpClient.getResponseCode(TARGET, proxy.getProxy(), 2000));
+
+        proxy.setDropRate(1.0);
+
+        try
+        {
+            KeepAliveHttpClient.getResponseCode(TARGET, proxy.getProxy(), 2000);
+            fail("Expected the dropped requests to fail");
+        }
+        catch (IOException e)
+        {
+            // Expected
+        }
+
+        // The first request, then the reused connection and a single retry on a new one
+        assertEquals(3, proxy.getRequestCount());
+        assertEquals(2, proxy.getConnectionCount());
+    }
+
+    @Test
+    public void pacFetch() throws Exception
+    {
+        HttpAnswer answer = ProxyUtils.getHttpAnswerURI(PAC, proxy.getProxy(), 4096, 2000);
+
+        assertEquals(HttpURLConnection.HTTP_OK, answer.getStatus());
+        assertEquals(LoopbackProxy.DEFAULT_BODY, answer.getBody());
+        assertFalse(answer.isTruncated());
+    }
+
+    @Test
+    public void injectedLatencyIsMeasured()
+    {
+        proxy.setLatency(200);
+
+        ProbeTimings timings = ProxyLatencyProbe.measure(proxy.getHost(), proxy.getPort(), TARGET, 2000);
+
+        assertTrue(timings.isMeasured(LatencyPhase.FIRST_BYTE));
+        assertTrue(timings.get(LatencyPhase.FIRST_BYTE) >= 200 * 1000);
+    }
+
+    @Test
+    public void connectProbeDoesNotWaitForAnswer()
+    {
+        proxy.setLatency(500);
+
+        long start = System.currentTimeMillis();
+        ProbeTimings timings = ProxyLatencyProbe.measureConnect(proxy.getHost(), proxy.getPort(), 2000);
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertTrue(timings.isMeasured(LatencyPhase.CONNECT));
+        assertFalse(timings.isMeasured(LatencyPhase.FIRST_BYTE));
+        assertEquals(0, proxy.getRequestCount());
+        assertTrue("Elapsed " + elapsed + " ms", elapsed < 500);
+    }
+
+    @Test
+    public void droppedRequestsFailWithinDeadline()
+    {
+        proxy.setDropRate(1.0);
+
+        long start = System.currentTimeMillis();
+        int result = ProxyUtils.testHTTPConnection(TARGET, proxy.getProxy(), 1000);
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertEquals(-1, result);
+        assertTrue("Elapsed " + elapsed + " ms", elapsed < 1500);
+    }
+
+    @Test
+    public void handshakeProbe()
+    {
+        HandshakeResult connect = ProxyHandshakeProbe.probe(proxy.getHost(), proxy.getPort(), TARGET, HandshakeMethod.CONNECT, 1000);
+        assertTrue(connect.isHealthy());
+
+        proxy.setResponse(502, "text/plain", "Bad gateway");
+        HandshakeResult head = ProxyHandshakeProbe.probe(proxy.getHost(), proxy.getPort(), TARGET, HandshakeMethod.HEAD, 1000);
+        assertTrue(head.isHttp());
+        assertFalse(head.isHealthy());
+    }
+
+    @Test
+    public void slowLorisHandshakeRespectsDeadline()
+    {
+        // Bytes trickled one at a time, each within the read timeout: only the overall deadline stops
+        // the probe. A stall inside a single read is covered by stalledStatusLineRespectsDeadline
+        proxy.setSlowLorisDelay(50);
+
+        long start = System.currentTimeMillis();
+        HandshakeResult result = ProxyHandshakeProbe.probe(proxy.getHost(), proxy.getPort(), TARGET, HandshakeMethod.CONNECT, 500);
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertFalse(result.isHttp());
+        assertTrue("Elapsed " + elapsed + " ms", elapsed < 1000);
+    }
+
+    @Test
+    public void stalledStatusLineRespectsDeadline()
+    {
+        // "HTTP/1.1 2" late, then silence: the read after the stall gets only what is left of the deadline
+        proxy.setLatency(300);
+        proxy.setStallAfter(10);
+
+        long start = System.currentTimeMillis();
+        HandshakeResult result = ProxyHandshakeProbe.probe(proxy.getHost(), proxy.getPort(), TARGET, HandshakeMethod.HEAD, 500);
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertFalse(result.isHttp());
+        assertTrue("Elapsed " + elapsed + " ms", elapsed < 700);
+    }
+}
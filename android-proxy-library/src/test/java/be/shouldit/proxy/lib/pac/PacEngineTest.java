@@ -0,0 +1,173 @@
+package be.shouldit.proxy.lib.pac;
+
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.URI;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Compilation, caching, timeout and result parsing of {@link PacEngine}, without any network access
+ */
+public class PacEngineTest
+{
+    private static final int TIMEOUT = 500;
+
+    private static final String SCRIPT =
+            "function FindProxyForURL(url, host) {\n" +
+            "    if (shExpMatch(host, '*.local'))\n" +
+            "        return 'DIRECT';\n" +
+            "    return 'PROXY proxy.example.com:3128; DIRECT';\n" +
+            "}";
+
+    private static final String LOOP_SCRIPT =
+            "function FindProxyForURL(url, host) {\n" +
+            "    while (true) {}\n" +
+            "}";
+
+    @Test
+    public void evaluatesCompiledScript() throws Exception
+    {
+        PacEngine engine = new PacEngine(PacEngine.DEFAULT_MAX_SCRIPTS, TIMEOUT);
+
+        assertEquals("DIRECT", engine.findProxyForURL(SCRIPT, new URI("http://printer.local/")));
+        assertEquals("PROXY proxy.example.com:3128; DIRECT", engine.findProxyForURL(SCRIPT, new URI("http://www.example.com/")));
+
+        List<Proxy> proxies = engine.select(SCRIPT, new URI("http://www.example.com/"));
+        assertEquals(2, proxies.size());
+        assertProxy(proxies.get(0), Proxy.Type.HTTP, "proxy.example.com", 3128);
+        assertEquals(Proxy.NO_PROXY, proxies.get(1));
+    }
+
+    @Test
+    public void cachesScriptsByContent() throws Exception
+    {
+        PacEngine engine = new PacEngine(2, TIMEOUT);
+
+        PacEngine.CompiledPac compiled = engine.compile(SCRIPT);
+        assertTrue(compiled == engine.compile(new String(SCRIPT)));
+        assertEquals(1, engine.getCachedScriptsCount());
+
+        engine.compile(SCRIPT + "\n// second");
+        engine.compile(SCRIPT + "\n// third");
+        assertEquals(2, engine.getCachedScriptsCount());
+
+        // The first script has been evicted and is compiled again
+        assertTrue(compiled != engine.compile(SCRIPT));
+
+        engine.clear();
+        assertEquals(0, engine.getCachedScriptsCount());
+    }
+
+    @Test(expected = Exception.class)
+    public void rejectsScriptWithoutFunction() throws Exception
+    {
+        new PacEngine(PacEngine.DEFAULT_MAX_SCRIPTS, TIMEOUT).compile("var a = 1;");
+    }
+
+    @Test
+    public void abortsEndlessScript() throws Exception
+    {
+        PacEngine engine = new PacEngine(PacEngine.DEFAULT_MAX_SCRIPTS, TIMEOUT);
+        long start = System.currentTimeMillis();
+
+        try
+        {
+            engine.findProxyForURL(LOOP_SCRIPT, new URI("http://www.example.com/"));
+            fail("Endless script not aborted");
+        }
+        catch (Exception e)
+        {
+            long elapsed = System.currentTimeMillis() - start;
+            assertTrue("Aborted after " + elapsed + " ms", elapsed < TIMEOUT * 4);
+        }
+
+        // The engine is still usable after a timeout
+        assertEquals("DIRECT", engine.findProxyForURL(SCRIPT, new URI("http://printer.local/")));
+    }
+
+    @Test
+    public void scriptsCannotChangeSharedObjects() throws Exception
+    {
+        PacEngine engine = new PacEngine(PacEngine.DEFAULT_MAX_SCRIPTS, TIMEOUT);
+        String[] tampering = {
+                "String.prototype.trim = function() { return 'X'; };",
+                "Object.prototype.injected = 'X';",
+                "shExpMatch.injected = 'X';",
+                "weekdayRange.prototype.injected = 'X';",
+                "PAC_DAYS[0] = 'X';"
+        };
+
+        for (String statement : tampering)
+        {
+            try
+            {
+                engine.findProxyForURL("function FindProxyForURL(url, host) { " + statement + " return 'DIRECT'; }", new URI("http://www.example.com/"));
+            }
+            catch (Exception e)
+            {
+                // Expected: the shared objects are sealed
+            }
+        }
+
+        String check = "function FindProxyForURL(url, host) {\n" +
+                "    return [' a '.trim(), ({}).injected, shExpMatch.injected, weekdayRange.prototype.injected, PAC_DAYS[0]].join(',');\n" +
+                "}";
+        assertEquals("a,,,,SUN", engine.findProxyForURL(check, new URI("http://www.example.com/")));
+    }
+
+    @Test
+    public void parsesResultList()
+    {
+        List<Proxy> proxies = PacEngine.parseResult("PROXY a.example.com:8080; SOCKS b.example.com; socks5 [::1]:1081;; DIRECT");
+
+        assertEquals(4, proxies.size());
+        assertProxy(proxies.get(0), Proxy.Type.HTTP, "a.example.com", 8080);
+        assertProxy(proxies.get(1), Proxy.Type.SOCKS, "b.example.com", 1080);
+        assertProxy(proxies.get(2), Proxy.Type.SOCKS, "::1", 1081);
+        assertEquals(Proxy.NO_PROXY, proxies.get(3));
+    }
+
+    @Test
+    public void parsesDefaultPorts()
+    {
+        assertProxy(PacEngine.parseResult("PROXY a.example.com").get(0), Proxy.Type.HTTP, "a.example.com", 80);
+        assertProxy(PacEngine.parseResult("HTTPS a.example.com:443").get(0), Proxy.Type.HTTP, "a.example.com", 443);
+    }
+
+    @Test
+    public void ignoresInvalidEntries()
+    {
+        List<Proxy> proxies = PacEngine.parseResult("FTP a.example.com:21; PROXY a.example.com:99999; PROXY a.example.com:port; PROXY :8080; PROXY");
+        assertEquals(1, proxies.size());
+        assertEquals(Proxy.NO_PROXY, proxies.get(0));
+    }
+
+    @Test
+    public void emptyResultIsDirect()
+    {
+        assertDirect(PacEngine.parseResult(null));
+        assertDirect(PacEngine.parseResult(""));
+        assertDirect(PacEngine.parseResult(" ; "));
+    }
+
+    private static void assertDirect(List<Proxy> proxies)
+    {
+        assertEquals(1, proxies.size());
+        assertEquals(Proxy.NO_PROXY, proxies.get(0));
+    }
+
+    private static void assertProxy(Proxy proxy, Proxy.Type type, String host, int port)
+    {
+        assertEquals(type, proxy.type());
+
+        InetSocketAddress address = (InetSocketAddress) proxy.address();
+        assertEquals(host, address.getHostString());
+        assertEquals(port, address.getPort());
+    }
+}
@@ -0,0 +1,110 @@
+package be.shouldit.proxy.lib.pac;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Predefined PAC functions and shell expressions, with literal addresses only: nothing is resolved
+ */
+public class PacFunctionsTest
+{
+    @Test
+    public void globMatcher()
+    {
+        assertTrue(GlobMatcher.matches("www.example.com", "www.example.com"));
+        assertFalse(GlobMatcher.matches("www.example.org", "www.example.com"));
+
+        assertTrue(GlobMatcher.matches("www.example.com", "www.*"));
+        assertTrue(GlobMatcher.matches("www.example.com", "*.example.com"));
+        assertFalse(GlobMatcher.matches("example.com", "*.example.com"));
+        assertTrue(GlobMatcher.matches("www.example.com", "*example*"));
+        assertFalse(GlobMatcher.matches("www.test.com", "*example*"));
+
+        assertTrue(GlobMatcher.matches("anything", "*"));
+        assertTrue(GlobMatcher.matches("", "*"));
+        assertTrue(GlobMatcher.matches("anything", "**"));
+
+        assertTrue(GlobMatcher.matches("host1.example.com", "host?.example.com"));
+        assertFalse(GlobMatcher.matches("host.example.com", "host?.example.com"));
+        assertTrue(GlobMatcher.matches("a.b.example.com", "*.*.example.*"));
+        assertTrue(GlobMatcher.matches("http://www.example.com/path/file.pac", "http://*/*.pac"));
+        assertFalse(GlobMatcher.matches("http://www.example.com/path/file.js", "http://*/*.pac"));
+        assertTrue(GlobMatcher.matches("aaab", "*a*b"));
+        assertFalse(GlobMatcher.matches("aaac", "*a*b"));
+
+        // Case-sensitive, as shExpMatch
+        assertFalse(GlobMatcher.matches("WWW.example.com", "www.*"));
+    }
+
+    @Test
+    public void globMatcherIsCached()
+    {
+        assertTrue(GlobMatcher.compile("*.example.com") == GlobMatcher.compile("*.example.com"));
+    }
+
+    @Test
+    public void parseIPv4()
+    {
+        assertEquals(0L, PacFunctions.parseIPv4("0.0.0.0"));
+        assertEquals(0x7f000001L, PacFunctions.parseIPv4("127.0.0.1"));
+        assertEquals(0xc0a80a01L, PacFunctions.parseIPv4("192.168.10.1"));
+        assertEquals(0xffffffffL, PacFunctions.parseIPv4("255.255.255.255"));
+
+        assertEquals(-1L, PacFunctions.parseIPv4(""));
+        assertEquals(-1L, PacFunctions.parseIPv4("256.0.0.1"));
+        assertEquals(-1L, PacFunctions.parseIPv4("1.2.3"));
+        assertEquals(-1L, PacFunctions.parseIPv4("1.2.3.4.5"));
+        assertEquals(-1L, PacFunctions.parseIPv4("1..3.4"));
+        assertEquals(-1L, PacFunctions.parseIPv4("1.2.3."));
+        assertEquals(-1L, PacFunctions.parseIPv4("0001.2.3.4"));
+        assertEquals(-1L, PacFunctions.parseIPv4("a.b.c.d"));
+        assertEquals(-1L, PacFunctions.parseIPv4("::1"));
+    }
+
+    @Test
+    public void isInNet()
+    {
+        assertTrue(PacFunctions.isInNet("192.168.10.42", "192.168.0.0", "255.255.0.0"));
+        assertTrue(PacFunctions.isInNet("192.168.10.42", "192.168.10.0", "255.255.255.0"));
+        assertFalse(PacFunctions.isInNet("192.168.11.42", "192.168.10.0", "255.255.255.0"));
+        assertTrue(PacFunctions.isInNet("10.1.2.3", "10.0.0.0", "255.0.0.0"));
+        assertFalse(PacFunctions.isInNet("11.1.2.3", "10.0.0.0", "255.0.0.0"));
+        assertTrue(PacFunctions.isInNet("172.16.5.4", "172.16.5.4", "255.255.255.255"));
+        assertTrue(PacFunctions.isInNet("8.8.8.8", "0.0.0.0", "0.0.0.0"));
+
+        // Invalid pattern or mask never match
+        assertFalse(PacFunctions.isInNet("10.1.2.3", "10.0.0", "255.0.0.0"));
+        assertFalse(PacFunctions.isInNet("10.1.2.3", "10.0.0.0", "255.0.0.256"));
+    }
+
+    @Test
+    public void dnsDomainIs()
+    {
+        assertTrue(PacFunctions.dnsDomainIs("www.example.com", ".example.com"));
+        assertTrue(PacFunctions.dnsDomainIs("www.example.com", "example.com"));
+        assertFalse(PacFunctions.dnsDomainIs("www", ".example.com"));
+        assertFalse(PacFunctions.dnsDomainIs("www.example.org", ".example.com"));
+        assertFalse(PacFunctions.dnsDomainIs("www.EXAMPLE.com", ".example.com"));
+    }
+
+    @Test
+    public void localHostOrDomainIs()
+    {
+        assertTrue(PacFunctions.localHostOrDomainIs("www.example.com", "www.example.com"));
+        assertTrue(PacFunctions.localHostOrDomainIs("www", "www.example.com"));
+        assertFalse(PacFunctions.localHostOrDomainIs("www.example.org", "www.example.com"));
+        assertFalse(PacFunctions.localHostOrDomainIs("home.example.com", "www.example.com"));
+        assertFalse(PacFunctions.localHostOrDomainIs("ww", "www.example.com"));
+        assertFalse(PacFunctions.localHostOrDomainIs("WWW", "www.example.com"));
+    }
+
+    @Test
+    public void dnsDomainLevels()
+    {
+        assertEquals(0, PacFunctions.dnsDomainLevels("www"));
+        assertEquals(2, PacFunctions.dnsDomainLevels("www.example.com"));
+    }
+}
@@ -0,0 +1,40 @@
+package be.shouldit.proxy.lib.probe;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Retry backoff of {@link HttpProbe}
+ */
+public class HttpProbeTest
+{
+    private static final int ITERATIONS = 10000;
+
+    @Test
+    public void jitterIsInUpperHalfOfBackoff()
+    {
+        Random random = new Random(0x5eedL);
+
+        for (long backoff : new long[]{100, 101, 800, 2000})
+        {
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+
+            for (int i = 0; i < ITERATIONS; i++)
+            {
+                long sleep = HttpProbe.jitter(backoff, random);
+                assertTrue(backoff + ": " + sleep, sleep >= backoff / 2 && sleep < backoff);
+
+                min = Math.min(min, sleep);
+                max = Math.max(max, sleep);
+            }
+
+            // The whole range is used
+            assertTrue(backoff + ": min " + min, min <= backoff / 2 + backoff / 20);
+            assertTrue(backoff + ": max " + max, max >= backoff - backoff / 20 - 1);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package be.shouldit.proxy.lib.probe;
+
+import org.junit.Test;
+
+import be.shouldit.proxy.lib.enums.LatencyPhase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Bounded registry and snapshots of {@link ProxyLatencyStats}
+ */
+public class ProxyLatencyStatsTest
+{
+    @Test
+    public void registryKeepsMostRecentlyUsedProxies()
+    {
+        ProxyLatencyStats first = ProxyLatencyStats.forProxy("first.registry.test", 8080);
+
+        for (int i = 0; i < ProxyLatencyStats.MAX_PROXIES * 2; i++)
+        {
+            ProxyLatencyStats.forProxy("proxy" + i + ".registry.test", 8080);
+
+            // Kept as the most recently used entry
+            assertTrue(first == ProxyLatencyStats.forProxy("FIRST.registry.test", 8080));
+        }
+
+        assertEquals(ProxyLatencyStats.MAX_PROXIES, ProxyLatencyStats.getAll().size());
+        assertTrue(ProxyLatencyStats.getAll().containsKey("first.registry.test:8080"));
+        assertFalse(ProxyLatencyStats.getAll().containsKey("proxy0.registry.test:8080"));
+    }
+
+    @Test
+    public void snapshotIsNotUpdated()
+    {
+        ProxyLatencyStats stats = ProxyLatencyStats.forProxy("snapshot.registry.test", 3128);
+        stats.record(timings(1000));
+        stats.recordFailure();
+
+        ProxyLatencyStats snapshot = stats.snapshot();
+        stats.record(timings(2000));
+        stats.recordFailure();
+
+        assertEquals("snapshot.registry.test:3128", snapshot.getProxy());
+        assertEquals(1, snapshot.getHistogram(LatencyPhase.CONNECT).getCount());
+        assertEquals(1, snapshot.getFailures());
+        assertEquals(2, stats.getHistogram(LatencyPhase.CONNECT).getCount());
+        assertEquals(2, stats.getFailures());
+    }
+
+    private static ProbeTimings timings(long connectMicros)
+    {
+        ProbeTimings timings = new ProbeTimings();
+        timings.set(LatencyPhase.CONNECT, connectMicros);
+        return timings;
+    }
+}
@@ -0,0 +1,155 @@
+package be.shouldit.proxy.lib.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+
+import be.shouldit.proxy.lib.harness.LoopbackProxy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Limits of the {@link ConnectionPool}, against the {@link LoopbackProxy} used as a plain TCP endpoint
+ */
+public class ConnectionPoolTest
+{
+    private LoopbackProxy endpoint;
+    private ConnectionPool pool;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        endpoint = new LoopbackProxy();
+        pool = new ConnectionPool(2, 1, 30 * 1000);
+    }
+
+    @After
+    public void tearDown()
+    {
+        pool.evictAll();
+        endpoint.close();
+    }
+
+    @Test
+    public void maxPerEndpointIsEnforced() throws Exception
+    {
+        pool.get(endpoint.getHost(), endpoint.getPort(), 1000);
+        pool.get(endpoint.getHost(), endpoint.getPort(), 1000);
+        assertEquals(2, pool.getOpenCount(endpoint.getHost(), endpoint.getPort()));
+
+        long start = System.currentTimeMillis();
+        try
+        {
+            pool.get(endpoint.getHost(), endpoint.getPort(), 200);
+            fail("Expected a timeout waiting for a connection");
+        }
+        catch (SocketTimeoutException e)
+        {
+            long elapsed = System.currentTimeMillis() - start;
+            assertTrue("Elapsed " + elapsed + " ms", elapsed >= 150 && elapsed < 1000);
+        }
+
+        assertEquals(2, pool.getOpenCount(endpoint.getHost(), endpoint.getPort()));
+    }
+
+    @Test
+    public void waitingRequestGetsRecycledConnection() throws Exception
+    {
+        final ConnectionPool.Connection first = pool.get(endpoint.getHost(), endpoint.getPort(), 1000);
+        pool.get(endpoint.getHost(), endpoint.getPort(), 1000);
+
+        Thread recycler = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    Thread.sleep(100);
+                }
+                catch (InterruptedException e)
+                {
+                    return;
+                }
+
+                pool.recycle(first);
+            }
+        });
+        recycler.start();
+
+        ConnectionPool.Connection third = pool.get(endpoint.getHost(), endpoint.getPort(), 2000);
+        recycler.join();
+
+        assertSame(first, third);
+        assertTrue(third.isReused());
+        assertEquals(2, pool.getOpenCount(endpoint.getHost(), endpoint.getPort()));
+    }
+
+    @Test
+    public void closeReleasesSlot() throws Exception
+    {
+        ConnectionPool.Connection first = pool.get(endpoint.getHost(), endpoint.getPort(), 1000);
+        pool.get(endpoint.getHost(), endpoint.getPort(), 1000);
+
+        first.close();
+        first.close();
+        assertEquals(1, pool.getOpenCount(endpoint.getHost(), endpoint.getPort()));
+
+        ConnectionPool.Connection third = pool.get(endpoint.getHost(), endpoint.getPort(), 1000);
+        assertFalse(third.isReused());
+        assertEquals(2, pool.getOpenCount(endpoint.getHost(), endpoint.getPort()));
+    }
+
+    @Test
+    public void idleConnectionsAreCapped() throws Exception
+    {
+        ConnectionPool.Connection first = pool.get(endpoint.getHost(), endpoint.getPort(), 1000);
+        ConnectionPool.Connection second = pool.get(endpoint.getHost(), endpoint.getPort(), 1000);
+
+        pool.recycle(first);
+        pool.recycle(second);
+
+        assertEquals(1, pool.getIdleCount(endpoint.getHost(), endpoint.getPort()));
+        assertEquals(1, pool.getOpenCount(endpoint.getHost(), endpoint.getPort()));
+    }
+
+    @Test
+    public void connectMakesRoomClosingIdleConnections() throws Exception
+    {
+        ConnectionPool.Connection first = pool.get(endpoint.getHost(), endpoint.getPort(), 1000);
+        pool.get(endpoint.getHost(), endpoint.getPort(), 1000);
+        pool.recycle(first);
+
+        ConnectionPool.Connection fresh = pool.connect(endpoint.getHost(), endpoint.getPort(), 1000);
+
+        assertFalse(fresh.isReused());
+        assertEquals(0, pool.getIdleCount(endpoint.getHost(), endpoint.getPort()));
+        assertEquals(2, pool.getOpenCount(endpoint.getHost(), endpoint.getPort()));
+    }
+
+    @Test
+    public void failedConnectReleasesSlot() throws IOException
+    {
+        int port = endpoint.getPort();
+        endpoint.close();
+
+        try
+        {
+            pool.get("127.0.0.1", port, 500);
+            fail("Expected a connection failure");
+        }
+        catch (IOException e)
+        {
+            // Expected
+        }
+
+        assertEquals(0, pool.getOpenCount("127.0.0.1", port));
+    }
+}
@@ -0,0 +1,52 @@
+package be.shouldit.proxy.lib.utils;
+
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Cached and bounded resolutions of {@link DnsCache}, with address literals only
+ */
+public class DnsCacheTest
+{
+    @Test
+    public void resolvesAndCachesLiterals() throws Exception
+    {
+        DnsCache cache = new DnsCache(DnsCache.DEFAULT_MAX_ENTRIES, DnsCache.DEFAULT_POSITIVE_TTL, DnsCache.DEFAULT_NEGATIVE_TTL);
+
+        InetAddress address = cache.resolve("127.0.0.1", 1000);
+        assertEquals("127.0.0.1", address.getHostAddress());
+        assertEquals(1, cache.size());
+
+        // Served from the cache, even without any time left
+        assertTrue(address == cache.resolve("127.0.0.1", 0));
+        assertTrue(address == cache.resolve("127.0.0.1"));
+    }
+
+    @Test
+    public void boundedResolveWithoutTimeLeftFails()
+    {
+        DnsCache cache = new DnsCache(DnsCache.DEFAULT_MAX_ENTRIES, DnsCache.DEFAULT_POSITIVE_TTL, DnsCache.DEFAULT_NEGATIVE_TTL);
+
+        try
+        {
+            cache.resolve("not-cached.example.com", 0);
+            fail("Resolved without any time left");
+        }
+        catch (UnknownHostException e)
+        {
+            assertEquals(0, cache.size());
+        }
+    }
+
+    @Test(expected = UnknownHostException.class)
+    public void emptyHostFails() throws Exception
+    {
+        new DnsCache(DnsCache.DEFAULT_MAX_ENTRIES, DnsCache.DEFAULT_POSITIVE_TTL, DnsCache.DEFAULT_NEGATIVE_TTL).resolve("", 1000);
+    }
+}
@@ -0,0 +1,77 @@
+package be.shouldit.proxy.lib.utils;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import be.shouldit.proxy.lib.constants.APLConstants;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Differential fuzzing of {@link HostnameValidator} against the regular expressions it replaces
+ */
+public class HostnameValidatorTest
+{
+    private static final int ITERATIONS = 200000;
+    private static final long SEED = 0x5eedL;
+
+    // Biased towards the characters that drive the grammar, plus a few outside of it
+    private static final char[] ALPHABET = {'a', 'Z', '0', '9', '_', '-', '-', '.', '.', '*', '*', ' ', '/', ':', '\n', 'è'};
+
+    @Test
+    public void knownValues()
+    {
+        assertTrue(HostnameValidator.isValidHostname(""));
+        assertTrue(HostnameValidator.isValidHostname("proxy.example.com"));
+        assertTrue(HostnameValidator.isValidHostname("my-proxy_1.example.com"));
+        assertTrue(HostnameValidator.isValidHostname("10.0.0.1"));
+        assertFalse(HostnameValidator.isValidHostname("proxy..example.com"));
+        assertFalse(HostnameValidator.isValidHostname("-proxy.example.com"));
+        assertFalse(HostnameValidator.isValidHostname("proxy.example.com."));
+        assertFalse(HostnameValidator.isValidHostname("*.example.com"));
+
+        assertTrue(HostnameValidator.isValidExclusion(""));
+        assertTrue(HostnameValidator.isValidExclusion("*.local"));
+        assertTrue(HostnameValidator.isValidExclusion(".example.com"));
+        assertTrue(HostnameValidator.isValidExclusion("*example.com"));
+        assertFalse(HostnameValidator.isValidExclusion("*"));
+        assertFalse(HostnameValidator.isValidExclusion("DEV-*"));
+        assertFalse(HostnameValidator.isValidExclusion("**.example.com"));
+        assertFalse(HostnameValidator.isValidExclusion("..example.com"));
+    }
+
+    @Test
+    public void differentialFuzz()
+    {
+        Random random = new Random(SEED);
+
+        for (int i = 0; i < ITERATIONS; i++)
+        {
+            String value = randomValue(random);
+
+            assertEquals("Hostname: \"" + value + "\"",
+                    APLConstants.HOSTNAME_PATTERN.matcher(value).matches(),
+                    HostnameValidator.isValidHostname(value));
+
+            assertEquals("Exclusion: \"" + value + "\"",
+                    APLConstants.EXCLUSION_PATTERN.matcher(value).matches(),
+                    HostnameValidator.isValidExclusion(value));
+        }
+    }
+
+    private static String randomValue(Random random)
+    {
+        int length = random.nextInt(12);
+        StringBuilder sb = new StringBuilder(length);
+
+        for (int i = 0; i < length; i++)
+        {
+            sb.append(ALPHABET[random.nextInt(ALPHABET.length)]);
+        }
+
+        return sb.toString();
+    }
+}
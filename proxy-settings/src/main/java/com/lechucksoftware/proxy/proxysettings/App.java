@@ -55,7 +55,7 @@ public class App extends Application
         CustomCrashlyticsTree customCrashlyticsTree = new CustomCrashlyticsTree();
         Timber.plant(customCrashlyticsTree);
 
-        APL.setup(App.this);
+        APL.setup(App.this, true);
 
         getTraceUtils().startTrace(TAG, "STARTUP", Log.INFO, true);
 
@@ -40,6 +40,16 @@ public class Intents
      */
     public static final String PROXY_SAVED = INTENT_PREFIX + "PROXY_SAVED";
 
+    /**
+     * Check the reachability of all the saved proxies
+     */
+    public static final String PROXY_HEALTH_SWEEP = INTENT_PREFIX + "PROXY_HEALTH_SWEEP";
+
+    /**
+     * Scheduled re-check of the current proxy configuration
+     */
+    public static final String PROXY_SCHEDULED_CHECK = INTENT_PREFIX + "PROXY_SCHEDULED_CHECK";
+
     /**
      * Receive information from a service for the user
      */
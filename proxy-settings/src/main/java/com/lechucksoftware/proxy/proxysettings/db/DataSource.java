@@ -21,6 +21,7 @@ import java.util.Map;
 import be.shouldit.proxy.lib.APLNetworkId;
 import be.shouldit.proxy.lib.WiFiApConfig;
 import be.shouldit.proxy.lib.enums.SecurityType;
+import be.shouldit.proxy.lib.probe.HealthSweepResult;
 import be.shouldit.proxy.lib.reflection.android.ProxySetting;
 import timber.log.Timber;
 
@@ -42,14 +43,20 @@ public class DataSource
             DatabaseSQLiteOpenHelper.COLUMN_PROXY_COUNTRY_CODE,
             DatabaseSQLiteOpenHelper.COLUMN_PROXY_IN_USE,
             DatabaseSQLiteOpenHelper.COLUMN_CREATION_DATE,
-            DatabaseSQLiteOpenHelper.COLUMN_MODIFIED_DATE};
+            DatabaseSQLiteOpenHelper.COLUMN_MODIFIED_DATE,
+            DatabaseSQLiteOpenHelper.COLUMN_HEALTH_CHECK_DATE,
+            DatabaseSQLiteOpenHelper.COLUMN_HEALTH_REACHABLE,
+            DatabaseSQLiteOpenHelper.COLUMN_HEALTH_LATENCY};
 
     private String[] pacTableColumns = {
             DatabaseSQLiteOpenHelper.COLUMN_ID,
             DatabaseSQLiteOpenHelper.COLUMN_PAC_URL_FILE,
             DatabaseSQLiteOpenHelper.COLUMN_PAC_IN_USE,
             DatabaseSQLiteOpenHelper.COLUMN_CREATION_DATE,
-            DatabaseSQLiteOpenHelper.COLUMN_MODIFIED_DATE};
+            DatabaseSQLiteOpenHelper.COLUMN_MODIFIED_DATE,
+            DatabaseSQLiteOpenHelper.COLUMN_HEALTH_CHECK_DATE,
+            DatabaseSQLiteOpenHelper.COLUMN_HEALTH_REACHABLE,
+            DatabaseSQLiteOpenHelper.COLUMN_HEALTH_LATENCY};
 
     private String[] tagsTableColumns = {
             DatabaseSQLiteOpenHelper.COLUMN_ID,
@@ -926,6 +933,50 @@ public class DataSource
         return updatedPac;
     }
 
+    /**
+     * Store the results of a proxy health sweep. The modified date of the entities is not
+     * changed, since the health status isn't part of the user's configuration.
+     */
+    public void updateHealth(List<HealthSweepResult> results)
+    {
+        App.getTraceUtils().startTrace(TAG, "updateHealth", Log.DEBUG);
+        SQLiteDatabase database = DatabaseSQLiteOpenHelper.getInstance(context).getWritableDatabase();
+        database.beginTransaction();
+
+        try
+        {
+            for (HealthSweepResult result : results)
+            {
+                String table;
+                if (result.getTarget().getProxySetting() == ProxySetting.PAC)
+                    table = DatabaseSQLiteOpenHelper.TABLE_PAC;
+                else
+                    table = DatabaseSQLiteOpenHelper.TABLE_PROXIES;
+
+                ContentValues values = new ContentValues();
+                values.put(DatabaseSQLiteOpenHelper.COLUMN_HEALTH_CHECK_DATE, result.getCheckDate());
+                values.put(DatabaseSQLiteOpenHelper.COLUMN_HEALTH_REACHABLE, result.isReachable() ? 1 : 0);
+                values.put(DatabaseSQLiteOpenHelper.COLUMN_HEALTH_LATENCY, result.getLatencyMillis());
+
+                database.update(table, values, DatabaseSQLiteOpenHelper.COLUMN_ID + " =?", new String[]{String.valueOf(result.getTarget().getId())});
+            }
+
+            database.setTransactionSuccessful();
+        }
+        catch (Exception e)
+        {
+            Timber.e(e,"Exception during updateHealth");
+        }
+        finally
+        {
+            database.endTransaction();
+        }
+
+        context.sendBroadcast(new Intent(Intents.PROXY_REFRESH_UI));
+
+        App.getTraceUtils().stopTrace(TAG, "updateHealth", String.format("Updated %d entities", results.size()), Log.DEBUG);
+    }
+
     private WiFiAPEntity updateWifiAP(long wifiApId, WiFiAPEntity wiFiAPEntity)
     {
         WiFiAPEntity persistedWifiAp = getWifiAP(wifiApId);
@@ -1380,6 +1431,7 @@ public class DataSource
         proxy.setUsedByCount(cursor.getInt(5));
         proxy.setCreationDate(cursor.getLong(6));
         proxy.setModifiedDate(cursor.getLong(7));
+        proxy.setHealth(cursor.getLong(8), cursor.getInt(9) > 0, cursor.getLong(10));
 
         proxy.setPersisted(true);
 
@@ -1399,6 +1451,7 @@ public class DataSource
         pac.setUsedByCount(cursor.getInt(2));
         pac.setCreationDate(cursor.getLong(3));
         pac.setModifiedDate(cursor.getLong(4));
+        pac.setHealth(cursor.getLong(5), cursor.getInt(6) > 0, cursor.getLong(7));
 
         pac.setPersisted(true);
 
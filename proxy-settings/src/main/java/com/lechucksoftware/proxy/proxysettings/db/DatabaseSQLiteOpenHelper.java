@@ -49,8 +49,12 @@ public class DatabaseSQLiteOpenHelper extends SQLiteOpenHelper
     public static final String COLUMN_PAC_URL_FILE = "pacUrlFile";
     public static final String COLUMN_PAC_IN_USE = "pacUsed";
 
+    public static final String COLUMN_HEALTH_CHECK_DATE = "healthCheckDate";
+    public static final String COLUMN_HEALTH_REACHABLE = "healthReachable";
+    public static final String COLUMN_HEALTH_LATENCY = "healthLatency";
+
     public static final String DATABASE_NAME = "proxysettings.db";
-    public static final int DATABASE_VERSION = 4;
+    public static final int DATABASE_VERSION = 5;
 
     // Database creation sql statement
 
@@ -64,7 +68,10 @@ public class DatabaseSQLiteOpenHelper extends SQLiteOpenHelper
             + COLUMN_PROXY_COUNTRY_CODE + " text, "
             + COLUMN_PROXY_IN_USE + " integer not null, "
             + COLUMN_CREATION_DATE + " integer not null, "
-            + COLUMN_MODIFIED_DATE + " integer not null"
+            + COLUMN_MODIFIED_DATE + " integer not null, "
+            + COLUMN_HEALTH_CHECK_DATE + " integer, "
+            + COLUMN_HEALTH_REACHABLE + " integer, "
+            + COLUMN_HEALTH_LATENCY + " integer"
             + ");";
 
     public static final String [] TABLE_PROXIES_COLUMNS = new String[] {
@@ -75,7 +82,10 @@ public class DatabaseSQLiteOpenHelper extends SQLiteOpenHelper
             COLUMN_PROXY_COUNTRY_CODE,
             COLUMN_PROXY_IN_USE,
             COLUMN_CREATION_DATE,
-            COLUMN_MODIFIED_DATE};
+            COLUMN_MODIFIED_DATE,
+            COLUMN_HEALTH_CHECK_DATE,
+            COLUMN_HEALTH_REACHABLE,
+            COLUMN_HEALTH_LATENCY};
 
     public static final String TABLE_PROXIES_COLUMNS_STRING = TextUtils.join(", ", TABLE_PROXIES_COLUMNS);
 
@@ -143,6 +153,22 @@ public class DatabaseSQLiteOpenHelper extends SQLiteOpenHelper
     public static final String TABLE_TABLE_WIFI_AP_COLUMNS_STRING = TextUtils.join(", ", TABLE_TABLE_WIFI_AP_COLUMNS);
 
     private static final String CREATE_TABLE_PAC = "create table "
+            + TABLE_PAC
+            + "("
+            + COLUMN_ID + " integer primary key autoincrement, "
+            + COLUMN_PAC_URL_FILE + " text not null, "
+            + COLUMN_PAC_IN_USE + " integer not null, "
+            + COLUMN_CREATION_DATE + " integer not null, "
+            + COLUMN_MODIFIED_DATE + " integer not null, "
+            + COLUMN_HEALTH_CHECK_DATE + " integer, "
+            + COLUMN_HEALTH_REACHABLE + " integer, "
+            + COLUMN_HEALTH_LATENCY + " integer"
+            + ");";
+
+    /**
+     * TABLE_PAC as created by the upgrade to version 4: the later columns are added by the following upgrades
+     */
+    private static final String CREATE_TABLE_PAC_V4 = "create table "
             + TABLE_PAC
             + "("
             + COLUMN_ID + " integer primary key autoincrement, "
@@ -157,7 +183,10 @@ public class DatabaseSQLiteOpenHelper extends SQLiteOpenHelper
             COLUMN_PAC_URL_FILE,
             COLUMN_PAC_IN_USE,
             COLUMN_CREATION_DATE,
-            COLUMN_MODIFIED_DATE};
+            COLUMN_MODIFIED_DATE,
+            COLUMN_HEALTH_CHECK_DATE,
+            COLUMN_HEALTH_REACHABLE,
+            COLUMN_HEALTH_LATENCY};
 
     public static final String TABLE_TABLE_PAC_COLUMNS_STRING = TextUtils.join(", ", TABLE_TABLE_PAC_COLUMNS);
 
@@ -216,11 +245,11 @@ public class DatabaseSQLiteOpenHelper extends SQLiteOpenHelper
             oldVersion = 4;
         }
 
-//
-//        if (oldVersion == 4)
-//        {
-//            // Do something for v4
-//        }
+        if (oldVersion == 4)
+        {
+            upgradeToVersion5(db);
+            oldVersion = 5;
+        }
     }
 
     public void upgradeToVersion3(SQLiteDatabase db)
@@ -243,7 +272,23 @@ public class DatabaseSQLiteOpenHelper extends SQLiteOpenHelper
          * */
 
         DatabaseUtils.execSQL(db, "ALTER TABLE " + TABLE_WIFI_AP + " ADD COLUMN " + COLUMN_WIFI_PAC_ID + " int");
-        DatabaseUtils.execSQL(db, CREATE_TABLE_PAC);
+        DatabaseUtils.execSQL(db, CREATE_TABLE_PAC_V4);
+    }
+
+    public void upgradeToVersion5(SQLiteDatabase db)
+    {
+        /**
+         * Changes from version 4 to version 5:
+         *
+         * - Added health check columns to TABLE_PROXIES and TABLE_PAC
+         * */
+
+        for (String table : new String[] {TABLE_PROXIES, TABLE_PAC})
+        {
+            DatabaseUtils.execSQL(db, "ALTER TABLE " + table + " ADD COLUMN " + COLUMN_HEALTH_CHECK_DATE + " integer");
+            DatabaseUtils.execSQL(db, "ALTER TABLE " + table + " ADD COLUMN " + COLUMN_HEALTH_REACHABLE + " integer");
+            DatabaseUtils.execSQL(db, "ALTER TABLE " + table + " ADD COLUMN " + COLUMN_HEALTH_LATENCY + " integer");
+        }
     }
 
     public void createDB(SQLiteDatabase db)
@@ -5,6 +5,7 @@ import android.os.Parcel;
 import android.os.Parcelable;
 
 import java.lang.reflect.Field;
+import java.util.Date;
 
 /**
  * Created by Marco on 13/09/13.
@@ -13,6 +14,9 @@ public class PacEntity extends BaseEntity implements Parcelable, Comparable<PacE
 {
     private Uri pacUriFile;
     private int usedByCount;
+    private long healthCheckDate;
+    private boolean healthReachable;
+    private long healthLatency;
 
     @Override
     public void writeToParcel(Parcel dest, int flags)
@@ -21,6 +25,9 @@ public class PacEntity extends BaseEntity implements Parcelable, Comparable<PacE
 
         dest.writeParcelable(this.pacUriFile, 0);
         dest.writeInt(this.usedByCount);
+        dest.writeLong(this.healthCheckDate);
+        dest.writeByte(healthReachable ? (byte) 1 : (byte) 0);
+        dest.writeLong(this.healthLatency);
     }
 
     private PacEntity(Parcel in)
@@ -29,6 +36,9 @@ public class PacEntity extends BaseEntity implements Parcelable, Comparable<PacE
 
         this.pacUriFile = in.readParcelable(Uri.class.getClassLoader());
         this.usedByCount = in.readInt();
+        this.healthCheckDate = in.readLong();
+        this.healthReachable = in.readByte() != 0;
+        this.healthLatency = in.readLong();
     }
 
     public static final Creator<PacEntity> CREATOR = new Creator<PacEntity>()
@@ -121,6 +131,39 @@ public class PacEntity extends BaseEntity implements Parcelable, Comparable<PacE
         this.usedByCount = usedBy;
     }
 
+    public void setHealth(long checkDate, boolean reachable, long latency)
+    {
+        this.healthCheckDate = checkDate;
+        this.healthReachable = reachable;
+        this.healthLatency = latency;
+    }
+
+    /**
+     * True if a health sweep has been run on this entity at least once
+     */
+    public boolean isHealthChecked()
+    {
+        return healthCheckDate > 0;
+    }
+
+    public Date getHealthCheckDate()
+    {
+        return new Date(healthCheckDate);
+    }
+
+    public boolean isHealthReachable()
+    {
+        return healthReachable;
+    }
+
+    /**
+     * Latency measured by the last health sweep, in milliseconds
+     */
+    public long getHealthLatency()
+    {
+        return healthLatency;
+    }
+
     @Override
     public int compareTo(PacEntity pacEntity)
     {
@@ -6,6 +6,7 @@ import android.text.TextUtils;
 
 import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 
 /**
@@ -19,6 +20,9 @@ public class ProxyEntity extends BaseEntity implements Parcelable, Comparable<Pr
     private List<TagEntity> tags;
     private String countryCode;
     private int usedByCount;
+    private long healthCheckDate;
+    private boolean healthReachable;
+    private long healthLatency;
 
     @Override
     public int describeContents() { return 0; }
@@ -34,6 +38,9 @@ public class ProxyEntity extends BaseEntity implements Parcelable, Comparable<Pr
         dest.writeList(this.tags);
         dest.writeString(this.countryCode);
         dest.writeInt(this.usedByCount);
+        dest.writeLong(this.healthCheckDate);
+        dest.writeByte(healthReachable ? (byte) 1 : (byte) 0);
+        dest.writeLong(this.healthLatency);
     }
 
     private ProxyEntity(Parcel in)
@@ -47,6 +54,9 @@ public class ProxyEntity extends BaseEntity implements Parcelable, Comparable<Pr
         in.readList(this.tags, TagEntity.class.getClassLoader());
         this.countryCode = in.readString();
         this.usedByCount = in.readInt();
+        this.healthCheckDate = in.readLong();
+        this.healthReachable = in.readByte() != 0;
+        this.healthLatency = in.readLong();
     }
 
     public static final Creator<ProxyEntity> CREATOR = new Creator<ProxyEntity>()
@@ -277,6 +287,39 @@ public class ProxyEntity extends BaseEntity implements Parcelable, Comparable<Pr
         this.usedByCount = usedBy;
     }
 
+    public void setHealth(long checkDate, boolean reachable, long latency)
+    {
+        this.healthCheckDate = checkDate;
+        this.healthReachable = reachable;
+        this.healthLatency = latency;
+    }
+
+    /**
+     * True if a health sweep has been run on this entity at least once
+     */
+    public boolean isHealthChecked()
+    {
+        return healthCheckDate > 0;
+    }
+
+    public Date getHealthCheckDate()
+    {
+        return new Date(healthCheckDate);
+    }
+
+    public boolean isHealthReachable()
+    {
+        return healthReachable;
+    }
+
+    /**
+     * Latency measured by the last health sweep, in milliseconds
+     */
+    public long getHealthLatency()
+    {
+        return healthLatency;
+    }
+
     @Override
     public int compareTo(ProxyEntity proxyEntity)
     {
@@ -15,8 +15,10 @@ import com.lechucksoftware.proxy.proxysettings.services.WifiSyncService;
 import com.lechucksoftware.proxy.proxysettings.utils.UIUtils;
 
 import be.shouldit.proxy.lib.WiFiApConfig;
+import be.shouldit.proxy.lib.checker.ProxyStatusBroadcaster;
 import be.shouldit.proxy.lib.constants.APLIntents;
 import be.shouldit.proxy.lib.constants.APLReflectionConstants;
+import be.shouldit.proxy.lib.enums.CheckStatusValues;
 import timber.log.Timber;
 
 public class ProxyChangeReceiver extends BroadcastReceiver
@@ -40,6 +42,11 @@ public class ProxyChangeReceiver extends BroadcastReceiver
             // INTERNAL (PS) : Saved a Proxy configuration on DB
             callMaintenanceService(context, intent);
         }
+        else if (intent.getAction().equals(Intents.PROXY_HEALTH_SWEEP))
+        {
+            // INTERNAL (PS) : Requested a reachability check of all the saved proxies
+            callMaintenanceService(context, intent);
+        }
         else if (intent.getAction().equals(APLReflectionConstants.CONFIGURED_NETWORKS_CHANGED_ACTION))
         {
             // Called when a Wi-Fi configured networks is changed
@@ -68,6 +75,18 @@ public class ProxyChangeReceiver extends BroadcastReceiver
         {
             App.getTraceUtils().logIntent(TAG, intent, Log.DEBUG);
 
+            if (intent.getAction().equals(APLIntents.APL_UPDATED_PROXY_STATUS_CHECK))
+            {
+                CheckStatusValues checkingStatus = ProxyStatusBroadcaster.getCheckingStatus(intent);
+
+                if (ProxyStatusBroadcaster.getChangedProperties(intent).isEmpty()
+                        || (checkingStatus != null && checkingStatus != CheckStatusValues.CHECKED))
+                {
+                    // The status bar notification depends only on the completed checks
+                    return;
+                }
+            }
+
             WiFiApConfig wiFiApConfig = App.getWifiNetworksManager().getCachedConfiguration();
             if (wiFiApConfig == null)
                 wiFiApConfig = App.getWifiNetworksManager().updateCurrentConfiguration();
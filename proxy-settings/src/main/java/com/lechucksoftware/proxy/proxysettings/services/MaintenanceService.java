@@ -1,7 +1,10 @@
 package com.lechucksoftware.proxy.proxysettings.services;
 
 import android.app.IntentService;
+import android.content.Context;
 import android.content.Intent;
+import android.net.ConnectivityManager;
+import android.support.v4.net.ConnectivityManagerCompat;
 import android.text.TextUtils;
 import android.util.Log;
 
@@ -12,11 +15,17 @@ import com.lechucksoftware.proxy.proxysettings.db.ProxyEntity;
 import com.lechucksoftware.proxy.proxysettings.utils.Utils;
 
 import java.net.Proxy;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
 import be.shouldit.proxy.lib.APL;
 import be.shouldit.proxy.lib.constants.APLConstants;
+import be.shouldit.proxy.lib.probe.HealthSweepResult;
+import be.shouldit.proxy.lib.probe.HealthSweepTarget;
+import be.shouldit.proxy.lib.probe.ProxyHealthSweep;
 import be.shouldit.proxy.lib.reflection.android.ProxySetting;
 import be.shouldit.proxy.lib.utils.ProxyUtils;
 import timber.log.Timber;
@@ -25,6 +34,9 @@ public class MaintenanceService extends IntentService
 {
     public static final String CALLER_INTENT = "CallerIntent";
     public static String TAG = MaintenanceService.class.getSimpleName();
+    private static final int HEALTH_SWEEP_CONCURRENCY = ProxyHealthSweep.DEFAULT_MAX_CONCURRENCY;
+    private static final int HEALTH_SWEEP_DEADLINE = 60 * 1000;
+    private static final long HEALTH_SWEEP_STARTUP_INTERVAL = 24 * 60 * 60 * 1000;  // 1 day
     private boolean isHandling = false;
     private static MaintenanceService instance;
 
@@ -73,11 +85,16 @@ public class MaintenanceService extends IntentService
                         checkDBConsistence();
                         checkProxiesCountryCodes();
                         Utils.checkDemoMode(getApplicationContext());
+                        checkProxiesHealth(false);
                     }
                     else if (callerIntent.getAction().equals(Intents.PROXY_SAVED))
                     {
                         checkProxiesCountryCodes();
                     }
+                    else if (callerIntent.getAction().equals(Intents.PROXY_HEALTH_SWEEP))
+                    {
+                        checkProxiesHealth(true);
+                    }
                     else
                     {
                         Timber.e("Intent not handled: " + callerIntent.toString());
@@ -137,6 +154,77 @@ public class MaintenanceService extends IntentService
         App.getTraceUtils().stopTrace(TAG,"checkInUseProxyFlag", String.format("Checked %d proxies",checked), Log.DEBUG);
     }
 
+    /**
+     * @param requested true when explicitly requested (PROXY_HEALTH_SWEEP), false on startup: then the sweep runs
+     * at most once every {@link #HEALTH_SWEEP_STARTUP_INTERVAL} and never on metered networks
+     */
+    private void checkProxiesHealth(boolean requested)
+    {
+        if (!requested && isActiveNetworkMetered())
+        {
+            Timber.d("Skipping startup health sweep on metered network");
+            return;
+        }
+
+        App.getTraceUtils().startTrace(TAG, "checkProxiesHealth", Log.DEBUG);
+
+        List<HealthSweepTarget> targets = new ArrayList<HealthSweepTarget>();
+        long lastCheck = 0;
+
+        Map<Long, ProxyEntity> proxiesMap = App.getDBManager().getAllProxiesWithTAGs();
+        if (proxiesMap != null)
+        {
+            for (ProxyEntity proxy : proxiesMap.values())
+            {
+                if (proxy.isHealthChecked())
+                    lastCheck = Math.max(lastCheck, proxy.getHealthCheckDate().getTime());
+
+                targets.add(HealthSweepTarget.forProxy(proxy.getId(), proxy.getHost(), proxy.getPort() != null ? proxy.getPort() : -1));
+            }
+        }
+
+        Map<Long, PacEntity> pacMap = App.getDBManager().getAllPac();
+        if (pacMap != null)
+        {
+            for (PacEntity pac : pacMap.values())
+            {
+                if (pac.isHealthChecked())
+                    lastCheck = Math.max(lastCheck, pac.getHealthCheckDate().getTime());
+
+                try
+                {
+                    targets.add(HealthSweepTarget.forPac(pac.getId(), new URI(pac.getPacUriFile().toString())));
+                }
+                catch (URISyntaxException e)
+                {
+                    Timber.w("Skipping health check of invalid PAC URI: %s", pac.getPacUriFile());
+                }
+            }
+        }
+
+        if (!requested && System.currentTimeMillis() - lastCheck < HEALTH_SWEEP_STARTUP_INTERVAL)
+        {
+            App.getTraceUtils().stopTrace(TAG, "checkProxiesHealth", "Skipped, last sweep is recent", Log.DEBUG);
+            return;
+        }
+
+        ProxyHealthSweep sweep = new ProxyHealthSweep(HEALTH_SWEEP_CONCURRENCY, HEALTH_SWEEP_DEADLINE);
+        List<HealthSweepResult> results = sweep.run(targets);
+
+        if (!results.isEmpty())
+        {
+            App.getDBManager().updateHealth(results);
+        }
+
+        App.getTraceUtils().stopTrace(TAG, "checkProxiesHealth", String.format("Checked %d of %d proxies", results.size(), targets.size()), Log.DEBUG);
+    }
+
+    private boolean isActiveNetworkMetered()
+    {
+        ConnectivityManager connectivityManager = (ConnectivityManager) getSystemService(Context.CONNECTIVITY_SERVICE);
+        return connectivityManager == null || ConnectivityManagerCompat.isActiveNetworkMetered(connectivityManager);
+    }
+
     private void checkProxiesCountryCodes()
     {
         Proxy proxy = null;
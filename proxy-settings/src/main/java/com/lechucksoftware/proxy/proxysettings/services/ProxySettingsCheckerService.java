@@ -1,24 +1,29 @@
 package com.lechucksoftware.proxy.proxysettings.services;
 
+import android.app.AlarmManager;
 import android.app.IntentService;
+import android.app.PendingIntent;
+import android.content.Context;
 import android.content.Intent;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
 import android.net.Proxy;
 import android.net.wifi.WifiManager;
+import android.os.SystemClock;
 import android.util.Log;
 
 import com.lechucksoftware.proxy.proxysettings.App;
 import com.lechucksoftware.proxy.proxysettings.constants.Intents;
 import com.lechucksoftware.proxy.proxysettings.utils.UIUtils;
 
-import java.util.Date;
-
 import be.shouldit.proxy.lib.APL;
+import be.shouldit.proxy.lib.ProxyCheckHandle;
+import be.shouldit.proxy.lib.ProxyCheckListener;
+import be.shouldit.proxy.lib.ProxyStatus;
+import be.shouldit.proxy.lib.ProxyStatusItem;
 import be.shouldit.proxy.lib.constants.APLConstants;
 import be.shouldit.proxy.lib.WiFiApConfig;
 import be.shouldit.proxy.lib.enums.ProxyCheckOptions;
-import be.shouldit.proxy.lib.utils.ProxyUtils;
 import timber.log.Timber;
 
 public class ProxySettingsCheckerService extends IntentService
@@ -27,6 +32,7 @@ public class ProxySettingsCheckerService extends IntentService
     public static String TAG = ProxySettingsCheckerService.class.getSimpleName();
     private boolean isHandling = false;
     private static ProxySettingsCheckerService instance;
+    private static ProxyCheckHandle runningCheck;
 
     public ProxySettingsCheckerService()
     {
@@ -72,16 +78,21 @@ public class ProxySettingsCheckerService extends IntentService
 
                 if (callerAction.equals(Intents.PROXY_SETTINGS_STARTED)
                         || callerAction.equals(Intents.PROXY_SETTINGS_MANUAL_REFRESH)
+                        || callerAction.equals(Intents.PROXY_SCHEDULED_CHECK)
                         || callerAction.equals(WifiManager.SCAN_RESULTS_AVAILABLE_ACTION)
                         || callerAction.equals(WifiManager.WIFI_STATE_CHANGED_ACTION)
 //                        || callerAction.equals(Intents.WIFI_AP_UPDATED)
                         || callerAction.equals(Proxy.PROXY_CHANGE_ACTION)
                         || callerAction.equals("android.net.wifi.CONFIGURED_NETWORKS_CHANGED_ACTION"))
                 {
-                    checkProxySettings();
+                    // A manual refresh always checks again, ignoring the cached results
+                    checkProxySettings(callerAction.equals(Intents.PROXY_SETTINGS_MANUAL_REFRESH));
                 }
                 else if (callerAction.equals(ConnectivityManager.CONNECTIVITY_ACTION))
                 {
+                    // A running check refers to the previous network: abort it
+                    cancelRunningCheck();
+
                     Boolean noConnectivity = callerIntent.getBooleanExtra(ConnectivityManager.EXTRA_NO_CONNECTIVITY, false);
                     if (noConnectivity)
                     {
@@ -94,7 +105,7 @@ public class ProxySettingsCheckerService extends IntentService
 
                     if (ni != null && ni.isConnected())
                     {
-                        checkProxySettings();
+                        checkProxySettings(false);
                     }
                     else
                     {
@@ -121,7 +132,7 @@ public class ProxySettingsCheckerService extends IntentService
 //        LogWrapper.d(TAG, "ProxySettingsCheckerService destroying");
     }
 
-    private void checkProxySettings()
+    private void checkProxySettings(boolean forceCheck)
     {
         App.getTraceUtils().startTrace(TAG, "checkProxySettings", Log.DEBUG);
 
@@ -139,23 +150,24 @@ public class ProxySettingsCheckerService extends IntentService
                 {
                     Timber.d("Checking configuration: " + conf.toShortString());
 
-                    if (conf.getStatus() != null
-                            && conf.getStatus().checkedDate != null)
+                    if (forceCheck)
+                    {
+                        Timber.d("Forced check of the current configuration");
+                        checkNewConf = true;
+                    }
+                    else if (APL.getProxyCheckScheduler().isCollapsed(conf))
                     {
-                        long diffMsec = new Date().getTime() - conf.getStatus().checkedDate.getTime();
-                        long diffSeconds = diffMsec / 1000;
-                        long diffMinutes = diffMsec / (60 * 1000);
-
-                        if (diffMinutes > 30)
-                        {
-                            checkNewConf = true;
-                            // Skip check when configuration is the same
-                            Timber.d("Same configuration for 30 minutes check again!");
-                        }
+                        // Duplicated trigger (i.e. burst of connectivity and scan events)
+                        Timber.d("Configuration check already started recently, skip");
+                    }
+                    else if (APL.getProxyCheckCache().restore(conf))
+                    {
+                        // Same configuration checked recently, also before a restart of the process
+                        Timber.d("Restored cached proxy status: " + conf.getStatus().toShortString());
                     }
                     else
                     {
-                        Timber.d("Current configuration has not been checked -> needs to check the proxy status");
+                        Timber.d("Current configuration needs to be checked again -> needs to check the proxy status");
                         checkNewConf = true;
                     }
                 }
@@ -169,8 +181,7 @@ public class ProxySettingsCheckerService extends IntentService
                 if (checkNewConf)
                 {
                     Timber.d("Changed current proxy configuration: calling refresh of proxy status");
-                    ProxyUtils.acquireProxyStatus(conf, conf.getStatus(), ProxyCheckOptions.ALL, APLConstants.DEFAULT_TIMEOUT);
-                    Timber.d("Acquired refreshed proxy configuration: " + conf.toShortString());
+                    startProxyCheck(conf);
                 }
                 else
                 {
@@ -194,14 +205,86 @@ public class ProxySettingsCheckerService extends IntentService
         App.getTraceUtils().stopTrace(TAG, "checkProxySettings", Log.DEBUG);
     }
 
-    public void callRefreshApplicationStatus()
+    private static synchronized void startProxyCheck(final WiFiApConfig conf)
+    {
+        if (runningCheck != null && !runningCheck.isDone())
+        {
+            if (runningCheck.getConfiguration().isSameConfiguration(conf))
+            {
+                Timber.d("Already checking configuration: " + conf.toShortString());
+                return;
+            }
+
+            cancelRunningCheck();
+        }
+
+        APL.getProxyCheckScheduler().checkStarted(conf);
+        runningCheck = APL.acquireProxyStatusAsync(conf, ProxyCheckOptions.ALL, APLConstants.DEFAULT_TIMEOUT, new ProxyCheckListener()
+        {
+            @Override
+            public void onStatusItemUpdated(ProxyStatusItem item)
+            {
+                // Intermediate updates are already broadcasted by APL
+            }
+
+            @Override
+            public void onCheckCompleted(ProxyStatus status)
+            {
+                Timber.d("Acquired refreshed proxy status: " + status.toShortString());
+                // The cached result is valid until the next check chosen by the scheduler
+                long interval = APL.getProxyCheckScheduler().checkCompleted(conf, status);
+                APL.getProxyCheckCache().put(conf, status, interval);
+                scheduleNextCheck(interval);
+                callRefreshApplicationStatus();
+            }
+
+            @Override
+            public void onCheckCancelled(ProxyStatus status)
+            {
+                Timber.d("Proxy status check cancelled");
+            }
+        });
+    }
+
+    /**
+     * Sets a (not waking up) alarm for the next check of the current configuration
+     */
+    private static void scheduleNextCheck(long interval)
+    {
+        Context context = App.getInstance();
+
+        Intent serviceIntent = new Intent(context, ProxySettingsCheckerService.class);
+        serviceIntent.putExtra(CALLER_INTENT, new Intent(Intents.PROXY_SCHEDULED_CHECK));
+        PendingIntent pendingIntent = PendingIntent.getService(context, 0, serviceIntent, PendingIntent.FLAG_UPDATE_CURRENT);
+
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        alarmManager.set(AlarmManager.ELAPSED_REALTIME, SystemClock.elapsedRealtime() + interval, pendingIntent);
+
+        Timber.d("Scheduled next proxy check in %d s", interval / 1000);
+    }
+
+    private static synchronized void cancelRunningCheck()
+    {
+        if (runningCheck != null)
+        {
+            if (!runningCheck.isDone())
+            {
+                runningCheck.cancel();
+                APL.getProxyCheckScheduler().checkCancelled(runningCheck.getConfiguration());
+            }
+
+            runningCheck = null;
+        }
+    }
+
+    public static void callRefreshApplicationStatus()
     {
         /**
          * Call the update of the UI
          * */
         Timber.d("Sending broadcast intent " + Intents.PROXY_REFRESH_UI);
         Intent intent = new Intent(Intents.PROXY_REFRESH_UI);
-        getApplicationContext().sendBroadcast(intent);
+        App.getInstance().sendBroadcast(intent);
 
         WiFiApConfig wiFiApConfig = App.getWifiNetworksManager().getCachedConfiguration();
         if (wiFiApConfig == null)
@@ -209,7 +292,7 @@ public class ProxySettingsCheckerService extends IntentService
 
         if (wiFiApConfig != null)
         {
-            UIUtils.UpdateStatusBarNotification(wiFiApConfig, getApplicationContext());
+            UIUtils.UpdateStatusBarNotification(wiFiApConfig, App.getInstance());
         }
     }
 }
@@ -1,6 +1,7 @@
 package com.lechucksoftware.proxy.proxysettings.ui.adapters;
 
 import android.content.Context;
+import android.content.res.ColorStateList;
 import android.text.TextUtils;
 import android.util.Log;
 import android.view.LayoutInflater;
@@ -38,6 +39,7 @@ public class PacListAdapter extends ArrayAdapter<PacEntity>
         TextView pacUrlFile;
         TextView used;
         LinearLayout usedLayout;
+        ColorStateList pacUrlFileColors;
     }
 
     public void setData(List<PacEntity> confList)
@@ -54,7 +56,8 @@ public class PacListAdapter extends ArrayAdapter<PacEntity>
                 PacEntity adapterPacItem = this.getItem(i);
                 PacEntity newPacItem = confList.get(i);
 
-                if (!adapterPacItem.equals(newPacItem))
+                if (!adapterPacItem.equals(newPacItem)
+                        || adapterPacItem.isHealthReachable() != newPacItem.isHealthReachable())
                 {
                     // Changed the Proxies order
                     Timber.d("setData order: Expecting %s, Found %s", newPacItem, adapterPacItem);
@@ -103,6 +106,7 @@ public class PacListAdapter extends ArrayAdapter<PacEntity>
             viewHolder.pacUrlFile = (TextView) view.findViewById(R.id.list_item_pac_url_file);
             viewHolder.used = (TextView) view.findViewById(R.id.li_pac_used_txt);
             viewHolder.usedLayout = (LinearLayout) view.findViewById(R.id.li_pac_used_layout);
+            viewHolder.pacUrlFileColors = viewHolder.pacUrlFile.getTextColors();
 
             view.setTag(viewHolder);
         }
@@ -116,6 +120,11 @@ public class PacListAdapter extends ArrayAdapter<PacEntity>
         if (listItem != null)
         {
             viewHolder.pacUrlFile.setText(listItem.getPacUriFile().toString());
+
+            if (listItem.isHealthChecked())
+                viewHolder.pacUrlFile.setTextColor(getContext().getResources().getColor(listItem.isHealthReachable() ? R.color.green_400 : R.color.red_400));
+            else
+                viewHolder.pacUrlFile.setTextColor(viewHolder.pacUrlFileColors);
             viewHolder.used.setText(String.valueOf(listItem.getUsedByCount()));
             viewHolder.usedLayout.setVisibility(UIUtils.booleanToVisibility(listItem.getInUse()));
         }
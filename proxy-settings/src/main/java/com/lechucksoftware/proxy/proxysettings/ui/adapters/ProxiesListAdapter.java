@@ -1,6 +1,7 @@
 package com.lechucksoftware.proxy.proxysettings.ui.adapters;
 
 import android.content.Context;
+import android.content.res.ColorStateList;
 import android.text.Spannable;
 import android.text.SpannableStringBuilder;
 import android.text.TextUtils;
@@ -47,6 +48,7 @@ public class ProxiesListAdapter extends ArrayAdapter<ProxyEntity>
 //        TagsView tags;
         TextView used;
         LinearLayout usedLayout;
+        ColorStateList hostColors;
     }
 
     public void setData(List<ProxyEntity> confList)
@@ -63,7 +65,8 @@ public class ProxiesListAdapter extends ArrayAdapter<ProxyEntity>
                 ProxyEntity adapterProxyItem = this.getItem(i);
                 ProxyEntity newProxyItem = confList.get(i);
 
-                if (!adapterProxyItem.equals(newProxyItem))
+                if (!adapterProxyItem.equals(newProxyItem)
+                        || adapterProxyItem.isHealthReachable() != newProxyItem.isHealthReachable())
                 {
                     // Changed the Proxies order
                     Timber.d("setData order: Expecting %s, Found %s", newProxyItem, adapterProxyItem);
@@ -115,6 +118,7 @@ public class ProxiesListAdapter extends ArrayAdapter<ProxyEntity>
 //            viewHolder.tags = (TagsView) view.findViewById(R.id.list_item_proxy_tags);
             viewHolder.used = (TextView) view.findViewById(R.id.li_proxy_used_txt);
             viewHolder.usedLayout = (LinearLayout) view.findViewById(R.id.proxy_used_layout);
+            viewHolder.hostColors = viewHolder.host.getTextColors();
             view.setTag(viewHolder);
         }
         else
@@ -127,6 +131,11 @@ public class ProxiesListAdapter extends ArrayAdapter<ProxyEntity>
         if (listItem != null)
         {
             viewHolder.host.setText(listItem.getHost());
+
+            if (listItem.isHealthChecked())
+                viewHolder.host.setTextColor(getContext().getResources().getColor(listItem.isHealthReachable() ? R.color.green_400 : R.color.red_400));
+            else
+                viewHolder.host.setTextColor(viewHolder.hostColors);
             viewHolder.port.setText(listItem.getPort().toString());
 
             SpannableStringBuilder ssb = new SpannableStringBuilder();
@@ -4,13 +4,20 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.support.v4.app.Fragment;
 import android.util.Log;
 
 import com.lechucksoftware.proxy.proxysettings.App;
 import com.lechucksoftware.proxy.proxysettings.constants.Intents;
 import com.lechucksoftware.proxy.proxysettings.utils.WifiScannerHandler;
 
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+
+import be.shouldit.proxy.lib.checker.ProxyStatusBroadcaster;
 import be.shouldit.proxy.lib.constants.APLIntents;
+import be.shouldit.proxy.lib.enums.ProxyStatusProperties;
 import timber.log.Timber;
 
 /**
@@ -73,6 +80,36 @@ public class BaseWifiActivity extends BaseActivity
         }
     }
 
+    /**
+     * Refreshes only the fragments showing one of the changed status properties
+     */
+    private void refreshStatusUI(EnumSet<ProxyStatusProperties> changed)
+    {
+        try
+        {
+            List<Fragment> fragments = getSupportFragmentManager().getFragments();
+            if (fragments == null)
+                return;
+
+            for (Fragment f : fragments)
+            {
+                if (f instanceof IStatusFragment)
+                {
+                    IStatusFragment statusFragment = (IStatusFragment) f;
+                    if (!Collections.disjoint(statusFragment.getBoundStatusProperties(), changed))
+                    {
+                        Timber.d("RefreshUI of %s", f.getClass().getSimpleName());
+                        statusFragment.refreshUI();
+                    }
+                }
+            }
+        }
+        catch (Exception e)
+        {
+            Timber.e(e, "Exception during IStatusFragment refresh from %s", this.getClass().getSimpleName());
+        }
+    }
+
     private BroadcastReceiver changeStatusReceiver = new BroadcastReceiver()
     {
         @Override
@@ -84,8 +121,9 @@ public class BaseWifiActivity extends BaseActivity
 
             if (action.equals(APLIntents.APL_UPDATED_PROXY_STATUS_CHECK))
             {
-                Timber.d("Received broadcast for partial update on status of proxy configuration - RefreshUI");
-                refreshUI();
+                EnumSet<ProxyStatusProperties> changed = ProxyStatusBroadcaster.getChangedProperties(intent);
+                Timber.d("Received broadcast for partial update on status of proxy configuration %s", changed);
+                refreshStatusUI(changed);
             }
             else if (action.equals(Intents.PROXY_REFRESH_UI))
             {
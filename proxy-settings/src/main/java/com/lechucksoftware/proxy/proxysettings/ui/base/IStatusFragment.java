@@ -0,0 +1,14 @@
+package com.lechucksoftware.proxy.proxysettings.ui.base;
+
+import java.util.EnumSet;
+
+import be.shouldit.proxy.lib.enums.ProxyStatusProperties;
+
+/**
+ * Fragment whose views show part of the proxy status: on a partial status update it is
+ * refreshed only if one of its bound properties has changed
+ */
+public interface IStatusFragment extends IBaseFragment
+{
+    public EnumSet<ProxyStatusProperties> getBoundStatusProperties();
+}
@@ -29,6 +29,7 @@ import java.util.Map;
 import java.util.UUID;
 
 import be.shouldit.proxy.lib.ProxyStatusItem;
+import be.shouldit.proxy.lib.exclusion.ExclusionListValidator;
 import be.shouldit.proxy.lib.utils.ProxyUtils;
 import timber.log.Timber;
 
@@ -44,6 +45,7 @@ public class InputExclusionList extends LinearLayout
     private boolean readonly;
     private String exclusionString = "";
     private Map<UUID, InputField> exclusionInputFieldsMap;
+    private ExclusionListValidator exclusionValidator;
     private UIHandler uiHandler;
     private boolean singleLine;
     private float textSize;
@@ -55,6 +57,7 @@ public class InputExclusionList extends LinearLayout
         super(context, attrs);
 
         exclusionInputFieldsMap = new LinkedHashMap<UUID, InputField>();
+        exclusionValidator = new ExclusionListValidator();
 
         uiHandler = new UIHandler();
 
@@ -106,6 +109,7 @@ public class InputExclusionList extends LinearLayout
             {
                 UUID idToRemove = (UUID) view.getTag();
                 InputField i = exclusionInputFieldsMap.remove(idToRemove);
+                exclusionValidator.remove(idToRemove);
                 bypassContainer.removeView(i);
                 uiHandler.callRefreshExclusionList();
             }
@@ -153,12 +157,14 @@ public class InputExclusionList extends LinearLayout
 
             bypassContainer.removeAllViews();
             exclusionInputFieldsMap.clear();
+            exclusionValidator.reset();
 
             for (String bypass : exclusionList)
             {
                 InputField inputField = createExclusionInputField();
                 inputField.setValue(bypass);
                 exclusionInputFieldsMap.put(inputField.getUUID(), inputField);
+                exclusionValidator.validate(inputField.getUUID(), bypass);
             }
         }
 
@@ -167,6 +173,14 @@ public class InputExclusionList extends LinearLayout
         App.getTraceUtils().stopTrace(TAG, "setExclusionString", Log.DEBUG);
     }
 
+    /**
+     * Verdict on the entries of the list, kept up to date while they are edited
+     */
+    public boolean isExclusionListValid()
+    {
+        return exclusionValidator.isTrackedListValid();
+    }
+
     public String getExclusionString()
     {
         List<String> values = new ArrayList<String>();
@@ -351,15 +365,18 @@ public class InputExclusionList extends LinearLayout
         @Override
         public void afterTextChanged(Editable editable)
         {
-            updateExclusionStringValue();
-
             String value = editable.toString();
             inputField.setError(null);
-            ProxyStatusItem item = ProxyUtils.isProxyValidExclusionAddress(value);
-            if (!item.result)
+
+            // Only the edited entry is validated again, the verdicts of the others are cached
+            if (!exclusionValidator.validate(inputField.getUUID(), value))
             {
+                ProxyStatusItem item = ProxyUtils.isProxyValidExclusionAddress(value.trim());
                 inputField.setError(item.message);
             }
+
+            // The listeners read the verdict of the list: notify them once the entry has been validated
+            updateExclusionStringValue();
         }
     }
 
@@ -2,6 +2,7 @@ package com.lechucksoftware.proxy.proxysettings.ui.fragments;
 
 import android.content.Intent;
 import android.net.Uri;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
@@ -15,6 +16,7 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.RelativeLayout;
 import android.widget.ScrollView;
+import android.widget.TextView;
 
 import com.lechucksoftware.proxy.proxysettings.App;
 import com.lechucksoftware.proxy.proxysettings.R;
@@ -30,11 +32,14 @@ import com.lechucksoftware.proxy.proxysettings.ui.components.InputField;
 import com.lechucksoftware.proxy.proxysettings.ui.dialogs.UpdateLinkedWifiAPAlertDialog;
 import com.lechucksoftware.proxy.proxysettings.utils.UIUtils;
 
+import java.text.DateFormat;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import be.shouldit.proxy.lib.APL;
 import be.shouldit.proxy.lib.ProxyStatusItem;
+import be.shouldit.proxy.lib.checker.PacScript;
 import be.shouldit.proxy.lib.enums.ProxyStatusProperties;
 import be.shouldit.proxy.lib.utils.ProxyUtils;
 import timber.log.Timber;
@@ -51,6 +56,9 @@ public class PacDetailFragment extends BaseDialogFragment
     private boolean deleteEnabled;
 
     private InputField pacUrlFile;
+    private TextView pacScriptTitle;
+    private TextView pacScript;
+    private AsyncLoadPacScript pacScriptLoader;
 
     private Long selectedPacId;
     private PacEntity selectedPac;
@@ -121,6 +129,9 @@ public class PacDetailFragment extends BaseDialogFragment
         proxyInUseBanner = (RelativeLayout) v.findViewById(R.id.proxy_in_use_banner);
         proxyDuplicatedBanner = (RelativeLayout) v.findViewById(R.id.proxy_duplicated_banner);
 
+        pacScriptTitle = (TextView) v.findViewById(R.id.pac_script_title);
+        pacScript = (TextView) v.findViewById(R.id.pac_script);
+
         pacUrlFile = (InputField) v.findViewById(R.id.pac_url);
         pacUrlFile.addTextChangedListener(new TextWatcher()
         {
@@ -196,6 +207,7 @@ public class PacDetailFragment extends BaseDialogFragment
             pacUrlFile.setValue(selectedPac.getPacUriFile());
 
             checkValidation();
+            refreshPacScript();
         }
         else
         {
@@ -204,6 +216,74 @@ public class PacDetailFragment extends BaseDialogFragment
         }
     }
 
+    /**
+     * Shows the PAC script downloaded by the last proxy check, without downloading it again.
+     * The cache is read from disk, so it's loaded in background.
+     */
+    private void refreshPacScript()
+    {
+        if (pacScriptLoader != null)
+        {
+            pacScriptLoader.cancel(false);
+            pacScriptLoader = null;
+        }
+
+        Uri urlFile = selectedPac.getPacUriFile();
+
+        if (urlFile != null)
+        {
+            pacScriptLoader = new AsyncLoadPacScript(urlFile.toString());
+            pacScriptLoader.execute();
+        }
+        else
+        {
+            showPacScript(null);
+        }
+    }
+
+    private void showPacScript(PacScript script)
+    {
+        if (script != null)
+        {
+            String fetchDate = DateFormat.getDateTimeInstance().format(script.getFetchDate());
+            pacScriptTitle.setText(getString(R.string.pac_cached_script, fetchDate));
+            pacScript.setText(script.getBody());
+            pacScript.setVisibility(View.VISIBLE);
+        }
+        else
+        {
+            pacScriptTitle.setText(R.string.pac_no_cached_script);
+            pacScript.setText(null);
+            pacScript.setVisibility(View.GONE);
+        }
+    }
+
+    private class AsyncLoadPacScript extends AsyncTask<Void, Void, PacScript>
+    {
+        private final String url;
+
+        AsyncLoadPacScript(String pacUrl)
+        {
+            url = pacUrl;
+        }
+
+        @Override
+        protected PacScript doInBackground(Void... voids)
+        {
+            return APL.getPacScriptCache().get(url);
+        }
+
+        @Override
+        protected void onPostExecute(PacScript script)
+        {
+            if (pacScriptLoader == this)
+                pacScriptLoader = null;
+
+            if (!isCancelled() && isAdded())
+                showPacScript(script);
+        }
+    }
+
     private class UIHandler extends Handler
     {
         @Override
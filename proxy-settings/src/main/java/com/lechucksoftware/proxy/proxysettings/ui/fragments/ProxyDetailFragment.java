@@ -193,11 +193,11 @@ public class ProxyDetailFragment extends BaseDialogFragment
         String value = proxyBypass.getExclusionString();
         Timber.d("Exclusion list updated: " + value);
 
-        ProxyStatusItem item = ProxyUtils.isProxyValidExclusionList(value);
-        validationErrors.remove(item.statusCode);
-        if (!item.result)
+        // The entries are validated by the list itself while they are edited
+        validationErrors.remove(ProxyStatusProperties.PROXY_VALID_EXCLUSION_LIST);
+        if (!proxyBypass.isExclusionListValid())
         {
-            validationErrors.put(item.statusCode,item.message);
+            validationErrors.put(ProxyStatusProperties.PROXY_VALID_EXCLUSION_LIST, getString(R.string.status_exclusion_list_notvalid));
             return false;
         }
         else
@@ -32,7 +32,7 @@ import com.lechucksoftware.proxy.proxysettings.ui.activities.MasterActivity;
 import com.lechucksoftware.proxy.proxysettings.ui.activities.ProxyDetailActivity;
 import com.lechucksoftware.proxy.proxysettings.ui.activities.ProxySelectorListActivity;
 import com.lechucksoftware.proxy.proxysettings.ui.base.BaseFragment;
-import com.lechucksoftware.proxy.proxysettings.ui.base.IBaseFragment;
+import com.lechucksoftware.proxy.proxysettings.ui.base.IStatusFragment;
 import com.lechucksoftware.proxy.proxysettings.ui.components.InputExclusionList;
 import com.lechucksoftware.proxy.proxysettings.ui.components.InputField;
 import com.lechucksoftware.proxy.proxysettings.ui.components.WifiAp;
@@ -41,11 +41,13 @@ import com.lechucksoftware.proxy.proxysettings.utils.FragmentsUtils;
 import com.lechucksoftware.proxy.proxysettings.utils.UIUtils;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
 
 import be.shouldit.proxy.lib.APLNetworkId;
 import be.shouldit.proxy.lib.WiFiApConfig;
+import be.shouldit.proxy.lib.enums.ProxyStatusProperties;
 import be.shouldit.proxy.lib.reflection.android.ProxySetting;
 import be.shouldit.proxy.lib.utils.ProxyUtils;
 import butterknife.ButterKnife;
@@ -54,7 +56,7 @@ import butterknife.OnClick;
 import timber.log.Timber;
 
 
-public class WiFiApDetailFragment extends BaseFragment implements IBaseFragment
+public class WiFiApDetailFragment extends BaseFragment implements IStatusFragment
 {
     public static final String TAG = WiFiApDetailFragment.class.getSimpleName();
 
@@ -205,6 +207,13 @@ public class WiFiApDetailFragment extends BaseFragment implements IBaseFragment
         }
     }
 
+    @Override
+    public EnumSet<ProxyStatusProperties> getBoundStatusProperties()
+    {
+        // Header of the network: its color shows if it is the active one
+        return EnumSet.of(ProxyStatusProperties.WIFI_ENABLED, ProxyStatusProperties.WIFI_SELECTED);
+    }
+
     public void refreshUI()
     {
         App.getTraceUtils().startTrace(TAG, "refreshUI", Log.DEBUG);
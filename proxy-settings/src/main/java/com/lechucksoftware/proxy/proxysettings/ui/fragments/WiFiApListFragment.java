@@ -27,17 +27,19 @@ import com.lechucksoftware.proxy.proxysettings.ui.activities.MasterActivity;
 import com.lechucksoftware.proxy.proxysettings.ui.activities.WiFiApDetailActivity;
 import com.lechucksoftware.proxy.proxysettings.ui.adapters.WifiAPListAdapter;
 import com.lechucksoftware.proxy.proxysettings.ui.base.BaseFragment;
-import com.lechucksoftware.proxy.proxysettings.ui.base.IBaseFragment;
+import com.lechucksoftware.proxy.proxysettings.ui.base.IStatusFragment;
 import com.lechucksoftware.proxy.proxysettings.utils.Utils;
 import com.nispok.snackbar.Snackbar;
 import com.nispok.snackbar.SnackbarManager;
 import com.nispok.snackbar.enums.SnackbarType;
 import com.nispok.snackbar.listeners.ActionClickListener;
 
+import java.util.EnumSet;
 import java.util.List;
 
 import be.shouldit.proxy.lib.APL;
 import be.shouldit.proxy.lib.WiFiApConfig;
+import be.shouldit.proxy.lib.enums.ProxyStatusProperties;
 import be.shouldit.proxy.lib.enums.SecurityType;
 import butterknife.ButterKnife;
 import butterknife.InjectView;
@@ -47,7 +49,7 @@ import timber.log.Timber;
 /**
  * Created by marco on 17/05/13.
  */
-public class WiFiApListFragment extends BaseFragment implements IBaseFragment, LoaderManager.LoaderCallbacks<List<WiFiApConfig>>
+public class WiFiApListFragment extends BaseFragment implements IStatusFragment, LoaderManager.LoaderCallbacks<List<WiFiApConfig>>
 {
     private static final String TAG = WiFiApListFragment.class.getSimpleName();
     private static final int LOADER_PROXYCONFIGURATIONS = 1;
@@ -141,6 +143,13 @@ public class WiFiApListFragment extends BaseFragment implements IBaseFragment, L
         loader.forceLoad();
     }
 
+    @Override
+    public EnumSet<ProxyStatusProperties> getBoundStatusProperties()
+    {
+        // List of the networks: the active one is highlighted, with its proxy setting
+        return EnumSet.of(ProxyStatusProperties.WIFI_ENABLED, ProxyStatusProperties.WIFI_SELECTED, ProxyStatusProperties.PROXY_ENABLED);
+    }
+
     public void refreshUI()
     {
         if (loader != null)